@@ -23,11 +23,8 @@ public class MapController {
     private final WaypointDrawer waypointDrawer;
     private final SearchResultsPanel resultsPanel;
 
-    private final List<Fermate> fermate;
-    private final List<Route> rotte;
-    private final List<Trip> trips;
-    private final List<StopTime> stopTimes;
-    private final Map<String, ShapeRoute> forme;
+    private GtfsIndex indice;
+    private Map<String, ShapeRoute> forme;
 
     private Route currentSelectedRoute;
     private Trip currentSelectedTrip;
@@ -50,66 +47,29 @@ public class MapController {
         this.routeDrawer = routeDrawer;
         this.waypointDrawer = waypointDrawer;
         this.resultsPanel = resultsPanel;
-        this.fermate = fermate;
-        this.rotte = rotte;
-        this.trips = trips;
-        this.stopTimes = stopTimes;
+        this.indice = GtfsIndex.costruisci(fermate, rotte, trips, stopTimes, null);
         this.forme = forme;
     }
 
+    // Passa a una nuova versione del GTFS statico (hot reload); va chiamato sull'EDT
+    public void aggiornaDati(GtfsDataset dataset) {
+        this.indice = dataset.getIndice();
+        this.forme = dataset.getForme();
+    }
+
+    // Direzioni, capolinea e forma vengono da GtfsIndex.percorsi (calcolati al caricamento):
+    // nessuna scansione di corse o orari al click
     public void mostraLinea(Route rotta) {
         currentSelectedRoute = rotta;
         System.out.println("Linea selezionata: " + rotta.getRouteShortName());
 
-        List<Trip> tripsLinea = new ArrayList<>();
-        for (Trip t : trips) {
-            if (t.getRouteId().equals(rotta.getRouteId())) {
-                tripsLinea.add(t);
-            }
-        }
-
-        if (tripsLinea.isEmpty()) {
+        int codiceRotta = rotta.getCodiceRotta();
+        if (indice.tripsPerRotta(codiceRotta).isEmpty()) {
             JOptionPane.showMessageDialog(null, "Nessun trip trovato per questa linea.");
             return;
         }
 
-        Map<String, List<StopTime>> stopTimesPerTrip = new HashMap<>();
-        for (StopTime st : stopTimes) {
-            stopTimesPerTrip
-                    .computeIfAbsent(st.getTripId(), k -> new ArrayList<>())
-                    .add(st);
-        }
-
-        Trip dir0 = null, dir1 = null;
-        double maxDist0 = -1, maxDist1 = -1;
-
-        for (Trip t : tripsLinea) {
-            List<StopTime> stopTrip = stopTimesPerTrip.get(t.getTripId());
-            if (stopTrip == null || stopTrip.size() < 2) continue;
-
-            stopTrip.sort(Comparator.comparingInt(StopTime::getStopSequence));
-
-            Fermate start = trovaFermata(stopTrip.get(0).getStopId());
-            Fermate end = trovaFermata(stopTrip.get(stopTrip.size() - 1).getStopId());
-            if (start == null || end == null) continue;
-
-            double dist = model.utils.GeoUtils.distanzaKm(
-                    start.getStopLat(), start.getStopLon(),
-                    end.getStopLat(), end.getStopLon());
-
-            if (t.getDirectionId() == 0 && dist > maxDist0) {
-                maxDist0 = dist;
-                dir0 = t;
-            } else if (t.getDirectionId() == 1 && dist > maxDist1) {
-                maxDist1 = dist;
-                dir1 = t;
-            }
-        }
-
-        List<Trip> direzioni = new ArrayList<>();
-        if (dir0 != null) direzioni.add(dir0);
-        if (dir1 != null) direzioni.add(dir1);
-
+        List<PercorsiLinea.Direzione> direzioni = indice.percorsi(codiceRotta).getDirezioni();
         if (direzioni.isEmpty()) {
             JOptionPane.showMessageDialog(null, "Nessuna direzione trovata per questa linea.");
             return;
@@ -123,25 +83,10 @@ public class MapController {
         scegliDirezioneEVisualizza(rotta, direzioni);
     }
 
-    private Fermate trovaFermata(String stopId) {
-        for (Fermate f : fermate) {
-            if (f.getStopId().equals(stopId)) return f;
-        }
-        return null;
-    }
-
-    private void scegliDirezioneEVisualizza(Route rotta, List<Trip> direzioni) {
+    private void scegliDirezioneEVisualizza(Route rotta, List<PercorsiLinea.Direzione> direzioni) {
         String[] opzioni = new String[direzioni.size()];
         for (int i = 0; i < direzioni.size(); i++) {
-            Trip t = direzioni.get(i);
-            List<StopTime> stopTrip = t.getStopTimes();
-            stopTrip.sort(Comparator.comparingInt(StopTime::getStopSequence));
-
-            Fermate start = trovaFermata(stopTrip.get(0).getStopId());
-            Fermate end = trovaFermata(stopTrip.get(stopTrip.size() - 1).getStopId());
-            opzioni[i] = (start != null && end != null)
-                    ? start.getStopName() + " → " + end.getStopName()
-                    : "Direzione " + t.getDirectionId();
+            opzioni[i] = direzioni.get(i).descrizione();
         }
 
         Object scelta = JOptionPane.showInputDialog(
@@ -156,15 +101,16 @@ public class MapController {
         if (scelta != null) {
             int index = Arrays.asList(opzioni).indexOf(scelta.toString());
             if (index >= 0) {
-                Trip scelto = direzioni.get(index);
-                Color colore = (scelto.getDirectionId() == 0) ? Color.RED : Color.BLUE;
-                disegnaDirezione(rotta, scelto, colore);
+                PercorsiLinea.Direzione direzione = direzioni.get(index);
+                Color colore = (direzione.direzione() == 0) ? Color.RED : Color.BLUE;
+                disegnaDirezione(rotta, direzione, colore);
             }
         }
     }
 
-    private void disegnaDirezione(Route rotta, Trip trip, Color colore) {
-        ShapeRoute shape = forme.get(trip.getShapeId());
+    private void disegnaDirezione(Route rotta, PercorsiLinea.Direzione direzione, Color colore) {
+        Trip trip = direzione.corsa();
+        ShapeRoute shape = direzione.shapeId() != null ? forme.get(direzione.shapeId()) : null;
         if (shape == null) return;
 
         routeDrawer.clearAll();
@@ -175,14 +121,14 @@ public class MapController {
         mapService.mostraWaypointFermate(trip);
 
         resultsPanel.setVisible(true);
-        resultsPanel.mostraFermateLinea(rotta, trip, trips, stopTimes, fermate);
+        resultsPanel.mostraFermateLinea(rotta, trip);
 
         currentSelectedTrip = trip;
 
         System.out.println("Direzione disegnata: " + trip.getTripId());
+        // centro del riquadro delle fermate, spostato come prima per lasciare spazio al pannello
         mapViewer.setZoom(6);
-        GeoPosition center = mapViewer.getAddressLocation();
-        mapViewer.setAddressLocation(new GeoPosition(center.getLatitude() - 0.01, center.getLongitude() - 0.025));
+        mapViewer.setAddressLocation(new GeoPosition(direzione.latCentro() - 0.01, direzione.lonCentro() - 0.025));
 
         // AVVIA AGGIORNAMENTO REAL-TIME DEI BUS
         avviaAggiornamentoRealtimeBus(rotta, trip);
@@ -0,0 +1,152 @@
+package model.gtfs;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// calendar.txt e calendar_dates.txt compilati una volta per versione del feed.
+// Per ogni servizio (codice nella tabella servizio del caricamento): giorni della settimana come bit e
+// intervallo di validità in giorni epoch; le eccezioni raggruppate per giorno.
+// Da qui si ricava per una data il bitset delle corse attive (CorseAttive):
+// la verifica "questa corsa circola oggi?" non scorre più la lista delle eccezioni.
+
+public final class CalendarioServizi {
+
+    private static final CalendarioServizi VUOTO = new CalendarioServizi(Map.of(), List.of(), Simboli.Tabelle.PREDEFINITE.servizio);
+
+    private static final int NON_DEFINITO = Integer.MIN_VALUE;
+
+    // Per codice servizio; inizio = NON_DEFINITO se il servizio non è in calendar.txt
+    private final byte[] giorniSettimana;   // bit 0 = lunedì ... bit 6 = domenica
+    private final int[] inizio;
+    private final int[] fine;
+
+    // giorno epoch -> servizi con eccezione quel giorno: codice << 1 | 1 se aggiunto
+    private final Map<Integer, int[]> eccezioniPerGiorno;
+
+    private final boolean vuoto;
+
+    private CalendarioServizi(Map<String, CalendarDate> calendari, List<CalendarDate> eccezioni, Simboli servizi) {
+        int massimo = -1;
+        for (CalendarDate cal : calendari.values()) {
+            massimo = Math.max(massimo, servizi.codice(cal.getServiceId()));
+        }
+        this.giorniSettimana = new byte[massimo + 1];
+        this.inizio = new int[massimo + 1];
+        this.fine = new int[massimo + 1];
+        Arrays.fill(inizio, NON_DEFINITO);
+
+        for (CalendarDate cal : calendari.values()) {
+            if (cal.getStartDate() == null || cal.getEndDate() == null) continue;
+            int s = servizi.codice(cal.getServiceId());
+            giorniSettimana[s] = (byte) ((cal.isMonday() ? 1 : 0)
+                    | (cal.isTuesday() ? 2 : 0)
+                    | (cal.isWednesday() ? 4 : 0)
+                    | (cal.isThursday() ? 8 : 0)
+                    | (cal.isFriday() ? 16 : 0)
+                    | (cal.isSaturday() ? 32 : 0)
+                    | (cal.isSunday() ? 64 : 0));
+            inizio[s] = (int) cal.getStartDate().toEpochDay();
+            fine[s] = (int) cal.getEndDate().toEpochDay();
+        }
+
+        // Eccezioni per giorno; per la stessa coppia servizio/giorno vale l'ultima letta
+        Map<Integer, Map<Integer, Boolean>> perGiorno = new HashMap<>();
+        for (CalendarDate e : eccezioni) {
+            if (e.getDate() == null) continue;
+            perGiorno.computeIfAbsent((int) e.getDate().toEpochDay(), k -> new LinkedHashMap<>())
+                    .put(servizi.codice(e.getServiceId()), e.getExceptionType() == 1);
+        }
+        this.eccezioniPerGiorno = new HashMap<>(perGiorno.size() * 2);
+        for (Map.Entry<Integer, Map<Integer, Boolean>> g : perGiorno.entrySet()) {
+            int[] voci = new int[g.getValue().size()];
+            int i = 0;
+            for (Map.Entry<Integer, Boolean> v : g.getValue().entrySet()) {
+                voci[i++] = v.getKey() << 1 | (v.getValue() ? 1 : 0);
+            }
+            eccezioniPerGiorno.put(g.getKey(), voci);
+        }
+
+        this.vuoto = calendari.isEmpty() && eccezioni.isEmpty();
+    }
+
+    public static CalendarioServizi di(Map<String, CalendarDate> calendari, List<CalendarDate> eccezioni) {
+        return di(calendari, eccezioni, Simboli.Tabelle.PREDEFINITE.servizio);
+    }
+
+    // servizi: la tabella con cui sono codificate le corse del caricamento
+    public static CalendarioServizi di(Map<String, CalendarDate> calendari, List<CalendarDate> eccezioni,
+                                       Simboli servizi) {
+        return new CalendarioServizi(calendari, eccezioni, servizi);
+    }
+
+    public static CalendarioServizi vuoto() {
+        return VUOTO;
+    }
+
+    // Feed senza calendario: nessun filtro per giorno (altrimenti non circolerebbe niente)
+    public boolean isVuoto() {
+        return vuoto;
+    }
+
+    // Il servizio circola nel giorno dato? (prima le eccezioni, poi il calendario ricorrente)
+    public boolean isAttivo(int codiceServizio, LocalDate giorno) {
+        int epoch = (int) giorno.toEpochDay();
+        int[] voci = eccezioniPerGiorno.get(epoch);
+        if (voci != null) {
+            for (int v : voci) {
+                if (v >>> 1 == codiceServizio) return (v & 1) != 0;
+            }
+        }
+        return daCalendario(codiceServizio, epoch, giorno.getDayOfWeek().getValue() - 1);
+    }
+
+    private boolean daCalendario(int s, int epoch, int giornoSettimana) {
+        return s >= 0 && s < inizio.length && inizio[s] != NON_DEFINITO
+                && epoch >= inizio[s] && epoch <= fine[s]
+                && (giorniSettimana[s] & (1 << giornoSettimana)) != 0;
+    }
+
+    // Bitset dei servizi attivi nel giorno, per codice servizio
+    public long[] serviziAttivi(LocalDate giorno) {
+        int epoch = (int) giorno.toEpochDay();
+        int giornoSettimana = giorno.getDayOfWeek().getValue() - 1;
+        int[] voci = eccezioniPerGiorno.getOrDefault(epoch, new int[0]);
+
+        int massimo = inizio.length - 1;
+        for (int v : voci) massimo = Math.max(massimo, v >>> 1);
+        long[] bit = new long[parole(massimo)];
+
+        for (int s = 0; s < inizio.length; s++) {
+            if (daCalendario(s, epoch, giornoSettimana)) bit[s >>> 6] |= 1L << s;
+        }
+        for (int v : voci) {
+            int s = v >>> 1;
+            if ((v & 1) != 0) bit[s >>> 6] |= 1L << s;
+            else bit[s >>> 6] &= ~(1L << s);
+        }
+        return bit;
+    }
+
+    // Corse attive nel giorno tra quelle date: una passata sulle corse, un bit per corsa
+    public CorseAttive corseAttive(LocalDate giorno, Collection<Trip> trips) {
+        if (vuoto) {
+            return CorseAttive.TUTTE;
+        }
+        long[] servizi = serviziAttivi(giorno);
+        int massimoTrip = -1;
+        for (Trip t : trips) massimoTrip = Math.max(massimoTrip, t.getCodiceTrip());
+        long[] bit = new long[parole(massimoTrip)];
+        for (Trip t : trips) {
+            int s = t.getCodiceServizio();
+            if (s >= 0 && (s >>> 6) < servizi.length && (servizi[s >>> 6] & (1L << s)) != 0) {
+                bit[t.getCodiceTrip() >>> 6] |= 1L << t.getCodiceTrip();
+            }
+        }
+        return new CorseAttive(giorno, bit);
+    }
+
+    // long necessari per i bit 0..massimo (nessuno se massimo < 0)
+    private static int parole(int massimo) {
+        return massimo < 0 ? 0 : (massimo >>> 6) + 1;
+    }
+}
@@ -0,0 +1,52 @@
+package model.gtfs;
+
+import java.time.LocalDate;
+
+// Corse che circolano in un giorno di servizio: un bit per codice trip (Simboli.TRIP).
+// Si compila una volta per giorno (CalendarioServizi.corseAttive), poi sapere se una
+// corsa circola è un solo test su un long[].
+
+public final class CorseAttive {
+
+    // Nessun calendario: tutte le corse valgono come attive
+    public static final CorseAttive TUTTE = new CorseAttive(null, null);
+
+    private final LocalDate giorno;
+    private final long[] bit;
+
+    CorseAttive(LocalDate giorno, long[] bit) {
+        this.giorno = giorno;
+        this.bit = bit;
+    }
+
+    public boolean contiene(int codiceTrip) {
+        if (bit == null) {
+            return true;
+        }
+        int parola = codiceTrip >>> 6;
+        return codiceTrip >= 0 && parola < bit.length && (bit[parola] & (1L << codiceTrip)) != 0;
+    }
+
+    public boolean contiene(Trip trip) {
+        return contiene(trip.getCodiceTrip());
+    }
+
+    // Giorno di servizio, null per TUTTE
+    public LocalDate getGiorno() {
+        return giorno;
+    }
+
+    public int getNumeroCorse() {
+        if (bit == null) {
+            return -1;
+        }
+        int n = 0;
+        for (long b : bit) n += Long.bitCount(b);
+        return n;
+    }
+
+    @Override
+    public String toString() {
+        return bit == null ? "tutte le corse" : getNumeroCorse() + " corse il " + giorno;
+    }
+}
@@ -1,12 +1,15 @@
 package model.gtfs;
 
+import java.util.Objects;
+
 // Classe che rappresenta una fermata del trasporto pubblico (GTFS Stop)
  //Legge i dati dal file stops.txt nella cartella resources
 
 public class Fermate {
 
     // Attributi della fermata
-    private String stopId;           // ID univoco della fermata
+    private final Simboli.Tabelle simboli;  // tabelle dei codici (quelle del caricamento)
+    private int stopId;              // ID univoco della fermata (codice Simboli)
     private String stopName;         // Nome della fermata
     private String stopDesc;         // Descrizione (opzionale)
     private double stopLat;          // Latitudine
@@ -20,7 +23,17 @@ public class Fermate {
     public Fermate(String stopId, String stopName, String stopDesc,
                    double stopLat, double stopLon, String stopUrl,
                    String locationType, String parentStation) {
-        this.stopId = stopId;
+        this(Simboli.Tabelle.PREDEFINITE, stopId, stopName, stopDesc, stopLat, stopLon, stopUrl,
+                locationType, parentStation);
+    }
+
+    // Con le tabelle dei simboli del caricamento (Database, GtfsSnapshot)
+
+    public Fermate(Simboli.Tabelle simboli, String stopId, String stopName, String stopDesc,
+                   double stopLat, double stopLon, String stopUrl,
+                   String locationType, String parentStation) {
+        this.simboli = simboli;
+        this.stopId = simboli.fermata.codice(stopId);
         this.stopName = stopName;
         this.stopDesc = stopDesc;
         this.stopLat = stopLat;
@@ -33,7 +46,8 @@ public class Fermate {
     //Costruttore semplificato (con solo i campi essenziali)
 
     public Fermate(String stopId, String stopName, double stopLat, double stopLon) {
-        this.stopId = stopId;
+        this.simboli = Simboli.Tabelle.PREDEFINITE;
+        this.stopId = simboli.fermata.codice(stopId);
         this.stopName = stopName;
         this.stopLat = stopLat;
         this.stopLon = stopLon;
@@ -46,9 +60,17 @@ public class Fermate {
     //  GETTERS
 
     public String getStopId() {
+        return simboli.fermata.valore(stopId);
+    }
+
+    public int getCodiceFermata() {
         return stopId;
     }
 
+    public Simboli.Tabelle getSimboli() {
+        return simboli;
+    }
+
     public String getStopName() {
         return stopName;
     }
@@ -73,6 +95,10 @@ public class Fermate {
         return locationType;
     }
 
+    public String getParentStation() {
+        return parentStation;
+    }
+
 
 
     public double calcolaDistanza(Fermate altroStop) {
@@ -106,7 +132,7 @@ public class Fermate {
     @Override
     public String toString() {
         return "Fermate{" +
-                "stopId='" + stopId + '\'' +
+                "stopId='" + getStopId() + '\'' +
                 ", stopName='" + stopName + '\'' +
                 ", stopLat=" + stopLat +
                 ", stopLon=" + stopLon +
@@ -114,20 +140,22 @@ public class Fermate {
                 '}';
     }
 
-    //Verifica se due fermate sono uguali (basato sull'ID)
+    //Verifica se due fermate sono uguali (basato sull'ID; tra caricamenti diversi
+    //i codici non si confrontano, si confronta la String)
 
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Fermate fermate = (Fermate) obj;
-        return stopId.equals(fermate.stopId);
+        return simboli == fermate.simboli ? stopId == fermate.stopId
+                : Objects.equals(getStopId(), fermate.getStopId());
     }
 
-    //Genera un hashcode basato sull'ID della fermata
+    //Genera un hashcode basato sull'ID della fermata (la String, uguale in ogni caricamento)
 
     @Override
     public int hashCode() {
-        return stopId.hashCode();
+        return Objects.hashCode(getStopId());
     }
 }
@@ -0,0 +1,108 @@
+package model.gtfs;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.*;
+
+// Intervallo di giorni di servizio (estremi inclusi) per cui tenere in memoria l'orario.
+// Con il profilo a finestra il caricamento risolve prima calendar.txt e calendar_dates.txt
+// e tiene solo le corse dei servizi attivi in almeno un giorno dell'intervallo:
+// i servizi scaduti o che partono tra mesi non occupano heap.
+
+public final class FinestraServizio {
+
+    private final LocalDate centro;
+    private final LocalDate inizio;
+    private final LocalDate fine;
+
+    private FinestraServizio(LocalDate centro, LocalDate inizio, LocalDate fine) {
+        this.centro = centro;
+        this.inizio = inizio;
+        this.fine = fine;
+    }
+
+    // Il giorno "oggi" più "giorni" giorni prima e dopo (es. oggi ±2)
+    public static FinestraServizio attorno(LocalDate oggi, int giorni) {
+        Objects.requireNonNull(oggi);
+        if (giorni < 0) {
+            throw new IllegalArgumentException("Giorni della finestra negativi: " + giorni);
+        }
+        return new FinestraServizio(oggi, oggi.minusDays(giorni), oggi.plusDays(giorni));
+    }
+
+    public boolean contiene(LocalDate giorno) {
+        return !giorno.isBefore(inizio) && !giorno.isAfter(fine);
+    }
+
+    // La finestra va spostata quando il giorno di servizio non è più quello su cui è centrata
+    public boolean daSpostare(LocalDate oggi) {
+        return !centro.equals(oggi);
+    }
+
+    public int getNumeroGiorni() {
+        return (int) (fine.toEpochDay() - inizio.toEpochDay()) + 1;
+    }
+
+    // Servizi attivi in almeno un giorno della finestra.
+    // Le eccezioni vengono raggruppate una volta per servizio e giorno, così ogni verifica
+    // costa una ricerca in mappa invece di una scansione di tutto calendar_dates.txt
+    public Set<String> serviziAttivi(Map<String, CalendarDate> calendari, List<CalendarDate> eccezioni) {
+        // service_id -> giorno -> exception_type, solo per i giorni della finestra
+        Map<String, Map<LocalDate, Integer>> eccezioniPerServizio = new HashMap<>();
+        for (CalendarDate e : eccezioni) {
+            if (e.getDate() != null && contiene(e.getDate())) {
+                eccezioniPerServizio.computeIfAbsent(e.getServiceId(), k -> new HashMap<>())
+                        .put(e.getDate(), e.getExceptionType());
+            }
+        }
+
+        Set<String> attivi = new HashSet<>();
+        for (CalendarDate cal : calendari.values()) {
+            Map<LocalDate, Integer> eccezioniServizio =
+                    eccezioniPerServizio.getOrDefault(cal.getServiceId(), Map.of());
+            for (LocalDate giorno = inizio; !giorno.isAfter(fine); giorno = giorno.plusDays(1)) {
+                Integer eccezione = eccezioniServizio.get(giorno);
+                boolean attivo = eccezione != null ? eccezione == 1 : attivoDaCalendario(cal, giorno);
+                if (attivo) {
+                    attivi.add(cal.getServiceId());
+                    break;
+                }
+            }
+        }
+
+        // Servizi definiti solo in calendar_dates.txt (o aggiunti per un giorno)
+        for (Map.Entry<String, Map<LocalDate, Integer>> e : eccezioniPerServizio.entrySet()) {
+            if (e.getValue().containsValue(1)) {
+                attivi.add(e.getKey());
+            }
+        }
+        return attivi;
+    }
+
+    private static boolean attivoDaCalendario(CalendarDate cal, LocalDate giorno) {
+        if (cal.getStartDate() == null || cal.getEndDate() == null
+                || giorno.isBefore(cal.getStartDate()) || giorno.isAfter(cal.getEndDate())) {
+            return false;
+        }
+        DayOfWeek giornoSettimana = giorno.getDayOfWeek();
+        return switch (giornoSettimana) {
+            case MONDAY -> cal.isMonday();
+            case TUESDAY -> cal.isTuesday();
+            case WEDNESDAY -> cal.isWednesday();
+            case THURSDAY -> cal.isThursday();
+            case FRIDAY -> cal.isFriday();
+            case SATURDAY -> cal.isSaturday();
+            case SUNDAY -> cal.isSunday();
+        };
+    }
+
+    // GETTER
+    public LocalDate getCentro() { return centro; }
+    public LocalDate getInizio() { return inizio; }
+    public LocalDate getFine() { return fine; }
+
+    @Override
+    public String toString() {
+        return inizio + " .. " + fine;
+    }
+}
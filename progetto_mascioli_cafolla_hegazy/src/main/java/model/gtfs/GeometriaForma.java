@@ -0,0 +1,334 @@
+package model.gtfs;
+
+import java.util.*;
+
+// Punti di una forma (shapes.txt) in forma compatta e immutabile.
+// Le coordinate sono quantizzate a 1e-6 gradi (~11 cm), la distanza del feed
+// (shape_dist_traveled) a 1e-4 unità; ogni punto è salvato come differenza dal
+// precedente in varint zigzag, di solito 6-8 byte a punto invece dei ~50 di un GeoPoint.
+// Ogni BLOCCO punti i valori ripartono assoluti, così un punto qualsiasi si raggiunge
+// decodificandone al massimo BLOCCO. Le distanze cumulative (haversine, in metri)
+// sono calcolate una volta alla costruzione: lunghezza e distanze tra punti in O(1),
+// ricerca per distanza in O(log n).
+
+public final class GeometriaForma {
+
+    static final double SCALA_COORDINATE = 1_000_000.0;
+    static final double SCALA_DISTANZA = 10_000.0;
+    static final int BLOCCO = 32;
+
+    private static final double RAGGIO_TERRA_KM = 6371;
+    private static final GeometriaForma VUOTA = new GeometriaForma(0, new byte[0]);
+
+    private final int numeroPunti;
+    private final byte[] dati;           // per punto: lat, lon, sequenza, distanza del feed
+    private final int[] ancore;          // posizione in dati del primo punto di ogni blocco
+    private final float[] cumulative;    // metri percorsi dal primo punto
+
+    private GeometriaForma(int numeroPunti, byte[] dati) {
+        this.numeroPunti = numeroPunti;
+        this.dati = dati;
+        this.ancore = new int[(numeroPunti + BLOCCO - 1) / BLOCCO];
+        this.cumulative = new float[numeroPunti];
+
+        // una passata: ancore dei blocchi e distanze cumulative
+        Cursore c = new Cursore(0, 0);
+        double metri = 0;
+        double latPrec = 0, lonPrec = 0;
+        while (c.avanza()) {
+            int i = c.indice;
+            if (i % BLOCCO == 0) {
+                ancore[i / BLOCCO] = c.inizioPunto;
+            }
+            if (i > 0) {
+                metri += distanzaKm(latPrec, lonPrec, c.getLatitudine(), c.getLongitudine()) * 1000;
+            }
+            cumulative[i] = (float) metri;
+            latPrec = c.getLatitudine();
+            lonPrec = c.getLongitudine();
+        }
+    }
+
+    public static GeometriaForma vuota() {
+        return VUOTA;
+    }
+
+    // Punti nell'ordine della lista (come ShapeRoute li ha ricevuti)
+    public static GeometriaForma di(List<ShapeRoute.GeoPoint> punti) {
+        Costruttore c = new Costruttore(punti.size());
+        for (ShapeRoute.GeoPoint p : punti) {
+            c.aggiungi(p.getLatitude(), p.getLongitude(), p.getSequence(), p.getDistanceTraveled());
+        }
+        return c.costruisci();
+    }
+
+    // Ricostruisce una geometria dai byte di getDatiCompressi() (es. dallo snapshot)
+    public static GeometriaForma daDatiCompressi(int numeroPunti, byte[] dati) {
+        return numeroPunti == 0 ? VUOTA : new GeometriaForma(numeroPunti, dati.clone());
+    }
+
+    // ==================== COSTRUZIONE ====================
+
+    // Raccoglie i punti in array primitivi e li codifica una volta sola
+    public static final class Costruttore {
+        private int[] lat, lon, seq;
+        private long[] dist;
+        private int n;
+
+        public Costruttore() {
+            this(16);
+        }
+
+        public Costruttore(int capacita) {
+            int c = Math.max(capacita, 1);
+            lat = new int[c];
+            lon = new int[c];
+            seq = new int[c];
+            dist = new long[c];
+        }
+
+        public Costruttore aggiungi(double latitudine, double longitudine, int sequenza, double distanza) {
+            if (n == lat.length) {
+                int c = n * 2;
+                lat = Arrays.copyOf(lat, c);
+                lon = Arrays.copyOf(lon, c);
+                seq = Arrays.copyOf(seq, c);
+                dist = Arrays.copyOf(dist, c);
+            }
+            lat[n] = (int) Math.round(latitudine * SCALA_COORDINATE);
+            lon[n] = (int) Math.round(longitudine * SCALA_COORDINATE);
+            seq[n] = sequenza;
+            dist[n] = Math.round(distanza * SCALA_DISTANZA);
+            n++;
+            return this;
+        }
+
+        // Ordina per shape_pt_sequence (stabile: a parità resta l'ordine di inserimento)
+        public Costruttore ordinaPerSequenza() {
+            long[] chiavi = new long[n];
+            for (int i = 0; i < n; i++) {
+                chiavi[i] = ((long) seq[i] << 32) | i;
+            }
+            Arrays.sort(chiavi);
+            int[] nLat = new int[n], nLon = new int[n], nSeq = new int[n];
+            long[] nDist = new long[n];
+            for (int i = 0; i < n; i++) {
+                int da = (int) chiavi[i];
+                nLat[i] = lat[da];
+                nLon[i] = lon[da];
+                nSeq[i] = seq[da];
+                nDist[i] = dist[da];
+            }
+            lat = nLat;
+            lon = nLon;
+            seq = nSeq;
+            dist = nDist;
+            return this;
+        }
+
+        public int size() {
+            return n;
+        }
+
+        public GeometriaForma costruisci() {
+            if (n == 0) {
+                return VUOTA;
+            }
+            Uscita out = new Uscita(n * 8);
+            for (int i = 0; i < n; i++) {
+                boolean assoluto = i % BLOCCO == 0;
+                out.varint(assoluto ? lat[i] : (long) lat[i] - lat[i - 1]);
+                out.varint(assoluto ? lon[i] : (long) lon[i] - lon[i - 1]);
+                out.varint(assoluto ? seq[i] : (long) seq[i] - seq[i - 1]);
+                out.varint(assoluto ? dist[i] : dist[i] - dist[i - 1]);
+            }
+            return new GeometriaForma(n, out.comeArray());
+        }
+    }
+
+    // Array di byte che cresce, con scrittura varint zigzag
+    private static final class Uscita {
+        private byte[] buffer;
+        private int dimensione;
+
+        Uscita(int capacita) {
+            buffer = new byte[Math.max(capacita, 16)];
+        }
+
+        void varint(long valore) {
+            long z = (valore << 1) ^ (valore >> 63);
+            if (dimensione + 10 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while ((z & ~0x7FL) != 0) {
+                buffer[dimensione++] = (byte) ((z & 0x7F) | 0x80);
+                z >>>= 7;
+            }
+            buffer[dimensione++] = (byte) z;
+        }
+
+        byte[] comeArray() {
+            return Arrays.copyOf(buffer, dimensione);
+        }
+    }
+
+    // ==================== LETTURA ====================
+
+    // Scorre i punti senza creare oggetti: si chiama avanza() e si leggono i getter.
+    // Un cursore non è thread-safe, ma se ne possono usare quanti se ne vuole in parallelo
+    public final class Cursore {
+        private int posizione;     // prossimo byte da leggere
+        private int inizioPunto;   // primo byte del punto corrente
+        private int indice;        // punto corrente (-1 prima del primo avanza)
+        private long lat, lon, seq, dist;
+
+        private Cursore(int daIndice, int daPosizione) {
+            this.indice = daIndice - 1;
+            this.posizione = daPosizione;
+        }
+
+        public boolean avanza() {
+            if (indice + 1 >= numeroPunti) {
+                return false;
+            }
+            indice++;
+            inizioPunto = posizione;
+            if (indice % BLOCCO == 0) {
+                lat = varint();
+                lon = varint();
+                seq = varint();
+                dist = varint();
+            } else {
+                lat += varint();
+                lon += varint();
+                seq += varint();
+                dist += varint();
+            }
+            return true;
+        }
+
+        private long varint() {
+            long z = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = dati[posizione++];
+                z |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return (z >>> 1) ^ -(z & 1);
+        }
+
+        public int getIndice() { return indice; }
+        public double getLatitudine() { return lat / SCALA_COORDINATE; }
+        public double getLongitudine() { return lon / SCALA_COORDINATE; }
+        public int getSequenza() { return (int) seq; }
+        public double getDistanzaPercorsa() { return dist / SCALA_DISTANZA; }
+        public double getDistanzaCumulataKm() { return cumulative[indice] / 1000.0; }
+
+        public ShapeRoute.GeoPoint comePunto() {
+            return new ShapeRoute.GeoPoint(getLatitudine(), getLongitudine(), getSequenza(), getDistanzaPercorsa());
+        }
+    }
+
+    public Cursore cursore() {
+        return new Cursore(0, 0);
+    }
+
+    // Cursore che al primo avanza() si trova sul punto "indice"
+    public Cursore cursoreDa(int indice) {
+        Objects.checkIndex(indice, numeroPunti + 1);
+        if (indice == numeroPunti) {
+            return new Cursore(numeroPunti, dati.length);
+        }
+        int blocco = indice / BLOCCO;
+        Cursore c = new Cursore(blocco * BLOCCO, ancore[blocco]);
+        for (int i = blocco * BLOCCO; i < indice; i++) {
+            c.avanza();
+        }
+        return c;
+    }
+
+    // Punto alla posizione data: decodifica al massimo BLOCCO punti
+    public ShapeRoute.GeoPoint getPunto(int indice) {
+        Objects.checkIndex(indice, numeroPunti);
+        Cursore c = cursoreDa(indice);
+        c.avanza();
+        return c.comePunto();
+    }
+
+    // Tutti i punti come oggetti (lista nuova a ogni chiamata: per disegnare usare il cursore)
+    public List<ShapeRoute.GeoPoint> comePunti() {
+        List<ShapeRoute.GeoPoint> punti = new ArrayList<>(numeroPunti);
+        Cursore c = cursore();
+        while (c.avanza()) {
+            punti.add(c.comePunto());
+        }
+        return punti;
+    }
+
+    public int size() {
+        return numeroPunti;
+    }
+
+    public boolean isEmpty() {
+        return numeroPunti == 0;
+    }
+
+    // ==================== DISTANZE ====================
+
+    public double getLunghezzaKm() {
+        return numeroPunti == 0 ? 0.0 : cumulative[numeroPunti - 1] / 1000.0;
+    }
+
+    public double getDistanzaCumulataKm(int indice) {
+        return cumulative[indice] / 1000.0;
+    }
+
+    // Distanza lungo la forma tra due punti (negativa se "a" viene dopo "da")
+    public double distanzaTraKm(int da, int a) {
+        return (cumulative[a] - cumulative[da]) / 1000.0;
+    }
+
+    // Ultimo punto raggiunto dopo "km" chilometri dall'inizio (-1 se la forma è vuota)
+    public int indiceAllaDistanzaKm(double km) {
+        if (numeroPunti == 0) {
+            return -1;
+        }
+        float metri = (float) (km * 1000);
+        int basso = 0, alto = numeroPunti - 1;
+        while (basso < alto) {
+            int medio = (basso + alto + 1) >>> 1;
+            if (cumulative[medio] <= metri) {
+                basso = medio;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return basso;
+    }
+
+    // Byte occupati dai punti (per i log e per lo snapshot)
+    public int getDimensioneDati() {
+        return dati.length;
+    }
+
+    public byte[] getDatiCompressi() {
+        return dati.clone();
+    }
+
+    // Distanza tra due coordinate con la formula di Haversine
+    static double distanzaKm(double lat1, double lon1, double lat2, double lon2) {
+        double lat1Rad = Math.toRadians(lat1);
+        double lat2Rad = Math.toRadians(lat2);
+        double deltaLat = Math.toRadians(lat2 - lat1);
+        double deltaLon = Math.toRadians(lon2 - lon1);
+
+        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
+                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
+                        Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
+
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return RAGGIO_TERRA_KM * c;
+    }
+}
@@ -0,0 +1,217 @@
+package model.gtfs;
+
+import model.utils.GeoUtils;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Cambi a piedi tra fermate vicine, calcolati una volta per versione del GTFS:
+// per ogni fermata le fermate entro il raggio (GrigliaFermate, niente confronto tra
+// tutte le coppie) con il tempo a piedi, più i cambi di transfers.txt quando c'è.
+// Le fermate si elaborano in parallelo sul ForkJoinPool comune, ognuna nei propri array.
+//
+// Formato CSR per codice fermata (Simboli.FERMATA): i collegamenti della fermata f sono
+// inizio[f] .. inizio[f + 1], dal più breve; verso[] sono codici fermata.
+// Il raggio si sceglie con -Dgtfs.trasferimenti.raggio=metri (default 300).
+
+public final class GrafoTrasferimenti {
+
+    public static final String PROPRIETA_RAGGIO = "gtfs.trasferimenti.raggio";
+    public static final int RAGGIO_PREDEFINITO = 300;
+
+    // passo di 1,2 m/s sul percorso reale, che è circa 1,3 volte la linea d'aria
+    private static final double VELOCITA_PASSO = 1.2;
+    private static final double DEVIAZIONE = 1.3;
+
+    // Fermata raggiungibile a piedi: tempo in secondi, distanza in linea d'aria
+    // (-1 per i cambi dichiarati tra fermate che non sono in stops.txt)
+    public record Collegamento(Fermate fermata, int secondi, int metri) {
+    }
+
+    private final MappaPerCodice<Fermate> fermate;
+    private final double raggioMetri;
+    private final int[] inizio;
+    private final int[] verso;
+    private final int[] secondi;
+    private final int[] metri;
+
+    // Collegamenti di una fermata durante la costruzione
+    private record Uscite(int[] verso, int[] secondi, int[] metri) {
+        static final Uscite NESSUNA = new Uscite(new int[0], new int[0], new int[0]);
+    }
+
+    private GrafoTrasferimenti(Collection<Fermate> tutte, GrigliaFermate griglia,
+                               List<Trasferimento> trasferimenti, double raggioMetri) {
+        this.fermate = MappaPerCodice.di(tutte, Fermate::getCodiceFermata);
+        this.raggioMetri = raggioMetri;
+
+        // cambi dichiarati raggruppati per fermata di partenza (stessa fermata esclusa:
+        // il tempo minimo di cambio sul posto non è uno spostamento a piedi)
+        Map<Integer, List<Trasferimento>> dichiarati = new HashMap<>();
+        for (Trasferimento t : trasferimenti) {
+            if (t.getCodiceFermataDa() == t.getCodiceFermataA()) continue;
+            dichiarati.computeIfAbsent(t.getCodiceFermataDa(), k -> new ArrayList<>()).add(t);
+        }
+
+        Fermate[] elenco = tutte.toArray(new Fermate[0]);
+        int massimo = -1;
+        for (Fermate f : elenco) massimo = Math.max(massimo, f.getCodiceFermata());
+        for (Trasferimento t : trasferimenti) {
+            massimo = Math.max(massimo, Math.max(t.getCodiceFermataDa(), t.getCodiceFermataA()));
+        }
+
+        Uscite[] perFermata = new Uscite[massimo + 1];
+        IntStream.range(0, elenco.length).parallel().forEach(i -> {
+            Fermate f = elenco[i];
+            perFermata[f.getCodiceFermata()] = uscite(f, griglia, dichiarati.get(f.getCodiceFermata()));
+        });
+        // cambi dichiarati da fermate che non sono in stops.txt (o sono stazioni)
+        for (Map.Entry<Integer, List<Trasferimento>> e : dichiarati.entrySet()) {
+            if (perFermata[e.getKey()] == null) perFermata[e.getKey()] = uscite(null, griglia, e.getValue());
+        }
+
+        this.inizio = new int[massimo + 2];
+        int totale = 0;
+        for (int c = 0; c <= massimo; c++) {
+            inizio[c] = totale;
+            if (perFermata[c] != null) totale += perFermata[c].verso().length;
+        }
+        inizio[massimo + 1] = totale;
+        this.verso = new int[totale];
+        this.secondi = new int[totale];
+        this.metri = new int[totale];
+        for (int c = 0; c <= massimo; c++) {
+            Uscite u = perFermata[c];
+            if (u == null) continue;
+            System.arraycopy(u.verso(), 0, verso, inizio[c], u.verso().length);
+            System.arraycopy(u.secondi(), 0, secondi, inizio[c], u.secondi().length);
+            System.arraycopy(u.metri(), 0, metri, inizio[c], u.metri().length);
+        }
+    }
+
+    public static GrafoTrasferimenti di(Collection<Fermate> fermate, GrigliaFermate griglia,
+                                        List<Trasferimento> trasferimenti, double raggioMetri) {
+        return new GrafoTrasferimenti(fermate, griglia, trasferimenti, raggioMetri);
+    }
+
+    // Raggio indicato dalla proprietà di sistema (RAGGIO_PREDEFINITO se assente o non valido)
+    public static int raggioDaProprieta() {
+        String valore = System.getProperty(PROPRIETA_RAGGIO);
+        if (valore == null || valore.isBlank()) {
+            return RAGGIO_PREDEFINITO;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(valore.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Raggio dei trasferimenti non valido: " + valore
+                    + " (uso " + RAGGIO_PREDEFINITO + ")");
+            return RAGGIO_PREDEFINITO;
+        }
+    }
+
+    // Secondi a piedi per una distanza in linea d'aria
+    public static int secondiAPiedi(double metri) {
+        return (int) Math.ceil(metri * DEVIAZIONE / VELOCITA_PASSO);
+    }
+
+    // Metri in linea d'aria percorribili a piedi in un tempo (inverso di secondiAPiedi)
+    public static double metriAPiedi(int secondi) {
+        return Math.max(0, secondi) * VELOCITA_PASSO / DEVIAZIONE;
+    }
+
+    // Vicine nel raggio (solo fermate, non stazioni o ingressi), poi i cambi dichiarati:
+    // transfer_type 3 toglie il collegamento, min_transfer_time sostituisce il tempo a piedi
+    private Uscite uscite(Fermate f, GrigliaFermate griglia, List<Trasferimento> dichiarati) {
+        Map<Integer, int[]> collegamenti = new LinkedHashMap<>();   // verso -> {secondi, metri}
+        if (f != null && isFermata(f)) {
+            for (GrigliaFermate.Vicina v : griglia.entroRaggio(f.getStopLat(), f.getStopLon(), raggioMetri)) {
+                Fermate g = v.fermata();
+                if (g.getCodiceFermata() == f.getCodiceFermata() || !isFermata(g)) continue;
+                collegamenti.put(g.getCodiceFermata(), new int[]{secondiAPiedi(v.metri()), (int) Math.round(v.metri())});
+            }
+        }
+        if (dichiarati != null) {
+            for (Trasferimento t : dichiarati) {
+                if (!t.isPossibile()) {
+                    collegamenti.remove(t.getCodiceFermataA());
+                    continue;
+                }
+                int distanza = distanza(t.getCodiceFermataDa(), t.getCodiceFermataA());
+                int tempo = t.getMinTransferTime() >= 0 ? t.getMinTransferTime()
+                        : distanza >= 0 ? secondiAPiedi(distanza) : 0;
+                collegamenti.put(t.getCodiceFermataA(), new int[]{tempo, distanza});
+            }
+        }
+        if (collegamenti.isEmpty()) {
+            return Uscite.NESSUNA;
+        }
+
+        List<Map.Entry<Integer, int[]>> ordinati = new ArrayList<>(collegamenti.entrySet());
+        ordinati.sort(Comparator.comparingInt((Map.Entry<Integer, int[]> e) -> e.getValue()[0])
+                .thenComparingInt(Map.Entry::getKey));
+        int n = ordinati.size();
+        Uscite u = new Uscite(new int[n], new int[n], new int[n]);
+        for (int i = 0; i < n; i++) {
+            u.verso()[i] = ordinati.get(i).getKey();
+            u.secondi()[i] = ordinati.get(i).getValue()[0];
+            u.metri()[i] = ordinati.get(i).getValue()[1];
+        }
+        return u;
+    }
+
+    private static boolean isFermata(Fermate f) {
+        String tipo = f.getLocationType();
+        return tipo == null || tipo.isEmpty() || tipo.equals("0");
+    }
+
+    private int distanza(int da, int a) {
+        Fermate x = fermate.get(da), y = fermate.get(a);
+        if (x == null || y == null) return -1;
+        return (int) Math.round(GeoUtils.distanzaKm(x.getStopLat(), x.getStopLon(),
+                y.getStopLat(), y.getStopLon()) * 1000);
+    }
+
+    // ==================== LETTURA ====================
+
+    // Fermate raggiungibili a piedi da quella data, dalla più vicina (in tempo)
+    public List<Collegamento> collegamenti(Fermate fermata) {
+        List<Collegamento> risultato = new ArrayList<>();
+        if (fermata == null) return risultato;
+        int c = fermata.getCodiceFermata();
+        for (int p = inizio(c); p < fine(c); p++) {
+            Fermate f = fermate.get(verso[p]);
+            if (f != null) risultato.add(new Collegamento(f, secondi[p], metri[p]));
+        }
+        return risultato;
+    }
+
+    // Accesso diretto agli array (per il calcolo dei percorsi): posizioni inizio(c) .. fine(c)
+    public int inizio(int codiceFermata) {
+        return codiceFermata >= 0 && codiceFermata < inizio.length - 1 ? inizio[codiceFermata] : 0;
+    }
+
+    public int fine(int codiceFermata) {
+        return codiceFermata >= 0 && codiceFermata < inizio.length - 1 ? inizio[codiceFermata + 1] : 0;
+    }
+
+    public int getCodiceFermataVerso(int posizione) {
+        return verso[posizione];
+    }
+
+    public int getSecondi(int posizione) {
+        return secondi[posizione];
+    }
+
+    public int getMetri(int posizione) {
+        return metri[posizione];
+    }
+
+    public double getRaggioMetri() {
+        return raggioMetri;
+    }
+
+    // Numero di collegamenti (archi orientati)
+    public int size() {
+        return verso.length;
+    }
+}
@@ -0,0 +1,254 @@
+package model.gtfs;
+
+import model.utils.GeoUtils;
+
+import java.util.*;
+
+// Indice spaziale delle fermate: griglia regolare in gradi, celle di circa CELLA_METRI,
+// fermate ordinate per cella (CSR: inizioCella[c] .. inizioCella[c + 1]).
+// Le ricerche guardano solo le celle vicine al punto e confrontano le distanze con
+// l'approssimazione equirettangolare (moltiplicazioni sulle coordinate); Haversine
+// solo per le fermate che passano il filtro. Con le ~8.000 fermate di Roma una
+// ricerca tocca qualche decina di fermate invece di tutta la lista.
+
+public final class GrigliaFermate {
+
+    private static final double CELLA_METRI = 250;
+    private static final double METRI_PER_GRADO = Math.toRadians(1) * 6_371_000;
+    // oltre questo numero di celle (coordinate anomale, es. 0,0) le celle si allargano
+    private static final int MASSIMO_CELLE = 1 << 20;
+    // margine del filtro equirettangolare rispetto a Haversine
+    private static final double MARGINE = 1.01;
+
+    private static final GrigliaFermate VUOTA = new GrigliaFermate(List.of());
+
+    // Fermata trovata con la sua distanza in metri dal punto cercato
+    public record Vicina(Fermate fermata, double metri) {
+    }
+
+    private final Fermate[] fermate;       // ordinate per cella
+    private final double[] lat;
+    private final double[] lon;
+    private final int[] inizioCella;
+    private final double latMin, lonMin;
+    private final double passoLat, passoLon;   // gradi per cella
+    private final int colonne, righe;
+    private final double cellaMinimaMetri;
+
+    private GrigliaFermate(Collection<Fermate> tutte) {
+        List<Fermate> valide = new ArrayList<>(tutte.size());
+        double aLat = Double.MAX_VALUE, aLon = Double.MAX_VALUE, bLat = -Double.MAX_VALUE, bLon = -Double.MAX_VALUE;
+        for (Fermate f : tutte) {
+            double la = f.getStopLat(), lo = f.getStopLon();
+            if (!Double.isFinite(la) || !Double.isFinite(lo) || Math.abs(la) > 90 || Math.abs(lo) > 180) continue;
+            valide.add(f);
+            aLat = Math.min(aLat, la);
+            aLon = Math.min(aLon, lo);
+            bLat = Math.max(bLat, la);
+            bLon = Math.max(bLon, lo);
+        }
+
+        if (valide.isEmpty()) {
+            aLat = aLon = bLat = bLon = 0;
+        }
+        double coseno = Math.max(Math.cos(Math.toRadians((aLat + bLat) / 2)), 0.01);
+        double metri = CELLA_METRI;
+        int c, r;
+        while (true) {
+            double pLat = metri / METRI_PER_GRADO;
+            double pLon = pLat / coseno;
+            c = (int) ((bLon - aLon) / pLon) + 1;
+            r = (int) ((bLat - aLat) / pLat) + 1;
+            if ((long) c * r <= MASSIMO_CELLE) break;
+            metri *= 2;
+        }
+        this.latMin = aLat;
+        this.lonMin = aLon;
+        this.passoLat = metri / METRI_PER_GRADO;
+        this.passoLon = passoLat / coseno;
+        this.colonne = c;
+        this.righe = r;
+        // a latitudini diverse dal centro una cella è un po' più stretta: si tiene la misura minima
+        double cosenoMinimo = Math.max(Math.min(Math.cos(Math.toRadians(aLat)), Math.cos(Math.toRadians(bLat))), 0.01);
+        this.cellaMinimaMetri = Math.min(metri, passoLon * METRI_PER_GRADO * cosenoMinimo);
+
+        // counting sort per cella
+        int n = valide.size();
+        this.inizioCella = new int[colonne * righe + 1];
+        int[] cellaDi = new int[n];
+        for (int i = 0; i < n; i++) {
+            Fermate f = valide.get(i);
+            cellaDi[i] = cella(colonna(f.getStopLon()), riga(f.getStopLat()));
+            inizioCella[cellaDi[i] + 1]++;
+        }
+        for (int i = 0; i < colonne * righe; i++) inizioCella[i + 1] += inizioCella[i];
+        int[] prossima = Arrays.copyOf(inizioCella, colonne * righe);
+        this.fermate = new Fermate[n];
+        this.lat = new double[n];
+        this.lon = new double[n];
+        for (int i = 0; i < n; i++) {
+            int p = prossima[cellaDi[i]]++;
+            Fermate f = valide.get(i);
+            fermate[p] = f;
+            lat[p] = f.getStopLat();
+            lon[p] = f.getStopLon();
+        }
+    }
+
+    public static GrigliaFermate di(Collection<Fermate> fermate) {
+        return fermate.isEmpty() ? VUOTA : new GrigliaFermate(fermate);
+    }
+
+    public static GrigliaFermate vuota() {
+        return VUOTA;
+    }
+
+    public int size() {
+        return fermate.length;
+    }
+
+    // ==================== RICERCHE ====================
+
+    // Le k fermate più vicine al punto, dalla più vicina
+    public List<Vicina> vicine(double latitudine, double longitudine, int k) {
+        if (k <= 0 || fermate.length == 0) {
+            return List.of();
+        }
+        k = Math.min(k, fermate.length);
+        double kx = METRI_PER_GRADO * Math.cos(Math.toRadians(latitudine));
+        int c0 = colonna(longitudine), r0 = riga(latitudine);
+
+        // migliori k per distanza approssimata (al quadrato), in ordine crescente
+        int[] migliori = new int[k];
+        double[] d2 = new double[k];
+        int trovate = 0;
+
+        int anelloMassimo = Math.max(colonne, righe);
+        for (int anello = 0; anello <= anelloMassimo; anello++) {
+            for (int r = r0 - anello; r <= r0 + anello; r++) {
+                if (r < 0 || r >= righe) continue;
+                boolean bordoRiga = r == r0 - anello || r == r0 + anello;
+                for (int c = c0 - anello; c <= c0 + anello; c += bordoRiga ? 1 : 2 * anello) {
+                    if (c >= 0 && c < colonne) {
+                        int cella = cella(c, r);
+                        for (int i = inizioCella[cella]; i < inizioCella[cella + 1]; i++) {
+                            double dx = (lon[i] - longitudine) * kx;
+                            double dy = (lat[i] - latitudine) * METRI_PER_GRADO;
+                            double d = dx * dx + dy * dy;
+                            if (trovate < k) {
+                                trovate = inserisci(migliori, d2, trovate, i, d);
+                            } else if (d < d2[k - 1]) {
+                                inserisci(migliori, d2, k - 1, i, d);
+                            }
+                        }
+                    }
+                    if (anello == 0) break;
+                }
+            }
+            // le celle dell'anello successivo distano almeno anello celle intere
+            double limite = anello * cellaMinimaMetri;
+            if (trovate == k && d2[k - 1] <= limite * limite) break;
+        }
+
+        List<Vicina> risultato = new ArrayList<>(trovate);
+        for (int j = 0; j < trovate; j++) {
+            risultato.add(vicina(migliori[j], latitudine, longitudine));
+        }
+        risultato.sort(Comparator.comparingDouble(Vicina::metri));
+        return risultato;
+    }
+
+    // Fermate entro "metri" dal punto, dalla più vicina
+    public List<Vicina> entroRaggio(double latitudine, double longitudine, double metri) {
+        List<Vicina> risultato = new ArrayList<>();
+        if (fermate.length == 0 || metri < 0) {
+            return risultato;
+        }
+        double kx = METRI_PER_GRADO * Math.cos(Math.toRadians(latitudine));
+        double soglia = metri * MARGINE;
+        double soglia2 = soglia * soglia;
+        double dLat = soglia / METRI_PER_GRADO;
+        double dLon = soglia / Math.max(kx, 1);
+
+        int cDa = colonna(longitudine - dLon), cA = colonna(longitudine + dLon);
+        int rDa = riga(latitudine - dLat), rA = riga(latitudine + dLat);
+        for (int r = rDa; r <= rA; r++) {
+            for (int c = cDa; c <= cA; c++) {
+                int cella = cella(c, r);
+                for (int i = inizioCella[cella]; i < inizioCella[cella + 1]; i++) {
+                    double dx = (lon[i] - longitudine) * kx;
+                    double dy = (lat[i] - latitudine) * METRI_PER_GRADO;
+                    if (dx * dx + dy * dy > soglia2) continue;   // filtro equirettangolare
+                    Vicina v = vicina(i, latitudine, longitudine);
+                    if (v.metri() <= metri) risultato.add(v);
+                }
+            }
+        }
+        risultato.sort(Comparator.comparingDouble(Vicina::metri));
+        return risultato;
+    }
+
+    // Fermate nel riquadro (estremi inclusi), per esempio l'area visibile della mappa
+    public List<Fermate> nelRiquadro(double latSud, double lonOvest, double latNord, double lonEst) {
+        List<Fermate> risultato = new ArrayList<>();
+        if (fermate.length == 0 || latSud > latNord || lonOvest > lonEst) {
+            return risultato;
+        }
+        int cDa = colonna(lonOvest), cA = colonna(lonEst);
+        int rDa = riga(latSud), rA = riga(latNord);
+        for (int r = rDa; r <= rA; r++) {
+            for (int c = cDa; c <= cA; c++) {
+                int cella = cella(c, r);
+                for (int i = inizioCella[cella]; i < inizioCella[cella + 1]; i++) {
+                    if (lat[i] >= latSud && lat[i] <= latNord && lon[i] >= lonOvest && lon[i] <= lonEst) {
+                        risultato.add(fermate[i]);
+                    }
+                }
+            }
+        }
+        return risultato;
+    }
+
+    // La fermata più vicina entro "metri", null se non ce n'è
+    public Fermate piuVicina(double latitudine, double longitudine, double metri) {
+        List<Vicina> v = vicine(latitudine, longitudine, 1);
+        return !v.isEmpty() && v.get(0).metri() <= metri ? v.get(0).fermata() : null;
+    }
+
+    // ==================== CELLE ====================
+
+    private int colonna(double longitudine) {
+        int c = (int) Math.floor((longitudine - lonMin) / passoLon);
+        return Math.max(0, Math.min(colonne - 1, c));
+    }
+
+    private int riga(double latitudine) {
+        int r = (int) Math.floor((latitudine - latMin) / passoLat);
+        return Math.max(0, Math.min(righe - 1, r));
+    }
+
+    private int cella(int colonna, int riga) {
+        return riga * colonne + colonna;
+    }
+
+    private Vicina vicina(int i, double latitudine, double longitudine) {
+        return new Vicina(fermate[i], GeoUtils.distanzaKm(latitudine, longitudine, lat[i], lon[i]) * 1000);
+    }
+
+    // Inserimento ordinato in migliori/d2 (lunghezza occupata n); ritorna la nuova lunghezza
+    private static int inserisci(int[] migliori, double[] d2, int n, int indice, double d) {
+        int j = n;
+        while (j > 0 && d2[j - 1] > d) {
+            if (j < migliori.length) {
+                migliori[j] = migliori[j - 1];
+                d2[j] = d2[j - 1];
+            }
+            j--;
+        }
+        if (j < migliori.length) {
+            migliori[j] = indice;
+            d2[j] = d;
+        }
+        return Math.min(n + 1, migliori.length);
+    }
+}
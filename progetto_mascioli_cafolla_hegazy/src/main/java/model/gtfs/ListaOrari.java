@@ -0,0 +1,89 @@
+package model.gtfs;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Base delle liste di orari ricostruite al volo (StopTimeStore.Vista, orari di uno
+// SchemaCorsa): finché nessuno le modifica leggono dall'archivio o dallo schema, alla
+// prima modifica (o a un ordinamento che cambia l'ordine) passano a una copia in un
+// ArrayList e da lì si comportano come una lista normale. Il vecchio codice che ordina
+// o modifica trip.getStopTimes() continua a funzionare, solo senza la compressione.
+
+abstract class ListaOrari extends AbstractList<StopTime> implements RandomAccess {
+
+    private List<StopTime> copia;                   // null finché la lista non è modificata
+    private final Consumer<List<StopTime>> allaCopia;   // avvisato alla copia (es. la Trip), può essere null
+
+    ListaOrari(Consumer<List<StopTime>> allaCopia) {
+        this.allaCopia = allaCopia;
+    }
+
+    // Orario in posizione i e numero di orari nella sorgente originale
+    abstract StopTime orario(int i);
+
+    abstract int numero();
+
+    // true se la lista è passata a una copia: non rispecchia più la sorgente
+    public boolean isModificata() {
+        return copia != null;
+    }
+
+    private List<StopTime> copia() {
+        if (copia == null) {
+            List<StopTime> nuova = new ArrayList<>(numero() + 4);
+            for (int i = 0; i < numero(); i++) nuova.add(orario(i));
+            copia = nuova;
+            modCount++;
+            if (allaCopia != null) allaCopia.accept(this);
+        }
+        return copia;
+    }
+
+    @Override
+    public StopTime get(int indice) {
+        if (copia != null) return copia.get(indice);
+        Objects.checkIndex(indice, numero());
+        return orario(indice);
+    }
+
+    @Override
+    public int size() {
+        return copia != null ? copia.size() : numero();
+    }
+
+    @Override
+    public StopTime set(int indice, StopTime orario) {
+        return copia().set(indice, orario);
+    }
+
+    @Override
+    public void add(int indice, StopTime orario) {
+        copia().add(indice, orario);
+        modCount++;
+    }
+
+    @Override
+    public StopTime remove(int indice) {
+        StopTime tolto = copia().remove(indice);
+        modCount++;
+        return tolto;
+    }
+
+    // Un ordinamento che non cambia nulla (le sorgenti sono già in ordine di sequenza)
+    // non copia la lista; sort(null) (ordine naturale) passa sempre dalla copia, come un ArrayList
+    @Override
+    public void sort(Comparator<? super StopTime> confronto) {
+        if (copia == null && confronto != null) {
+            StopTime precedente = null;
+            boolean inOrdine = true;
+            for (int i = 0; i < numero() && inOrdine; i++) {
+                StopTime corrente = orario(i);
+                inOrdine = precedente == null || confronto.compare(precedente, corrente) <= 0;
+                precedente = corrente;
+            }
+            if (inOrdine) return;
+        }
+        copia().sort(confronto);
+        modCount++;
+    }
+}
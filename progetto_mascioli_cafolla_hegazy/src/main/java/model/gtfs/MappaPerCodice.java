@@ -0,0 +1,42 @@
+package model.gtfs;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.ToIntFunction;
+
+// Mappa codice Simboli -> oggetto su un array: niente hash, niente Integer.
+// Si costruisce una volta (es. fermate per stop_id) e poi si legge soltanto.
+
+public final class MappaPerCodice<T> {
+
+    private final Object[] elementi;
+
+    private MappaPerCodice(Object[] elementi) {
+        this.elementi = elementi;
+    }
+
+    // In caso di codici duplicati vince il primo elemento (come putIfAbsent)
+    public static <T> MappaPerCodice<T> di(Collection<T> valori, ToIntFunction<T> codice) {
+        int massimo = -1;
+        for (T v : valori) {
+            massimo = Math.max(massimo, codice.applyAsInt(v));
+        }
+        Object[] elementi = new Object[massimo + 1];
+        for (T v : valori) {
+            int c = codice.applyAsInt(v);
+            if (c >= 0 && elementi[c] == null) {
+                elementi[c] = v;
+            }
+        }
+        return new MappaPerCodice<>(elementi);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int codice) {
+        return codice >= 0 && codice < elementi.length ? (T) elementi[codice] : null;
+    }
+
+    public int numeroPresenti() {
+        return (int) Arrays.stream(elementi).filter(e -> e != null).count();
+    }
+}
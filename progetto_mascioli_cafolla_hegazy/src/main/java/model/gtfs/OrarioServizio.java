@@ -0,0 +1,156 @@
+package model.gtfs;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+// Orari GTFS come secondi dall'inizio del giorno di servizio (int).
+// Nel GTFS un orario può superare le 24:00:00: "25:10:00" è l'01:10 del giorno
+// dopo, ma la corsa appartiene ancora al giorno di servizio precedente (linee N).
+// Con i secondi l'ordine resta quello giusto e i confronti sono tra interi;
+// l'orario "da orologio" (LocalTime o data e ora reali) si calcola solo per mostrarlo.
+
+public final class OrarioServizio {
+
+    public static final int SECONDI_GIORNO = 24 * 3600;
+
+    // Valore usato per un orario assente o non valido
+    public static final int ASSENTE = -1;
+
+    // Risultato di inFinestra per un orario fuori dalla finestra
+    public static final int FUORI_FINESTRA = Integer.MIN_VALUE;
+
+    // LocalTime condivisi: ogni orario del giorno viene creato una volta sola
+    private static final LocalTime[] ORARI = new LocalTime[SECONDI_GIORNO];
+
+    private OrarioServizio() {
+    }
+
+    // ==================== PARSING ====================
+
+    // Parsa H:MM:SS o HH:MM:SS (anche con ore >= 24) senza creare oggetti;
+    // spazi esterni ammessi, ASSENTE se il formato non è valido
+    public static int parse(CharSequence testo) {
+        if (testo == null) {
+            return ASSENTE;
+        }
+        int inizio = 0;
+        int fine = testo.length();
+        while (inizio < fine && testo.charAt(inizio) == ' ') inizio++;
+        while (fine > inizio && testo.charAt(fine - 1) == ' ') fine--;
+
+        int ore = 0, minuti = 0, secondi = 0;
+        int parte = 0;
+        int cifreParte = 0;
+        for (int i = inizio; i < fine; i++) {
+            char c = testo.charAt(i);
+            if (c == ':') {
+                if (cifreParte == 0 || ++parte > 2) return ASSENTE;
+                cifreParte = 0;
+            } else if (c >= '0' && c <= '9') {
+                int cifra = c - '0';
+                switch (parte) {
+                    case 0 -> ore = ore * 10 + cifra;
+                    case 1 -> minuti = minuti * 10 + cifra;
+                    default -> secondi = secondi * 10 + cifra;
+                }
+                cifreParte++;
+            } else {
+                return ASSENTE;
+            }
+        }
+        if (parte != 2 || cifreParte == 0 || minuti > 59 || secondi > 59) {
+            return ASSENTE;
+        }
+        return ore * 3600 + minuti * 60 + secondi;
+    }
+
+    // ==================== CONVERSIONI ====================
+
+    public static int daLocalTime(LocalTime orario) {
+        return orario == null ? ASSENTE : orario.toSecondOfDay();
+    }
+
+    // Orario da orologio (ore >= 24 ridotte modulo 24), null se assente
+    public static LocalTime oraDelGiorno(int secondi) {
+        if (secondi < 0) {
+            return null;
+        }
+        int secondoDelGiorno = secondi % SECONDI_GIORNO;
+        LocalTime orario = ORARI[secondoDelGiorno];
+        if (orario == null) {
+            // più thread possono crearlo insieme: LocalTime è immutabile, vince uno qualsiasi
+            orario = LocalTime.ofSecondOfDay(secondoDelGiorno);
+            ORARI[secondoDelGiorno] = orario;
+        }
+        return orario;
+    }
+
+    // Data e ora reali di un orario del giorno di servizio "giorno".
+    // Come da specifica GTFS il giorno di servizio parte da "mezzogiorno meno 12 ore",
+    // così nei giorni del cambio dell'ora legale gli orari restano corretti
+    public static ZonedDateTime dataOra(LocalDate giorno, int secondi, ZoneId zona) {
+        if (secondi < 0) {
+            return null;
+        }
+        return inizioGiornoServizio(giorno, zona).plusSeconds(secondi);
+    }
+
+    // Secondi trascorsi dall'inizio del giorno di servizio "giorno" all'istante dato
+    // (oltre SECONDI_GIORNO se l'istante è già nel giorno dopo)
+    public static int secondiDa(LocalDate giorno, ZonedDateTime istante) {
+        ZonedDateTime inizio = inizioGiornoServizio(giorno, istante.getZone());
+        return (int) Duration.between(inizio, istante).getSeconds();
+    }
+
+    private static ZonedDateTime inizioGiornoServizio(LocalDate giorno, ZoneId zona) {
+        return giorno.atTime(12, 0).atZone(zona).minusHours(12);
+    }
+
+    // "HH:mm" dell'orario da orologio (es. 25:10:00 -> "01:10"), "" se assente
+    public static String formatta(int secondi) {
+        if (secondi < 0) {
+            return "";
+        }
+        int minutiDelGiorno = (secondi % SECONDI_GIORNO) / 60;
+        int ore = minutiDelGiorno / 60;
+        int minuti = minutiDelGiorno % 60;
+        return new String(new char[]{
+                (char) ('0' + ore / 10), (char) ('0' + ore % 10), ':',
+                (char) ('0' + minuti / 10), (char) ('0' + minuti % 10)});
+    }
+
+    // Orario con cui ordinare i passaggi a una fermata: la partenza, o l'arrivo se manca;
+    // le righe senza orari vanno in fondo
+    public static int chiavePartenza(int arrivo, int partenza) {
+        if (partenza >= 0) return partenza;
+        return arrivo >= 0 ? arrivo : Integer.MAX_VALUE;
+    }
+
+    // ==================== FINESTRE ====================
+
+    // Sposta "secondi" (orario di un giorno di servizio) sulla scala dell'orologio di oggi
+    // per la finestra [inizio, fine], anch'essa in secondi dalla mezzanotte di oggi:
+    // una corsa di ieri alle 24:30 vale 00:30 di oggi, una di domani alle 00:10 vale 24:10.
+    // Ritorna il valore spostato se cade nella finestra (può essere negativo appena
+    // dopo mezzanotte), FUORI_FINESTRA altrimenti
+    public static int inFinestra(int secondi, int inizio, int fine) {
+        if (secondi < 0) {
+            return FUORI_FINESTRA;
+        }
+        if (secondi >= inizio && secondi <= fine) {
+            return secondi;
+        }
+        int daIeri = secondi - SECONDI_GIORNO;
+        if (daIeri >= inizio && daIeri <= fine) {
+            return daIeri;
+        }
+        int diDomani = secondi + SECONDI_GIORNO;
+        if (diDomani >= inizio && diDomani <= fine) {
+            return diDomani;
+        }
+        return FUORI_FINESTRA;
+    }
+}
@@ -1,5 +1,7 @@
 package model.gtfs;
 
+import java.util.Objects;
+
 
  // Classe che rappresenta una rotta/linea del trasporto pubblico (GTFS Route)
  //Legge i dati dal file routes.txt nella cartella resources
@@ -7,7 +9,8 @@ package model.gtfs;
 public class Route {
 
     // Attributi della rotta
-    private String routeId;           // ID univoco della rotta
+    private final Simboli.Tabelle simboli;  // tabelle dei codici (quelle del caricamento)
+    private int routeId;              // ID univoco della rotta (codice Simboli)
     private String agencyId;          // ID dell'agenzia (opzionale)
     private String routeShortName;    // Nome breve (es. "23", "A")
     private String routeLongName;     // Nome lungo (es. "Linea 23 - Centro/Periferia")
@@ -22,7 +25,17 @@ public class Route {
 
     public Route(String routeId, String agencyId, String routeShortName, String routeLongName,
                  String routeDesc, int routeType, String routeUrl, String routeColor, String routeTextColor) {
-        this.routeId = routeId;
+        this(Simboli.Tabelle.PREDEFINITE, routeId, agencyId, routeShortName, routeLongName, routeDesc, routeType,
+                routeUrl, routeColor, routeTextColor);
+    }
+
+     // Con le tabelle dei simboli del caricamento (Database, GtfsSnapshot)
+
+    public Route(Simboli.Tabelle simboli, String routeId, String agencyId, String routeShortName,
+                 String routeLongName, String routeDesc, int routeType, String routeUrl, String routeColor,
+                 String routeTextColor) {
+        this.simboli = simboli;
+        this.routeId = simboli.rotta.codice(routeId);
         this.agencyId = agencyId;
         this.routeShortName = routeShortName;
         this.routeLongName = routeLongName;
@@ -57,9 +70,17 @@ public class Route {
     //  GETTERS
 
     public String getRouteId() {
+        return simboli.rotta.valore(routeId);
+    }
+
+    public int getCodiceRotta() {
         return routeId;
     }
 
+    public Simboli.Tabelle getSimboli() {
+        return simboli;
+    }
+
     public String getRouteShortName() {
         return routeShortName;
     }
@@ -70,6 +91,16 @@ public class Route {
 
     public int getRouteType() { return routeType; }
 
+    public String getAgencyId() { return agencyId; }
+
+    public String getRouteDesc() { return routeDesc; }
+
+    public String getRouteUrl() { return routeUrl; }
+
+    public String getRouteColor() { return routeColor; }
+
+    public String getRouteTextColor() { return routeTextColor; }
+
 
 
      //Converte il tipo di rotta in una stringa descrittiva
@@ -99,7 +130,7 @@ public class Route {
     @Override
     public String toString() {
         return "Route{" +
-                "routeId='" + routeId + '\'' +
+                "routeId='" + getRouteId() + '\'' +
                 ", routeShortName='" + routeShortName + '\'' +
                 ", routeLongName='" + routeLongName + '\'' +
                 ", routeType=" + getTipoRottaDescrizione() +
@@ -114,13 +145,14 @@ public class Route {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Route route = (Route) obj;
-        return routeId.equals(route.routeId);
+        return simboli == route.simboli ? routeId == route.routeId
+                : Objects.equals(getRouteId(), route.getRouteId());
     }
 
-     // Genera un hashcode basato sull'ID della rotta
+     // Genera un hashcode basato sull'ID della rotta (la String, uguale in ogni caricamento)
 
     @Override
     public int hashCode() {
-        return routeId.hashCode();
+        return Objects.hashCode(getRouteId());
     }
 }
@@ -0,0 +1,142 @@
+package model.gtfs;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Schema di corsa (journey pattern): linea, direzione e sequenza di fermate comuni
+// a più corse. Le fermate (con sequenza, headsign, salita/discesa e distanza) sono
+// salvate una volta sola per lo schema; le sue corse differiscono solo per l'orario
+// di partenza e per il profilo dei tempi di percorrenza, di solito pochi per schema
+// (punta, morbida, sera...). Gli orari di una corsa sono partenza + profilo e
+// vengono ricostruiti solo quando qualcuno li legge.
+
+public final class SchemaCorsa {
+
+    // Tempi di un gruppo di corse, in secondi dalla partenza della corsa
+    public static final class Profilo {
+        // Orario assente nel feed (vale OrarioServizio.ASSENTE una volta ricostruito)
+        static final int MANCANTE = Integer.MIN_VALUE;
+
+        private final int[] arrivi;
+        private final int[] partenze;
+        private int numeroCorse;
+
+        Profilo(int[] arrivi, int[] partenze) {
+            this.arrivi = arrivi;
+            this.partenze = partenze;
+        }
+
+        public int getArrivoRelativo(int posizione) { return arrivi[posizione]; }
+        public int getPartenzaRelativa(int posizione) { return partenze[posizione]; }
+        public int getNumeroCorse() { return numeroCorse; }
+
+        // Secondi dalla prima partenza all'ultimo arrivo
+        public int getDurata() {
+            int ultimo = arrivi[arrivi.length - 1];
+            return ultimo != MANCANTE ? ultimo : Math.max(0, partenze[partenze.length - 1]);
+        }
+    }
+
+    private final Simboli.Tabelle simboli;   // quelle delle corse dello schema
+    private final int codiceRotta;
+    private final int direzione;
+    private final int[] fermate;       // codici Simboli.FERMATA
+    private final int[] sequenze;
+    private final int[] headsign;      // codici Simboli.HEADSIGN
+    private final byte[] salite;
+    private final byte[] discese;
+    private final double[] distanze;
+
+    private final List<Profilo> profili = new ArrayList<>(1);
+    private final List<Trip> corse = new ArrayList<>();
+
+    SchemaCorsa(Simboli.Tabelle simboli, int codiceRotta, int direzione, int[] fermate, int[] sequenze, int[] headsign,
+                byte[] salite, byte[] discese, double[] distanze) {
+        this.simboli = simboli;
+        this.codiceRotta = codiceRotta;
+        this.direzione = direzione;
+        this.fermate = fermate;
+        this.sequenze = sequenze;
+        this.headsign = headsign;
+        this.salite = salite;
+        this.discese = discese;
+        this.distanze = distanze;
+    }
+
+    // Aggiunge una corsa con il suo profilo (già condiviso dal chiamante)
+    void aggiungiCorsa(Trip trip, Profilo profilo) {
+        if (profilo.numeroCorse++ == 0) {
+            profili.add(profilo);
+        }
+        corse.add(trip);
+    }
+
+    void compatta() {
+        ((ArrayList<Trip>) corse).trimToSize();
+        ((ArrayList<Profilo>) profili).trimToSize();
+    }
+
+    // ==================== LETTURA ====================
+
+    public int size() { return fermate.length; }
+    public int getCodiceRotta() { return codiceRotta; }
+    public String getRouteId() { return simboli.rotta.valore(codiceRotta); }
+    public int getDirezione() { return direzione; }
+    public int getCodiceFermata(int posizione) { return fermate[posizione]; }
+    public String getStopId(int posizione) { return simboli.fermata.valore(fermate[posizione]); }
+    public int getCodicePrimaFermata() { return fermate[0]; }
+    public int getCodiceUltimaFermata() { return fermate[fermate.length - 1]; }
+    public List<Profilo> getProfili() { return Collections.unmodifiableList(profili); }
+    public List<Trip> getCorse() { return Collections.unmodifiableList(corse); }
+    public int getNumeroCorse() { return corse.size(); }
+
+    // Posizione della fermata nello schema, -1 se lo schema non ci passa
+    public int posizioneDi(int codiceFermata) {
+        for (int i = 0; i < fermate.length; i++) {
+            if (fermate[i] == codiceFermata) return i;
+        }
+        return -1;
+    }
+
+    // ==================== ORARI DI UNA CORSA ====================
+
+    static int assoluto(int inizio, int relativo) {
+        return relativo == Profilo.MANCANTE ? OrarioServizio.ASSENTE : inizio + relativo;
+    }
+
+    // Orari della corsa come lista: ogni get() crea lo StopTime; se la lista viene modificata
+    // passa a una copia e lo dice ad allaCopia (la Trip, che lascia lo schema)
+    List<StopTime> orari(int codiceTrip, Profilo profilo, int inizio, Consumer<List<StopTime>> allaCopia) {
+        return new Orari(codiceTrip, profilo, inizio, allaCopia);
+    }
+
+    private final class Orari extends ListaOrari {
+        private final int codiceTrip;
+        private final Profilo profilo;
+        private final int inizio;
+
+        private Orari(int codiceTrip, Profilo profilo, int inizio, Consumer<List<StopTime>> allaCopia) {
+            super(allaCopia);
+            this.codiceTrip = codiceTrip;
+            this.profilo = profilo;
+            this.inizio = inizio;
+        }
+
+        @Override
+        StopTime orario(int i) {
+            return new StopTime(simboli, codiceTrip, assoluto(inizio, profilo.arrivi[i]), assoluto(inizio, profilo.partenze[i]),
+                    fermate[i], sequenze[i], headsign[i], salite[i], discese[i], distanze[i]);
+        }
+
+        @Override
+        int numero() {
+            return fermate.length;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SchemaCorsa{rotta=" + getRouteId() + ", direzione=" + direzione + ", fermate=" + fermate.length
+                + ", corse=" + corse.size() + ", profili=" + profili.size() + '}';
+    }
+}
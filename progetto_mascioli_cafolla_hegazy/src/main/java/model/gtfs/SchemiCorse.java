@@ -0,0 +1,207 @@
+package model.gtfs;
+
+import java.util.*;
+
+// Tabella degli schemi di corsa del feed.
+// comprimi() raggruppa le corse per (linea, direzione, sequenza di fermate) e, dentro
+// ogni schema, per profilo dei tempi di percorrenza: a ogni corsa restano solo lo schema,
+// il profilo e l'orario di partenza, e Trip.getStopTimes() ricostruisce gli orari quando
+// servono. Le domande "a livello di linea" (fermate di una direzione, direzione più
+// lunga...) si fanno sugli schemi, poche decine per linea, invece che su ogni corsa.
+
+public final class SchemiCorse {
+
+    private final List<SchemaCorsa> schemi;
+    private final Map<Integer, List<SchemaCorsa>> perRotta;
+    private final int numeroProfili;
+    private final int numeroCorse;
+    private final long righeOrari;
+
+    private SchemiCorse(List<SchemaCorsa> schemi, int numeroProfili, int numeroCorse, long righeOrari) {
+        this.schemi = schemi;
+        this.numeroProfili = numeroProfili;
+        this.numeroCorse = numeroCorse;
+        this.righeOrari = righeOrari;
+        this.perRotta = new HashMap<>();
+        for (SchemaCorsa s : schemi) {
+            perRotta.computeIfAbsent(s.getCodiceRotta(), k -> new ArrayList<>(2)).add(s);
+        }
+    }
+
+    public static SchemiCorse vuoto() {
+        return new SchemiCorse(List.of(), 0, 0, 0);
+    }
+
+    // ==================== COMPRESSIONE ====================
+
+    // Chiave di uno schema: tutto ciò che le sue corse hanno in comune
+    private record ChiaveSchema(int rotta, int direzione, int[] fermate, int[] sequenze, int[] headsign,
+                                byte[] salite, byte[] discese, double[] distanze) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ChiaveSchema c && rotta == c.rotta && direzione == c.direzione
+                    && Arrays.equals(fermate, c.fermate) && Arrays.equals(sequenze, c.sequenze)
+                    && Arrays.equals(headsign, c.headsign) && Arrays.equals(salite, c.salite)
+                    && Arrays.equals(discese, c.discese) && Arrays.equals(distanze, c.distanze);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * rotta + direzione) + Arrays.hashCode(fermate);
+        }
+    }
+
+    private record ChiaveProfilo(int[] arrivi, int[] partenze) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ChiaveProfilo c && Arrays.equals(arrivi, c.arrivi) && Arrays.equals(partenze, c.partenze);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Arrays.hashCode(arrivi) + Arrays.hashCode(partenze);
+        }
+    }
+
+    // Collega ogni corsa al suo schema (le corse senza orari restano come sono)
+    public static SchemiCorse comprimi(List<Trip> trips) {
+        Map<ChiaveSchema, SchemaCorsa> schemi = new LinkedHashMap<>();
+        Map<SchemaCorsa, Map<ChiaveProfilo, SchemaCorsa.Profilo>> profili = new HashMap<>();
+        int numeroProfili = 0;
+        int numeroCorse = 0;
+        long righe = 0;
+
+        for (Trip trip : trips) {
+            Righe r = Righe.di(trip.getStopTimes());
+            if (r == null) {
+                continue;
+            }
+
+            ChiaveSchema chiave = new ChiaveSchema(trip.getCodiceRotta(), trip.getDirectionId(),
+                    r.fermate, r.sequenze, r.headsign, r.salite, r.discese, r.distanze);
+            SchemaCorsa schema = schemi.computeIfAbsent(chiave, c -> new SchemaCorsa(trip.getSimboli(), c.rotta, c.direzione,
+                    c.fermate, c.sequenze, c.headsign, c.salite, c.discese, c.distanze));
+
+            // Profilo: orari relativi alla prima partenza della corsa
+            int inizio = r.partenze[0] >= 0 ? r.partenze[0] : Math.max(r.arrivi[0], 0);
+            ChiaveProfilo chiaveProfilo = new ChiaveProfilo(relativi(r.arrivi, inizio), relativi(r.partenze, inizio));
+            Map<ChiaveProfilo, SchemaCorsa.Profilo> profiliSchema = profili.computeIfAbsent(schema, s -> new HashMap<>());
+            SchemaCorsa.Profilo profilo = profiliSchema.get(chiaveProfilo);
+            if (profilo == null) {
+                profilo = new SchemaCorsa.Profilo(chiaveProfilo.arrivi, chiaveProfilo.partenze);
+                profiliSchema.put(chiaveProfilo, profilo);
+                numeroProfili++;
+            }
+
+            schema.aggiungiCorsa(trip, profilo);
+            trip.collegaSchema(schema, profilo, inizio);
+            numeroCorse++;
+            righe += r.fermate.length;
+        }
+
+        List<SchemaCorsa> lista = new ArrayList<>(schemi.values());
+        for (SchemaCorsa s : lista) s.compatta();
+        return new SchemiCorse(lista, numeroProfili, numeroCorse, righe);
+    }
+
+    private static int[] relativi(int[] secondi, int inizio) {
+        int[] relativi = new int[secondi.length];
+        for (int i = 0; i < secondi.length; i++) {
+            relativi[i] = secondi[i] < 0 ? SchemaCorsa.Profilo.MANCANTE : secondi[i] - inizio;
+        }
+        return relativi;
+    }
+
+    // Colonne degli orari di una corsa, lette senza creare StopTime se sono una vista dell'archivio
+    private static final class Righe {
+        int[] fermate, sequenze, headsign, arrivi, partenze;
+        byte[] salite, discese;
+        double[] distanze;
+
+        private Righe(int n) {
+            fermate = new int[n];
+            sequenze = new int[n];
+            headsign = new int[n];
+            arrivi = new int[n];
+            partenze = new int[n];
+            salite = new byte[n];
+            discese = new byte[n];
+            distanze = new double[n];
+        }
+
+        static Righe di(List<StopTime> orari) {
+            if (orari == null || orari.isEmpty()) {
+                return null;
+            }
+            Righe r = new Righe(orari.size());
+            if (orari instanceof StopTimeStore.Vista vista && !vista.isModificata()) {
+                // l'archivio è già in ordine di sequenza
+                StopTimeStore.Cursore c = vista.cursore();
+                for (int i = 0; c.avanza(); i++) {
+                    r.imposta(i, c.getCodiceFermata(), c.getStopSequence(), c.getCodiceHeadsign(),
+                            c.getArrivoSecondi(), c.getPartenzaSecondi(), c.getPickupType(), c.getDropOffType(),
+                            c.getShapeDistTraveled());
+                }
+                return r;
+            }
+            List<StopTime> ordinati = new ArrayList<>(orari);
+            ordinati.sort(Comparator.comparingInt(StopTime::getStopSequence));
+            for (int i = 0; i < ordinati.size(); i++) {
+                StopTime st = ordinati.get(i);
+                r.imposta(i, st.getCodiceFermata(), st.getStopSequence(), st.getCodiceHeadsign(),
+                        st.getArrivoSecondi(), st.getPartenzaSecondi(), st.getPickupType(), st.getDropOffType(),
+                        st.getShapeDistTraveled());
+            }
+            return r;
+        }
+
+        private void imposta(int i, int fermata, int sequenza, int headsign, int arrivo, int partenza,
+                             int salita, int discesa, double distanza) {
+            this.fermate[i] = fermata;
+            this.sequenze[i] = sequenza;
+            this.headsign[i] = headsign;
+            this.arrivi[i] = arrivo;
+            this.partenze[i] = partenza;
+            this.salite[i] = (byte) salita;
+            this.discese[i] = (byte) discesa;
+            this.distanze[i] = distanza;
+        }
+    }
+
+    // ==================== INTERROGAZIONI ====================
+
+    public List<SchemaCorsa> getSchemi() {
+        return Collections.unmodifiableList(schemi);
+    }
+
+    public List<SchemaCorsa> perRotta(int codiceRotta) {
+        return Collections.unmodifiableList(perRotta.getOrDefault(codiceRotta, List.of()));
+    }
+
+    public List<SchemaCorsa> perRottaEDirezione(int codiceRotta, int direzione) {
+        List<SchemaCorsa> risultato = new ArrayList<>(2);
+        for (SchemaCorsa s : perRotta(codiceRotta)) {
+            if (s.getDirezione() == direzione) risultato.add(s);
+        }
+        return risultato;
+    }
+
+    public int getNumeroSchemi() { return schemi.size(); }
+    public int getNumeroProfili() { return numeroProfili; }
+    public int getNumeroCorse() { return numeroCorse; }
+
+    // Righe di stop_times coperte e valori effettivamente salvati (fermate degli schemi
+    // più due orari per fermata di ogni profilo), per il log di avvio
+    public long getRigheOrari() { return righeOrari; }
+
+    public long getRigheSalvate() {
+        long totale = 0;
+        for (SchemaCorsa s : schemi) totale += (long) s.size() * (1 + s.getProfili().size());
+        return totale;
+    }
+
+    public String riepilogo() {
+        return numeroCorse + " corse in " + schemi.size() + " schemi e " + numeroProfili + " profili ("
+                + righeOrari + " righe di orario -> " + getRigheSalvate() + ")";
+    }
+}
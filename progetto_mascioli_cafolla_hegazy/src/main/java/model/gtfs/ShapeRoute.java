@@ -10,7 +10,16 @@ public class ShapeRoute {
 
     // Attributi della forma
     private String shapeId;              // ID univoco della forma
-    private List<GeoPoint> geoPoints;    // Lista di punti geografici in ordine
+    private List<GeoPoint> geoPoints;    // Lista di punti geografici in ordine (forme costruite a mano)
+    private GeometriaForma geometria;    // punti compressi di geoPoints, ricalcolati quando cambiano
+    private SorgentePunti sorgente;      // se != null i punti si decodificano su richiesta
+
+    // Decodifica i punti di una forma solo quando servono (es. per disegnarla).
+    // L'implementazione tiene in cache un numero limitato di forme già decodificate.
+    @FunctionalInterface
+    public interface SorgentePunti {
+        GeometriaForma geometria(String shapeId);
+    }
 
     // Classe interna per rappresentare un punto geografico
 
@@ -65,18 +74,56 @@ public class ShapeRoute {
         this.geoPoints = new ArrayList<>();
     }
 
+    // Forma "pigra": all'avvio si conosce solo l'ID, i punti arrivano dalla sorgente
+    public ShapeRoute(String shapeId, SorgentePunti sorgente) {
+        this.shapeId = shapeId;
+        this.sorgente = Objects.requireNonNull(sorgente);
+    }
+
     // GETTERS
 
     public String getShapeId() {
         return shapeId;
     }
 
+    // Per le forme pigre è una lista nuova a ogni chiamata: per scorrere i punti
+    // senza creare oggetti si usa getGeometria().cursore()
     public List<GeoPoint> getGeoPoints() {
-        return geoPoints;
+        SorgentePunti s = sorgente;
+        return s != null ? s.geometria(shapeId).comePunti() : geoPoints;
+    }
+
+    // Punti compressi con le distanze cumulative già calcolate
+    public GeometriaForma getGeometria() {
+        SorgentePunti s = sorgente;
+        if (s != null) {
+            return s.geometria(shapeId);
+        }
+        GeometriaForma g = geometria;
+        if (g == null) {
+            g = GeometriaForma.di(geoPoints);
+            geometria = g;
+        }
+        return g;
     }
 
     public int getNumPunti() {
-        return geoPoints.size();
+        SorgentePunti s = sorgente;
+        return s != null ? s.geometria(shapeId).size() : geoPoints.size();
+    }
+
+    // true se i punti non sono in memoria ma vengono decodificati su richiesta
+    public boolean isPigra() {
+        return sorgente != null;
+    }
+
+    // Prima di modificare una forma pigra se ne fa una copia propria dei punti
+    private void materializza() {
+        if (sorgente != null) {
+            geoPoints = sorgente.geometria(shapeId).comePunti();
+            sorgente = null;
+        }
+        geometria = null;
     }
 
     //  SETTERS
@@ -90,24 +137,28 @@ public class ShapeRoute {
     //Aggiunge un punto geografico alla forma
 
     public void aggiungiPunto(GeoPoint punto) {
+        materializza();
         geoPoints.add(punto);
     }
 
     // Aggiunge un punto geografico con parametri
 
     public void aggiungiPunto(double lat, double lon, int sequence, double distanceTraveled) {
+        materializza();
         geoPoints.add(new GeoPoint(lat, lon, sequence, distanceTraveled));
     }
 
     // Aggiunge un punto geografico con parametri (senza distanza)
 
     public void aggiungiPunto(double lat, double lon, int sequence) {
+        materializza();
         geoPoints.add(new GeoPoint(lat, lon, sequence));
     }
 
     //Rimuove un punto dalla forma
 
     public void rimuoviPunto(int indice) {
+        materializza();
         if (indice >= 0 && indice < geoPoints.size()) {
             geoPoints.remove(indice);
         }
@@ -116,39 +167,16 @@ public class ShapeRoute {
     // Ordina i punti per numero di sequenza
 
     public void ordinaPunti() {
+        if (sorgente != null) return; // la sorgente li decodifica già ordinati
         geoPoints.sort(Comparator.comparingInt(GeoPoint::getSequence));
+        geometria = null;
     }
 
-    // Calcola la lunghezza totale della rotta in km (somma delle distanze tra i punti consecutivi usando Haversine)
+    // Lunghezza totale della rotta in km (Haversine tra punti consecutivi):
+    // è l'ultima delle distanze cumulative, calcolate una volta con la geometria
 
     public double calcolaLunghezzaRotta() {
-        if (geoPoints.size() < 2) {
-            return 0.0;
-        }
-
-        double lunghezzaTotale = 0.0;
-        for (int i = 0; i < geoPoints.size() - 1; i++) {
-            lunghezzaTotale += calcolaDistanzaTraPunti(geoPoints.get(i), geoPoints.get(i + 1));
-        }
-        return lunghezzaTotale;
-    }
-
-    // Calcola la distanza tra due punti geografici usando la formula di Haversine
-
-    private double calcolaDistanzaTraPunti(GeoPoint p1, GeoPoint p2) {
-        final double RAGGIO_TERRA_KM = 6371;
-
-        double lat1Rad = Math.toRadians(p1.getLatitude());
-        double lat2Rad = Math.toRadians(p2.getLatitude());
-        double deltaLat = Math.toRadians(p2.getLatitude() - p1.getLatitude());
-        double deltaLon = Math.toRadians(p2.getLongitude() - p1.getLongitude());
-
-        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
-                Math.cos(lat1Rad) * Math.cos(lat2Rad) *
-                        Math.sin(deltaLon / 2) * Math.sin(deltaLon / 2);
-
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-        return RAGGIO_TERRA_KM * c;
+        return getGeometria().getLunghezzaKm();
     }
 
     /**
@@ -159,22 +187,26 @@ public class ShapeRoute {
      * @return Il punto più vicino e la sua distanza
      */
     public Map.Entry<GeoPoint, Double> trovaPuntoPiuVicino(double lat, double lon) {
-        if (geoPoints.isEmpty()) {
+        GeometriaForma geometria = getGeometria();
+        if (geometria.isEmpty()) {
             return null;
         }
 
-        GeoPoint puntoCercato = new GeoPoint(lat, lon, 0);
         double distanzaMinima = Double.MAX_VALUE;
-        GeoPoint puntoVicino = null;
+        int indiceVicino = -1;
 
-        for (GeoPoint p : geoPoints) {
-            double distanza = calcolaDistanzaTraPunti(puntoCercato, p);
+        GeometriaForma.Cursore c = geometria.cursore();
+        while (c.avanza()) {
+            double distanza = GeometriaForma.distanzaKm(lat, lon, c.getLatitudine(), c.getLongitudine());
             if (distanza < distanzaMinima) {
                 distanzaMinima = distanza;
-                puntoVicino = p;
+                indiceVicino = c.getIndice();
             }
         }
 
+        // solo il punto trovato diventa un oggetto (per le forme costruite a mano è quello della lista)
+        List<GeoPoint> punti = geoPoints;
+        GeoPoint puntoVicino = sorgente == null && punti != null ? punti.get(indiceVicino) : geometria.getPunto(indiceVicino);
         return new AbstractMap.SimpleEntry<>(puntoVicino, distanzaMinima * 1000); // In metri
     }
 
@@ -184,7 +216,7 @@ public class ShapeRoute {
     public String toString() {
         return "ShapeRoute{" +
                 "shapeId='" + shapeId + '\'' +
-                ", numPunti=" + geoPoints.size() +
+                ", numPunti=" + getNumPunti() +
                 ", lunghezzaKm=" + String.format("%.2f", calcolaLunghezzaRotta()) +
                 '}';
     }
@@ -0,0 +1,121 @@
+package model.gtfs;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Tabella dei simboli per gli identificativi GTFS (trip_id, stop_id, route_id, ...).
+// Ogni ID distinto riceve un codice intero denso (0, 1, 2, ...) la prima volta che
+// viene letto: i modelli memorizzano il codice, confronti e mappe lavorano sugli
+// interi e la String resta una sola istanza condivisa, usata solo per mostrarla
+// o per il confronto con gli ID del feed real-time.
+//
+// Le tabelle crescono soltanto, quindi ogni caricamento del feed ne usa di proprie
+// (Tabelle.nuove(), passate ai loader): i codici valgono solo dentro il dataset che le
+// ha create e spariscono con lui, invece di accumulare gli ID di ogni ricaricamento e
+// rinnovo della finestra. Ogni oggetto del modello ricorda le tabelle dei suoi codici.
+// Le tabelle statiche qui sotto (Tabelle.PREDEFINITE) restano per gli oggetti costruiti
+// a mano, senza un caricamento (test, dati di prova).
+
+public final class Simboli {
+
+    public static final Simboli TRIP = new Simboli("trip_id");
+    public static final Simboli FERMATA = new Simboli("stop_id");
+    public static final Simboli ROTTA = new Simboli("route_id");
+    public static final Simboli SERVIZIO = new Simboli("service_id");
+    public static final Simboli FORMA = new Simboli("shape_id");
+    public static final Simboli HEADSIGN = new Simboli("headsign");
+
+    // Codice usato per i valori null
+    public static final int NESSUNO = -1;
+
+    private final String nome;
+    private final ConcurrentHashMap<String, Integer> codici = new ConcurrentHashMap<>();
+    private volatile String[] valori = new String[1024];
+    private int numero;   // scritto solo sotto lock
+
+    // Le sei tabelle di un dataset
+    public static final class Tabelle {
+
+        public static final Tabelle PREDEFINITE = new Tabelle(TRIP, FERMATA, ROTTA, SERVIZIO, FORMA, HEADSIGN);
+
+        public final Simboli trip;
+        public final Simboli fermata;
+        public final Simboli rotta;
+        public final Simboli servizio;
+        public final Simboli forma;
+        public final Simboli headsign;
+
+        private Tabelle(Simboli trip, Simboli fermata, Simboli rotta, Simboli servizio, Simboli forma,
+                        Simboli headsign) {
+            this.trip = trip;
+            this.fermata = fermata;
+            this.rotta = rotta;
+            this.servizio = servizio;
+            this.forma = forma;
+            this.headsign = headsign;
+        }
+
+        // Tabelle vuote per un nuovo caricamento
+        public static Tabelle nuove() {
+            return new Tabelle(new Simboli("trip_id"), new Simboli("stop_id"), new Simboli("route_id"),
+                    new Simboli("service_id"), new Simboli("shape_id"), new Simboli("headsign"));
+        }
+
+        // Codici assegnati in tutte e sei le tabelle
+        public int size() {
+            return trip.size() + fermata.size() + rotta.size() + servizio.size() + forma.size() + headsign.size();
+        }
+    }
+
+    private Simboli(String nome) {
+        this.nome = nome;
+    }
+
+    // Codice del valore, assegnandone uno nuovo se non è ancora nella tabella
+    public int codice(String valore) {
+        if (valore == null) {
+            return NESSUNO;
+        }
+        Integer codice = codici.get(valore);
+        return codice != null ? codice : aggiungi(valore);
+    }
+
+    // Codice del valore senza aggiungerlo (NESSUNO se sconosciuto), es. per gli ID del real-time
+    public int cerca(String valore) {
+        if (valore == null) {
+            return NESSUNO;
+        }
+        Integer codice = codici.get(valore);
+        return codice != null ? codice : NESSUNO;
+    }
+
+    // L'istanza condivisa della String per quel codice
+    public String valore(int codice) {
+        return codice == NESSUNO ? null : valori[codice];
+    }
+
+    // Numero di codici assegnati finora: i codici validi sono 0 .. size()-1
+    public int size() {
+        return codici.size();
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    private synchronized int aggiungi(String valore) {
+        Integer esistente = codici.get(valore);
+        if (esistente != null) {
+            return esistente;
+        }
+        if (numero == valori.length) {
+            valori = Arrays.copyOf(valori, numero * 2);
+        }
+        int codice = numero++;
+        String[] tabella = valori;
+        tabella[codice] = valore;
+        valori = tabella;   // pubblica la cella prima che il codice sia visibile nella mappa
+        codici.put(valore, codice);
+        return codice;
+    }
+}
@@ -1,6 +1,7 @@
 package model.gtfs;
 
 import java.time.LocalTime;
+import java.util.Objects;
 
  // Classe che rappresenta l'orario di arrivo/partenza in una fermata (GTFS Stop Times)
  // Legge i dati dal file stop_times.txt nella cartella resources
@@ -8,12 +9,15 @@ import java.time.LocalTime;
 public class StopTime {
 
     // Attributi dell'orario di fermata
-    private String tripId;              // ID della corsa (collegamento a trips.txt)
-    private LocalTime arrivalTime;      // Orario di arrivo (HH:MM:SS)
-    private LocalTime departureTime;    // Orario di partenza (HH:MM:SS)
-    private String stopId;              // ID della fermata (collegamento a stops.txt)
+    // Gli ID sono codici delle tabelle Simboli: la String si ottiene solo quando serve
+    private final Simboli.Tabelle simboli;  // tabelle dei codici (quelle del caricamento)
+    private int tripId;                 // ID della corsa (collegamento a trips.txt)
+    // Orari in secondi dall'inizio del giorno di servizio (anche oltre le 24:00, -1 = assente)
+    private int arrivalTime;            // Orario di arrivo (HH:MM:SS)
+    private int departureTime;          // Orario di partenza (HH:MM:SS)
+    private int stopId;                 // ID della fermata (collegamento a stops.txt)
     private int stopSequence;           // Posizione nella sequenza della corsa
-    private String stopHeadsign;        // Destinazione mostrata (opzionale)
+    private int stopHeadsign;           // Destinazione mostrata (opzionale)
     private int pickupType;             // 0=regolare, 1=nessun ritiro, 2=chiama preventivamente, 3=accordi driver
     private int dropOffType;            // 0=regolare, 1=nessuno scalo, 2=chiama preventivamente, 3=accordi driver
     private double shapeDistTraveled;   // Distanza percorsa sulla forma (opzionale)
@@ -23,6 +27,35 @@ public class StopTime {
     public StopTime(String tripId, LocalTime arrivalTime, LocalTime departureTime, String stopId,
                     int stopSequence, String stopHeadsign, int pickupType, int dropOffType,
                     double shapeDistTraveled) {
+        this(Simboli.Tabelle.PREDEFINITE, tripId, OrarioServizio.daLocalTime(arrivalTime),
+                OrarioServizio.daLocalTime(departureTime), stopId, stopSequence, stopHeadsign, pickupType, dropOffType,
+                shapeDistTraveled);
+    }
+
+    // Costruttore con orari in secondi del giorno di servizio (es. "25:10:00" = 90600)
+
+    public StopTime(String tripId, int arrivoSecondi, int partenzaSecondi, String stopId,
+                    int stopSequence, String stopHeadsign, int pickupType, int dropOffType,
+                    double shapeDistTraveled) {
+        this(Simboli.Tabelle.PREDEFINITE, tripId, arrivoSecondi, partenzaSecondi, stopId, stopSequence, stopHeadsign,
+                pickupType, dropOffType, shapeDistTraveled);
+    }
+
+    // Come il precedente, con le tabelle dei simboli del caricamento
+
+    public StopTime(Simboli.Tabelle simboli, String tripId, int arrivoSecondi, int partenzaSecondi, String stopId,
+                    int stopSequence, String stopHeadsign, int pickupType, int dropOffType,
+                    double shapeDistTraveled) {
+        this(simboli, simboli.trip.codice(tripId), arrivoSecondi, partenzaSecondi, simboli.fermata.codice(stopId),
+                stopSequence, simboli.headsign.codice(stopHeadsign), pickupType, dropOffType, shapeDistTraveled);
+    }
+
+    // Costruttore con gli ID già codificati nelle tabelle date (usato da StopTimeStore, niente lookup)
+
+    StopTime(Simboli.Tabelle simboli, int tripId, int arrivalTime, int departureTime, int stopId,
+             int stopSequence, int stopHeadsign, int pickupType, int dropOffType,
+             double shapeDistTraveled) {
+        this.simboli = simboli;
         this.tripId = tripId;
         this.arrivalTime = arrivalTime;
         this.departureTime = departureTime;
@@ -37,39 +70,57 @@ public class StopTime {
     //Costruttore semplificato
 
     public StopTime(String tripId, LocalTime arrivalTime, LocalTime departureTime, String stopId, int stopSequence) {
-        this.tripId = tripId;
-        this.arrivalTime = arrivalTime;
-        this.departureTime = departureTime;
-        this.stopId = stopId;
+        this.simboli = Simboli.Tabelle.PREDEFINITE;
+        this.tripId = simboli.trip.codice(tripId);
+        this.arrivalTime = OrarioServizio.daLocalTime(arrivalTime);
+        this.departureTime = OrarioServizio.daLocalTime(departureTime);
+        this.stopId = simboli.fermata.codice(stopId);
         this.stopSequence = stopSequence;
-        this.stopHeadsign = "";
+        this.stopHeadsign = simboli.headsign.codice("");
         this.pickupType = 0;
         this.dropOffType = 0;
         this.shapeDistTraveled = 0.0;
     }
 
     public String getTripId() {
-        return tripId;
+        return simboli.trip.valore(tripId);
     }
 
+    // Orario da orologio (ore >= 24 ridotte modulo 24): per confronti e ordinamenti
+    // usare i secondi, che mantengono l'ordine delle corse dopo mezzanotte
     public LocalTime getArrivalTime() {
-        return arrivalTime;
+        return OrarioServizio.oraDelGiorno(arrivalTime);
     }
 
     public LocalTime getDepartureTime() {
+        return OrarioServizio.oraDelGiorno(departureTime);
+    }
+
+    // Secondi dall'inizio del giorno di servizio, -1 se assente
+    public int getArrivoSecondi() {
+        return arrivalTime;
+    }
+
+    public int getPartenzaSecondi() {
         return departureTime;
     }
 
     public String getStopId() {
-        return stopId;
+        return simboli.fermata.valore(stopId);
     }
 
+    // Codici Simboli degli ID (per confronti e indici senza String)
+    public int getCodiceTrip() { return tripId; }
+    public int getCodiceFermata() { return stopId; }
+    public int getCodiceHeadsign() { return stopHeadsign; }
+    public Simboli.Tabelle getSimboli() { return simboli; }
+
     public int getStopSequence() {
         return stopSequence;
     }
 
     public String getStopHeadsign() {
-        return stopHeadsign;
+        return simboli.headsign.valore(stopHeadsign);
     }
 
     public int getPickupType() {
@@ -86,11 +137,11 @@ public class StopTime {
 
 
     public void setTripId(String tripId) {
-        this.tripId = tripId;
+        this.tripId = simboli.trip.codice(tripId);
     }
 
     public void setStopId(String stopId) {
-        this.stopId = stopId;
+        this.stopId = simboli.fermata.codice(stopId);
     }
 
     public void setStopSequence(int stopSequence) {
@@ -101,10 +152,10 @@ public class StopTime {
     // Ritorna il tempo di fermata (quanto tempo l'autobus sta fermo)
 
     public long getTempoFermata() {
-        if (arrivalTime == null || departureTime == null) {
+        if (arrivalTime < 0 || departureTime < 0) {
             return 0;
         }
-        return java.time.temporal.ChronoUnit.SECONDS.between(arrivalTime, departureTime);
+        return departureTime - arrivalTime;
     }
 
     // Verifica se questo è il primo stop della corsa
@@ -149,33 +200,26 @@ public class StopTime {
         };
     }
 
-    // Converte una stringa di tempo in formato HH:MM:SS a LocalTime
-    // Supporta anche formati con ore >= 24 (utile per corse notturne)
+    // Converte una stringa di tempo in formato HH:MM:SS a LocalTime da orologio
+    // (ore >= 24 ridotte modulo 24): per non perdere il giorno usare parseSecondiGTFS
 
     public static LocalTime parseTempoGTFS(String tempoStr) {
         if (tempoStr == null || tempoStr.isEmpty()) {
             return null;
         }
-        try {
-            String[] parti = tempoStr.trim().split(":");
-            if (parti.length != 3) {
-                return null;
-            }
-
-            int ore = Integer.parseInt(parti[0]);
-            int minuti = Integer.parseInt(parti[1]);
-            int secondi = Integer.parseInt(parti[2]);
-
-            // Se le ore sono >= 24, le riduciamo modulo 24 (per corse notturne)
-            if (ore >= 24) {
-                ore = ore % 24;
-            }
-
-            return LocalTime.of(ore, minuti, secondi);
-        } catch (Exception e) {
+        int secondi = parseSecondiGTFS(tempoStr);
+        if (secondi < 0) {
             System.err.println("Errore nel parsing del tempo: " + tempoStr);
             return null;
         }
+        return OrarioServizio.oraDelGiorno(secondi);
+    }
+
+    // Converte HH:MM:SS nei secondi dall'inizio del giorno di servizio, senza creare
+    // oggetti; supporta ore >= 24 (corse notturne). -1 se il formato non è valido
+
+    public static int parseSecondiGTFS(CharSequence tempo) {
+        return OrarioServizio.parse(tempo);
     }
 
     //Converte un integer (0/1) a integer di pickup/dropoff
@@ -193,10 +237,10 @@ public class StopTime {
     @Override
     public String toString() {
         return "StopTime{" +
-                "tripId='" + tripId + '\'' +
-                ", stopId='" + stopId + '\'' +
-                ", arrivalTime=" + arrivalTime +
-                ", departureTime=" + departureTime +
+                "tripId='" + getTripId() + '\'' +
+                ", stopId='" + getStopId() + '\'' +
+                ", arrivalTime=" + getArrivalTime() +
+                ", departureTime=" + getDepartureTime() +
                 ", stopSequence=" + stopSequence +
                 '}';
     }
@@ -208,13 +252,14 @@ public class StopTime {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         StopTime that = (StopTime) obj;
-        return tripId.equals(that.tripId) && stopSequence == that.stopSequence;
+        if (stopSequence != that.stopSequence) return false;
+        return simboli == that.simboli ? tripId == that.tripId : Objects.equals(getTripId(), that.getTripId());
     }
 
-    // Genera un hashcode
+    // Genera un hashcode (dalla String del trip, uguale in ogni caricamento)
 
     @Override
     public int hashCode() {
-        return (tripId + stopSequence).hashCode();
+        return 31 * Objects.hashCode(getTripId()) + stopSequence;
     }
 }
@@ -0,0 +1,597 @@
+package model.gtfs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.time.LocalTime;
+import java.util.*;
+
+// Archivio colonnare degli orari di fermata (stop_times.txt).
+// Invece di un oggetto StopTime per riga, ogni attributo è una colonna in un
+// buffer diretto (fuori dallo heap): orari in secondi, trip/fermata/headsign come
+// indici nei dizionari, sequenza a 16 bit quando basta. Le righe sono ordinate per
+// trip e stop_sequence, quindi le fermate di una corsa sono un intervallo contiguo.
+//
+// Per scorrere le righe senza creare oggetti si usa un Cursore; per il codice che
+// lavora con List<StopTime> ci sono le Vista, liste che creano lo StopTime (leggero:
+// stringhe e orari sono condivisi) solo quando viene letto e si copiano se modificate.
+
+public final class StopTimeStore {
+
+    private final int righe;
+
+    // Tabelle dei simboli del caricamento: i codici qui sotto valgono solo in queste
+    private final Simboli.Tabelle simboli;
+
+    // Dizionari (gli id dei trip sono ordinati); le String sono quelle condivise di Simboli
+    private final String[] tripIds;
+    private final String[] stopIds;
+    private final String[] headsigns;
+    // Indice locale -> codice Simboli e viceversa (-1 = non presente nell'archivio)
+    private final int[] codiciTrip;
+    private final int[] codiciFermata;
+    private final int[] codiciHeadsign;
+    private final int[] tripPerCodice;
+    private final int[] fermataPerCodice;
+
+    // Colonne fuori dallo heap
+    private final IntBuffer colTrip;
+    private final IntBuffer colFermata;
+    private final IntBuffer colArrivo;
+    private final IntBuffer colPartenza;
+    private final IntBuffer colHeadsign;
+    private final CharBuffer colSequenza;       // 0..65535
+    private final IntBuffer colSequenzaLarga;   // solo se qualche sequenza non sta in 16 bit
+    private final ByteBuffer colSalita;
+    private final ByteBuffer colDiscesa;
+    private final DoubleBuffer colDistanza;
+
+    // Righe della corsa t: [inizioTrip[t], inizioTrip[t + 1])
+    private final int[] inizioTrip;
+
+    // Indice per fermata in formato CSR: le righe della fermata f sono
+    // righePerFermata[inizioFermata[f] .. inizioFermata[f + 1]), in ordine di partenza
+    private final int[] inizioFermata;
+    private final IntBuffer righePerFermata;
+
+    private StopTimeStore(Simboli.Tabelle simboli, int righe, String[] tripIds, String[] stopIds, String[] headsigns,
+                          boolean sequenzeLarghe) {
+        this.simboli = simboli;
+        this.righe = righe;
+        this.tripIds = tripIds;
+        this.stopIds = stopIds;
+        this.headsigns = headsigns;
+        this.codiciTrip = codifica(tripIds, simboli.trip);
+        this.codiciFermata = codifica(stopIds, simboli.fermata);
+        this.codiciHeadsign = codifica(headsigns, simboli.headsign);
+        this.tripPerCodice = inverti(codiciTrip);
+        this.fermataPerCodice = inverti(codiciFermata);
+
+        this.colTrip = allocaInt(righe);
+        this.colFermata = allocaInt(righe);
+        this.colArrivo = allocaInt(righe);
+        this.colPartenza = allocaInt(righe);
+        this.colHeadsign = allocaInt(righe);
+        this.colSequenza = sequenzeLarghe ? null : alloca(righe * 2L).asCharBuffer();
+        this.colSequenzaLarga = sequenzeLarghe ? allocaInt(righe) : null;
+        this.colSalita = alloca(righe);
+        this.colDiscesa = alloca(righe);
+        this.colDistanza = alloca(righe * 8L).asDoubleBuffer();
+
+        this.inizioTrip = new int[tripIds.length + 1];
+        this.inizioFermata = new int[stopIds.length + 1];
+        this.righePerFermata = allocaInt(righe);
+    }
+
+    private static ByteBuffer alloca(long bytes) {
+        return ByteBuffer.allocateDirect(Math.toIntExact(bytes)).order(ByteOrder.nativeOrder());
+    }
+
+    private static IntBuffer allocaInt(int elementi) {
+        return alloca(elementi * 4L).asIntBuffer();
+    }
+
+    // Sostituisce ogni valore con l'istanza condivisa di Simboli e ritorna i codici
+    private static int[] codifica(String[] valori, Simboli simboli) {
+        int[] codici = new int[valori.length];
+        for (int i = 0; i < valori.length; i++) {
+            codici[i] = simboli.codice(valori[i]);
+            valori[i] = simboli.valore(codici[i]);
+        }
+        return codici;
+    }
+
+    private static int[] inverti(int[] codici) {
+        int massimo = -1;
+        for (int c : codici) massimo = Math.max(massimo, c);
+        int[] inverso = new int[massimo + 1];
+        Arrays.fill(inverso, -1);
+        for (int i = 0; i < codici.length; i++) {
+            if (codici[i] >= 0) inverso[codici[i]] = i;
+        }
+        return inverso;
+    }
+
+    private static Map<String, Integer> indicizza(String[] valori) {
+        Map<String, Integer> indice = new HashMap<>(valori.length * 2);
+        for (int i = 0; i < valori.length; i++) indice.put(valori[i], i);
+        return indice;
+    }
+
+    // ==================== COSTRUZIONE ====================
+
+    // Accumula righe su array nello heap (uno per blocco di parsing); con unisci()
+    // i blocchi diventano un unico archivio e gli array temporanei vengono rilasciati
+    public static final class Builder {
+        private final Map<String, Integer> dizTrip = new HashMap<>();
+        private final Map<String, Integer> dizFermate = new HashMap<>();
+        private final Map<String, Integer> dizHeadsign = new HashMap<>();
+        private final List<String> trip = new ArrayList<>();
+        private final List<String> fermate = new ArrayList<>();
+        private final List<String> headsign = new ArrayList<>();
+
+        private int[] tripLocale = new int[1024];
+        private int[] fermataLocale = new int[1024];
+        private int[] arrivo = new int[1024];
+        private int[] partenza = new int[1024];
+        private int[] headsignLocale = new int[1024];
+        private int[] sequenza = new int[1024];
+        private byte[] salita = new byte[1024];
+        private byte[] discesa = new byte[1024];
+        private double[] distanza = new double[1024];
+        private int righe;
+
+        // Gli orari sono in secondi dall'inizio del giorno di servizio (-1 = assente)
+        public void aggiungi(String tripId, int arrivoSecondi, int partenzaSecondi, String stopId,
+                             int stopSequence, String stopHeadsign, int pickupType, int dropOffType,
+                             double shapeDistTraveled) {
+            if (righe == arrivo.length) cresci();
+            tripLocale[righe] = interna(tripId, dizTrip, trip);
+            fermataLocale[righe] = interna(stopId, dizFermate, fermate);
+            arrivo[righe] = arrivoSecondi;
+            partenza[righe] = partenzaSecondi;
+            headsignLocale[righe] = interna(stopHeadsign, dizHeadsign, headsign);
+            sequenza[righe] = stopSequence;
+            salita[righe] = (byte) pickupType;
+            discesa[righe] = (byte) dropOffType;
+            distanza[righe] = shapeDistTraveled;
+            righe++;
+        }
+
+        public int size() {
+            return righe;
+        }
+
+        private static int interna(String valore, Map<String, Integer> dizionario, List<String> valori) {
+            Integer indice = dizionario.get(valore);
+            if (indice == null) {
+                indice = valori.size();
+                dizionario.put(valore, indice);
+                valori.add(valore);
+            }
+            return indice;
+        }
+
+        private void cresci() {
+            int capacita = arrivo.length * 2;
+            tripLocale = Arrays.copyOf(tripLocale, capacita);
+            fermataLocale = Arrays.copyOf(fermataLocale, capacita);
+            arrivo = Arrays.copyOf(arrivo, capacita);
+            partenza = Arrays.copyOf(partenza, capacita);
+            headsignLocale = Arrays.copyOf(headsignLocale, capacita);
+            sequenza = Arrays.copyOf(sequenza, capacita);
+            salita = Arrays.copyOf(salita, capacita);
+            discesa = Arrays.copyOf(discesa, capacita);
+            distanza = Arrays.copyOf(distanza, capacita);
+        }
+    }
+
+    // Crea l'archivio a partire da oggetti StopTime già esistenti (con le loro tabelle dei simboli)
+    public static StopTimeStore da(Collection<StopTime> stopTimes) {
+        Builder builder = new Builder();
+        Simboli.Tabelle simboli = Simboli.Tabelle.PREDEFINITE;
+        for (StopTime st : stopTimes) {
+            simboli = st.getSimboli();
+            builder.aggiungi(st.getTripId(), st.getArrivoSecondi(), st.getPartenzaSecondi(),
+                    st.getStopId(), st.getStopSequence(), st.getStopHeadsign(),
+                    st.getPickupType(), st.getDropOffType(), st.getShapeDistTraveled());
+        }
+        return unisci(List.of(builder), simboli);
+    }
+
+    public static StopTimeStore unisci(List<Builder> blocchi) {
+        return unisci(blocchi, Simboli.Tabelle.PREDEFINITE);
+    }
+
+    // Unisce i blocchi (nell'ordine dato) ordinando le righe per trip e stop_sequence,
+    // codificando gli ID nelle tabelle date
+    public static StopTimeStore unisci(List<Builder> blocchi, Simboli.Tabelle simboli) {
+        int numeroBlocchi = blocchi.size();
+
+        // Dizionari globali: trip in ordine alfabetico, fermate e headsign in ordine di comparsa
+        Set<String> tuttiTrip = new HashSet<>();
+        for (Builder b : blocchi) tuttiTrip.addAll(b.trip);
+        String[] tripIds = tuttiTrip.toArray(new String[0]);
+        Arrays.sort(tripIds);
+        Map<String, Integer> indiceTrip = indicizza(tripIds);
+
+        Map<String, Integer> indiceFermata = new LinkedHashMap<>();
+        Map<String, Integer> indiceHeadsign = new LinkedHashMap<>();
+        int[][] mappaTrip = new int[numeroBlocchi][];
+        int[][] mappaFermata = new int[numeroBlocchi][];
+        int[][] mappaHeadsign = new int[numeroBlocchi][];
+        int[] inizioBlocco = new int[numeroBlocchi + 1];
+        boolean sequenzeLarghe = false;
+
+        for (int b = 0; b < numeroBlocchi; b++) {
+            Builder blocco = blocchi.get(b);
+            mappaTrip[b] = rimappa(blocco.trip, indiceTrip);
+            mappaFermata[b] = rimappa(blocco.fermate, indiceFermata);
+            mappaHeadsign[b] = rimappa(blocco.headsign, indiceHeadsign);
+            inizioBlocco[b + 1] = inizioBlocco[b] + blocco.righe;
+            for (int i = 0; i < blocco.righe && !sequenzeLarghe; i++) {
+                sequenzeLarghe = blocco.sequenza[i] < 0 || blocco.sequenza[i] > Character.MAX_VALUE;
+            }
+        }
+        int righe = inizioBlocco[numeroBlocchi];
+
+        StopTimeStore store = new StopTimeStore(simboli, righe,
+                tripIds,
+                indiceFermata.keySet().toArray(new String[0]),
+                indiceHeadsign.keySet().toArray(new String[0]),
+                sequenzeLarghe);
+
+        // Ordine delle righe: counting sort (stabile) per trip, poi per sequenza dentro la corsa
+        int[] inizioTrip = store.inizioTrip;
+        for (int b = 0; b < numeroBlocchi; b++) {
+            Builder blocco = blocchi.get(b);
+            for (int i = 0; i < blocco.righe; i++) inizioTrip[mappaTrip[b][blocco.tripLocale[i]] + 1]++;
+        }
+        for (int t = 0; t < tripIds.length; t++) inizioTrip[t + 1] += inizioTrip[t];
+
+        int[] ordine = new int[righe];
+        int[] prossima = Arrays.copyOf(inizioTrip, tripIds.length);
+        for (int b = 0; b < numeroBlocchi; b++) {
+            Builder blocco = blocchi.get(b);
+            for (int i = 0; i < blocco.righe; i++) {
+                ordine[prossima[mappaTrip[b][blocco.tripLocale[i]]]++] = inizioBlocco[b] + i;
+            }
+        }
+        int[] sequenzaGlobale = new int[righe];
+        for (int b = 0; b < numeroBlocchi; b++) {
+            System.arraycopy(blocchi.get(b).sequenza, 0, sequenzaGlobale, inizioBlocco[b], blocchi.get(b).righe);
+        }
+        for (int t = 0; t < tripIds.length; t++) {
+            ordinaPerSequenza(ordine, inizioTrip[t], inizioTrip[t + 1], sequenzaGlobale);
+        }
+
+        // Scrittura delle colonne
+        int[] righeFermata = store.inizioFermata;
+        for (int r = 0; r < righe; r++) {
+            int origine = ordine[r];
+            int b = blocco(inizioBlocco, origine);
+            int i = origine - inizioBlocco[b];
+            Builder blocco = blocchi.get(b);
+
+            int fermata = mappaFermata[b][blocco.fermataLocale[i]];
+            store.colTrip.put(r, mappaTrip[b][blocco.tripLocale[i]]);
+            store.colFermata.put(r, fermata);
+            store.colArrivo.put(r, blocco.arrivo[i]);
+            store.colPartenza.put(r, blocco.partenza[i]);
+            store.colHeadsign.put(r, mappaHeadsign[b][blocco.headsignLocale[i]]);
+            if (sequenzeLarghe) {
+                store.colSequenzaLarga.put(r, blocco.sequenza[i]);
+            } else {
+                store.colSequenza.put(r, (char) blocco.sequenza[i]);
+            }
+            store.colSalita.put(r, blocco.salita[i]);
+            store.colDiscesa.put(r, blocco.discesa[i]);
+            store.colDistanza.put(r, blocco.distanza[i]);
+            righeFermata[fermata + 1]++;
+        }
+
+        // Indice per fermata: righe raggruppate per fermata, poi ordinate per partenza
+        for (int f = 0; f < store.stopIds.length; f++) righeFermata[f + 1] += righeFermata[f];
+        int[] posizione = Arrays.copyOf(righeFermata, store.stopIds.length);
+        for (int r = 0; r < righe; r++) {
+            store.righePerFermata.put(posizione[store.colFermata.get(r)]++, r);
+        }
+        store.ordinaFermatePerPartenza();
+        return store;
+    }
+
+    // Ordina le righe di ogni fermata per orario di partenza (a parità, per riga:
+    // cioè per trip e sequenza come prima), così i passaggi si cercano per bisezione
+    private void ordinaFermatePerPartenza() {
+        long[] chiavi = new long[0];
+        for (int f = 0; f < stopIds.length; f++) {
+            int da = inizioFermata[f], a = inizioFermata[f + 1];
+            int n = a - da;
+            if (n < 2) continue;
+            if (chiavi.length < n) chiavi = new long[Math.max(n, chiavi.length * 2)];
+            for (int i = 0; i < n; i++) {
+                int riga = righePerFermata.get(da + i);
+                chiavi[i] = ((long) OrarioServizio.chiavePartenza(colArrivo.get(riga), colPartenza.get(riga)) << 32) | riga;
+            }
+            Arrays.sort(chiavi, 0, n);
+            for (int i = 0; i < n; i++) {
+                righePerFermata.put(da + i, (int) chiavi[i]);
+            }
+        }
+    }
+
+    private static int[] rimappa(List<String> locali, Map<String, Integer> globali) {
+        int[] mappa = new int[locali.size()];
+        for (int i = 0; i < mappa.length; i++) {
+            Integer indice = globali.get(locali.get(i));
+            if (indice == null) {
+                indice = globali.size();
+                globali.put(locali.get(i), indice);
+            }
+            mappa[i] = indice;
+        }
+        return mappa;
+    }
+
+    private static int blocco(int[] inizioBlocco, int riga) {
+        int b = Arrays.binarySearch(inizioBlocco, riga);
+        if (b < 0) return -b - 2;
+        // blocchi vuoti hanno lo stesso inizio: si prende l'ultimo
+        while (b + 1 < inizioBlocco.length - 1 && inizioBlocco[b + 1] == riga) b++;
+        return b;
+    }
+
+    // Insertion sort stabile: le corse hanno poche decine di fermate, quasi sempre già in ordine
+    private static void ordinaPerSequenza(int[] ordine, int da, int a, int[] sequenza) {
+        for (int i = da + 1; i < a; i++) {
+            int riga = ordine[i];
+            int chiave = sequenza[riga];
+            int j = i - 1;
+            while (j >= da && sequenza[ordine[j]] > chiave) {
+                ordine[j + 1] = ordine[j];
+                j--;
+            }
+            ordine[j + 1] = riga;
+        }
+    }
+
+    // ==================== ACCESSO PER RIGA ====================
+
+    public int size() {
+        return righe;
+    }
+
+    public int getTripIndice(int riga) { return colTrip.get(riga); }
+    public String getTripId(int riga) { return tripIds[colTrip.get(riga)]; }
+    public int getCodiceTrip(int riga) { return codiciTrip[colTrip.get(riga)]; }
+    public int getFermataIndice(int riga) { return colFermata.get(riga); }
+    public String getStopId(int riga) { return stopIds[colFermata.get(riga)]; }
+    public int getCodiceFermata(int riga) { return codiciFermata[colFermata.get(riga)]; }
+    public int getArrivoSecondi(int riga) { return colArrivo.get(riga); }
+    public int getPartenzaSecondi(int riga) { return colPartenza.get(riga); }
+    public LocalTime getArrivalTime(int riga) { return orario(colArrivo.get(riga)); }
+    public LocalTime getDepartureTime(int riga) { return orario(colPartenza.get(riga)); }
+    public String getStopHeadsign(int riga) { return headsigns[colHeadsign.get(riga)]; }
+    public int getCodiceHeadsign(int riga) { return codiciHeadsign[colHeadsign.get(riga)]; }
+    public int getPickupType(int riga) { return colSalita.get(riga); }
+    public int getDropOffType(int riga) { return colDiscesa.get(riga); }
+    public double getShapeDistTraveled(int riga) { return colDistanza.get(riga); }
+
+    public int getStopSequence(int riga) {
+        return colSequenzaLarga != null ? colSequenzaLarga.get(riga) : colSequenza.get(riga);
+    }
+
+    // Crea lo StopTime della riga (per il codice che lavora ancora con gli oggetti)
+    public StopTime getStopTime(int riga) {
+        return new StopTime(simboli, getCodiceTrip(riga), getArrivoSecondi(riga), getPartenzaSecondi(riga), getCodiceFermata(riga),
+                getStopSequence(riga), codiciHeadsign[colHeadsign.get(riga)], getPickupType(riga), getDropOffType(riga),
+                getShapeDistTraveled(riga));
+    }
+
+    // Orario da orologio (ore >= 24 ridotte modulo 24)
+    static LocalTime orario(int secondi) {
+        return OrarioServizio.oraDelGiorno(secondi);
+    }
+
+    // ==================== CORSE E FERMATE ====================
+
+    public Simboli.Tabelle getSimboli() {
+        return simboli;
+    }
+
+    public int getNumeroTrip() {
+        return tripIds.length;
+    }
+
+    public int getNumeroFermate() {
+        return stopIds.length;
+    }
+
+    // Indice nel dizionario, -1 se il trip non ha orari
+    public int indiceTrip(String tripId) {
+        return indiceTripPerCodice(simboli.trip.cerca(tripId));
+    }
+
+    public int indiceFermata(String stopId) {
+        return indiceFermataPerCodice(simboli.fermata.cerca(stopId));
+    }
+
+    public int indiceTripPerCodice(int codiceTrip) {
+        return codiceTrip >= 0 && codiceTrip < tripPerCodice.length ? tripPerCodice[codiceTrip] : -1;
+    }
+
+    public int indiceFermataPerCodice(int codiceFermata) {
+        return codiceFermata >= 0 && codiceFermata < fermataPerCodice.length ? fermataPerCodice[codiceFermata] : -1;
+    }
+
+    public int inizioTrip(int trip) { return inizioTrip[trip]; }
+    public int fineTrip(int trip) { return inizioTrip[trip + 1]; }
+
+    // Righe della fermata f (in ordine di partenza): la i-esima è rigaDiFermata(inizioFermata(f) + i)
+    public int inizioFermata(int fermata) { return inizioFermata[fermata]; }
+    public int fineFermata(int fermata) { return inizioFermata[fermata + 1]; }
+    public int rigaDiFermata(int posizione) { return righePerFermata.get(posizione); }
+
+    // ==================== CURSORI ====================
+
+    public Cursore cursore() {
+        return new Cursore(null, 0, righe);
+    }
+
+    public Cursore cursorePerTrip(String tripId) {
+        int t = indiceTrip(tripId);
+        return t < 0 ? new Cursore(null, 0, 0) : new Cursore(null, inizioTrip[t], inizioTrip[t + 1]);
+    }
+
+    public Cursore cursorePerFermata(String stopId) {
+        int f = indiceFermata(stopId);
+        return f < 0 ? new Cursore(null, 0, 0) : new Cursore(righePerFermata, inizioFermata[f], inizioFermata[f + 1]);
+    }
+
+    // Flyweight: un solo oggetto che si sposta sulle righe, senza creare StopTime.
+    // Uso tipico: while (c.avanza()) { c.getStopId(); c.getArrivoSecondi(); ... }
+    public final class Cursore {
+        private final IntBuffer indici;   // null = righe consecutive
+        private final int fine;
+        private int posizione;
+        private int riga = -1;
+
+        private Cursore(IntBuffer indici, int inizio, int fine) {
+            this.indici = indici;
+            this.posizione = inizio;
+            this.fine = fine;
+        }
+
+        public boolean avanza() {
+            if (posizione >= fine) {
+                return false;
+            }
+            riga = indici == null ? posizione : indici.get(posizione);
+            posizione++;
+            return true;
+        }
+
+        public int getRiga() { return riga; }
+        public int getTripIndice() { return StopTimeStore.this.getTripIndice(riga); }
+        public String getTripId() { return StopTimeStore.this.getTripId(riga); }
+        public int getCodiceTrip() { return StopTimeStore.this.getCodiceTrip(riga); }
+        public String getStopId() { return StopTimeStore.this.getStopId(riga); }
+        public int getCodiceFermata() { return StopTimeStore.this.getCodiceFermata(riga); }
+        public int getArrivoSecondi() { return StopTimeStore.this.getArrivoSecondi(riga); }
+        public int getPartenzaSecondi() { return StopTimeStore.this.getPartenzaSecondi(riga); }
+        public LocalTime getArrivalTime() { return StopTimeStore.this.getArrivalTime(riga); }
+        public LocalTime getDepartureTime() { return StopTimeStore.this.getDepartureTime(riga); }
+        public int getStopSequence() { return StopTimeStore.this.getStopSequence(riga); }
+        public String getStopHeadsign() { return StopTimeStore.this.getStopHeadsign(riga); }
+        public int getCodiceHeadsign() { return StopTimeStore.this.getCodiceHeadsign(riga); }
+        public int getPickupType() { return StopTimeStore.this.getPickupType(riga); }
+        public int getDropOffType() { return StopTimeStore.this.getDropOffType(riga); }
+        public double getShapeDistTraveled() { return StopTimeStore.this.getShapeDistTraveled(riga); }
+        public StopTime toStopTime() { return StopTimeStore.this.getStopTime(riga); }
+    }
+
+    // ==================== VISTE ====================
+
+    // Tutte le righe, in ordine di trip e sequenza
+    public List<StopTime> tutti() {
+        return new Vista(null, 0, righe);
+    }
+
+    public List<StopTime> perTrip(String tripId) {
+        int t = indiceTrip(tripId);
+        return t < 0 ? new Vista(null, 0, 0) : new Vista(null, inizioTrip[t], inizioTrip[t + 1]);
+    }
+
+    public List<StopTime> perFermata(String stopId) {
+        int f = indiceFermata(stopId);
+        return f < 0 ? new Vista(null, 0, 0) : new Vista(righePerFermata, inizioFermata[f], inizioFermata[f + 1]);
+    }
+
+    // Indice stopId -> orari della fermata (le liste sono viste, non copie)
+    public Map<String, List<StopTime>> indicePerFermata() {
+        Map<String, List<StopTime>> indice = new HashMap<>(stopIds.length * 2);
+        for (int f = 0; f < stopIds.length; f++) {
+            indice.put(stopIds[f], new Vista(righePerFermata, inizioFermata[f], inizioFermata[f + 1]));
+        }
+        return indice;
+    }
+
+    // Lista su un gruppo di righe; ogni get() crea lo StopTime della riga. Alla prima
+    // modifica passa a una copia propria (ListaOrari) e non rispecchia più l'archivio
+    public final class Vista extends ListaOrari {
+        private final IntBuffer indici;   // null = righe consecutive
+        private final int inizio;
+        private final int fine;
+
+        private Vista(IntBuffer indici, int inizio, int fine) {
+            super(null);
+            this.indici = indici;
+            this.inizio = inizio;
+            this.fine = fine;
+        }
+
+        @Override
+        StopTime orario(int indice) {
+            return getStopTime(riga(indice));
+        }
+
+        @Override
+        int numero() {
+            return fine - inizio;
+        }
+
+        // Riga dell'archivio e cursore valgono per la vista non modificata (!isModificata())
+        public int riga(int indice) {
+            Objects.checkIndex(indice, fine - inizio);
+            return indici == null ? inizio + indice : indici.get(inizio + indice);
+        }
+
+        public Cursore cursore() {
+            return new Cursore(indici, inizio, fine);
+        }
+
+        public StopTimeStore getStore() {
+            return StopTimeStore.this;
+        }
+
+        // true se la vista contiene tutte le righe dell'archivio
+        public boolean isCompleta() {
+            return indici == null && inizio == 0 && fine == righe && !isModificata();
+        }
+    }
+
+    // ==================== UTILITÀ PER IL CODICE A LISTE ====================
+
+    // Orari di una corsa: dall'archivio se la lista ne è una vista completa,
+    // altrimenti filtrando la lista come faceva il codice originale
+    public static List<StopTime> filtraPerTrip(List<StopTime> stopTimes, String tripId) {
+        if (stopTimes instanceof Vista vista && vista.isCompleta()) {
+            return vista.getStore().perTrip(tripId);
+        }
+        List<StopTime> risultato = new ArrayList<>();
+        if (stopTimes.isEmpty()) return risultato;
+        // gli orari di una lista vengono da un solo caricamento: basta cercare nelle tabelle del primo
+        int codice = stopTimes.get(0).getSimboli().trip.cerca(tripId);
+        if (codice == Simboli.NESSUNO) return risultato;
+        for (StopTime st : stopTimes) {
+            if (st.getCodiceTrip() == codice) risultato.add(st);
+        }
+        return risultato;
+    }
+
+    public static List<StopTime> filtraPerFermata(List<StopTime> stopTimes, String stopId) {
+        if (stopTimes instanceof Vista vista && vista.isCompleta()) {
+            return vista.getStore().perFermata(stopId);
+        }
+        List<StopTime> risultato = new ArrayList<>();
+        if (stopTimes.isEmpty()) return risultato;
+        int codice = stopTimes.get(0).getSimboli().fermata.cerca(stopId);
+        if (codice == Simboli.NESSUNO) return risultato;
+        for (StopTime st : stopTimes) {
+            if (st.getCodiceFermata() == codice) risultato.add(st);
+        }
+        return risultato;
+    }
+}
@@ -0,0 +1,64 @@
+package model.gtfs;
+
+
+ // Classe che rappresenta un cambio tra due fermate (GTFS Transfer)
+ // Legge i dati dal file transfers.txt (opzionale) nella cartella resources
+
+public class Trasferimento {
+
+    public static final int CONSIGLIATO = 0;      // cambio consigliato
+    public static final int GARANTITO = 1;        // la coincidenza aspetta
+    public static final int TEMPO_MINIMO = 2;     // serve almeno minTransferTime
+    public static final int NON_POSSIBILE = 3;    // il cambio non si può fare
+
+    // Attributi del trasferimento
+    private final Simboli.Tabelle simboli;  // tabelle dei codici (quelle del caricamento)
+    private int fromStopId;          // fermata di partenza (codice Simboli)
+    private int toStopId;            // fermata di arrivo (codice Simboli)
+    private int transferType;        // 0..3, vedi costanti
+    private int minTransferTime;     // secondi, -1 se non indicato
+
+    public Trasferimento(String fromStopId, String toStopId, int transferType, int minTransferTime) {
+        this(Simboli.Tabelle.PREDEFINITE, fromStopId, toStopId, transferType, minTransferTime);
+    }
+
+    public Trasferimento(Simboli.Tabelle simboli, String fromStopId, String toStopId, int transferType,
+                         int minTransferTime) {
+        this.simboli = simboli;
+        this.fromStopId = simboli.fermata.codice(fromStopId);
+        this.toStopId = simboli.fermata.codice(toStopId);
+        this.transferType = transferType;
+        this.minTransferTime = minTransferTime;
+    }
+
+    //  GETTERS
+
+    public String getFromStopId() {
+        return simboli.fermata.valore(fromStopId);
+    }
+
+    public String getToStopId() {
+        return simboli.fermata.valore(toStopId);
+    }
+
+    public int getCodiceFermataDa() { return fromStopId; }
+    public int getCodiceFermataA() { return toStopId; }
+
+    public int getTransferType() {
+        return transferType;
+    }
+
+    public int getMinTransferTime() {
+        return minTransferTime;
+    }
+
+    public boolean isPossibile() {
+        return transferType != NON_POSSIBILE;
+    }
+
+    @Override
+    public String toString() {
+        return "Trasferimento{" + getFromStopId() + " -> " + getToStopId()
+                + ", tipo=" + transferType + ", minimo=" + minTransferTime + "s}";
+    }
+}
@@ -2,6 +2,7 @@ package model.gtfs;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 // Classe che rappresenta una singola corsa (GTFS Trip)
 // Una corsa è un'istanza di una rotta in un giorno specifico
@@ -10,31 +11,48 @@ import java.util.List;
 public class Trip {
 
     // Attributi della corsa
-    private String routeId;             // ID della rotta (collegamento a routes.txt)
-    private String serviceId;           // ID del servizio (collegamento a calendar.txt)
-    private String tripId;              // ID univoco della corsa
-    private String tripHeadsign;        // Destinazione mostrata sui cartellini
+    // Gli ID sono codici delle tabelle Simboli: la String si ottiene solo quando serve
+    private final Simboli.Tabelle simboli;  // tabelle dei codici (quelle del caricamento)
+    private int routeId;                // ID della rotta (collegamento a routes.txt)
+    private int serviceId;              // ID del servizio (collegamento a calendar.txt)
+    private int tripId;                 // ID univoco della corsa
+    private int tripHeadsign;           // Destinazione mostrata sui cartellini
     private String tripShortName;       // Nome breve della corsa (opzionale)
     private int directionId;            // 0=verso A, 1=verso B (opzionale)
     private String blockId;             // ID blocco (per raggruppare corse sequenziali)
-    private String shapeId;             // ID della forma/tracciato
+    private int shapeId;                // ID della forma/tracciato
     private int wheelchairAccessible;   // 0=nessuna info, 1=accessibile, 2=non accessibile
     private int bikesAllowed;           // 0=nessuna info, 1=consentite, 2=non consentite
-    private List<StopTime> stopTimes;   // Lista degli orari di fermata per questa corsa
+    private List<StopTime> stopTimes;   // Lista degli orari di fermata per questa corsa (null se da schema)
+
+    // Orari compressi: schema di corsa condiviso + profilo dei tempi + orario di partenza
+    private SchemaCorsa schema;
+    private SchemaCorsa.Profilo profilo;
+    private int inizioSecondi;
 
     // Costruttore completo
 
     public Trip(String routeId, String serviceId, String tripId, String tripHeadsign,
                 String tripShortName, int directionId, String blockId, String shapeId,
                 int wheelchairAccessible, int bikesAllowed) {
-        this.routeId = routeId;
-        this.serviceId = serviceId;
-        this.tripId = tripId;
-        this.tripHeadsign = tripHeadsign;
+        this(Simboli.Tabelle.PREDEFINITE, routeId, serviceId, tripId, tripHeadsign, tripShortName, directionId,
+                blockId, shapeId, wheelchairAccessible, bikesAllowed);
+    }
+
+    // Con le tabelle dei simboli del caricamento (Database, GtfsSnapshot)
+
+    public Trip(Simboli.Tabelle simboli, String routeId, String serviceId, String tripId, String tripHeadsign,
+                String tripShortName, int directionId, String blockId, String shapeId,
+                int wheelchairAccessible, int bikesAllowed) {
+        this.simboli = simboli;
+        this.routeId = simboli.rotta.codice(routeId);
+        this.serviceId = simboli.servizio.codice(serviceId);
+        this.tripId = simboli.trip.codice(tripId);
+        this.tripHeadsign = simboli.headsign.codice(tripHeadsign);
         this.tripShortName = tripShortName;
         this.directionId = directionId;
         this.blockId = blockId;
-        this.shapeId = shapeId;
+        this.shapeId = simboli.forma.codice(shapeId);
         this.wheelchairAccessible = wheelchairAccessible;
         this.bikesAllowed = bikesAllowed;
         this.stopTimes = new ArrayList<>();
@@ -43,14 +61,15 @@ public class Trip {
     // Costruttore semplificato
 
     public Trip(String routeId, String serviceId, String tripId, String tripHeadsign) {
-        this.routeId = routeId;
-        this.serviceId = serviceId;
-        this.tripId = tripId;
-        this.tripHeadsign = tripHeadsign;
+        this.simboli = Simboli.Tabelle.PREDEFINITE;
+        this.routeId = simboli.rotta.codice(routeId);
+        this.serviceId = simboli.servizio.codice(serviceId);
+        this.tripId = simboli.trip.codice(tripId);
+        this.tripHeadsign = simboli.headsign.codice(tripHeadsign);
         this.tripShortName = "";
         this.directionId = 0;
         this.blockId = "";
-        this.shapeId = "";
+        this.shapeId = simboli.forma.codice("");
         this.wheelchairAccessible = 0;
         this.bikesAllowed = 0;
         this.stopTimes = new ArrayList<>();
@@ -58,17 +77,28 @@ public class Trip {
 
 
     public String getRouteId() {
-        return routeId;
+        return simboli.rotta.valore(routeId);
+    }
+
+    public String getServiceId() {
+        return simboli.servizio.valore(serviceId);
     }
 
     public String getTripId() {
-        return tripId;
+        return simboli.trip.valore(tripId);
     }
 
     public String getTripHeadsign() {
-        return tripHeadsign;
+        return simboli.headsign.valore(tripHeadsign);
     }
 
+    // Codici Simboli degli ID (per confronti e indici senza String)
+    public int getCodiceRotta() { return routeId; }
+    public int getCodiceServizio() { return serviceId; }
+    public int getCodiceTrip() { return tripId; }
+    public int getCodiceForma() { return shapeId; }
+    public Simboli.Tabelle getSimboli() { return simboli; }
+
     public String getTripShortName() {
         return tripShortName;
     }
@@ -79,46 +109,106 @@ public class Trip {
 
 
     public String getShapeId() {
-        return shapeId;
+        return simboli.forma.valore(shapeId);
     }
 
     public int getWheelchairAccessible() {
         return wheelchairAccessible;
     }
 
+    public String getBlockId() {
+        return blockId;
+    }
 
+    public int getBikesAllowed() {
+        return bikesAllowed;
+    }
+
+
+    // Con uno schema gli orari si ricostruiscono a ogni chiamata (lista leggera); se chi la
+    // riceve la ordina cambiando l'ordine o la modifica, la corsa lascia lo schema e tiene la copia
     public List<StopTime> getStopTimes() {
+        if (schema != null) {
+            return schema.orari(tripId, profilo, inizioSecondi, this::collegaStopTimes);
+        }
         return stopTimes;
     }
 
+    public SchemaCorsa getSchema() {
+        return schema;
+    }
+
+    public SchemaCorsa.Profilo getProfilo() {
+        return profilo;
+    }
+
+    // Partenza dal primo stop in secondi del giorno di servizio (solo con uno schema)
+    public int getInizioSecondi() {
+        return inizioSecondi;
+    }
+
+    // Orario di partenza della corsa alla posizione data dello schema (-1 se assente)
+    public int getPartenzaSecondi(int posizione) {
+        return SchemaCorsa.assoluto(inizioSecondi, profilo.getPartenzaRelativa(posizione));
+    }
+
+    public int getArrivoSecondi(int posizione) {
+        return SchemaCorsa.assoluto(inizioSecondi, profilo.getArrivoRelativo(posizione));
+    }
+
 
     //METODI PER STOP TIMES
 
     //Aggiunge un orario di fermata a questa corsa
 
     public void aggiungiStopTime(StopTime stopTime) {
-        stopTimes.add(stopTime);
+        // se gli orari sono una vista dell'archivio o di uno schema si passa a un ArrayList proprio
+        List<StopTime> attuali = getStopTimes();
+        if (!(attuali instanceof ArrayList)) {
+            attuali = new ArrayList<>(attuali);
+        }
+        attuali.add(stopTime);
+        collegaStopTimes(attuali);
+    }
+
+    // Collega la corsa ai suoi orari già ordinati (es. una vista di StopTimeStore)
+
+    public void collegaStopTimes(List<StopTime> stopTimes) {
+        this.stopTimes = stopTimes;
+        this.schema = null;
+        this.profilo = null;
+    }
+
+    // Collega la corsa a uno schema condiviso (vedi SchemiCorse.comprimi)
+
+    void collegaSchema(SchemaCorsa schema, SchemaCorsa.Profilo profilo, int inizioSecondi) {
+        this.schema = schema;
+        this.profilo = profilo;
+        this.inizioSecondi = inizioSecondi;
+        this.stopTimes = null;
     }
 
     // Ritorna il numero di fermate di questa corsa
 
     public int getNumeroFermate() {
-        return stopTimes.size();
+        return schema != null ? schema.size() : stopTimes.size();
     }
 
     // Ritorna l'orario di inizio della corsa (primo stop)
 
     public StopTime getPrimoStop() {
-        return stopTimes.isEmpty() ? null : stopTimes.get(0);
+        List<StopTime> orari = getStopTimes();
+        return orari.isEmpty() ? null : orari.get(0);
     }
 
     //Ritorna l'orario di fine della corsa (ultimo stop)
 
     public StopTime getUltimoStop() {
-        return stopTimes.isEmpty() ? null : stopTimes.get(stopTimes.size() - 1);
+        List<StopTime> orari = getStopTimes();
+        return orari.isEmpty() ? null : orari.get(orari.size() - 1);
     }
 
-    // Ritorna la durata totale della corsa
+    // Ritorna la durata totale della corsa in secondi (corretta anche se passa la mezzanotte)
 
     public long getDurataTotaleCorse() {
         StopTime primo = getPrimoStop();
@@ -128,16 +218,18 @@ public class Trip {
             return 0;
         }
 
-        return java.time.temporal.ChronoUnit.SECONDS.between(
-                primo.getArrivalTime(),
-                ultimo.getDepartureTime()
-        );
+        int partenza = primo.getArrivoSecondi();
+        int arrivo = ultimo.getPartenzaSecondi();
+        if (partenza < 0 || arrivo < 0) {
+            return 0;
+        }
+        return arrivo - partenza;
     }
 
     // Ricerca uno stop per posizione nella sequenza
 
     public StopTime getStopAtSequence(int sequence) {
-        for (StopTime st : stopTimes) {
+        for (StopTime st : getStopTimes()) {
             if (st.getStopSequence() == sequence) {
                 return st;
             }
@@ -148,8 +240,16 @@ public class Trip {
     // Ricerca uno stop per ID fermata
 
     public StopTime getStopByFermataId(String stopId) {
+        int codice = simboli.fermata.cerca(stopId);
+        if (codice == Simboli.NESSUNO) {
+            return null;
+        }
+        if (schema != null) {
+            int posizione = schema.posizioneDi(codice);
+            return posizione < 0 ? null : getStopTimes().get(posizione);
+        }
         for (StopTime st : stopTimes) {
-            if (st.getStopId().equals(stopId)) {
+            if (st.getCodiceFermata() == codice) {
                 return st;
             }
         }
@@ -159,6 +259,10 @@ public class Trip {
     // Ritorna tutti gli ID delle fermate di questa corsa
     public List<String> getStopIds() {
         List<String> stopIds = new ArrayList<>();
+        if (schema != null) {
+            for (int i = 0; i < schema.size(); i++) stopIds.add(schema.getStopId(i));
+            return stopIds;
+        }
         for (StopTime st : stopTimes) {
             stopIds.add(st.getStopId());
         }
@@ -204,9 +308,9 @@ public class Trip {
     @Override
     public String toString() {
         return "Trip{" +
-                "tripId='" + tripId + '\'' +
-                ", routeId='" + routeId + '\'' +
-                ", tripHeadsign='" + tripHeadsign + '\'' +
+                "tripId='" + getTripId() + '\'' +
+                ", routeId='" + getRouteId() + '\'' +
+                ", tripHeadsign='" + getTripHeadsign() + '\'' +
                 ", numeroFermate=" + getNumeroFermate() +
                 ", durata=" + getDurataTotaleCorse() + " secondi" +
                 '}';
@@ -219,13 +323,13 @@ public class Trip {
         if (this == obj) return true;
         if (obj == null || getClass() != obj.getClass()) return false;
         Trip that = (Trip) obj;
-        return tripId.equals(that.tripId);
+        return simboli == that.simboli ? tripId == that.tripId : Objects.equals(getTripId(), that.getTripId());
     }
 
-    // Genera un hashcode
+    // Genera un hashcode (dalla String dell'ID, uguale in ogni caricamento)
 
     @Override
     public int hashCode() {
-        return tripId.hashCode();
+        return Objects.hashCode(getTripId());
     }
 }
@@ -0,0 +1,42 @@
+package model.utils;
+
+import model.gtfs.GeometriaForma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+// Cache LRU delle forme già decodificate, condivisa da tutte le ShapeRoute
+// di una stessa sorgente. Si disegnano una o due linee alla volta, quindi
+// poche centinaia di forme bastano (compresse sono pochi KB l'una); le altre tornano al GC.
+
+final class CacheForme {
+
+    static final int CAPACITA_PREDEFINITA = 256;
+
+    private final LinkedHashMap<String, GeometriaForma> forme;
+
+    CacheForme(int capacita) {
+        this.forme = new LinkedHashMap<>(capacita * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GeometriaForma> piuVecchia) {
+                return size() > capacita;
+            }
+        };
+    }
+
+    // La decodifica avviene sotto lock: due richieste della stessa forma non la
+    // decodificano due volte (e le forme sono piccole, qualche millisecondo)
+    synchronized GeometriaForma ottieni(String shapeId, Function<String, GeometriaForma> decodifica) {
+        GeometriaForma geometria = forme.get(shapeId);
+        if (geometria == null) {
+            geometria = decodifica.apply(shapeId);
+            forme.put(shapeId, geometria);
+        }
+        return geometria;
+    }
+
+    synchronized int dimensione() {
+        return forme.size();
+    }
+}
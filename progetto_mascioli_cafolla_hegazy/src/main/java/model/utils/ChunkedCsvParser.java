@@ -0,0 +1,175 @@
+package model.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Parsing parallelo di un file CSV GTFS già in memoria (o mappato con mmap).
+// Il file viene diviso in intervalli di byte allineati a inizio riga e ogni
+// intervallo viene parsato da un worker del ForkJoinPool in una lista propria.
+// Le liste tornano nell'ordine del file, quindi il risultato è deterministico.
+//
+// Nota: il taglio avviene sul primo '\n' dopo il confine, quindi si assume che
+// nessun campo quotato contenga a capo (vero per stop_times.txt e shapes.txt).
+
+public final class ChunkedCsvParser {
+
+    // Sotto questa dimensione dividere il file costa più di quanto si guadagna
+    static final int DIMENSIONE_MINIMA_CHUNK = 4 * 1024 * 1024;
+
+    // Logica di parsing delle righe di un blocco (la stessa del caricamento sequenziale)
+    @FunctionalInterface
+    public interface ParserRighe<T> {
+        void leggi(GtfsCsvReader csv, List<T> destinazione) throws IOException;
+    }
+
+    private ChunkedCsvParser() {}
+
+    public static <T> List<List<T>> parse(ByteBuffer dati, ParserRighe<T> parser) throws IOException {
+        return parse(dati, parser, DIMENSIONE_MINIMA_CHUNK);
+    }
+
+    // Variante con dimensione minima dei blocchi esplicita (serve per i test)
+    static <T> List<List<T>> parse(ByteBuffer dati, ParserRighe<T> parser, int dimensioneMinimaChunk)
+            throws IOException {
+
+        ByteBuffer file = dati.duplicate();
+        file.position(0);
+        int dimensione = file.limit();
+
+        // Intestazione: serve a tutti i blocchi per risolvere le colonne per nome
+        int inizioDati = inizioRigaSuccessiva(file, 0);
+        Map<String, Integer> colonne;
+        try (GtfsCsvReader intestazione = new GtfsCsvReader(lettore(file, 0, inizioDati))) {
+            colonne = intestazione.getColonne();
+        }
+
+        List<int[]> intervalli = dividi(file, inizioDati, dimensione, dimensioneMinimaChunk);
+        if (intervalli.isEmpty()) {
+            return List.of(); // solo intestazione
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        List<T>[] risultati = new List[intervalli.size()];
+
+        try {
+            ForkJoinPool.commonPool().invoke(
+                    new ParseTask<>(file, intervalli, colonne, parser, risultati, 0, intervalli.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return List.of(risultati);
+    }
+
+    // Divide [inizio, fine) in blocchi di almeno dimensioneMinima byte, uno o più per core,
+    // spostando ogni confine all'inizio della riga successiva
+    static List<int[]> dividi(ByteBuffer file, int inizio, int fine, int dimensioneMinima) {
+        int core = ForkJoinPool.getCommonPoolParallelism() + 1;
+        long dimensioneDati = fine - inizio;
+        int numeroChunk = (int) Math.max(1, Math.min(core * 4L, dimensioneDati / Math.max(1, dimensioneMinima)));
+        long passo = Math.max(1, dimensioneDati / numeroChunk);
+
+        List<int[]> intervalli = new ArrayList<>(numeroChunk);
+        int inizioChunk = inizio;
+        while (inizioChunk < fine) {
+            long confine = inizioChunk + passo;
+            int fineChunk = confine >= fine ? fine : inizioRigaSuccessiva(file, (int) confine - 1);
+            intervalli.add(new int[]{inizioChunk, fineChunk});
+            inizioChunk = fineChunk;
+        }
+        return intervalli;
+    }
+
+    // Posizione subito dopo il primo '\n' a partire da "da" (o la fine del file)
+    private static int inizioRigaSuccessiva(ByteBuffer file, int da) {
+        int fine = file.limit();
+        for (int i = da; i < fine; i++) {
+            if (file.get(i) == '\n') return i + 1;
+        }
+        return fine;
+    }
+
+    static InputStreamReader lettore(ByteBuffer file, int inizio, int fine) {
+        return new InputStreamReader(new ByteBufferInputStream(file.slice(inizio, fine - inizio)),
+                StandardCharsets.UTF_8);
+    }
+
+    // Divide ricorsivamente l'elenco dei blocchi finché ne resta uno per task
+    // (RecursiveAction è Serializable, ma i task non si serializzano mai)
+    @SuppressWarnings("serial")
+    private static final class ParseTask<T> extends RecursiveAction {
+        private final ByteBuffer file;
+        private final List<int[]> intervalli;
+        private final Map<String, Integer> colonne;
+        private final ParserRighe<T> parser;
+        private final List<T>[] risultati;
+        private final int da;
+        private final int a;
+
+        ParseTask(ByteBuffer file, List<int[]> intervalli, Map<String, Integer> colonne,
+                  ParserRighe<T> parser, List<T>[] risultati, int da, int a) {
+            this.file = file;
+            this.intervalli = intervalli;
+            this.colonne = colonne;
+            this.parser = parser;
+            this.risultati = risultati;
+            this.da = da;
+            this.a = a;
+        }
+
+        @Override
+        protected void compute() {
+            if (a - da > 1) {
+                int meta = (da + a) >>> 1;
+                invokeAll(new ParseTask<>(file, intervalli, colonne, parser, risultati, da, meta),
+                        new ParseTask<>(file, intervalli, colonne, parser, risultati, meta, a));
+                return;
+            }
+
+            int[] intervallo = intervalli.get(da);
+            List<T> destinazione = new ArrayList<>();
+            try (GtfsCsvReader csv = new GtfsCsvReader(lettore(file, intervallo[0], intervallo[1]), colonne)) {
+                parser.leggi(csv, destinazione);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            // ogni task scrive solo la propria posizione; invokeAll ne garantisce la visibilità
+            risultati[da] = destinazione;
+        }
+    }
+
+    // InputStream su un ByteBuffer (heap o mappato) senza copiarlo
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] destinazione, int offset, int lunghezza) {
+            if (!buffer.hasRemaining()) return -1;
+            int letti = Math.min(lunghezza, buffer.remaining());
+            buffer.get(destinazione, offset, letti);
+            return letti;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package model.utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Feed GTFS nelle resources dell'applicazione (comportamento originale di Database)
+
+final class ClasspathFeedSource implements GtfsFeedSource {
+
+    private final String cartella;
+
+    ClasspathFeedSource(String cartella) {
+        this.cartella = cartella;
+    }
+
+    @Override
+    public boolean esiste(String nomeFile) {
+        return ClasspathFeedSource.class.getResource(cartella + nomeFile) != null;
+    }
+
+    // Il buffering lo fa GtfsCsvReader, quindi non serve un BufferedReader
+    @Override
+    public Reader apri(String nomeFile) throws IOException {
+        InputStream inputStream = ClasspathFeedSource.class.getResourceAsStream(cartella + nomeFile);
+        if (inputStream == null) {
+            throw new FileNotFoundException("File " + descrizione() + "/" + nomeFile + " non trovato!");
+        }
+        return new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+    }
+
+    // Se il file è su disco viene mappato in memoria (niente copia nello heap),
+    // altrimenti (es. dentro il jar) viene letto tutto
+    @Override
+    public ByteBuffer leggiByte(String nomeFile) throws IOException {
+        URL url = ClasspathFeedSource.class.getResource(cartella + nomeFile);
+        if (url == null) {
+            throw new FileNotFoundException("File " + descrizione() + "/" + nomeFile + " non trovato!");
+        }
+        if ("file".equals(url.getProtocol())) {
+            try (FileChannel canale = FileChannel.open(Path.of(url.toURI()), StandardOpenOption.READ)) {
+                if (canale.size() <= Integer.MAX_VALUE) {
+                    return canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size());
+                }
+            } catch (URISyntaxException e) {
+                // percorso non convertibile: si ripiega sulla lettura via stream
+            }
+        }
+        try (InputStream inputStream = url.openStream()) {
+            return ByteBuffer.wrap(inputStream.readAllBytes());
+        }
+    }
+
+    // Le resources fanno parte dell'applicazione: non vengono sostituite mentre gira
+    // (il ricaricamento a caldo vale solo per il feed di -Dgtfs.feed), la mappatura resta
+    @Override
+    public ByteBuffer leggiByteDaTenere(String nomeFile) throws IOException {
+        return leggiByte(nomeFile);
+    }
+
+    @Override
+    public String descrizione() {
+        return cartella.substring(1, cartella.length() - 1);
+    }
+}
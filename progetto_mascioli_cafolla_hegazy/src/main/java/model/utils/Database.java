@@ -1,77 +1,92 @@
 package model.utils;
 
 import model.gtfs.*;
+import model.utils.StatisticheCaricamento.Motivo;
 
 import java.io.*;
-import java.net.URL;
+import java.nio.ByteBuffer;
 import java.time.LocalDate;
 import java.util.*;
 
 
  //Classe Database che gestisce la lettura dei file GTFS statici da resources
- //nella cartella static_gtfs/
+ //nella cartella static_gtfs/ (o da una cartella/zip esterni, vedi GtfsFeedSource)
+ //Ogni loader registra le proprie statistiche (byte, righe, tempi, scarti) in MetricheCaricamento,
+ //e in quella del caricamento se chi chiama ne passa una
 
 public class Database {
 
+    // Da dove si leggono i file GTFS: resources/static_gtfs, oppure la cartella
+    // o lo zip indicati con -Dgtfs.feed=percorso
+    private static volatile GtfsFeedSource sorgente = GtfsFeedSource.predefinita();
+
+    public static GtfsFeedSource getSorgente() {
+        return sorgente;
+    }
+
+    // Cambia la sorgente per i caricamenti successivi (la precedente va chiusa da chi la possiede).
+    // I loader senza argomenti leggono da qui; quelli con la sorgente esplicita servono a
+    // chi prepara un feed che non è ancora quello attivo (GtfsReloader)
+    public static void setSorgente(GtfsFeedSource nuovaSorgente) {
+        sorgente = Objects.requireNonNull(nuovaSorgente);
+    }
+
     //  LETTURA GTFS STATICI - STOPS
 
     public static List<Fermate> leggiStopDaFile() {
-        List<Fermate> fermate = new ArrayList<>();
+        return leggiStopDaFile(sorgente, Simboli.Tabelle.PREDEFINITE, null);
+    }
 
-        try {
-            URL resourceUrl = Database.class.getClassLoader().getResource("static_gtfs/stops.txt");
+    // simboli: le tabelle in cui codificare gli ID (una per caricamento, vedi Simboli.Tabelle)
+    public static List<Fermate> leggiStopDaFile(GtfsFeedSource sorgente, Simboli.Tabelle simboli,
+                                                MetricheCaricamento metriche) {
+        List<Fermate> fermate = new ArrayList<>();
+        StatisticheCaricamento stat = new StatisticheCaricamento("stops.txt");
 
-            try (BufferedReader reader = apriFileGTFS("stops.txt")) {
+        try (GtfsCsvReader csv = new GtfsCsvReader(apriFileGTFS(sorgente, "stops.txt"))) {
 
-                String line;
-                boolean primaLinea = true;
+            int colStopId = csv.colonna("stop_id");
+            int colStopName = csv.colonna("stop_name");
+            int colStopDesc = csv.colonna("stop_desc");
+            int colStopLat = csv.colonna("stop_lat");
+            int colStopLon = csv.colonna("stop_lon");
+            int colStopUrl = csv.colonna("stop_url");
+            int colLocationType = csv.colonna("location_type");
+            int colParentStation = csv.colonna("parent_station");
 
-                while ((line = reader.readLine()) != null) {
-                    if (primaLinea) {
-                        primaLinea = false;
+            while (csv.prossimaRiga()) {
+                try {
+                    if (csv.isVuoto(colStopId) || csv.isVuoto(colStopLat) || csv.isVuoto(colStopLon)) {
+                        stat.scarta(Motivo.CAMPO_OBBLIGATORIO_VUOTO, csv);
                         continue;
                     }
 
-                    try {
-                        String[] campi = line.split(",");
-
-                        if (campi.length < 6) continue;
-
-                        String stopId = campi[0].trim().replaceAll("\"", "");
-                        String stopCode = campi[1].trim().replaceAll("\"", "");
-                        String stopName = campi[2].trim().replaceAll("\"", "");
-                        String stopDesc = campi.length > 3 ? campi[3].trim().replaceAll("\"", "") : "";
-                        double stopLat = Double.parseDouble(campi[4].trim());
-                        double stopLon = Double.parseDouble(campi[5].trim());
-                        String stopUrl = campi.length > 6 ? campi[6].trim().replaceAll("\"", "") : "";
-                        String wheelchairBoarding = campi.length > 7 ? campi[7].trim().replaceAll("\"", "") : "";
-                        String stopTimezone = campi.length > 8 ? campi[8].trim().replaceAll("\"", "") : "";
-                        String locationType = campi.length > 9 ? campi[9].trim().replaceAll("\"", "") : "0";
-                        String parentStation = campi.length > 10 ? campi[10].trim().replaceAll("\"", "") : "";
-
-                        Fermate fermata = new Fermate(
-                                stopId,
-                                stopName,
-                                stopDesc,
-                                stopLat,
-                                stopLon,
-                                stopUrl,
-                                locationType,
-                                parentStation
-                        );
-                        fermate.add(fermata);
-
-                    } catch (Exception e) {
-                        // Ignora linee con errori di parsing
-                    }
-                }
-
-                System.out.println("Caricate " + fermate.size() + " fermate da static_gtfs/stops.txt");
+                    Fermate fermata = new Fermate(simboli,
+                            csv.getString(colStopId),
+                            csv.getString(colStopName),
+                            csv.getString(colStopDesc),
+                            csv.getDouble(colStopLat, 0.0),
+                            csv.getDouble(colStopLon, 0.0),
+                            csv.getString(colStopUrl),
+                            csv.getString(colLocationType, "0"),
+                            csv.getString(colParentStation)
+                    );
+                    fermate.add(fermata);
 
+                } catch (Exception e) {
+                    // Ignora linee con errori di parsing (ma le conta)
+                    stat.scarta(motivo(e), csv);
+                }
             }
+            stat.aggiungiLettore(csv, fermate.size());
+
+            System.out.println("Caricate " + fermate.size() + " fermate da static_gtfs/stops.txt" + scartate(stat));
 
         } catch (Exception e) {
             System.err.println("Errore nella lettura di static_gtfs/stops.txt: " + e.getMessage());
+            stat.fallito(e);
+        } finally {
+            registra(stat, metriche);
         }
 
         return fermate;
@@ -80,61 +95,60 @@ public class Database {
     //  LETTURA GTFS STATICI - ROUTES
 
     public static List<Route> leggiRouteDaFile() {
-        List<Route> rotte = new ArrayList<>();
+        return leggiRouteDaFile(sorgente, Simboli.Tabelle.PREDEFINITE, null);
+    }
 
-        try {
-            URL resourceUrl = Database.class.getClassLoader().getResource("static_gtfs/routes.txt");
+    public static List<Route> leggiRouteDaFile(GtfsFeedSource sorgente, Simboli.Tabelle simboli,
+                                               MetricheCaricamento metriche) {
+        List<Route> rotte = new ArrayList<>();
+        StatisticheCaricamento stat = new StatisticheCaricamento("routes.txt");
 
-            try (BufferedReader reader = apriFileGTFS("routes.txt")) {
+        try (GtfsCsvReader csv = new GtfsCsvReader(apriFileGTFS(sorgente, "routes.txt"))) {
 
-                String line;
-                boolean primaLinea = true;
+            int colRouteId = csv.colonna("route_id");
+            int colAgencyId = csv.colonna("agency_id");
+            int colShortName = csv.colonna("route_short_name");
+            int colLongName = csv.colonna("route_long_name");
+            int colDesc = csv.colonna("route_desc");
+            int colType = csv.colonna("route_type");
+            int colUrl = csv.colonna("route_url");
+            int colColor = csv.colonna("route_color");
+            int colTextColor = csv.colonna("route_text_color");
 
-                while ((line = reader.readLine()) != null) {
-                    if (primaLinea) {
-                        primaLinea = false;
+            while (csv.prossimaRiga()) {
+                try {
+                    if (csv.isVuoto(colRouteId)) {
+                        stat.scarta(Motivo.CAMPO_OBBLIGATORIO_VUOTO, csv);
                         continue;
                     }
 
-                    try {
-                        String[] campi = line.split(",");
-
-                        if (campi.length < 3) continue;
-
-                        String routeId = campi[0].trim().replaceAll("\"", "");
-                        String agencyId = campi.length > 1 ? campi[1].trim().replaceAll("\"", "") : "";
-                        String routeShortName = campi.length > 2 ? campi[2].trim().replaceAll("\"", "") : "";
-                        String routeLongName = campi.length > 3 ? campi[3].trim().replaceAll("\"", "") : "";
-                        String routeDesc = campi.length > 4 ? campi[4].trim().replaceAll("\"", "") : "";
-                        int routeType = campi.length > 5 ? parseRouteType(campi[5].trim()) : 3;
-                        String routeUrl = campi.length > 6 ? campi[6].trim().replaceAll("\"", "") : "";
-                        String routeColor = campi.length > 7 ? campi[7].trim().replaceAll("\"", "") : "000000";
-                        String routeTextColor = campi.length > 8 ? campi[8].trim().replaceAll("\"", "") : "FFFFFF";
-
-                        Route rotta = new Route(
-                                routeId,
-                                agencyId,
-                                routeShortName,
-                                routeLongName,
-                                routeDesc,
-                                routeType,
-                                routeUrl,
-                                routeColor,
-                                routeTextColor
-                        );
-                        rotte.add(rotta);
-
-                    } catch (Exception e) {
-                        // Ignora righe errate
-                    }
-                }
-
-                System.out.println("Caricate " + rotte.size() + " rotte da static_gtfs/routes.txt");
+                    Route rotta = new Route(simboli,
+                            csv.getString(colRouteId),
+                            csv.getString(colAgencyId),
+                            csv.getString(colShortName),
+                            csv.getString(colLongName),
+                            csv.getString(colDesc),
+                            parseRouteType(csv, colType),
+                            csv.getString(colUrl),
+                            csv.getString(colColor, "000000"),
+                            csv.getString(colTextColor, "FFFFFF")
+                    );
+                    rotte.add(rotta);
 
+                } catch (Exception e) {
+                    // Ignora righe errate (ma le conta)
+                    stat.scarta(motivo(e), csv);
+                }
             }
+            stat.aggiungiLettore(csv, rotte.size());
+
+            System.out.println("Caricate " + rotte.size() + " rotte da static_gtfs/routes.txt" + scartate(stat));
 
         } catch (Exception e) {
             System.err.println("Errore nella lettura di static_gtfs/routes.txt: " + e.getMessage());
+            stat.fallito(e);
+        } finally {
+            registra(stat, metriche);
         }
 
         return rotte;
@@ -143,48 +157,30 @@ public class Database {
 
     //  LETTURA GTFS STATICI - SHAPES
 
+    // Le forme sono pigre: qui si indicizza solo shapes.txt (shape_id -> righe nel file),
+    // i punti vengono decodificati la prima volta che una forma viene disegnata
     public static Map<String, ShapeRoute> leggiShapeDaFile() {
-        Map<String, ShapeRoute> shapes = new HashMap<>();
-
-        try (BufferedReader reader = apriFileGTFS("shapes.txt")) {
-
-            String line;
-            boolean primaLinea = true;
-
-            while ((line = reader.readLine()) != null) {
-                if (primaLinea) {
-                    primaLinea = false;
-                    continue;
-                }
-
-                try {
-                    String[] campi = line.split(",");
-
-                    String shapeId = campi[0].trim();
-                    double shapePtLat = Double.parseDouble(campi[1].trim());
-                    double shapePtLon = Double.parseDouble(campi[2].trim());
-                    int shapePtSequence = Integer.parseInt(campi[3].trim());
-                    double shapeDistTraveled = (campi.length > 4 && !campi[4].trim().isEmpty())
-                            ? Double.parseDouble(campi[4].trim())
-                            : 0.0;
-
-                    shapes.computeIfAbsent(shapeId, ShapeRoute::new)
-                            .aggiungiPunto(shapePtLat, shapePtLon, shapePtSequence, shapeDistTraveled);
-
-                } catch (Exception e) {
-                    // Ignora righe errate
-                }
-            }
+        return leggiShapeDaFile(sorgente, null);
+    }
 
-            // Ordina tutti i punti di ogni shape dopo la lettura
-            for (ShapeRoute shape : shapes.values()) {
-                shape.ordinaPunti();
-            }
+    public static Map<String, ShapeRoute> leggiShapeDaFile(GtfsFeedSource sorgente, MetricheCaricamento metriche) {
+        Map<String, ShapeRoute> shapes = new HashMap<>();
+        StatisticheCaricamento stat = new StatisticheCaricamento("shapes.txt");
 
-            System.out.println("Caricate " + shapes.size() + " forme da static_gtfs/shapes.txt");
+        try {
+            // l'indice tiene i byte finché le forme servono: mai il file mappato di una cartella
+            ByteBuffer dati = leggiByte(sorgente, "shapes.txt", true, stat);
+            IndiceForme indice = IndiceForme.costruisci(dati);
+            shapes = indice.forme();
+            // le righe vengono solo contate: il parsing dei punti avviene alla prima richiesta
+            stat.aggiungiRighe(indice.getNumeroRighe(), indice.getNumeroRighe());
+            System.out.println("Indicizzate " + shapes.size() + " forme da static_gtfs/shapes.txt");
 
         } catch (Exception e) {
             System.err.println("Errore nella lettura di static_gtfs/shapes.txt: " + e.getMessage());
+            stat.fallito(e);
+        } finally {
+            registra(stat, metriche);
         }
 
         return shapes;
@@ -194,224 +190,397 @@ public class Database {
     //  LETTURA GTFS STATICI - CALENDAR
 
     public static Map<String, CalendarDate> leggiCalendarDaFile() {
+        return leggiCalendarDaFile(sorgente, null);
+    }
+
+    public static Map<String, CalendarDate> leggiCalendarDaFile(GtfsFeedSource sorgente, MetricheCaricamento metriche) {
         Map<String, CalendarDate> calendari = new HashMap<>();
+        StatisticheCaricamento stat = new StatisticheCaricamento("calendar.txt");
 
-        try {
-            URL resourceUrl = Database.class.getClassLoader().getResource("static_gtfs/calendar.txt");
-            if (resourceUrl == null) {
-                System.err.println("Errore: File static_gtfs/calendar.txt non trovato in resources!");
-                return calendari;
-            }
+        try (GtfsCsvReader csv = new GtfsCsvReader(apriFileGTFS(sorgente, "calendar.txt"))) {
 
-            File file = new File(resourceUrl.toURI());
-            BufferedReader reader = new BufferedReader(new FileReader(file));
+            int colServiceId = csv.colonna("service_id");
+            int[] colGiorni = {
+                    csv.colonna("monday"), csv.colonna("tuesday"), csv.colonna("wednesday"),
+                    csv.colonna("thursday"), csv.colonna("friday"), csv.colonna("saturday"),
+                    csv.colonna("sunday")
+            };
+            int colStartDate = csv.colonna("start_date");
+            int colEndDate = csv.colonna("end_date");
 
-            String line;
-            boolean primaLinea = true;
+            while (csv.prossimaRiga()) {
+                try {
+                    if (csv.isVuoto(colServiceId)) {
+                        stat.scarta(Motivo.CAMPO_OBBLIGATORIO_VUOTO, csv);
+                        continue;
+                    }
 
-            while ((line = reader.readLine()) != null) {
-                if (primaLinea) {
-                    primaLinea = false;
-                    continue;
-                }
+                    String serviceId = csv.getString(colServiceId);
+                    LocalDate startDate = CalendarDate.parseDataGTFS(csv.getString(colStartDate));
+                    LocalDate endDate = CalendarDate.parseDataGTFS(csv.getString(colEndDate));
+                    if (startDate == null || endDate == null) {
+                        stat.scarta(Motivo.DATA_NON_VALIDA, csv);
+                        continue;
+                    }
 
-                try {
-                    String[] campi = line.split(",");
-
-                    String serviceId = campi[0].trim();
-                    boolean monday = CalendarDate.parseBooleanGTFS(campi[1]);
-                    boolean tuesday = CalendarDate.parseBooleanGTFS(campi[2]);
-                    boolean wednesday = CalendarDate.parseBooleanGTFS(campi[3]);
-                    boolean thursday = CalendarDate.parseBooleanGTFS(campi[4]);
-                    boolean friday = CalendarDate.parseBooleanGTFS(campi[5]);
-                    boolean saturday = CalendarDate.parseBooleanGTFS(campi[6]);
-                    boolean sunday = CalendarDate.parseBooleanGTFS(campi[7]);
-                    LocalDate startDate = CalendarDate.parseDataGTFS(campi[8].trim());
-                    LocalDate endDate = CalendarDate.parseDataGTFS(campi[9].trim());
-
-                    CalendarDate cal = new CalendarDate(serviceId, monday, tuesday, wednesday, thursday,
-                            friday, saturday, sunday, startDate, endDate);
+                    CalendarDate cal = new CalendarDate(serviceId,
+                            csv.campoUguale(colGiorni[0], "1"),
+                            csv.campoUguale(colGiorni[1], "1"),
+                            csv.campoUguale(colGiorni[2], "1"),
+                            csv.campoUguale(colGiorni[3], "1"),
+                            csv.campoUguale(colGiorni[4], "1"),
+                            csv.campoUguale(colGiorni[5], "1"),
+                            csv.campoUguale(colGiorni[6], "1"),
+                            startDate, endDate);
                     calendari.put(serviceId, cal);
 
                 } catch (Exception e) {
-                    // Ignora
+                    // Ignora (ma conta)
+                    stat.scarta(motivo(e), csv);
                 }
             }
+            stat.aggiungiLettore(csv, calendari.size());
 
-            reader.close();
-            System.out.println("Caricati " + calendari.size() + " calendari da static_gtfs/calendar.txt");
+            System.out.println("Caricati " + calendari.size() + " calendari da static_gtfs/calendar.txt" + scartate(stat));
 
         } catch (Exception e) {
             System.err.println("Errore nella lettura di static_gtfs/calendar.txt: " + e.getMessage());
+            stat.fallito(e);
+        } finally {
+            registra(stat, metriche);
         }
 
         return calendari;
     }
 
     public static List<CalendarDate> leggiCalendarDatesDaFile() {
-        List<CalendarDate> eccezioni = new ArrayList<>();
+        return leggiCalendarDatesDaFile(sorgente, null);
+    }
 
-        try (BufferedReader reader = apriFileGTFS("calendar.txt")) {
+    public static List<CalendarDate> leggiCalendarDatesDaFile(GtfsFeedSource sorgente, MetricheCaricamento metriche) {
+        List<CalendarDate> eccezioni = new ArrayList<>();
+        StatisticheCaricamento stat = new StatisticheCaricamento("calendar_dates.txt");
 
-            String line;
-            boolean primaLinea = true;
+        try (GtfsCsvReader csv = new GtfsCsvReader(apriFileGTFS(sorgente, "calendar_dates.txt"))) {
 
-            while ((line = reader.readLine()) != null) {
-                if (primaLinea) {
-                    primaLinea = false;
-                    continue;
-                }
+            int colServiceId = csv.colonna("service_id");
+            int colDate = csv.colonna("date");
+            int colExceptionType = csv.colonna("exception_type");
 
+            while (csv.prossimaRiga()) {
                 try {
-                    String[] campi = line.split(",");
-
-                    String serviceId = campi[0].trim();
-                    LocalDate date = CalendarDate.parseDataGTFS(campi[1].trim());
-                    int exceptionType = Integer.parseInt(campi[2].trim());
+                    if (csv.isVuoto(colServiceId) || csv.isVuoto(colDate)) {
+                        stat.scarta(Motivo.CAMPO_OBBLIGATORIO_VUOTO, csv);
+                        continue;
+                    }
+                    LocalDate date = CalendarDate.parseDataGTFS(csv.getString(colDate));
+                    if (date == null) {
+                        stat.scarta(Motivo.DATA_NON_VALIDA, csv);
+                        continue;
+                    }
 
-                    CalendarDate eccezione = new CalendarDate(serviceId, date, exceptionType);
+                    CalendarDate eccezione = new CalendarDate(
+                            csv.getString(colServiceId),
+                            date,
+                            csv.getInt(colExceptionType, 1)
+                    );
                     eccezioni.add(eccezione);
 
                 } catch (Exception e) {
-                    // Ignora righe errate
+                    // Ignora righe errate (ma le conta)
+                    stat.scarta(motivo(e), csv);
                 }
             }
+            stat.aggiungiLettore(csv, eccezioni.size());
 
-        } catch (Exception e) {
+            System.out.println("Caricate " + eccezioni.size() + " eccezioni da static_gtfs/calendar_dates.txt" + scartate(stat));
 
+        } catch (Exception e) {
+            System.err.println("Errore nella lettura di static_gtfs/calendar_dates.txt: " + e.getMessage());
+            stat.fallito(e);
+        } finally {
+            registra(stat, metriche);
         }
 
         return eccezioni;
     }
 
 
-    //  LETTURA GTFS STATICI - STOP TIMES
+    //  LETTURA GTFS STATICI - TRANSFERS
 
-    public static List<StopTime> leggiStopTimesDaFile() {
-        List<StopTime> stopTimes = new ArrayList<>();
+    // transfers.txt è opzionale: senza il file non ci sono cambi dichiarati (lista vuota)
+    public static List<Trasferimento> leggiTransfersDaFile() {
+        return leggiTransfersDaFile(sorgente, Simboli.Tabelle.PREDEFINITE, null);
+    }
 
-        try (BufferedReader reader = apriFileGTFS("stop_times.txt")) {
+    public static List<Trasferimento> leggiTransfersDaFile(GtfsFeedSource sorgente, Simboli.Tabelle simboli,
+                                                           MetricheCaricamento metriche) {
+        List<Trasferimento> trasferimenti = new ArrayList<>();
+        if (!sorgente.esiste("transfers.txt")) {
+            System.out.println("static_gtfs/transfers.txt assente: solo cambi a piedi tra fermate vicine");
+            return trasferimenti;
+        }
+        StatisticheCaricamento stat = new StatisticheCaricamento("transfers.txt");
 
-            String line;
-            boolean primaLinea = true;
+        try (GtfsCsvReader csv = new GtfsCsvReader(apriFileGTFS(sorgente, "transfers.txt"))) {
 
-            while ((line = reader.readLine()) != null) {
-                if (primaLinea) {
-                    primaLinea = false;
-                    continue;
-                }
+            int colFromStopId = csv.colonna("from_stop_id");
+            int colToStopId = csv.colonna("to_stop_id");
+            int colTransferType = csv.colonna("transfer_type");
+            int colMinTransferTime = csv.colonna("min_transfer_time");
 
+            while (csv.prossimaRiga()) {
                 try {
-                    String[] campi = line.split(",");
-
-                    String tripId = campi[0].trim();
-                    var arrivalTime = StopTime.parseTempoGTFS(campi[1].trim());
-                    var departureTime = StopTime.parseTempoGTFS(campi[2].trim());
-                    String stopId = campi[3].trim();
-                    int stopSequence = Integer.parseInt(campi[4].trim());
-                    String stopHeadsign = campi.length > 5 ? campi[5].trim() : "";
-                    int pickupType = campi.length > 6 ? StopTime.parsePickupDropoffType(campi[6]) : 0;
-                    int dropOffType = campi.length > 7 ? StopTime.parsePickupDropoffType(campi[7]) : 0;
-                    double shapeDistTraveled = (campi.length > 8 && !campi[8].trim().isEmpty())
-                            ? Double.parseDouble(campi[8].trim())
-                            : 0.0;
-
-                    StopTime stopTime = new StopTime(
-                            tripId,
-                            arrivalTime,
-                            departureTime,
-                            stopId,
-                            stopSequence,
-                            stopHeadsign,
-                            pickupType,
-                            dropOffType,
-                            shapeDistTraveled
-                    );
+                    if (csv.isVuoto(colFromStopId) || csv.isVuoto(colToStopId)) {
+                        stat.scarta(Motivo.CAMPO_OBBLIGATORIO_VUOTO, csv);
+                        continue;
+                    }
 
-                    stopTimes.add(stopTime);
+                    Trasferimento trasferimento = new Trasferimento(simboli,
+                            csv.getString(colFromStopId),
+                            csv.getString(colToStopId),
+                            csv.getInt(colTransferType, Trasferimento.CONSIGLIATO),
+                            csv.getInt(colMinTransferTime, -1)
+                    );
+                    trasferimenti.add(trasferimento);
 
                 } catch (Exception e) {
-                    // Ignora righe errate
+                    // Ignora righe errate (ma le conta)
+                    stat.scarta(motivo(e), csv);
                 }
             }
+            stat.aggiungiLettore(csv, trasferimenti.size());
 
-            System.out.println("Caricati " + stopTimes.size() + " stop times da static_gtfs/stop_times.txt");
+            System.out.println("Caricati " + trasferimenti.size() + " trasferimenti da static_gtfs/transfers.txt" + scartate(stat));
+
+        } catch (Exception e) {
+            System.err.println("Errore nella lettura di static_gtfs/transfers.txt: " + e.getMessage());
+            stat.fallito(e);
+        } finally {
+            registra(stat, metriche);
+        }
+
+        return trasferimenti;
+    }
+
+
+    //  LETTURA GTFS STATICI - STOP TIMES
+
+    // stop_times.txt è il file più grande del feed: viene letto come blocco di byte
+    // (mappato in memoria quando possibile) e parsato a pezzi in parallelo.
+    // Il risultato è una vista di StopTimeStore: gli orari restano in colonne
+    // fuori dallo heap e gli StopTime vengono creati solo quando servono.
+    public static List<StopTime> leggiStopTimesDaFile() {
+        return leggiStopTimesDaFile(sorgente, Simboli.Tabelle.PREDEFINITE, null, null);
+    }
+
+    public static List<StopTime> leggiStopTimesDaFile(Set<String> tripAttivi) {
+        return leggiStopTimesDaFile(sorgente, Simboli.Tabelle.PREDEFINITE, tripAttivi, null);
+    }
+
+    // Solo gli orari delle corse in tripAttivi (null = tutte): le righe delle altre corse
+    // vengono saltate subito, senza parsarne i campi né occuparne le colonne
+    public static List<StopTime> leggiStopTimesDaFile(GtfsFeedSource sorgente, Simboli.Tabelle simboli,
+                                                      Set<String> tripAttivi, MetricheCaricamento metriche) {
+        List<StopTime> stopTimes = new ArrayList<>();
+        StatisticheCaricamento stat = new StatisticheCaricamento("stop_times.txt");
+
+        try {
+            stopTimes = leggiStopTimes(leggiByte(sorgente, "stop_times.txt", false, stat), stat, tripAttivi, simboli).tutti();
+
+            System.out.println("Caricati " + stopTimes.size() + " stop times da static_gtfs/stop_times.txt" + scartate(stat));
 
         } catch (Exception e) {
             System.err.println("Errore nella lettura di static_gtfs/stop_times.txt: " + e.getMessage());
+            stat.fallito(e);
+        } finally {
+            registra(stat, metriche);
         }
 
         return stopTimes;
     }
 
+    // Unisce i blocchi parsati ordinando le righe per trip e stop_sequence, così
+    // l'ordine finale non dipende da come è stato diviso il file
+    static StopTimeStore leggiStopTimes(ByteBuffer dati) throws IOException {
+        return leggiStopTimes(dati, new StatisticheCaricamento("stop_times.txt"));
+    }
 
-    // LETTURA GTFS STATICI - TRIPS
+    // I blocchi parsati in parallelo aggiornano tutti le stesse statistiche
+    static StopTimeStore leggiStopTimes(ByteBuffer dati, StatisticheCaricamento stat) throws IOException {
+        return leggiStopTimes(dati, stat, null);
+    }
 
-    public static List<Trip> leggiTripsDaFile() {
-        List<Trip> trips = new ArrayList<>();
+    static StopTimeStore leggiStopTimes(ByteBuffer dati, StatisticheCaricamento stat,
+                                        Set<String> tripAttivi) throws IOException {
+        return leggiStopTimes(dati, stat, tripAttivi, Simboli.Tabelle.PREDEFINITE);
+    }
 
-        try (BufferedReader reader = apriFileGTFS("trips.txt")) {
+    static StopTimeStore leggiStopTimes(ByteBuffer dati, StatisticheCaricamento stat,
+                                        Set<String> tripAttivi, Simboli.Tabelle simboli) throws IOException {
+        List<List<StopTimeStore.Builder>> blocchi = ChunkedCsvParser.parse(dati,
+                (csv, destinazione) -> leggiRigheStopTimes(csv, destinazione, stat, tripAttivi));
 
-            String line;
-            boolean primaLinea = true;
+        List<StopTimeStore.Builder> builders = new ArrayList<>();
+        for (List<StopTimeStore.Builder> blocco : blocchi) builders.addAll(blocco);
+        return StopTimeStore.unisci(builders, simboli);
+    }
 
-            while ((line = reader.readLine()) != null) {
-                if (primaLinea) {
-                    primaLinea = false;
+    // Parsa le righe di un blocco di stop_times.txt nelle colonne di un Builder
+    private static void leggiRigheStopTimes(GtfsCsvReader csv, List<StopTimeStore.Builder> destinazione,
+                                            StatisticheCaricamento stat, Set<String> tripAttivi) throws IOException {
+        int colTripId = csv.colonna("trip_id");
+        int colArrival = csv.colonna("arrival_time");
+        int colDeparture = csv.colonna("departure_time");
+        int colStopId = csv.colonna("stop_id");
+        int colSequence = csv.colonna("stop_sequence");
+        int colHeadsign = csv.colonna("stop_headsign");
+        int colPickup = csv.colonna("pickup_type");
+        int colDropOff = csv.colonna("drop_off_type");
+        int colDist = csv.colonna("shape_dist_traveled");
+
+        StopTimeStore.Builder builder = new StopTimeStore.Builder();
+        destinazione.add(builder);
+
+        // Le righe di una corsa sono consecutive: si riusa la stessa String del
+        // trip_id finché non cambia, invece di crearne una per riga
+        // (e la corsa si controlla contro tripAttivi una volta sola)
+        String tripId = null;
+        boolean tripTenuto = true;
+
+        while (csv.prossimaRiga()) {
+            try {
+                if (csv.isVuoto(colTripId) || csv.isVuoto(colStopId)) {
+                    stat.scarta(Motivo.CAMPO_OBBLIGATORIO_VUOTO, csv);
                     continue;
                 }
 
+                if (tripId == null || !csv.campoUguale(colTripId, tripId)) {
+                    tripId = csv.getString(colTripId);
+                    tripTenuto = tripAttivi == null || tripAttivi.contains(tripId);
+                }
+                if (!tripTenuto) {
+                    continue;
+                }
+
+                int sequenza = csv.getInt(colSequence, 0);
+                int pickup = parsePickupDropoffType(csv, colPickup);
+                int dropOff = parsePickupDropoffType(csv, colDropOff);
+                double distanza = csv.getDouble(colDist, 0.0);
+
+                builder.aggiungi(
+                        tripId,
+                        csv.getTempoSecondi(colArrival),
+                        csv.getTempoSecondi(colDeparture),
+                        csv.getString(colStopId),
+                        sequenza,
+                        csv.getString(colHeadsign),
+                        pickup,
+                        dropOff,
+                        distanza
+                );
+
+            } catch (Exception e) {
+                // Ignora righe errate (ma le conta)
+                stat.scarta(motivo(e), csv);
+            }
+        }
+        // i byte sono già contati sul file intero: qui solo righe e tempo di lettura
+        stat.aggiungiRighe(csv.getRigheLette(), builder.size());
+        stat.aggiungiTempoLettura(csv.getNanosLettura());
+    }
+
+
+    // LETTURA GTFS STATICI - TRIPS
+
+    public static List<Trip> leggiTripsDaFile() {
+        return leggiTripsDaFile(sorgente, Simboli.Tabelle.PREDEFINITE, null, null);
+    }
+
+    public static List<Trip> leggiTripsDaFile(Set<String> serviziAttivi) {
+        return leggiTripsDaFile(sorgente, Simboli.Tabelle.PREDEFINITE, serviziAttivi, null);
+    }
+
+    // Solo le corse dei servizi in serviziAttivi (null = tutte)
+    public static List<Trip> leggiTripsDaFile(GtfsFeedSource sorgente, Simboli.Tabelle simboli,
+                                              Set<String> serviziAttivi, MetricheCaricamento metriche) {
+        List<Trip> trips = new ArrayList<>();
+        StatisticheCaricamento stat = new StatisticheCaricamento("trips.txt");
+        int fuoriFinestra = 0;
+
+        try (GtfsCsvReader csv = new GtfsCsvReader(apriFileGTFS(sorgente, "trips.txt"))) {
+
+            int colRouteId = csv.colonna("route_id");
+            int colServiceId = csv.colonna("service_id");
+            int colTripId = csv.colonna("trip_id");
+            int colHeadsign = csv.colonna("trip_headsign");
+            int colShortName = csv.colonna("trip_short_name");
+            int colDirection = csv.colonna("direction_id");
+            int colBlockId = csv.colonna("block_id");
+            int colShapeId = csv.colonna("shape_id");
+            int colWheelchair = csv.colonna("wheelchair_accessible");
+            int colBikes = csv.colonna("bikes_allowed");
+
+            while (csv.prossimaRiga()) {
                 try {
-                    String[] campi = line.split(",");
-
-                    String routeId = campi[0].trim();
-                    String serviceId = campi[1].trim();
-                    String tripId = campi[2].trim();
-                    String tripHeadsign = campi.length > 3 ? campi[3].trim() : "";
-                    String tripShortName = campi.length > 4 ? campi[4].trim() : "";
-                    int directionId = campi.length > 5 ? Integer.parseInt(campi[5].trim()) : 0;
-                    String blockId = campi.length > 6 ? campi[6].trim() : "";
-                    String shapeId = campi.length > 7 ? campi[7].trim() : "";
-                    int wheelchairAccessible = campi.length > 8 ? Integer.parseInt(campi[8].trim()) : 0;
-                    int bikesAllowed = campi.length > 9 ? Integer.parseInt(campi[9].trim()) : 0;
-
-                    Trip trip = new Trip(
-                            routeId,
-                            serviceId,
-                            tripId,
-                            tripHeadsign,
-                            tripShortName,
-                            directionId,
-                            blockId,
-                            shapeId,
-                            wheelchairAccessible,
-                            bikesAllowed
+                    if (csv.isVuoto(colTripId)) {
+                        stat.scarta(Motivo.CAMPO_OBBLIGATORIO_VUOTO, csv);
+                        continue;
+                    }
+                    if (serviziAttivi != null && !serviziAttivi.contains(csv.getString(colServiceId))) {
+                        fuoriFinestra++;
+                        continue;
+                    }
+
+                    Trip trip = new Trip(simboli,
+                            csv.getString(colRouteId),
+                            csv.getString(colServiceId),
+                            csv.getString(colTripId),
+                            csv.getString(colHeadsign),
+                            csv.getString(colShortName),
+                            csv.getInt(colDirection, 0),
+                            csv.getString(colBlockId),
+                            csv.getString(colShapeId),
+                            csv.getInt(colWheelchair, 0),
+                            csv.getInt(colBikes, 0)
                     );
 
                     trips.add(trip);
 
                 } catch (Exception e) {
-                    // Ignora righe errate
+                    // Ignora righe errate (ma le conta)
+                    stat.scarta(motivo(e), csv);
                 }
             }
+            stat.aggiungiLettore(csv, trips.size());
 
-            System.out.println("Caricate " + trips.size() + " corse da static_gtfs/trips.txt");
+            System.out.println("Caricate " + trips.size() + " corse da static_gtfs/trips.txt"
+                    + (serviziAttivi != null ? " (" + fuoriFinestra + " fuori finestra)" : "") + scartate(stat));
 
         } catch (Exception e) {
             System.err.println("Errore nella lettura di static_gtfs/trips.txt: " + e.getMessage());
+            stat.fallito(e);
+        } finally {
+            registra(stat, metriche);
         }
 
         return trips;
     }
 
     public static void popolaStopTimePerTrip(List<Trip> trips, List<StopTime> stopTimes) {
-        Map<String, Trip> tripMap = new HashMap<>();
-        for (Trip t : trips) {
-            tripMap.put(t.getTripId(), t);
+        // Orari nell'archivio colonnare: ogni corsa riceve la vista del proprio intervallo
+        if (stopTimes instanceof StopTimeStore.Vista vista && vista.isCompleta()) {
+            StopTimeStore store = vista.getStore();
+            for (Trip t : trips) {
+                t.collegaStopTimes(store.perTrip(t.getTripId()));
+            }
+            return;
         }
 
+        MappaPerCodice<Trip> tripMap = MappaPerCodice.di(trips, Trip::getCodiceTrip);
+
         for (StopTime st : stopTimes) {
-            Trip trip = tripMap.get(st.getTripId());
+            Trip trip = tripMap.get(st.getCodiceTrip());
             if (trip != null) {
                 trip.aggiungiStopTime(st);
             }
@@ -420,14 +589,15 @@ public class Database {
 
     // METODI DI RICERCA
 
+    // Scansioni lineari sulle liste: l'interfaccia usa IndiceRicerca (GtfsIndex.getRicerca),
+    // queste restano per chi ha solo le liste, per esempio prima che gli indici siano pronti
+
     public static List<Fermate> ricercaFermatePerNome(List<Fermate> fermate, String nomeParziale) {
         List<Fermate> risultati = new ArrayList<>();
-        String ricerca = nomeParziale.toLowerCase();
+        String ricerca = nomeParziale.toLowerCase(Locale.ROOT);
 
         for (Fermate f : fermate) {
-            if (f.getStopName().toLowerCase().contains(ricerca)) {
-                System.out.println("Fermata trovata: " + f.getStopName() + " (type: " + f.getLocationType() + ")");
-
+            if (f.getStopName().toLowerCase(Locale.ROOT).contains(ricerca)) {
                 risultati.add(f);
             }
         }
@@ -438,11 +608,11 @@ public class Database {
 
     public static List<Route> ricercaRottePerNome(List<Route> rotte, String nomeParziale) {
         List<Route> risultati = new ArrayList<>();
-        String ricerca = nomeParziale.toLowerCase();
+        String ricerca = nomeParziale.toLowerCase(Locale.ROOT);
 
         for (Route r : rotte) {
-            if (r.getRouteShortName().toLowerCase().contains(ricerca) ||
-                    r.getRouteLongName().toLowerCase().contains(ricerca)) {
+            if (r.getRouteShortName().toLowerCase(Locale.ROOT).contains(ricerca) ||
+                    r.getRouteLongName().toLowerCase(Locale.ROOT).contains(ricerca)) {
                 risultati.add(r);
             }
         }
@@ -455,15 +625,15 @@ public class Database {
         List<Route> risultati = new ArrayList<>();
         if (nomeParziale == null || nomeParziale.isBlank()) return risultati;
 
-        String ricerca = nomeParziale.toLowerCase();
+        String ricerca = nomeParziale.toLowerCase(Locale.ROOT);
 
         for (Route r : rotte) {
             int type = r.getRouteType();
             // Metro = 1, Tram = 0
             if (type == 0 || type == 1) {
-                String shortName = r.getRouteShortName() != null ? r.getRouteShortName().toLowerCase() : "";
-                String longName = r.getRouteLongName() != null ? r.getRouteLongName().toLowerCase() : "";
-                String id = r.getRouteId() != null ? r.getRouteId().toLowerCase() : "";
+                String shortName = r.getRouteShortName() != null ? r.getRouteShortName().toLowerCase(Locale.ROOT) : "";
+                String longName = r.getRouteLongName() != null ? r.getRouteLongName().toLowerCase(Locale.ROOT) : "";
+                String id = r.getRouteId() != null ? r.getRouteId().toLowerCase(Locale.ROOT) : "";
 
                 if (shortName.contains(ricerca) || longName.contains(ricerca) || id.contains(ricerca)) {
                     risultati.add(r);
@@ -478,27 +648,75 @@ public class Database {
     //  METODI HELPER
 
 
+     // Statistiche di un loader: tra le ultime per file e, se c'è, nella raccolta del caricamento
+
+    private static void registra(StatisticheCaricamento stat, MetricheCaricamento metriche) {
+        stat.termina();
+        MetricheCaricamento.registra(stat);
+        if (metriche != null) {
+            metriche.aggiungi(stat);
+        }
+    }
+
+     // Motivo di scarto per l'eccezione lanciata durante il parsing di una riga
+
+    private static Motivo motivo(Exception e) {
+        return e instanceof NumberFormatException ? Motivo.NUMERO_NON_VALIDO : Motivo.ERRORE_DI_PARSING;
+    }
+
+     // Suffisso per i messaggi di log, vuoto se non è stata scartata nessuna riga
+
+    private static String scartate(StatisticheCaricamento stat) {
+        long scartate = stat.getRigheScartate();
+        return scartate == 0 ? "" : " (" + scartate + " righe scartate)";
+    }
+
      //Parsa il route type in modo robusto
 
-    private static int parseRouteType(String value) {
+    private static int parseRouteType(GtfsCsvReader csv, int colonna) {
         try {
-            return Integer.parseInt(value.trim());
-        } catch (Exception e) {
+            return csv.getInt(colonna, 3);
+        } catch (NumberFormatException e) {
             return 3; // Default: Bus
         }
     }
 
+    // Come StopTime.parsePickupDropoffType, ma leggendo direttamente dal buffer
+    private static int parsePickupDropoffType(GtfsCsvReader csv, int colonna) {
+        try {
+            return csv.getInt(colonna, 0);
+        } catch (NumberFormatException e) {
+            return 0; // Default a regolare
+        }
+    }
 
 
-     // Apre un file GTFS dalla cartella resources/static_gtfs e restituisce un BufferedReader.
-     //Usa un try-catch leggero e gestisce il percorso in modo portabile.
 
-    private static BufferedReader apriFileGTFS(String nomeFile) throws IOException {
-        InputStream inputStream = Database.class.getResourceAsStream("/static_gtfs/" + nomeFile);
-        if (inputStream == null) {
-            throw new FileNotFoundException("File static_gtfs/" + nomeFile + " non trovato!");
-        }
-        return new BufferedReader(new InputStreamReader(inputStream, java.nio.charset.StandardCharsets.UTF_8));
+     // Apre un file GTFS della sorgente e restituisce un Reader.
+     // Il buffering lo fa GtfsCsvReader, quindi non serve un BufferedReader.
+
+    private static Reader apriFileGTFS(GtfsFeedSource sorgente, String nomeFile) throws IOException {
+        return sorgente.apri(nomeFile);
+    }
+
+     // Legge un file GTFS come blocco di byte (mappato in memoria quando il file è su disco)
+
+    static ByteBuffer leggiByteFileGTFS(GtfsFeedSource sorgente, String nomeFile) throws IOException {
+        return sorgente.leggiByte(nomeFile);
+    }
+
+     // Come leggiByteFileGTFS, registrando byte e tempo di lettura; daTenere se il buffer
+     // resta in uso dopo il caricamento (vedi GtfsFeedSource.leggiByteDaTenere).
+     // Con un file mappato il tempo misurato è quello della mappatura: le pagine
+     // arrivano dal disco durante il parsing e finiscono nel tempo di parsing
+
+    private static ByteBuffer leggiByte(GtfsFeedSource sorgente, String nomeFile, boolean daTenere,
+                                        StatisticheCaricamento stat) throws IOException {
+        long inizio = System.nanoTime();
+        ByteBuffer dati = daTenere ? sorgente.leggiByteDaTenere(nomeFile) : leggiByteFileGTFS(sorgente, nomeFile);
+        stat.aggiungiTempoLettura(System.nanoTime() - inizio);
+        stat.aggiungiByte(dati.limit());
+        return dati;
     }
 
 }
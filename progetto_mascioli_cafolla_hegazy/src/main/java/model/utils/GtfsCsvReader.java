@@ -0,0 +1,400 @@
+package model.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+// Tokenizer CSV (RFC 4180) in streaming per i file GTFS statici.
+// Legge il Reader a blocchi in un buffer di char e per ogni riga memorizza solo
+// gli offset di inizio/fine dei campi: nessuno split, nessuna regex, nessuna
+// String intermedia. Le colonne si risolvono per nome tramite l'header,
+// quindi l'ordine delle colonne nel feed non conta più.
+
+public class GtfsCsvReader implements Closeable {
+
+    private static final int DIMENSIONE_BUFFER = 64 * 1024;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int posizione;
+    private int limite;
+    private boolean fineFile;
+
+    // Riga corrente: i caratteri dei campi (già senza virgolette) e i loro offset
+    private char[] riga = new char[256];
+    private int lunghezzaRiga;
+    private int[] inizioCampo = new int[16];
+    private int[] fineCampo = new int[16];
+    private int numeroCampi;
+
+    private final Map<String, Integer> colonne = new HashMap<>();
+    private long righeLette;
+
+    // Per le statistiche di caricamento: byte (UTF-8) letti e tempo passato nel reader
+    private long byteLetti;
+    private long nanosLettura;
+
+    // Apre il reader e legge subito la riga di intestazione
+    public GtfsCsvReader(Reader reader) throws IOException {
+        this.reader = reader;
+        this.buffer = new char[DIMENSIONE_BUFFER];
+        leggiIntestazione();
+    }
+
+    // Reader per un pezzo di file senza intestazione, con le colonne già note
+    // (usato dal parsing a blocchi di ChunkedCsvParser)
+    public GtfsCsvReader(Reader reader, Map<String, Integer> colonne) {
+        this.reader = reader;
+        this.buffer = new char[DIMENSIONE_BUFFER];
+        this.colonne.putAll(colonne);
+    }
+
+    private void leggiIntestazione() throws IOException {
+        if (!leggiRiga()) {
+            return;
+        }
+        for (int i = 0; i < numeroCampi; i++) {
+            int inizio = inizioCampo[i];
+            // Alcuni feed iniziano con il BOM UTF-8
+            if (i == 0 && inizio < fineCampo[i] && riga[inizio] == '\uFEFF') {
+                inizio++;
+            }
+            colonne.put(new String(riga, inizio, fineCampo[i] - inizio).trim(), i);
+        }
+    }
+
+    // ==================== COLONNE ====================
+
+    // Ritorna l'indice della colonna con quel nome, -1 se il file non la contiene
+    public int colonna(String nome) {
+        Integer indice = colonne.get(nome);
+        return indice != null ? indice : -1;
+    }
+
+    public boolean haColonna(String nome) {
+        return colonne.containsKey(nome);
+    }
+
+    public Map<String, Integer> getColonne() {
+        return Collections.unmodifiableMap(colonne);
+    }
+
+    // ==================== LETTURA RIGHE ====================
+
+    // Avanza alla prossima riga di dati (le righe vuote vengono saltate)
+    public boolean prossimaRiga() throws IOException {
+        while (leggiRiga()) {
+            if (numeroCampi > 1 || fineCampo[0] > inizioCampo[0]) {
+                righeLette++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getNumeroCampi() {
+        return numeroCampi;
+    }
+
+    public long getRigheLette() {
+        return righeLette;
+    }
+
+    public long getByteLetti() {
+        return byteLetti;
+    }
+
+    // Tempo passato ad aspettare il reader (I/O e decodifica), il resto è parsing
+    public long getNanosLettura() {
+        return nanosLettura;
+    }
+
+    // La riga corrente ricostruita dai campi (senza virgolette), per i messaggi
+    public String getRigaCorrente() {
+        StringBuilder sb = new StringBuilder(lunghezzaRiga + numeroCampi);
+        for (int i = 0; i < numeroCampi; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(riga, inizioCampo[i], fineCampo[i] - inizioCampo[i]);
+        }
+        return sb.toString();
+    }
+
+    // Legge un record completo (anche su più linee se un campo è tra virgolette)
+    private boolean leggiRiga() throws IOException {
+        lunghezzaRiga = 0;
+        numeroCampi = 0;
+
+        if (!riempiSeNecessario()) {
+            return false;
+        }
+
+        boolean traVirgolette = false;
+        boolean campoQuotato = false;
+        int inizio = 0;
+
+        while (true) {
+            if (posizione >= limite && !riempiSeNecessario()) {
+                chiudiCampo(inizio, campoQuotato);
+                return true;
+            }
+
+            char c = buffer[posizione++];
+
+            if (traVirgolette) {
+                if (c == '"') {
+                    // "" dentro un campo quotato è una virgoletta letterale
+                    if (posizione >= limite && !riempiSeNecessario()) {
+                        traVirgolette = false;
+                        continue;
+                    }
+                    if (buffer[posizione] == '"') {
+                        aggiungiCarattere('"');
+                        posizione++;
+                    } else {
+                        traVirgolette = false;
+                    }
+                } else {
+                    aggiungiCarattere(c);
+                }
+                continue;
+            }
+
+            switch (c) {
+                case ',' -> {
+                    chiudiCampo(inizio, campoQuotato);
+                    inizio = lunghezzaRiga;
+                    campoQuotato = false;
+                }
+                case '"' -> {
+                    traVirgolette = true;
+                    campoQuotato = true;
+                }
+                case '\r' -> {
+                    // ignorato: la riga termina sul \n (o a fine file)
+                }
+                case '\n' -> {
+                    chiudiCampo(inizio, campoQuotato);
+                    return true;
+                }
+                default -> aggiungiCarattere(c);
+            }
+        }
+    }
+
+    private boolean riempiSeNecessario() throws IOException {
+        if (posizione < limite) {
+            return true;
+        }
+        if (fineFile) {
+            return false;
+        }
+        long inizio = System.nanoTime();
+        int letti = reader.read(buffer, 0, buffer.length);
+        nanosLettura += System.nanoTime() - inizio;
+        if (letti <= 0) {
+            fineFile = true;
+            return false;
+        }
+        posizione = 0;
+        limite = letti;
+        byteLetti += byteUtf8(buffer, letti);
+        return true;
+    }
+
+    // Lunghezza in UTF-8 dei caratteri letti (una coppia surrogata conta 2 + 2 = 4)
+    private static long byteUtf8(char[] caratteri, int quanti) {
+        long bytes = quanti;
+        for (int i = 0; i < quanti; i++) {
+            char c = caratteri[i];
+            if (c >= 0x80) {
+                bytes += c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+            }
+        }
+        return bytes;
+    }
+
+    private void aggiungiCarattere(char c) {
+        if (lunghezzaRiga == riga.length) {
+            char[] nuova = new char[riga.length * 2];
+            System.arraycopy(riga, 0, nuova, 0, lunghezzaRiga);
+            riga = nuova;
+        }
+        riga[lunghezzaRiga++] = c;
+    }
+
+    // Registra gli offset del campo appena letto, togliendo gli spazi esterni
+    // ai campi non quotati (i campi quotati restano letterali)
+    private void chiudiCampo(int inizio, boolean quotato) {
+        int fine = lunghezzaRiga;
+        if (!quotato) {
+            while (inizio < fine && riga[inizio] <= ' ') inizio++;
+            while (fine > inizio && riga[fine - 1] <= ' ') fine--;
+        }
+        if (numeroCampi == inizioCampo.length) {
+            int[] nuoviInizi = new int[numeroCampi * 2];
+            int[] nuoveFini = new int[numeroCampi * 2];
+            System.arraycopy(inizioCampo, 0, nuoviInizi, 0, numeroCampi);
+            System.arraycopy(fineCampo, 0, nuoveFini, 0, numeroCampi);
+            inizioCampo = nuoviInizi;
+            fineCampo = nuoveFini;
+        }
+        inizioCampo[numeroCampi] = inizio;
+        fineCampo[numeroCampi] = fine;
+        numeroCampi++;
+    }
+
+    // ==================== ACCESSO AI CAMPI ====================
+
+    // true se la colonna manca nel file o il campo della riga corrente è vuoto
+    public boolean isVuoto(int colonna) {
+        return colonna < 0 || colonna >= numeroCampi || fineCampo[colonna] == inizioCampo[colonna];
+    }
+
+    // Ritorna il valore del campo come stringa ("" se assente)
+    public String getString(int colonna) {
+        if (isVuoto(colonna)) {
+            return "";
+        }
+        return new String(riga, inizioCampo[colonna], fineCampo[colonna] - inizioCampo[colonna]);
+    }
+
+    public String getString(int colonna, String predefinito) {
+        return isVuoto(colonna) ? predefinito : getString(colonna);
+    }
+
+    // Confronta il campo con una stringa senza creare oggetti
+    public boolean campoUguale(int colonna, String valore) {
+        if (colonna < 0 || colonna >= numeroCampi) {
+            return valore.isEmpty();
+        }
+        int inizio = inizioCampo[colonna];
+        int lunghezza = fineCampo[colonna] - inizio;
+        if (lunghezza != valore.length()) {
+            return false;
+        }
+        for (int i = 0; i < lunghezza; i++) {
+            if (riga[inizio + i] != valore.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    // Parsa un intero direttamente dal buffer
+    public int getInt(int colonna, int predefinito) {
+        if (isVuoto(colonna)) {
+            return predefinito;
+        }
+        int i = inizioCampo[colonna];
+        int fine = fineCampo[colonna];
+        boolean negativo = false;
+        if (riga[i] == '-' || riga[i] == '+') {
+            negativo = riga[i] == '-';
+            i++;
+        }
+        if (i == fine) {
+            throw new NumberFormatException("Intero non valido: " + getString(colonna));
+        }
+        long valore = 0;
+        for (; i < fine; i++) {
+            int cifra = riga[i] - '0';
+            if (cifra < 0 || cifra > 9) {
+                throw new NumberFormatException("Intero non valido: " + getString(colonna));
+            }
+            valore = valore * 10 + cifra;
+            if (valore > Integer.MAX_VALUE + 1L) {
+                throw new NumberFormatException("Intero fuori range: " + getString(colonna));
+            }
+        }
+        long risultato = negativo ? -valore : valore;
+        if (risultato > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Intero fuori range: " + getString(colonna));
+        }
+        return (int) risultato;
+    }
+
+    // Parsa un decimale direttamente dal buffer.
+    // Per i valori tipici GTFS (coordinate, distanze) mantissa e potenza di 10 sono
+    // rappresentabili esattamente, quindi la divisione dà lo stesso risultato di
+    // Double.parseDouble; negli altri casi (esponenti, troppe cifre) si usa quello.
+    public double getDouble(int colonna, double predefinito) {
+        if (isVuoto(colonna)) {
+            return predefinito;
+        }
+        int i = inizioCampo[colonna];
+        int fine = fineCampo[colonna];
+        boolean negativo = false;
+        if (riga[i] == '-' || riga[i] == '+') {
+            negativo = riga[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int cifre = 0;
+        int decimali = 0;
+        boolean punto = false;
+        for (; i < fine; i++) {
+            char c = riga[i];
+            if (c == '.' && !punto) {
+                punto = true;
+            } else if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                if (punto) decimali++;
+                if (mantissa != 0) cifre++;
+            } else {
+                return Double.parseDouble(getString(colonna));
+            }
+        }
+
+        if (cifre > 15 || decimali >= POTENZE_DI_10.length) {
+            return Double.parseDouble(getString(colonna));
+        }
+        double valore = decimali == 0 ? mantissa : mantissa / POTENZE_DI_10[decimali];
+        return negativo ? -valore : valore;
+    }
+
+    private static final double[] POTENZE_DI_10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Parsa un orario GTFS (H:MM:SS o HH:MM:SS, anche con ore >= 24)
+    // e ritorna i secondi dall'inizio del giorno di servizio, -1 se non valido
+    public int getTempoSecondi(int colonna) {
+        if (isVuoto(colonna)) {
+            return -1;
+        }
+        int i = inizioCampo[colonna];
+        int fine = fineCampo[colonna];
+        int ore = 0, minuti = 0, secondi = 0;
+        int parte = 0;
+        int cifreParte = 0;
+        for (; i < fine; i++) {
+            char c = riga[i];
+            if (c == ':') {
+                if (cifreParte == 0 || ++parte > 2) return -1;
+                cifreParte = 0;
+            } else if (c >= '0' && c <= '9') {
+                int cifra = c - '0';
+                switch (parte) {
+                    case 0 -> ore = ore * 10 + cifra;
+                    case 1 -> minuti = minuti * 10 + cifra;
+                    default -> secondi = secondi * 10 + cifra;
+                }
+                cifreParte++;
+            } else {
+                return -1;
+            }
+        }
+        if (parte != 2 || cifreParte == 0 || minuti > 59 || secondi > 59) {
+            return -1;
+        }
+        return ore * 3600 + minuti * 60 + secondi;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,90 @@
+package model.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Sorgente da cui leggere i file di un feed GTFS statico.
+// Il feed può stare nelle resources (static_gtfs/, il comportamento originale),
+// in una cartella esterna o direttamente nello .zip ufficiale: in questo modo per
+// aggiornare il feed basta sostituire il file, senza ricompilare il jar.
+//
+// Per scegliere il feed all'avvio: -Dgtfs.feed=/percorso/rome_static_gtfs.zip
+// (oppure il percorso di una cartella con i file .txt).
+
+public interface GtfsFeedSource extends Closeable {
+
+    String PROPRIETA_FEED = "gtfs.feed";
+
+    // true se il feed contiene il file
+    boolean esiste(String nomeFile);
+
+    // Apre il file in streaming (UTF-8); lancia FileNotFoundException se manca
+    Reader apri(String nomeFile) throws IOException;
+
+    // Legge tutto il file come blocco di byte (mappato in memoria quando possibile)
+    ByteBuffer leggiByte(String nomeFile) throws IOException;
+
+    // Come leggiByte, per chi tiene i byte oltre il caricamento (l'indice delle forme pigre):
+    // il buffer non deve dipendere dal file, che un nuovo feed può sostituire o troncare
+    // (le pagine mappate di un file troncato fanno cadere la JVM al primo accesso)
+    ByteBuffer leggiByteDaTenere(String nomeFile) throws IOException;
+
+    // Dimensione e CRC del file se la sorgente li conosce senza leggerlo
+    // (es. dalla directory centrale dello zip), altrimenti null
+    default long[] impronta(String nomeFile) throws IOException {
+        return null;
+    }
+
+    // Descrizione per i messaggi di log
+    String descrizione();
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    // ==================== FABBRICHE ====================
+
+    static GtfsFeedSource classpath() {
+        return new ClasspathFeedSource("/static_gtfs/");
+    }
+
+    // Cartella con i file .txt del feed
+    static GtfsFeedSource cartella(Path cartella) throws IOException {
+        if (!Files.isDirectory(cartella)) {
+            throw new IOException("Cartella GTFS non trovata: " + cartella);
+        }
+        return new PercorsoFeedSource(cartella, null, cartella.toString());
+    }
+
+    // Archivio .zip letto tramite il file system zip di NIO, senza estrarlo su disco
+    static GtfsFeedSource zip(Path archivio) throws IOException {
+        return PercorsoFeedSource.apriZip(archivio);
+    }
+
+    // Cartella o zip a seconda di cosa c'è nel percorso
+    static GtfsFeedSource da(Path percorso) throws IOException {
+        return Files.isDirectory(percorso) ? cartella(percorso) : zip(percorso);
+    }
+
+    // Feed indicato dalla proprietà gtfs.feed, altrimenti quello nelle resources
+    static GtfsFeedSource predefinita() {
+        String percorso = System.getProperty(PROPRIETA_FEED);
+        if (percorso == null || percorso.isBlank()) {
+            return classpath();
+        }
+        try {
+            GtfsFeedSource sorgente = da(Paths.get(percorso));
+            System.out.println("Feed GTFS: " + sorgente.descrizione());
+            return sorgente;
+        } catch (IOException e) {
+            System.err.println("Feed GTFS " + percorso + " non leggibile (" + e.getMessage()
+                    + "), uso static_gtfs/ dalle resources");
+            return classpath();
+        }
+    }
+}
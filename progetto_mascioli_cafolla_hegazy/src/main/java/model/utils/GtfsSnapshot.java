@@ -0,0 +1,568 @@
+package model.utils;
+
+import model.gtfs.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+// Snapshot binario dei dati GTFS statici già parsati.
+// Al primo avvio (o quando il feed cambia) i dati letti dai CSV vengono "compilati"
+// in un file binario versionato; agli avvii successivi il file viene mappato in
+// memoria e decodificato direttamente, senza ripassare dal parsing del testo.
+//
+// Il file è associato a una chiave (SHA-256 di nome, dimensione e CRC32C di ogni
+// file sorgente): se la chiave non coincide lo snapshot viene ignorato e si
+// ricaricano i CSV.
+//
+// Formato (big endian):
+//   MAGIC, VERSIONE, lunghezza chiave + chiave, offset della tabella stringhe
+//   sezioni: fermate, rotte, forme, trips, stop times, eccezioni
+//   tabella stringhe (ogni stringa una sola volta, UTF-8), FINE
+// Nei record le stringhe sono indici nella tabella (-1 = null); gli orari sono
+// secondi dall'inizio del giorno di servizio (-1 = assente); i punti delle forme
+// sono i byte di GeometriaForma (coordinate quantizzate e codificate a differenze).
+
+public final class GtfsSnapshot {
+
+    static final int MAGIC = 0x52425453;   // "RBTS"
+    static final int VERSIONE = 3;
+    private static final int FINE = 0x46494E45;   // "FINE"
+
+    // File del feed che contribuiscono alla chiave dello snapshot
+    static final List<String> FILE_SORGENTE = List.of(
+            "stops.txt", "routes.txt", "shapes.txt", "trips.txt",
+            "stop_times.txt", "calendar.txt", "calendar_dates.txt");
+
+    private final List<Fermate> fermate;
+    private final List<Route> rotte;
+    private final Map<String, ShapeRoute> forme;
+    private final List<Trip> trips;
+    private final List<StopTime> stopTimes;
+    private final List<CalendarDate> eccezioni;
+
+    public GtfsSnapshot(List<Fermate> fermate, List<Route> rotte, Map<String, ShapeRoute> forme,
+                        List<Trip> trips, List<StopTime> stopTimes, List<CalendarDate> eccezioni) {
+        this.fermate = fermate;
+        this.rotte = rotte;
+        this.forme = forme;
+        this.trips = trips;
+        this.stopTimes = stopTimes;
+        this.eccezioni = eccezioni;
+    }
+
+    // Percorso di default, accanto al file degli utenti
+    public static Path percorsoPredefinito() {
+        return Paths.get(System.getProperty("user.home"), "RomaBusTracker", "gtfs.snapshot");
+    }
+
+    // ==================== CHIAVE ====================
+
+    @FunctionalInterface
+    interface LettoreFile {
+        ByteBuffer leggi(String nomeFile) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface LettoreImpronta {
+        long[] impronta(String nomeFile) throws IOException;
+    }
+
+    // Chiave del feed della sorgente corrente di Database, null se il feed non c'è
+    public static byte[] calcolaChiaveFeed() throws IOException {
+        return calcolaChiaveFeed(Database.getSorgente());
+    }
+
+    // Chiave di una sorgente qualsiasi (es. la nuova versione del feed da ricaricare)
+    public static byte[] calcolaChiaveFeed(GtfsFeedSource sorgente) throws IOException {
+        return calcolaChiave(sorgente::leggiByte, sorgente::impronta);
+    }
+
+    static byte[] calcolaChiave(LettoreFile lettore) throws IOException {
+        return calcolaChiave(lettore, nomeFile -> null);
+    }
+
+    // Se la sorgente conosce già dimensione e CRC di un file (zip) non serve leggerlo
+    static byte[] calcolaChiave(LettoreFile lettore, LettoreImpronta impronte) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 non disponibile", e);
+        }
+
+        ByteBuffer intestazione = ByteBuffer.allocate(16);
+        intestazione.putInt(MAGIC).putInt(VERSIONE).flip();
+        digest.update(intestazione);
+
+        boolean trovato = false;
+        for (String nome : FILE_SORGENTE) {
+            digest.update(nome.getBytes(StandardCharsets.UTF_8));
+
+            ByteBuffer impronta = ByteBuffer.allocate(17);
+            try {
+                long[] nota = impronte.impronta(nome);
+                if (nota != null) {
+                    impronta.put((byte) 2).putLong(nota[0]).putLong(nota[1]);
+                } else {
+                    // CRC32C usa le istruzioni hardware: molto più veloce dell'hash sull'intero file
+                    ByteBuffer dati = lettore.leggi(nome);
+                    CRC32C crc = new CRC32C();
+                    crc.update(dati.duplicate());
+                    impronta.put((byte) 1).putLong(dati.remaining()).putLong(crc.getValue());
+                }
+            } catch (FileNotFoundException e) {
+                digest.update((byte) 0);   // file assente (es. calendar_dates.txt opzionale)
+                continue;
+            }
+            trovato = true;
+            digest.update(impronta.flip());
+        }
+        return trovato ? digest.digest() : null;
+    }
+
+    // ==================== LETTURA ====================
+
+    // Carica lo snapshot se esiste ed è stato creato dallo stesso feed, altrimenti null
+    public static GtfsSnapshot carica(Path file, byte[] chiave) {
+        return carica(file, chiave, Simboli.Tabelle.PREDEFINITE);
+    }
+
+    // Gli ID letti si codificano nelle tabelle date (quelle del caricamento)
+    public static GtfsSnapshot carica(Path file, byte[] chiave, Simboli.Tabelle simboli) {
+        if (chiave == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (canale.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            ByteBuffer dati = canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size());
+            GtfsSnapshot snapshot = new Decodificatore(dati, simboli).decodifica(chiave);
+            if (snapshot != null) {
+                System.out.println("Snapshot GTFS caricato da " + file);
+            } else {
+                System.out.println("Snapshot GTFS non aggiornato, ricarico dai file CSV");
+            }
+            return snapshot;
+        } catch (IOException | RuntimeException e) {
+            // file troncato o corrotto: si ricade sui CSV
+            System.err.println("Snapshot GTFS non valido (" + file + "): " + e);
+            return null;
+        }
+    }
+
+    // Punti delle forme letti su richiesta dal file dello snapshot mappato in memoria
+    private static final class FormeSnapshot implements ShapeRoute.SorgentePunti {
+        private final ByteBuffer dati;
+        private final Map<String, Integer> blocchi;   // shape_id -> posizione dei byte compressi
+        private final CacheForme cache = new CacheForme(CacheForme.CAPACITA_PREDEFINITA);
+
+        FormeSnapshot(ByteBuffer dati, int numeroForme) {
+            this.dati = dati;
+            this.blocchi = new HashMap<>(numeroForme * 2);
+        }
+
+        @Override
+        public GeometriaForma geometria(String shapeId) {
+            return cache.ottieni(shapeId, this::decodifica);
+        }
+
+        // I byte sono già nel formato di GeometriaForma: si copiano e basta
+        private GeometriaForma decodifica(String shapeId) {
+            Integer inizio = blocchi.get(shapeId);
+            if (inizio == null) {
+                return GeometriaForma.vuota();
+            }
+            int numero = dati.getInt(inizio - 8);
+            byte[] compressi = new byte[dati.getInt(inizio - 4)];
+            dati.get(inizio, compressi);
+            return GeometriaForma.daDatiCompressi(numero, compressi);
+        }
+    }
+
+    private static final class Decodificatore {
+        private final ByteBuffer dati;
+        private final Simboli.Tabelle simboli;
+        private String[] stringhe;
+
+        Decodificatore(ByteBuffer dati, Simboli.Tabelle simboli) {
+            this.dati = dati;
+            this.simboli = simboli;
+        }
+
+        GtfsSnapshot decodifica(byte[] chiave) {
+            if (dati.remaining() < 8 || dati.getInt() != MAGIC || dati.getInt() != VERSIONE) {
+                return null;
+            }
+            int lunghezzaChiave = dati.getInt();
+            if (lunghezzaChiave != chiave.length) {
+                return null;
+            }
+            byte[] chiaveFile = new byte[lunghezzaChiave];
+            dati.get(chiaveFile);
+            if (!Arrays.equals(chiaveFile, chiave)) {
+                return null;
+            }
+
+            int offsetTabella = Math.toIntExact(dati.getLong());
+            int inizioSezioni = dati.position();
+            leggiTabella(offsetTabella);
+            dati.position(inizioSezioni);
+
+            List<Fermate> fermate = leggiFermate();
+            List<Route> rotte = leggiRotte();
+            Map<String, ShapeRoute> forme = leggiForme();
+            List<Trip> trips = leggiTrips();
+            List<StopTime> stopTimes = leggiStopTimes();
+            List<CalendarDate> eccezioni = leggiEccezioni();
+
+            if (dati.position() != offsetTabella) {
+                throw new IllegalStateException("sezioni non allineate alla tabella stringhe");
+            }
+            return new GtfsSnapshot(fermate, rotte, forme, trips, stopTimes, eccezioni);
+        }
+
+        private void leggiTabella(int offset) {
+            dati.position(offset);
+            int numero = dati.getInt();
+            if (numero < 0 || numero > dati.remaining() / 4) {
+                throw new IllegalStateException("tabella stringhe non valida");
+            }
+            stringhe = new String[numero];
+            byte[] bytes = new byte[256];
+            for (int i = 0; i < stringhe.length; i++) {
+                int lunghezza = dati.getInt();
+                if (lunghezza > bytes.length) {
+                    bytes = new byte[Math.max(lunghezza, bytes.length * 2)];
+                }
+                dati.get(bytes, 0, lunghezza);
+                stringhe[i] = new String(bytes, 0, lunghezza, StandardCharsets.UTF_8);
+            }
+            if (dati.getInt() != FINE) {
+                throw new IllegalStateException("marcatore di fine mancante");
+            }
+        }
+
+        private String stringa() {
+            int indice = dati.getInt();
+            return indice < 0 ? null : stringhe[indice];
+        }
+
+        private LocalDate data() {
+            long giorno = dati.getLong();
+            return giorno == Long.MIN_VALUE ? null : LocalDate.ofEpochDay(giorno);
+        }
+
+        private List<Fermate> leggiFermate() {
+            int n = dati.getInt();
+            List<Fermate> fermate = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String id = stringa(), nome = stringa(), descrizione = stringa();
+                double lat = dati.getDouble(), lon = dati.getDouble();
+                fermate.add(new Fermate(simboli, id, nome, descrizione, lat, lon, stringa(), stringa(), stringa()));
+            }
+            return fermate;
+        }
+
+        private List<Route> leggiRotte() {
+            int n = dati.getInt();
+            List<Route> rotte = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String id = stringa(), agenzia = stringa(), breve = stringa(), lungo = stringa(), descrizione = stringa();
+                int tipo = dati.getInt();
+                Route rotta = new Route(simboli, id, agenzia, breve, lungo, descrizione, tipo, stringa(), stringa(), stringa());
+                rotta.setShapeId(stringa());
+                rotta.setDirectionId(dati.getInt());
+                rotte.add(rotta);
+            }
+            return rotte;
+        }
+
+        // I punti non vengono decodificati: ogni forma ricorda solo dove inizia il
+        // suo blocco nel file mappato e lo legge la prima volta che serve
+        private Map<String, ShapeRoute> leggiForme() {
+            int n = dati.getInt();
+            Map<String, ShapeRoute> forme = new HashMap<>(n * 2);
+            FormeSnapshot sorgente = new FormeSnapshot(dati, n);
+            for (int i = 0; i < n; i++) {
+                String chiave = stringa();
+                String shapeId = stringa();
+                dati.getInt(); // numero di punti, riletto alla decodifica
+                int lunghezza = dati.getInt();
+                sorgente.blocchi.put(shapeId, dati.position());
+                dati.position(dati.position() + lunghezza);
+                forme.put(chiave, new ShapeRoute(shapeId, sorgente));
+            }
+            return forme;
+        }
+
+        private List<Trip> leggiTrips() {
+            int n = dati.getInt();
+            List<Trip> trips = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String rotta = stringa(), servizio = stringa(), id = stringa(), headsign = stringa(), breve = stringa();
+                int direzione = dati.getInt();
+                String blocco = stringa(), forma = stringa();
+                int sedieRotelle = dati.getInt();
+                trips.add(new Trip(simboli, rotta, servizio, id, headsign, breve, direzione, blocco, forma,
+                        sedieRotelle, dati.getInt()));
+            }
+            return trips;
+        }
+
+        // Gli orari vanno direttamente nell'archivio colonnare, senza creare StopTime
+        private List<StopTime> leggiStopTimes() {
+            int n = dati.getInt();
+            StopTimeStore.Builder builder = new StopTimeStore.Builder();
+            for (int i = 0; i < n; i++) {
+                String trip = stringa();
+                int arrivo = dati.getInt(), partenza = dati.getInt();
+                String fermata = stringa();
+                int sequenza = dati.getInt();
+                String headsign = stringa();
+                int salita = dati.getInt(), discesa = dati.getInt();
+                builder.aggiungi(trip, arrivo, partenza, fermata, sequenza, headsign,
+                        salita, discesa, dati.getDouble());
+            }
+            return StopTimeStore.unisci(List.of(builder), simboli).tutti();
+        }
+
+        private List<CalendarDate> leggiEccezioni() {
+            int n = dati.getInt();
+            List<CalendarDate> eccezioni = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                String servizio = stringa();
+                byte tipo = dati.get();
+                if (tipo == 0) {
+                    LocalDate data = data();
+                    eccezioni.add(new CalendarDate(servizio, data, dati.getInt()));
+                } else {
+                    int giorni = dati.get();
+                    LocalDate inizio = data(), fine = data();
+                    eccezioni.add(new CalendarDate(servizio,
+                            (giorni & 1) != 0, (giorni & 2) != 0, (giorni & 4) != 0, (giorni & 8) != 0,
+                            (giorni & 16) != 0, (giorni & 32) != 0, (giorni & 64) != 0, inizio, fine));
+                }
+            }
+            return eccezioni;
+        }
+    }
+
+    // ==================== SCRITTURA ====================
+
+    // Scrive lo snapshot su un file temporaneo e lo sposta sul percorso finale,
+    // così un avvio concorrente o un crash non lasciano mai un file a metà
+    public void salva(Path file, byte[] chiave) throws IOException {
+        Path cartella = file.toAbsolutePath().getParent();
+        Files.createDirectories(cartella);
+        Path temporaneo = Files.createTempFile(cartella, "gtfs", ".tmp");
+
+        try {
+            try (FileChannel canale = FileChannel.open(temporaneo, StandardOpenOption.WRITE)) {
+                Codificatore codificatore = new Codificatore(canale);
+                codificatore.codifica(this, chiave);
+            }
+            try {
+                Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaneo, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaneo);
+        }
+    }
+
+    private static final class Codificatore {
+        private final FileChannel canale;
+        private final DataOutputStream out;
+        private final Map<String, Integer> indici = new HashMap<>();
+        private final List<String> stringhe = new ArrayList<>();
+
+        Codificatore(FileChannel canale) {
+            this.canale = canale;
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canale), 1 << 16));
+        }
+
+        void codifica(GtfsSnapshot s, byte[] chiave) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSIONE);
+            out.writeInt(chiave.length);
+            out.write(chiave);
+            int posizioneOffset = out.size();
+            out.writeLong(0);   // offset della tabella stringhe, scritto alla fine
+
+            scriviFermate(s.fermate);
+            scriviRotte(s.rotte);
+            scriviForme(s.forme);
+            scriviTrips(s.trips);
+            scriviStopTimes(s.stopTimes);
+            scriviEccezioni(s.eccezioni);
+
+            long offsetTabella = out.size();
+            scriviTabella();
+            out.flush();
+
+            ByteBuffer offset = ByteBuffer.allocate(8).putLong(0, offsetTabella);
+            canale.write(offset, posizioneOffset);
+            canale.force(false);
+        }
+
+        private void stringa(String valore) throws IOException {
+            if (valore == null) {
+                out.writeInt(-1);
+                return;
+            }
+            Integer indice = indici.get(valore);
+            if (indice == null) {
+                indice = stringhe.size();
+                indici.put(valore, indice);
+                stringhe.add(valore);
+            }
+            out.writeInt(indice);
+        }
+
+        private void data(LocalDate data) throws IOException {
+            out.writeLong(data == null ? Long.MIN_VALUE : data.toEpochDay());
+        }
+
+        private void scriviTabella() throws IOException {
+            out.writeInt(stringhe.size());
+            for (String valore : stringhe) {
+                byte[] bytes = valore.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.writeInt(FINE);
+        }
+
+        private void scriviFermate(List<Fermate> fermate) throws IOException {
+            out.writeInt(fermate.size());
+            for (Fermate f : fermate) {
+                stringa(f.getStopId());
+                stringa(f.getStopName());
+                stringa(f.getStopDesc());
+                out.writeDouble(f.getStopLat());
+                out.writeDouble(f.getStopLon());
+                stringa(f.getStopUrl());
+                stringa(f.getLocationType());
+                stringa(f.getParentStation());
+            }
+        }
+
+        private void scriviRotte(List<Route> rotte) throws IOException {
+            out.writeInt(rotte.size());
+            for (Route r : rotte) {
+                stringa(r.getRouteId());
+                stringa(r.getAgencyId());
+                stringa(r.getRouteShortName());
+                stringa(r.getRouteLongName());
+                stringa(r.getRouteDesc());
+                out.writeInt(r.getRouteType());
+                stringa(r.getRouteUrl());
+                stringa(r.getRouteColor());
+                stringa(r.getRouteTextColor());
+                stringa(r.getShapeId());
+                out.writeInt(r.getDirectionId());
+            }
+        }
+
+        private void scriviForme(Map<String, ShapeRoute> forme) throws IOException {
+            out.writeInt(forme.size());
+            for (Map.Entry<String, ShapeRoute> voce : forme.entrySet()) {
+                ShapeRoute forma = voce.getValue();
+                stringa(voce.getKey());
+                stringa(forma.getShapeId());
+                GeometriaForma geometria = forma.getGeometria();
+                byte[] compressi = geometria.getDatiCompressi();
+                out.writeInt(geometria.size());
+                out.writeInt(compressi.length);
+                out.write(compressi);
+            }
+        }
+
+        private void scriviTrips(List<Trip> trips) throws IOException {
+            out.writeInt(trips.size());
+            for (Trip t : trips) {
+                stringa(t.getRouteId());
+                stringa(t.getServiceId());
+                stringa(t.getTripId());
+                stringa(t.getTripHeadsign());
+                stringa(t.getTripShortName());
+                out.writeInt(t.getDirectionId());
+                stringa(t.getBlockId());
+                stringa(t.getShapeId());
+                out.writeInt(t.getWheelchairAccessible());
+                out.writeInt(t.getBikesAllowed());
+            }
+        }
+
+        private void scriviStopTimes(List<StopTime> stopTimes) throws IOException {
+            out.writeInt(stopTimes.size());
+            if (stopTimes instanceof StopTimeStore.Vista vista && !vista.isModificata()) {
+                // dall'archivio colonnare: orari in secondi originali (anche oltre le 24)
+                StopTimeStore.Cursore c = vista.cursore();
+                while (c.avanza()) {
+                    stringa(c.getTripId());
+                    out.writeInt(c.getArrivoSecondi());
+                    out.writeInt(c.getPartenzaSecondi());
+                    stringa(c.getStopId());
+                    out.writeInt(c.getStopSequence());
+                    stringa(c.getStopHeadsign());
+                    out.writeInt(c.getPickupType());
+                    out.writeInt(c.getDropOffType());
+                    out.writeDouble(c.getShapeDistTraveled());
+                }
+                return;
+            }
+            for (StopTime st : stopTimes) {
+                stringa(st.getTripId());
+                out.writeInt(st.getArrivoSecondi());
+                out.writeInt(st.getPartenzaSecondi());
+                stringa(st.getStopId());
+                out.writeInt(st.getStopSequence());
+                stringa(st.getStopHeadsign());
+                out.writeInt(st.getPickupType());
+                out.writeInt(st.getDropOffType());
+                out.writeDouble(st.getShapeDistTraveled());
+            }
+        }
+
+        private void scriviEccezioni(List<CalendarDate> eccezioni) throws IOException {
+            out.writeInt(eccezioni.size());
+            for (CalendarDate c : eccezioni) {
+                stringa(c.getServiceId());
+                if (c.getDate() != null) {
+                    out.writeByte(0);
+                    data(c.getDate());
+                    out.writeInt(c.getExceptionType());
+                } else {
+                    // calendario ricorrente: giorni della settimana come bit
+                    int giorni = (c.isMonday() ? 1 : 0) | (c.isTuesday() ? 2 : 0) | (c.isWednesday() ? 4 : 0)
+                            | (c.isThursday() ? 8 : 0) | (c.isFriday() ? 16 : 0)
+                            | (c.isSaturday() ? 32 : 0) | (c.isSunday() ? 64 : 0);
+                    out.writeByte(1);
+                    out.writeByte(giorni);
+                    data(c.getStartDate());
+                    data(c.getEndDate());
+                }
+            }
+        }
+    }
+
+    // GETTER
+    public List<Fermate> getFermate() { return fermate; }
+    public List<Route> getRotte() { return rotte; }
+    public Map<String, ShapeRoute> getForme() { return forme; }
+    public List<Trip> getTrips() { return trips; }
+    public List<StopTime> getStopTimes() { return stopTimes; }
+    public List<CalendarDate> getEccezioni() { return eccezioni; }
+}
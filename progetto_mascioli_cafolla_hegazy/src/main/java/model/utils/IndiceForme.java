@@ -0,0 +1,222 @@
+package model.utils;
+
+import model.gtfs.GeometriaForma;
+import model.gtfs.ShapeRoute;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Indice di shapes.txt per il caricamento pigro delle forme.
+// All'avvio il file (letto come blocco di byte che l'indice tiene per sé) viene solo
+// scorso per trovare, per ogni shape_id, gli intervalli di byte delle sue righe:
+// nessun punto viene parsato e nessun GeoPoint viene creato.
+// I punti di una forma si decodificano la prima volta che servono (di solito
+// quando RouteDrawer la disegna) direttamente in una GeometriaForma compressa,
+// che resta in una cache LRU limitata.
+//
+// Come per ChunkedCsvParser si assume che nessun campo quotato contenga a capo.
+
+public final class IndiceForme implements ShapeRoute.SorgentePunti {
+
+    private final ByteBuffer file;
+    private final Map<String, Integer> colonne;
+    // shape_id -> [inizio0, fine0, inizio1, fine1, ...] (di solito un solo intervallo)
+    private final Map<String, int[]> intervalli;
+    private final CacheForme cache;
+    private final int numeroRighe;
+
+    private IndiceForme(ByteBuffer file, Map<String, Integer> colonne, Map<String, int[]> intervalli,
+                        int numeroRighe, int capacitaCache) {
+        this.file = file;
+        this.colonne = colonne;
+        this.intervalli = intervalli;
+        this.numeroRighe = numeroRighe;
+        this.cache = new CacheForme(capacitaCache);
+    }
+
+    public static IndiceForme costruisci(ByteBuffer dati) throws IOException {
+        return costruisci(dati, CacheForme.CAPACITA_PREDEFINITA);
+    }
+
+    // Variante con capacità della cache esplicita (serve per i test)
+    static IndiceForme costruisci(ByteBuffer dati, int capacitaCache) throws IOException {
+        ByteBuffer file = dati.duplicate();
+        file.position(0);
+        int fine = file.limit();
+
+        int inizioDati = fineRiga(file, 0);
+        Map<String, Integer> colonne;
+        try (GtfsCsvReader intestazione = new GtfsCsvReader(ChunkedCsvParser.lettore(file, 0, inizioDati))) {
+            colonne = intestazione.getColonne();
+        }
+
+        Map<String, int[]> intervalli = new LinkedHashMap<>();
+        int colonnaId = colonne.getOrDefault("shape_id", -1);
+        int righe = 0;
+        if (colonnaId >= 0) {
+            righe = indicizza(file, inizioDati, fine, colonnaId, intervalli);
+        }
+        return new IndiceForme(file, colonne, intervalli, righe, capacitaCache);
+    }
+
+    // Scorre le righe confrontando i byte dello shape_id con quelli della riga
+    // precedente: una String viene creata solo quando l'id cambia.
+    // Ritorna il numero di righe con uno shape_id
+    private static int indicizza(ByteBuffer file, int inizio, int fine, int colonnaId, Map<String, int[]> intervalli) {
+        int inizioBlocco = -1;
+        int idInizio = -1, idFine = -1;
+        int[] campo = new int[2];
+        int righe = 0;
+
+        for (int riga = inizio; riga < fine; ) {
+            int prossima = fineRiga(file, riga);
+            if (trovaCampo(file, riga, prossima, colonnaId, campo) && campo[1] > campo[0]) {
+                righe++;
+                if (inizioBlocco < 0 || !stessiByte(file, campo[0], campo[1], idInizio, idFine)) {
+                    if (inizioBlocco >= 0) {
+                        aggiungiIntervallo(intervalli, stringa(file, idInizio, idFine), inizioBlocco, riga);
+                    }
+                    inizioBlocco = riga;
+                    idInizio = campo[0];
+                    idFine = campo[1];
+                }
+            }
+            riga = prossima;
+        }
+        if (inizioBlocco >= 0) {
+            aggiungiIntervallo(intervalli, stringa(file, idInizio, idFine), inizioBlocco, fine);
+        }
+        return righe;
+    }
+
+    // Posizione subito dopo il '\n' che chiude la riga (o la fine del file)
+    private static int fineRiga(ByteBuffer file, int da) {
+        int fine = file.limit();
+        for (int i = da; i < fine; i++) {
+            if (file.get(i) == '\n') return i + 1;
+        }
+        return fine;
+    }
+
+    // Trova inizio/fine del campo numero "colonna" nella riga [inizio, fine),
+    // senza spazi esterni né virgolette; false se la riga ha meno campi
+    private static boolean trovaCampo(ByteBuffer file, int inizio, int fine, int colonna, int[] campo) {
+        int numero = 0;
+        int inizioCampo = inizio;
+        boolean traVirgolette = false;
+        for (int i = inizio; i <= fine; i++) {
+            byte b = i < fine ? file.get(i) : (byte) '\n';
+            if (b == '"') {
+                traVirgolette = !traVirgolette;
+            } else if (!traVirgolette && (b == ',' || b == '\n' || b == '\r')) {
+                if (numero == colonna) {
+                    int a = inizioCampo, z = i;
+                    while (a < z && (file.get(a) == ' ' || file.get(a) == '"')) a++;
+                    while (z > a && (file.get(z - 1) == ' ' || file.get(z - 1) == '"')) z--;
+                    campo[0] = a;
+                    campo[1] = z;
+                    return true;
+                }
+                if (b != ',') return false;
+                numero++;
+                inizioCampo = i + 1;
+            }
+        }
+        return false;
+    }
+
+    private static boolean stessiByte(ByteBuffer file, int a, int aFine, int b, int bFine) {
+        if (aFine - a != bFine - b) return false;
+        for (int i = 0; i < aFine - a; i++) {
+            if (file.get(a + i) != file.get(b + i)) return false;
+        }
+        return true;
+    }
+
+    private static String stringa(ByteBuffer file, int inizio, int fine) {
+        byte[] bytes = new byte[fine - inizio];
+        file.get(inizio, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void aggiungiIntervallo(Map<String, int[]> intervalli, String id, int inizio, int fine) {
+        int[] esistenti = intervalli.get(id);
+        if (esistenti == null) {
+            intervalli.put(id, new int[]{inizio, fine});
+        } else {
+            // righe della stessa forma non consecutive nel file
+            int[] nuovi = Arrays.copyOf(esistenti, esistenti.length + 2);
+            nuovi[esistenti.length] = inizio;
+            nuovi[esistenti.length + 1] = fine;
+            intervalli.put(id, nuovi);
+        }
+    }
+
+    // ==================== ACCESSO ====================
+
+    // Una ShapeRoute pigra per ogni shape_id del file
+    public Map<String, ShapeRoute> forme() {
+        Map<String, ShapeRoute> forme = new HashMap<>(intervalli.size() * 2);
+        for (String id : intervalli.keySet()) {
+            forme.put(id, new ShapeRoute(id, this));
+        }
+        return forme;
+    }
+
+    public int getNumeroForme() {
+        return intervalli.size();
+    }
+
+    // Righe del file con uno shape_id (i punti non sono ancora stati parsati)
+    public int getNumeroRighe() {
+        return numeroRighe;
+    }
+
+    int getFormeInCache() { // serve per i test
+        return cache.dimensione();
+    }
+
+    @Override
+    public GeometriaForma geometria(String shapeId) {
+        return cache.ottieni(shapeId, this::decodifica);
+    }
+
+    // Stessa logica del caricamento completo di Database.leggiShapeDaFile,
+    // limitata agli intervalli della forma richiesta
+    private GeometriaForma decodifica(String shapeId) {
+        int[] blocchi = intervalli.get(shapeId);
+        if (blocchi == null) {
+            return GeometriaForma.vuota();
+        }
+        GeometriaForma.Costruttore punti = new GeometriaForma.Costruttore();
+        for (int b = 0; b < blocchi.length; b += 2) {
+            try (GtfsCsvReader csv = new GtfsCsvReader(
+                    ChunkedCsvParser.lettore(file, blocchi[b], blocchi[b + 1]), colonne)) {
+                int colShapeId = csv.colonna("shape_id");
+                int colLat = csv.colonna("shape_pt_lat");
+                int colLon = csv.colonna("shape_pt_lon");
+                int colSequence = csv.colonna("shape_pt_sequence");
+                int colDist = csv.colonna("shape_dist_traveled");
+
+                while (csv.prossimaRiga()) {
+                    try {
+                        if (!csv.campoUguale(colShapeId, shapeId)) continue;
+
+                        double lat = csv.getDouble(colLat, Double.NaN);
+                        double lon = csv.getDouble(colLon, Double.NaN);
+                        if (Double.isNaN(lat) || Double.isNaN(lon)) continue;
+                        punti.aggiungi(lat, lon, csv.getInt(colSequence, 0), csv.getDouble(colDist, 0.0));
+                    } catch (NumberFormatException e) {
+                        // Ignora righe errate
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return punti.ordinaPerSequenza().costruisci();
+    }
+}
@@ -0,0 +1,566 @@
+package model.utils;
+
+import model.gtfs.Fermate;
+import model.gtfs.Route;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+// Indice per la ricerca di fermate e linee per nome, costruito una volta per versione del GTFS.
+// I nomi si normalizzano una volta sola (minuscole, senza accenti, abbreviazioni sciolte:
+// "P.ZA" -> "piazza", "S." -> "san") e finiscono in due strutture ordinate:
+//   parole distinte in ordine alfabetico: ricerca per prefisso con due ricerche binarie
+//   trigrammi -> nomi e trigrammi -> parole (CSR): sottostringhe ed errori di battitura
+// Un tasto premuto costa qualche ricerca binaria più la verifica dei soli candidati.
+// I risultati vanno in ordine di qualità della corrispondenza, poi di importanza
+// (passaggi alla fermata, corse della linea), poi di nome più corto.
+
+public final class IndiceRicerca {
+
+    // Livelli di corrispondenza, dal migliore
+    private static final int ID = 6;             // stop_id, route_id o numero di linea identici
+    private static final int ESATTO = 5;
+    private static final int INIZIO = 4;         // il nome inizia con il testo
+    private static final int PAROLE = 3;         // ogni parola cercata inizia una parola del nome
+    private static final int SOTTOSTRINGA = 2;
+    private static final int SIMILE = 1;         // una parola a distanza di modifica 1 (2 se lunga)
+
+    private static final int IMPORTANZA_MASSIMA = 999;
+    // parole più corte si cercano solo per prefisso esatto
+    private static final int LUNGHEZZA_MINIMA_SIMILE = 4;
+    private static final int LUNGHEZZA_DUE_ERRORI = 8;
+
+    private static final Pattern SEGNI_DIACRITICI = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORI = Pattern.compile("[^a-z0-9.]+");
+
+    // Abbreviazioni dei nomi ATAC (già minuscole e senza accenti). "S." sta per San, Santa,
+    // Santo o Santi: tutte le forme diventano "san", così "santa maria" trova "S. Maria Maggiore"
+    // ("sant" per "Sant'Agnese" e per chi sta ancora scrivendo "santa")
+    private static final Map<String, String> ABBREVIAZIONI = Map.ofEntries(
+            Map.entry("s.", "san"),
+            Map.entry("ss.", "san"),
+            Map.entry("sant", "san"),
+            Map.entry("santa", "san"),
+            Map.entry("santo", "san"),
+            Map.entry("santi", "san"),
+            Map.entry("p.za", "piazza"),
+            Map.entry("p.zza", "piazza"),
+            Map.entry("pza", "piazza"),
+            Map.entry("p.le", "piazzale"),
+            Map.entry("ple", "piazzale"),
+            Map.entry("p.ta", "porta"),
+            Map.entry("p.te", "ponte"),
+            Map.entry("v.", "via"),
+            Map.entry("v.le", "viale"),
+            Map.entry("vle", "viale"),
+            Map.entry("l.go", "largo"),
+            Map.entry("lgo", "largo"),
+            Map.entry("c.so", "corso"),
+            Map.entry("cso", "corso"),
+            Map.entry("m.te", "monte"),
+            Map.entry("staz.", "stazione"),
+            Map.entry("staz", "stazione"),
+            Map.entry("f.s.", "fs")
+    );
+
+    // Fermata o linea trovata; punteggio = livello * 1000 + importanza
+    public record Risultato(Fermate fermata, Route rotta, int punteggio) {
+        public boolean isFermata() {
+            return fermata != null;
+        }
+    }
+
+    // Documenti: prima le fermate (0 .. numeroFermate - 1), poi le linee
+    private final Fermate[] fermate;
+    private final Route[] rotte;
+    private final String[] nomi;          // normalizzati
+    private final String[] brevi;         // numero di linea normalizzato, null per le fermate
+    private final int[] importanza;       // 0 .. IMPORTANZA_MASSIMA
+    private final Map<String, Integer> fermataPerId;
+    private final Map<String, Integer> rottaPerId;
+
+    // Parole distinte dei nomi in ordine alfabetico; documenti della parola p:
+    // docParola[inizioParola[p] .. inizioParola[p + 1])
+    private final String[] parole;
+    private final int[] inizioParola;
+    private final int[] docParola;
+
+    // Trigrammi dei nomi -> documenti (sottostringhe), delle parole -> parole (errori di battitura)
+    private final Trigrammi trigrammiNomi;
+    private final Trigrammi trigrammiParole;
+
+    private IndiceRicerca(List<Fermate> listaFermate, List<Route> listaRotte,
+                          ToIntFunction<Fermate> pesoFermata, ToIntFunction<Route> pesoRotta) {
+        this.fermate = listaFermate.toArray(new Fermate[0]);
+        this.rotte = listaRotte.toArray(new Route[0]);
+        int n = fermate.length + rotte.length;
+        this.nomi = new String[n];
+        this.brevi = new String[n];
+        this.importanza = new int[n];
+        this.fermataPerId = new HashMap<>(fermate.length * 2);
+        this.rottaPerId = new HashMap<>(rotte.length * 2);
+
+        for (int i = 0; i < fermate.length; i++) {
+            Fermate f = fermate[i];
+            nomi[i] = normalizza(f.getStopName());
+            importanza[i] = scala(pesoFermata.applyAsInt(f));
+            if (f.getStopId() != null) fermataPerId.putIfAbsent(f.getStopId(), i);
+        }
+        for (int j = 0; j < rotte.length; j++) {
+            int d = fermate.length + j;
+            Route r = rotte[j];
+            nomi[d] = normalizza(r.getRouteLongName());
+            brevi[d] = normalizza(r.getRouteShortName());
+            importanza[d] = scala(pesoRotta.applyAsInt(r));
+            if (r.getRouteId() != null) rottaPerId.putIfAbsent(r.getRouteId(), d);
+        }
+
+        // Parole distinte in ordine alfabetico, ciascuna con i suoi documenti (già in ordine)
+        TreeMap<String, List<Integer>> perParola = new TreeMap<>();
+        for (int d = 0; d < n; d++) {
+            Set<String> distinte = new HashSet<>();
+            aggiungiParole(nomi[d], distinte);
+            aggiungiParole(brevi[d], distinte);
+            for (String p : distinte) perParola.computeIfAbsent(p, x -> new ArrayList<>()).add(d);
+        }
+        this.parole = perParola.keySet().toArray(new String[0]);
+        this.inizioParola = new int[parole.length + 1];
+        int voci = 0;
+        for (List<Integer> docs : perParola.values()) voci += docs.size();
+        this.docParola = new int[voci];
+        int i = 0, v = 0;
+        for (List<Integer> docs : perParola.values()) {
+            inizioParola[i++] = v;
+            for (int d : docs) docParola[v++] = d;
+        }
+        inizioParola[i] = v;
+
+        Trigrammi.Costruttore nomiPerTrigramma = new Trigrammi.Costruttore();
+        for (int d = 0; d < n; d++) {
+            nomiPerTrigramma.aggiungi(nomi[d], d);
+            nomiPerTrigramma.aggiungi(brevi[d], d);
+        }
+        this.trigrammiNomi = nomiPerTrigramma.costruisci();
+        Trigrammi.Costruttore parolePerTrigramma = new Trigrammi.Costruttore();
+        for (int p = 0; p < parole.length; p++) {
+            parolePerTrigramma.aggiungi(parole[p], p);
+        }
+        this.trigrammiParole = parolePerTrigramma.costruisci();
+    }
+
+    // I pesi (passaggi, corse...) passano su scala logaritmica: contano gli ordini di grandezza
+    public static IndiceRicerca di(List<Fermate> fermate, List<Route> rotte,
+                                   ToIntFunction<Fermate> pesoFermata, ToIntFunction<Route> pesoRotta) {
+        return new IndiceRicerca(fermate, rotte, pesoFermata, pesoRotta);
+    }
+
+    public static IndiceRicerca di(List<Fermate> fermate, List<Route> rotte) {
+        return di(fermate, rotte, f -> 0, r -> 0);
+    }
+
+    // ==================== NORMALIZZAZIONE ====================
+
+    // Minuscole, senza accenti, solo lettere e cifre separate da uno spazio, abbreviazioni sciolte
+    public static String normalizza(String testo) {
+        if (testo == null || testo.isBlank()) {
+            return "";
+        }
+        String base = Normalizer.normalize(testo.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        base = SEGNI_DIACRITICI.matcher(base).replaceAll("");
+        StringBuilder sb = new StringBuilder(base.length() + 8);
+        for (String token : SEPARATORI.split(base)) {
+            String esteso = ABBREVIAZIONI.get(token);
+            if (esteso != null) {
+                aggiungi(sb, esteso);
+            } else if (token.indexOf('.') < 0) {
+                aggiungi(sb, token);
+            } else {
+                // abbreviazioni attaccate: "s.pietro" -> "san pietro"
+                int da = 0;
+                while (da < token.length()) {
+                    int punto = token.indexOf('.', da);
+                    String parte = punto < 0 ? token.substring(da) : token.substring(da, punto + 1);
+                    da = punto < 0 ? token.length() : punto + 1;
+                    esteso = ABBREVIAZIONI.get(parte);
+                    aggiungi(sb, esteso != null ? esteso : parte.replace(".", ""));
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void aggiungi(StringBuilder sb, String parola) {
+        if (parola.isEmpty()) return;
+        if (sb.length() > 0) sb.append(' ');
+        sb.append(parola);
+    }
+
+    // ==================== RICERCA ====================
+
+    // Al massimo k fermate e linee, dalla corrispondenza migliore
+    public List<Risultato> cerca(String testo, int k) {
+        return cerca(testo, k, true, true);
+    }
+
+    public List<Fermate> cercaFermate(String testo, int k) {
+        List<Fermate> risultato = new ArrayList<>();
+        for (Risultato r : cerca(testo, k, true, false)) risultato.add(r.fermata());
+        return risultato;
+    }
+
+    public List<Route> cercaRotte(String testo, int k) {
+        List<Route> risultato = new ArrayList<>();
+        for (Risultato r : cerca(testo, k, false, true)) risultato.add(r.rotta());
+        return risultato;
+    }
+
+    // Ricerca per identificativo esatto (stop_id / route_id), null se non c'è
+    public Fermate fermataPerId(String stopId) {
+        Integer d = stopId != null ? fermataPerId.get(stopId.trim()) : null;
+        return d != null ? fermate[d] : null;
+    }
+
+    public Route rottaPerId(String routeId) {
+        Integer d = routeId != null ? rottaPerId.get(routeId.trim()) : null;
+        return d != null ? rotte[d - fermate.length] : null;
+    }
+
+    private List<Risultato> cerca(String testo, int k, boolean conFermate, boolean conRotte) {
+        if (testo == null || k <= 0) {
+            return List.of();
+        }
+        String q = normalizza(testo);
+        if (q.isEmpty()) {
+            return List.of();
+        }
+        String[] cercate = q.split(" ");
+        Candidati candidati = new Candidati(nomi.length, fermate.length, conFermate, conRotte);
+
+        // 1. identificativi
+        Integer id = conFermate ? fermataPerId.get(testo.trim()) : null;
+        if (id != null) candidati.aggiungi(id, ID);
+        id = conRotte ? rottaPerId.get(testo.trim()) : null;
+        if (id != null) candidati.aggiungi(id, ID);
+
+        // 2. prefissi: i documenti della parola cercata più rara, le altre si verificano
+        int da = 0, a = docParola.length;
+        for (String p : cercate) {
+            int pDa = inizioParola[primaNonMinore(p)];
+            int pA = inizioParola[primaNonMinore(p + Character.MAX_VALUE)];
+            if (pA - pDa < a - da) {
+                da = pDa;
+                a = pA;
+            }
+        }
+        for (int i = da; i < a; i++) {
+            candidati.valuta(docParola[i], q, cercate, false);
+        }
+
+        // 3. sottostringhe: documenti con tutti i trigrammi del testo
+        if (q.length() >= 3) {
+            for (int d : conTuttiITrigrammi(q)) {
+                candidati.valuta(d, q, cercate, false);
+            }
+        }
+
+        // 4. errori di battitura, solo se i risultati non bastano
+        if (candidati.size() < k) {
+            String lunga = "";
+            for (String p : cercate) if (p.length() > lunga.length()) lunga = p;
+            if (lunga.length() >= LUNGHEZZA_MINIMA_SIMILE) {
+                for (int p : paroleSimili(lunga)) {
+                    for (int i = inizioParola[p]; i < inizioParola[p + 1]; i++) {
+                        candidati.valuta(docParola[i], q, cercate, true);
+                    }
+                }
+            }
+        }
+
+        return candidati.migliori(k);
+    }
+
+    // Candidati senza doppioni, con il punteggio già calcolato
+    private final class Candidati {
+        private final BitSet visti;
+        private final int numeroFermate;
+        private final boolean conFermate, conRotte;
+        private long[] chiavi = new long[32];
+        private int n;
+        // parola del nome -> simile alla parola cercata? (le stesse parole tornano in molti nomi)
+        private Map<String, Boolean>[] simili;
+
+        Candidati(int documenti, int numeroFermate, boolean conFermate, boolean conRotte) {
+            this.visti = new BitSet(documenti);
+            this.numeroFermate = numeroFermate;
+            this.conFermate = conFermate;
+            this.conRotte = conRotte;
+        }
+
+        int size() {
+            return n;
+        }
+
+        void valuta(int d, String q, String[] cercate, boolean ancheSimili) {
+            if (visti.get(d) || !ammesso(d)) return;
+            if (ancheSimili && simili == null) {
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                Map<String, Boolean>[] perParola = new Map[cercate.length];
+                for (int i = 0; i < perParola.length; i++) perParola[i] = new HashMap<>();
+                simili = perParola;
+            }
+            int livello = livello(d, q, cercate, ancheSimili ? simili : null);
+            if (livello > 0) aggiungi(d, livello);
+        }
+
+        void aggiungi(int d, int livello) {
+            if (visti.get(d) || !ammesso(d)) return;
+            visti.set(d);
+            if (n == chiavi.length) chiavi = Arrays.copyOf(chiavi, n * 2);
+            // ordinando le chiavi in modo decrescente: punteggio, poi nome più corto, poi documento
+            long punteggio = livello * 1000L + importanza[d];
+            long corto = 1023 - Math.min(1023, nomi[d].length());
+            chiavi[n++] = punteggio << 42 | corto << 32 | (Integer.MAX_VALUE - d);
+        }
+
+        private boolean ammesso(int d) {
+            return d < numeroFermate ? conFermate : conRotte;
+        }
+
+        List<Risultato> migliori(int k) {
+            Arrays.sort(chiavi, 0, n);
+            List<Risultato> risultato = new ArrayList<>(Math.min(k, n));
+            for (int i = n - 1; i >= 0 && risultato.size() < k; i--) {
+                int d = Integer.MAX_VALUE - (int) (chiavi[i] & 0xFFFFFFFFL);
+                int punteggio = (int) (chiavi[i] >>> 42);
+                risultato.add(d < numeroFermate
+                        ? new Risultato(fermate[d], null, punteggio)
+                        : new Risultato(null, rotte[d - numeroFermate], punteggio));
+            }
+            return risultato;
+        }
+    }
+
+    // Livello di corrispondenza del documento (0 = nessuna)
+    // Con "simili" (memo per parola cercata) valgono anche le parole con errori di battitura
+    private int livello(int d, String q, String[] cercate, Map<String, Boolean>[] simili) {
+        String nome = nomi[d];
+        String breve = brevi[d];
+        if (breve != null && breve.equals(q)) return ID;
+        if (nome.equals(q)) return ESATTO;
+        if (nome.startsWith(q) || (breve != null && breve.startsWith(q))) return INIZIO;
+        if (tutteIniziano(nome, breve, cercate)) return PAROLE;
+        if (nome.contains(q)) return SOTTOSTRINGA;
+        if (simili != null && tutteSimili(nome, cercate, simili)) return SIMILE;
+        return 0;
+    }
+
+    private static boolean tutteIniziano(String nome, String breve, String[] cercate) {
+        for (String p : cercate) {
+            if (!iniziaParola(nome, p) && (breve == null || !iniziaParola(breve, p))) return false;
+        }
+        return true;
+    }
+
+    // "p" è l'inizio di una delle parole del testo?
+    private static boolean iniziaParola(String testo, String p) {
+        for (int i = testo.indexOf(p); i >= 0; i = testo.indexOf(p, i + 1)) {
+            if (i == 0 || testo.charAt(i - 1) == ' ') return true;
+        }
+        return false;
+    }
+
+    private static boolean tutteSimili(String nome, String[] cercate, Map<String, Boolean>[] simili) {
+        String[] delNome = null;
+        for (int c = 0; c < cercate.length; c++) {
+            String p = cercate[c];
+            if (iniziaParola(nome, p)) continue;
+            if (p.length() < LUNGHEZZA_MINIMA_SIMILE) return false;
+            if (delNome == null) delNome = nome.split(" ");
+            int soglia = p.length() >= LUNGHEZZA_DUE_ERRORI ? 2 : 1;
+            boolean trovata = false;
+            for (String w : delNome) {
+                if (simili[c].computeIfAbsent(w, x -> distanzaDaPrefisso(p, x, soglia) <= soglia)) {
+                    trovata = true;
+                    break;
+                }
+            }
+            if (!trovata) return false;
+        }
+        return true;
+    }
+
+    // Distanza di modifica (con scambio di lettere adiacenti) tra p e il prefisso di w
+    // che le somiglia di più: chi digita "temrin" sta cercando "termini".
+    // Oltre la soglia ritorna soglia + 1 senza finire il calcolo
+    static int distanzaDaPrefisso(String p, String w, int soglia) {
+        int m = p.length(), n = w.length();
+        if (n < m - soglia) return soglia + 1;
+        int[] prima = new int[n + 1];
+        int[] sopra = new int[n + 1];
+        int[] riga = new int[n + 1];
+        for (int j = 0; j <= n; j++) sopra[j] = j;
+        for (int i = 1; i <= m; i++) {
+            riga[0] = i;
+            int minimo = i;
+            for (int j = 1; j <= n; j++) {
+                int costo = p.charAt(i - 1) == w.charAt(j - 1) ? 0 : 1;
+                int v = Math.min(Math.min(riga[j - 1] + 1, sopra[j] + 1), sopra[j - 1] + costo);
+                if (i > 1 && j > 1 && p.charAt(i - 1) == w.charAt(j - 2) && p.charAt(i - 2) == w.charAt(j - 1)) {
+                    v = Math.min(v, prima[j - 2] + 1);
+                }
+                riga[j] = v;
+                minimo = Math.min(minimo, v);
+            }
+            if (minimo > soglia) return soglia + 1;
+            int[] t = prima;
+            prima = sopra;
+            sopra = riga;
+            riga = t;
+        }
+        int migliore = soglia + 1;
+        for (int j = Math.max(0, m - soglia); j <= n; j++) migliore = Math.min(migliore, sopra[j]);
+        return migliore;
+    }
+
+    // ==================== STRUTTURE ====================
+
+    private static void aggiungiParole(String testo, Set<String> parole) {
+        if (testo == null || testo.isEmpty()) return;
+        Collections.addAll(parole, testo.split(" "));
+    }
+
+    private static int scala(int peso) {
+        return (int) Math.min(IMPORTANZA_MASSIMA, Math.round(Math.log1p(Math.max(0, peso)) * 100));
+    }
+
+    private static int trigramma(String testo, int i) {
+        return testo.charAt(i) << 16 | testo.charAt(i + 1) << 8 | testo.charAt(i + 2);
+    }
+
+    // Prima parola >= valore (ricerca binaria sulle parole ordinate)
+    private int primaNonMinore(String valore) {
+        int basso = 0, alto = parole.length;
+        while (basso < alto) {
+            int medio = (basso + alto) >>> 1;
+            if (parole[medio].compareTo(valore) < 0) {
+                basso = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return basso;
+    }
+
+    // Documenti con tutti i trigrammi del testo: si parte dalla lista più corta e la si filtra
+    private int[] conTuttiITrigrammi(String q) {
+        Trigrammi t = trigrammiNomi;
+        int numero = q.length() - 2;
+        int[] posizioni = new int[numero];
+        for (int k = 0; k < numero; k++) {
+            posizioni[k] = t.posizione(trigramma(q, k));
+            if (posizioni[k] < 0) return new int[0];
+        }
+        int piuCorta = posizioni[0];
+        for (int p : posizioni) {
+            if (t.lunghezza(p) < t.lunghezza(piuCorta)) piuCorta = p;
+        }
+        int[] risultato = Arrays.copyOfRange(t.valori, t.inizio[piuCorta], t.inizio[piuCorta + 1]);
+        int n = risultato.length;
+        for (int p : posizioni) {
+            if (p == piuCorta) continue;
+            int m = 0;
+            for (int i = 0; i < n; i++) {
+                if (Arrays.binarySearch(t.valori, t.inizio[p], t.inizio[p + 1], risultato[i]) >= 0) {
+                    risultato[m++] = risultato[i];
+                }
+            }
+            n = m;
+        }
+        return Arrays.copyOf(risultato, n);
+    }
+
+    // Parole distinte abbastanza vicine a quella cercata. Prima il filtro sui trigrammi in
+    // comune (ogni errore ne rovina al più 3, uno scambio di lettere adiacenti al più 4),
+    // poi la distanza di modifica solo sulle parole rimaste
+    private int[] paroleSimili(String parola) {
+        int soglia = parola.length() >= LUNGHEZZA_DUE_ERRORI ? 2 : 1;
+        int numero = parola.length() - 2;
+        int minimo = Math.max(1, numero - 4 * soglia);
+        int[] conteggi = new int[parole.length];
+        int[] trovate = new int[16];
+        int n = 0;
+        for (int k = 0; k < numero; k++) {
+            int t = trigramma(parola, k);
+            if (parola.indexOf(parola.substring(k, k + 3)) < k) continue;   // trigramma già contato
+            int p = trigrammiParole.posizione(t);
+            if (p < 0) continue;
+            for (int i = trigrammiParole.inizio[p]; i < trigrammiParole.inizio[p + 1]; i++) {
+                int w = trigrammiParole.valori[i];
+                if (++conteggi[w] == minimo && distanzaDaPrefisso(parola, parole[w], soglia) <= soglia) {
+                    if (n == trovate.length) trovate = Arrays.copyOf(trovate, n * 2);
+                    trovate[n++] = w;
+                }
+            }
+        }
+        return Arrays.copyOf(trovate, n);
+    }
+
+    // Trigramma -> valori (documenti o parole) in formato CSR: valori[inizio[i] .. inizio[i + 1])
+    // sono quelli che contengono chiavi[i], in ordine crescente e senza doppioni
+    private static final class Trigrammi {
+        final int[] chiavi;
+        final int[] inizio;
+        final int[] valori;
+
+        private Trigrammi(int[] chiavi, int[] inizio, int[] valori) {
+            this.chiavi = chiavi;
+            this.inizio = inizio;
+            this.valori = valori;
+        }
+
+        // Posizione del trigramma in chiavi, negativa se nessun testo lo contiene
+        int posizione(int trigramma) {
+            return Arrays.binarySearch(chiavi, trigramma);
+        }
+
+        int lunghezza(int posizione) {
+            return inizio[posizione + 1] - inizio[posizione];
+        }
+
+        // Coppie (trigramma, valore) in un long[], poi ordinate e compattate
+        static final class Costruttore {
+            private long[] coppie = new long[64];
+            private int c;
+
+            void aggiungi(String testo, int valore) {
+                if (testo == null) return;
+                for (int k = 0; k + 3 <= testo.length(); k++) {
+                    if (c == coppie.length) coppie = Arrays.copyOf(coppie, c * 2);
+                    coppie[c++] = (long) trigramma(testo, k) << 32 | valore;
+                }
+            }
+
+            Trigrammi costruisci() {
+                Arrays.sort(coppie, 0, c);
+                int[] chiavi = new int[c];
+                int[] inizi = new int[c + 1];
+                int[] valori = new int[c];
+                int numeroChiavi = 0, numeroValori = 0;
+                for (int i = 0; i < c; i++) {
+                    if (i > 0 && coppie[i] == coppie[i - 1]) continue;
+                    int chiave = (int) (coppie[i] >>> 32);
+                    if (numeroChiavi == 0 || chiavi[numeroChiavi - 1] != chiave) {
+                        chiavi[numeroChiavi] = chiave;
+                        inizi[numeroChiavi++] = numeroValori;
+                    }
+                    valori[numeroValori++] = (int) coppie[i];
+                }
+                inizi[numeroChiavi] = numeroValori;
+                return new Trigrammi(Arrays.copyOf(chiavi, numeroChiavi),
+                        Arrays.copyOf(inizi, numeroChiavi + 1), Arrays.copyOf(valori, numeroValori));
+            }
+        }
+    }
+}
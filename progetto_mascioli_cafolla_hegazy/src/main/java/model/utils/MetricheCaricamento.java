@@ -0,0 +1,84 @@
+package model.utils;
+
+import java.util.*;
+
+// Statistiche di caricamento dei file GTFS, una per file in ordine di fine.
+// Un'istanza raccoglie quelle di un solo caricamento: GtfsService ne crea una per
+// ogni dataset che costruisce (avvio, ricaricamento, rinnovo della finestra) e la
+// tiene con il dataset, così un caricamento in background non tocca le statistiche
+// di quello attivo.
+// I metodi statici tengono le ultime statistiche di ogni file, da qualunque caricamento:
+// Database registra sempre anche qui (per chi legge i file senza passare da GtfsService).
+
+public final class MetricheCaricamento {
+
+    private static final MetricheCaricamento ultime = new MetricheCaricamento();
+
+    private final Map<String, StatisticheCaricamento> perFile = new LinkedHashMap<>();
+
+    public MetricheCaricamento() {
+    }
+
+    // ==================== CARICAMENTO SINGOLO ====================
+
+    // Sostituisce le statistiche precedenti dello stesso file
+    public synchronized void aggiungi(StatisticheCaricamento statistiche) {
+        perFile.remove(statistiche.getNomeFile());
+        perFile.put(statistiche.getNomeFile(), statistiche);
+    }
+
+    public synchronized StatisticheCaricamento statistiche(String nomeFile) {
+        return perFile.get(nomeFile);
+    }
+
+    public synchronized List<StatisticheCaricamento> elenco() {
+        return new ArrayList<>(perFile.values());
+    }
+
+    public long righeScartate() {
+        long totale = 0;
+        for (StatisticheCaricamento s : elenco()) totale += s.getRigheScartate();
+        return totale;
+    }
+
+    // Tabella per il log di avvio
+    public String tabella() {
+        List<StatisticheCaricamento> statistiche = elenco();
+        if (statistiche.isEmpty()) {
+            return "Nessuna statistica di caricamento GTFS";
+        }
+        StringBuilder sb = new StringBuilder("Statistiche di caricamento GTFS:");
+        for (StatisticheCaricamento s : statistiche) {
+            sb.append('\n').append(s.riepilogo());
+        }
+        return sb.toString();
+    }
+
+    // ==================== ULTIME PER FILE ====================
+
+    public static void registra(StatisticheCaricamento statistiche) {
+        ultime.aggiungi(statistiche);
+    }
+
+    public static StatisticheCaricamento get(String nomeFile) {
+        return ultime.statistiche(nomeFile);
+    }
+
+    public static List<StatisticheCaricamento> tutte() {
+        return ultime.elenco();
+    }
+
+    public static void azzera() {
+        synchronized (ultime) {
+            ultime.perFile.clear();
+        }
+    }
+
+    public static long getRigheScartateTotali() {
+        return ultime.righeScartate();
+    }
+
+    public static String riepilogo() {
+        return ultime.tabella();
+    }
+}
@@ -0,0 +1,135 @@
+package model.utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.*;
+import java.util.stream.Stream;
+
+// Feed GTFS in una cartella del file system, o nella radice di uno zip aperto
+// come FileSystem NIO. Nel caso dello zip ogni file viene decompresso mentre
+// lo si legge: niente estrazione su disco e niente copia intermedia.
+// I file della cartella si mappano in memoria solo per la durata del caricamento:
+// ciò che resta in uso dopo (shapes.txt) ne legge una copia, vedi leggiByteDaTenere.
+
+final class PercorsoFeedSource implements GtfsFeedSource {
+
+    private final Path radice;
+    private final FileSystem zip;   // null per le cartelle
+    private final String descrizione;
+
+    PercorsoFeedSource(Path radice, FileSystem zip, String descrizione) {
+        this.radice = radice;
+        this.zip = zip;
+        this.descrizione = descrizione;
+    }
+
+    static PercorsoFeedSource apriZip(Path archivio) throws IOException {
+        if (!Files.isRegularFile(archivio)) {
+            throw new IOException("Archivio GTFS non trovato: " + archivio);
+        }
+        FileSystem zip = FileSystems.newFileSystem(archivio);
+        try {
+            return new PercorsoFeedSource(trovaRadice(zip.getPath("/")), zip, archivio.toString());
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    // Alcuni zip hanno i file dentro una sottocartella: si cerca quella con stops.txt
+    private static Path trovaRadice(Path radice) throws IOException {
+        if (Files.exists(radice.resolve("stops.txt"))) {
+            return radice;
+        }
+        try (Stream<Path> figli = Files.list(radice)) {
+            return figli.filter(p -> Files.isDirectory(p) && Files.exists(p.resolve("stops.txt")))
+                    .findFirst()
+                    .orElse(radice);
+        }
+    }
+
+    private Path file(String nomeFile) throws FileNotFoundException {
+        Path file = radice.resolve(nomeFile);
+        if (!Files.isRegularFile(file)) {
+            throw new FileNotFoundException("File " + descrizione + "/" + nomeFile + " non trovato!");
+        }
+        return file;
+    }
+
+    @Override
+    public boolean esiste(String nomeFile) {
+        return Files.isRegularFile(radice.resolve(nomeFile));
+    }
+
+    @Override
+    public Reader apri(String nomeFile) throws IOException {
+        return new CanaleReader(Files.newByteChannel(file(nomeFile), StandardOpenOption.READ));
+    }
+
+    @Override
+    public ByteBuffer leggiByte(String nomeFile) throws IOException {
+        Path file = file(nomeFile);
+
+        if (zip == null) {
+            // file su disco: mappato in memoria
+            try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (canale.size() <= Integer.MAX_VALUE) {
+                    return canale.map(FileChannel.MapMode.READ_ONLY, 0, canale.size());
+                }
+            }
+            throw new IOException("File troppo grande: " + file);
+        }
+        return copia(file);
+    }
+
+    // Una voce dello zip è già decompressa in un buffer proprio; un file della cartella
+    // invece non si mappa: la cartella è quella che il feed nuovo sovrascrive
+    @Override
+    public ByteBuffer leggiByteDaTenere(String nomeFile) throws IOException {
+        return zip != null ? leggiByte(nomeFile) : copia(file(nomeFile));
+    }
+
+    // Tutto il file in un buffer fuori dallo heap; per una voce dello zip la dimensione
+    // non compressa è nota e si decomprime una volta sola direttamente nel buffer
+    private static ByteBuffer copia(Path file) throws IOException {
+        long dimensione = Files.size(file);
+        if (dimensione > Integer.MAX_VALUE) {
+            throw new IOException("File troppo grande: " + file);
+        }
+        ByteBuffer dati = ByteBuffer.allocateDirect((int) dimensione);
+        try (SeekableByteChannel canale = Files.newByteChannel(file, StandardOpenOption.READ)) {
+            while (dati.hasRemaining() && canale.read(dati) >= 0) {
+                // continua a leggere
+            }
+        }
+        return dati.flip();
+    }
+
+    // Nello zip dimensione e CRC32 di ogni voce sono nella directory centrale:
+    // la chiave dello snapshot si calcola senza decomprimere nulla
+    @Override
+    public long[] impronta(String nomeFile) throws IOException {
+        if (zip == null) {
+            return null;
+        }
+        Path file = file(nomeFile);
+        Object crc = Files.getAttribute(file, "zip:crc");
+        return new long[]{Files.size(file), ((Number) crc).longValue()};
+    }
+
+    @Override
+    public String descrizione() {
+        return descrizione;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zip != null) {
+            zip.close();
+        }
+    }
+}
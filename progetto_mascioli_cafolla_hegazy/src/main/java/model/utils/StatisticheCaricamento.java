@@ -0,0 +1,176 @@
+package model.utils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Statistiche del caricamento di un file GTFS: byte letti, righe lette/accettate,
+// tempo di lettura (I/O e decodifica) contro tempo di parsing e righe scartate per
+// motivo, con la prima riga scartata come esempio, e se il file non è stato letto affatto.
+// I loader che parsano a blocchi in parallelo aggiornano la stessa istanza da più
+// thread: i contatori sono atomici e gli scarti (rari) passano da un lock.
+
+public final class StatisticheCaricamento {
+
+    // Perché una riga è stata scartata
+    public enum Motivo {
+        CAMPO_OBBLIGATORIO_VUOTO("campo obbligatorio vuoto"),
+        NUMERO_NON_VALIDO("numero non valido"),
+        DATA_NON_VALIDA("data non valida"),
+        ERRORE_DI_PARSING("errore di parsing");
+
+        private final String descrizione;
+
+        Motivo(String descrizione) {
+            this.descrizione = descrizione;
+        }
+
+        public String getDescrizione() {
+            return descrizione;
+        }
+    }
+
+    // Scarti di un motivo: quanti e la prima riga vista
+    public static final class Scarti {
+        private long conteggio;
+        private String esempio;
+
+        public long getConteggio() { return conteggio; }
+        public String getEsempio() { return esempio; }
+    }
+
+    // Lunghezza massima dell'esempio riportato nei log
+    private static final int LUNGHEZZA_ESEMPIO = 160;
+
+    private final String nomeFile;
+    private final long inizio = System.nanoTime();
+
+    private final AtomicLong byteLetti = new AtomicLong();
+    private final AtomicLong righeLette = new AtomicLong();
+    private final AtomicLong righeAccettate = new AtomicLong();
+    private final AtomicLong nanosLettura = new AtomicLong();
+    private volatile long nanosTotali = -1;
+    private volatile String errore;   // null se il file è stato letto fino in fondo
+
+    private final Map<Motivo, Scarti> scarti = new EnumMap<>(Motivo.class);
+
+    public StatisticheCaricamento(String nomeFile) {
+        this.nomeFile = nomeFile;
+    }
+
+    // ==================== REGISTRAZIONE ====================
+
+    public void aggiungiByte(long bytes) {
+        byteLetti.addAndGet(bytes);
+    }
+
+    public void aggiungiRighe(long lette, long accettate) {
+        righeLette.addAndGet(lette);
+        righeAccettate.addAndGet(accettate);
+    }
+
+    public void aggiungiTempoLettura(long nanos) {
+        nanosLettura.addAndGet(nanos);
+    }
+
+    // Dati di un GtfsCsvReader a fine lettura (byte, righe, tempo passato a leggere)
+    public void aggiungiLettore(GtfsCsvReader csv, long accettate) {
+        aggiungiByte(csv.getByteLetti());
+        aggiungiRighe(csv.getRigheLette(), accettate);
+        aggiungiTempoLettura(csv.getNanosLettura());
+    }
+
+    // Registra una riga scartata; l'esempio viene costruito solo per la prima del motivo
+    public void scarta(Motivo motivo, GtfsCsvReader csv) {
+        synchronized (scarti) {
+            Scarti s = scarti.computeIfAbsent(motivo, m -> new Scarti());
+            if (s.conteggio++ == 0 && csv != null) {
+                String riga = csv.getRigaCorrente();
+                s.esempio = riga.length() > LUNGHEZZA_ESEMPIO ? riga.substring(0, LUNGHEZZA_ESEMPIO) + "..." : riga;
+            }
+        }
+    }
+
+    // Il file non si è potuto leggere (mancante, illeggibile...): i dati del loader sono vuoti o parziali
+    public void fallito(Exception e) {
+        errore = e.getMessage() != null ? e.getMessage() : e.toString();
+    }
+
+    // Chiude la misura del tempo totale
+    public StatisticheCaricamento termina() {
+        nanosTotali = System.nanoTime() - inizio;
+        return this;
+    }
+
+    // ==================== LETTURA ====================
+
+    public String getNomeFile() { return nomeFile; }
+    public long getByteLetti() { return byteLetti.get(); }
+    public long getRigheLette() { return righeLette.get(); }
+    public long getRigheAccettate() { return righeAccettate.get(); }
+    public boolean isFallito() { return errore != null; }
+    public String getErrore() { return errore; }
+
+    public long getRigheScartate() {
+        synchronized (scarti) {
+            long totale = 0;
+            for (Scarti s : scarti.values()) totale += s.conteggio;
+            return totale;
+        }
+    }
+
+    public Map<Motivo, Scarti> getScarti() {
+        synchronized (scarti) {
+            Map<Motivo, Scarti> copia = new EnumMap<>(Motivo.class);
+            for (Map.Entry<Motivo, Scarti> e : scarti.entrySet()) {
+                Scarti s = new Scarti();
+                s.conteggio = e.getValue().conteggio;
+                s.esempio = e.getValue().esempio;
+                copia.put(e.getKey(), s);
+            }
+            return copia;
+        }
+    }
+
+    public long getMsTotali() {
+        long totale = nanosTotali;
+        return (totale >= 0 ? totale : System.nanoTime() - inizio) / 1_000_000;
+    }
+
+    public long getMsLettura() {
+        return Math.min(nanosLettura.get() / 1_000_000, getMsTotali());
+    }
+
+    // Tutto ciò che non è lettura: parsing, creazione degli oggetti, indici
+    public long getMsParsing() {
+        return getMsTotali() - getMsLettura();
+    }
+
+    public long getRighePerSecondo() {
+        long ms = getMsTotali();
+        return ms > 0 ? getRigheLette() * 1000 / ms : getRigheLette();
+    }
+
+    // Una riga di riepilogo (più una per motivo di scarto e una se il file non è stato letto)
+    public String riepilogo() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("   %-20s %8.1f KB %9d righe (%d scartate) %6d ms [lettura %d, parsing %d] %,d righe/s",
+                nomeFile, getByteLetti() / 1024.0, getRigheLette(), getRigheScartate(),
+                getMsTotali(), getMsLettura(), getMsParsing(), getRighePerSecondo()));
+        for (Map.Entry<Motivo, Scarti> e : getScarti().entrySet()) {
+            sb.append("\n      scartate ").append(e.getValue().getConteggio())
+                    .append(" per ").append(e.getKey().getDescrizione());
+            if (e.getValue().getEsempio() != null) {
+                sb.append(", es. \"").append(e.getValue().getEsempio()).append('"');
+            }
+        }
+        if (errore != null) {
+            sb.append("\n      lettura fallita: ").append(errore);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return riepilogo().trim();
+    }
+}
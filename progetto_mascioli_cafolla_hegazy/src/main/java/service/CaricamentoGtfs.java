@@ -0,0 +1,94 @@
+package service;
+
+import model.gtfs.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Un caricamento del GTFS in corso, fase per fase.
+// Ogni file (e ogni indice che ne dipende) ha il proprio future: l'interfaccia può
+// abilitare una funzione appena i dati che le servono sono pronti (la ricerca fermate
+// dopo stops.txt, il disegno delle linee dopo il dataset completo...) invece di
+// aspettare l'intero feed. Gli ascoltatori dell'avanzamento vengono chiamati sul
+// thread che completa la fase, non sull'EDT.
+
+public final class CaricamentoGtfs {
+
+    // Avanzamento: fase appena conclusa, fasi concluse, fasi totali
+    @FunctionalInterface
+    public interface AscoltatoreAvanzamento {
+        void faseCompletata(String fase, int completate, int totali);
+    }
+
+    private final CompletableFuture<List<Fermate>> fermate;
+    private final CompletableFuture<List<Route>> rotte;
+    private final CompletableFuture<Map<String, ShapeRoute>> forme;
+    private final CompletableFuture<List<Trip>> trips;
+    private final CompletableFuture<List<StopTime>> stopTimes;
+    private final CompletableFuture<List<CalendarDate>> eccezioni;
+    private final CompletableFuture<GtfsDataset> dataset;
+
+    private final int fasiTotali;
+    private final AtomicInteger fasiCompletate = new AtomicInteger();
+    private final List<AscoltatoreAvanzamento> ascoltatori = new CopyOnWriteArrayList<>();
+
+    CaricamentoGtfs(CompletableFuture<List<Fermate>> fermate,
+                    CompletableFuture<List<Route>> rotte,
+                    CompletableFuture<Map<String, ShapeRoute>> forme,
+                    CompletableFuture<List<Trip>> trips,
+                    CompletableFuture<List<StopTime>> stopTimes,
+                    CompletableFuture<List<CalendarDate>> eccezioni,
+                    CompletableFuture<GtfsDataset> dataset) {
+        this.fermate = fermate;
+        this.rotte = rotte;
+        this.forme = forme;
+        this.trips = trips;
+        this.stopTimes = stopTimes;
+        this.eccezioni = eccezioni;
+        this.dataset = dataset;
+
+        this.fasiTotali = 7;
+        conta("fermate", fermate);
+        conta("linee", rotte);
+        conta("forme", forme);
+        conta("corse", trips);
+        conta("orari", stopTimes);
+        conta("calendario", eccezioni);
+        conta("indici", dataset);
+    }
+
+    private void conta(String fase, CompletableFuture<?> future) {
+        future.whenComplete((risultato, errore) -> {
+            int completate = fasiCompletate.incrementAndGet();
+            for (AscoltatoreAvanzamento a : ascoltatori) {
+                try {
+                    a.faseCompletata(fase, completate, fasiTotali);
+                } catch (RuntimeException e) {
+                    System.err.println("Errore nell'ascoltatore del caricamento GTFS: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    // Registrato tardi non riceve le fasi già concluse: lo stato attuale è in getFasiCompletate()
+    public void aggiungiAscoltatore(AscoltatoreAvanzamento ascoltatore) {
+        ascoltatori.add(Objects.requireNonNull(ascoltatore));
+    }
+
+    public int getFasiCompletate() { return fasiCompletate.get(); }
+    public int getFasiTotali() { return fasiTotali; }
+    public boolean isCompletato() { return dataset.isDone(); }
+
+    // GETTER (i future non vanno completati da fuori)
+    public CompletableFuture<List<Fermate>> getFermate() { return fermate; }
+    public CompletableFuture<List<Route>> getRotte() { return rotte; }
+    public CompletableFuture<Map<String, ShapeRoute>> getForme() { return forme; }
+    public CompletableFuture<List<Trip>> getTrips() { return trips; }
+    public CompletableFuture<List<StopTime>> getStopTimes() { return stopTimes; }
+    public CompletableFuture<List<CalendarDate>> getEccezioni() { return eccezioni; }
+    public CompletableFuture<GtfsDataset> getDataset() { return dataset; }
+}
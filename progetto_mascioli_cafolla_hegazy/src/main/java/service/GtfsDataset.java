@@ -0,0 +1,112 @@
+package service;
+
+import model.gtfs.*;
+import model.utils.StatisticheCaricamento;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Una versione completa e già indicizzata del GTFS statico.
+// GtfsService tiene il dataset attivo in un unico riferimento atomico: chi lo legge
+// vede sempre tutte le collezioni della stessa versione, mai un misto tra vecchio
+// e nuovo feed durante un ricaricamento.
+// Le collezioni non vanno modificate dopo la costruzione.
+
+public final class GtfsDataset {
+
+    private final List<Fermate> fermate;
+    private final List<Route> rotte;
+    private final Map<String, ShapeRoute> forme;
+    private final List<Trip> trips;
+    private final List<StopTime> stopTimes;
+    private final List<CalendarDate> eccezioni;
+    private final Map<String, List<StopTime>> stopTimesPerStopId;
+
+    private final FinestraServizio finestra; // giorni coperti dall'orario, null = feed intero
+    private final SchemiCorse schemi;        // schemi di corsa (vuoto se le corse non sono compresse)
+    private final GtfsIndex indice;          // ricerche per codice condivise da tutta l'interfaccia
+    private final byte[] versione;          // chiave del feed (SHA-256), null se non calcolata
+    private final LocalDateTime caricatoIl;
+
+    // Come è stato caricato: tempi per fase (ms) e statistiche per file letto da CSV
+    private Map<String, Long> tempiCaricamento = Map.of();
+    private List<StatisticheCaricamento> statisticheCaricamento = List.of();
+
+    public GtfsDataset(List<Fermate> fermate,
+                       List<Route> rotte,
+                       Map<String, ShapeRoute> forme,
+                       List<Trip> trips,
+                       List<StopTime> stopTimes,
+                       List<CalendarDate> eccezioni,
+                       Map<String, List<StopTime>> stopTimesPerStopId,
+                       byte[] versione) {
+        this(fermate, rotte, forme, trips, stopTimes, eccezioni, stopTimesPerStopId, versione, null,
+                SchemiCorse.vuoto(), null);
+    }
+
+    public GtfsDataset(List<Fermate> fermate,
+                       List<Route> rotte,
+                       Map<String, ShapeRoute> forme,
+                       List<Trip> trips,
+                       List<StopTime> stopTimes,
+                       List<CalendarDate> eccezioni,
+                       Map<String, List<StopTime>> stopTimesPerStopId,
+                       byte[] versione,
+                       FinestraServizio finestra,
+                       SchemiCorse schemi,
+                       GtfsIndex indice) {
+        this.fermate = fermate;
+        this.rotte = rotte;
+        this.forme = forme;
+        this.trips = trips;
+        this.stopTimes = stopTimes;
+        this.eccezioni = eccezioni;
+        this.stopTimesPerStopId = stopTimesPerStopId;
+        this.versione = versione != null ? versione.clone() : null;
+        this.finestra = finestra;
+        this.schemi = schemi != null ? schemi : SchemiCorse.vuoto();
+        // senza indice (es. dataset costruiti a mano) lo si costruisce qui
+        this.indice = indice != null ? indice
+                : GtfsIndex.costruisci(fermate, rotte, trips, stopTimes, stopTimesPerStopId);
+        this.caricatoIl = LocalDateTime.now();
+    }
+
+    // Impostato da GtfsService alla fine del caricamento, prima di pubblicare il dataset
+    void registraCaricamento(Map<String, Long> tempi, List<StatisticheCaricamento> statistiche) {
+        synchronized (tempi) {
+            this.tempiCaricamento = new LinkedHashMap<>(tempi);
+        }
+        this.statisticheCaricamento = List.copyOf(statistiche);
+    }
+
+    // true se il dataset è stato costruito dallo stesso feed (stessa chiave)
+    public boolean stessaVersione(byte[] chiave) {
+        return versione != null && chiave != null && Arrays.equals(versione, chiave);
+    }
+
+    // Prime cifre della chiave, per i log
+    public String getVersioneBreve() {
+        return versione != null ? HexFormat.of().formatHex(versione, 0, 6) : "n/d";
+    }
+
+    // GETTER
+    public List<Fermate> getFermate() { return fermate; }
+    public List<Route> getRotte() { return rotte; }
+    public Map<String, ShapeRoute> getForme() { return forme; }
+    public List<Trip> getTrips() { return trips; }
+    public List<StopTime> getStopTimes() { return stopTimes; }
+    public List<CalendarDate> getEccezioni() { return eccezioni; }
+    public Map<String, List<StopTime>> getStopTimesPerStopId() { return stopTimesPerStopId; }
+    public FinestraServizio getFinestra() { return finestra; }
+    public SchemiCorse getSchemi() { return schemi; }
+    public GtfsIndex getIndice() { return indice; }
+    public CalendarioServizi getCalendario() { return indice.getCalendario(); }
+    public byte[] getVersione() { return versione != null ? versione.clone() : null; }
+    public LocalDateTime getCaricatoIl() { return caricatoIl; }
+    public Map<String, Long> getTempiCaricamento() { return new LinkedHashMap<>(tempiCaricamento); }
+    public List<StatisticheCaricamento> getStatisticheCaricamento() { return statisticheCaricamento; }
+}
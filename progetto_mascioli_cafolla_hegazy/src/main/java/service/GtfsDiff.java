@@ -0,0 +1,160 @@
+package service;
+
+import model.gtfs.*;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Riepilogo delle differenze tra due versioni del GTFS statico:
+// fermate, linee, trip e forme aggiunte/rimosse (confronto per ID) e
+// fermate rimaste con lo stesso ID ma spostate o rinominate.
+
+public final class GtfsDiff {
+
+    // Quanti ID di esempio riportare nel report per ogni categoria
+    private static final int ESEMPI_MAX = 10;
+
+    private final List<String> fermateAggiunte;
+    private final List<String> fermateRimosse;
+    private final List<String> fermateModificate;
+    private final List<String> rotteAggiunte;
+    private final List<String> rotteRimosse;
+    private final List<String> tripsAggiunti;
+    private final List<String> tripsRimossi;
+    private final List<String> formeAggiunte;
+    private final List<String> formeRimosse;
+    private final int stopTimesPrima;
+    private final int stopTimesDopo;
+
+    private GtfsDiff(List<String> fermateAggiunte, List<String> fermateRimosse, List<String> fermateModificate,
+                     List<String> rotteAggiunte, List<String> rotteRimosse,
+                     List<String> tripsAggiunti, List<String> tripsRimossi,
+                     List<String> formeAggiunte, List<String> formeRimosse,
+                     int stopTimesPrima, int stopTimesDopo) {
+        this.fermateAggiunte = fermateAggiunte;
+        this.fermateRimosse = fermateRimosse;
+        this.fermateModificate = fermateModificate;
+        this.rotteAggiunte = rotteAggiunte;
+        this.rotteRimosse = rotteRimosse;
+        this.tripsAggiunti = tripsAggiunti;
+        this.tripsRimossi = tripsRimossi;
+        this.formeAggiunte = formeAggiunte;
+        this.formeRimosse = formeRimosse;
+        this.stopTimesPrima = stopTimesPrima;
+        this.stopTimesDopo = stopTimesDopo;
+    }
+
+    // Confronta due dataset; con "vecchio" null tutto risulta aggiunto
+    public static GtfsDiff tra(GtfsDataset vecchio, GtfsDataset nuovo) {
+        List<Fermate> fermatePrima = vecchio != null ? vecchio.getFermate() : List.of();
+        List<Route> rottePrima = vecchio != null ? vecchio.getRotte() : List.of();
+        List<Trip> tripsPrima = vecchio != null ? vecchio.getTrips() : List.of();
+        Set<String> formePrima = vecchio != null ? vecchio.getForme().keySet() : Set.of();
+
+        Map<String, Fermate> prima = perId(fermatePrima, Fermate::getStopId);
+        Map<String, Fermate> dopo = perId(nuovo.getFermate(), Fermate::getStopId);
+
+        List<String> modificate = new ArrayList<>();
+        for (Map.Entry<String, Fermate> e : dopo.entrySet()) {
+            Fermate vecchia = prima.get(e.getKey());
+            if (vecchia != null && fermataCambiata(vecchia, e.getValue())) {
+                modificate.add(e.getKey());
+            }
+        }
+        Collections.sort(modificate);
+
+        Set<String> rotteDopo = perId(nuovo.getRotte(), Route::getRouteId).keySet();
+        Set<String> rottePrimaId = perId(rottePrima, Route::getRouteId).keySet();
+        Set<String> tripsDopo = perId(nuovo.getTrips(), Trip::getTripId).keySet();
+        Set<String> tripsPrimaId = perId(tripsPrima, Trip::getTripId).keySet();
+        Set<String> formeDopo = nuovo.getForme().keySet();
+
+        return new GtfsDiff(
+                differenza(dopo.keySet(), prima.keySet()),
+                differenza(prima.keySet(), dopo.keySet()),
+                modificate,
+                differenza(rotteDopo, rottePrimaId),
+                differenza(rottePrimaId, rotteDopo),
+                differenza(tripsDopo, tripsPrimaId),
+                differenza(tripsPrimaId, tripsDopo),
+                differenza(formeDopo, formePrima),
+                differenza(formePrima, formeDopo),
+                vecchio != null ? vecchio.getStopTimes().size() : 0,
+                nuovo.getStopTimes().size());
+    }
+
+    private static <T> Map<String, T> perId(List<T> elementi, Function<T, String> id) {
+        Map<String, T> mappa = new HashMap<>(elementi.size() * 2);
+        for (T e : elementi) {
+            mappa.putIfAbsent(id.apply(e), e);
+        }
+        return mappa;
+    }
+
+    // Elementi di "a" che non sono in "b", ordinati
+    private static List<String> differenza(Set<String> a, Set<String> b) {
+        List<String> risultato = new ArrayList<>();
+        for (String id : a) {
+            if (!b.contains(id)) risultato.add(id);
+        }
+        Collections.sort(risultato);
+        return risultato;
+    }
+
+    private static boolean fermataCambiata(Fermate a, Fermate b) {
+        return !Objects.equals(a.getStopName(), b.getStopName())
+                || Double.compare(a.getStopLat(), b.getStopLat()) != 0
+                || Double.compare(a.getStopLon(), b.getStopLon()) != 0;
+    }
+
+    public boolean isVuoto() {
+        return fermateAggiunte.isEmpty() && fermateRimosse.isEmpty() && fermateModificate.isEmpty()
+                && rotteAggiunte.isEmpty() && rotteRimosse.isEmpty()
+                && tripsAggiunti.isEmpty() && tripsRimossi.isEmpty()
+                && formeAggiunte.isEmpty() && formeRimosse.isEmpty()
+                && stopTimesPrima == stopTimesDopo;
+    }
+
+    // Report leggibile per il log
+    public String report() {
+        StringBuilder sb = new StringBuilder("Differenze GTFS tra le versioni:\n");
+        riga(sb, "fermate aggiunte", fermateAggiunte);
+        riga(sb, "fermate rimosse", fermateRimosse);
+        riga(sb, "fermate spostate/rinominate", fermateModificate);
+        riga(sb, "linee aggiunte", rotteAggiunte);
+        riga(sb, "linee rimosse", rotteRimosse);
+        riga(sb, "trip aggiunti", tripsAggiunti);
+        riga(sb, "trip rimossi", tripsRimossi);
+        riga(sb, "forme aggiunte", formeAggiunte);
+        riga(sb, "forme rimosse", formeRimosse);
+        sb.append("   stop_times: ").append(stopTimesPrima).append(" -> ").append(stopTimesDopo);
+        return sb.toString();
+    }
+
+    private static void riga(StringBuilder sb, String etichetta, List<String> ids) {
+        sb.append("   ").append(etichetta).append(": ").append(ids.size());
+        if (!ids.isEmpty()) {
+            sb.append(" ").append(ids.subList(0, Math.min(ESEMPI_MAX, ids.size())));
+            if (ids.size() > ESEMPI_MAX) sb.append(" ...");
+        }
+        sb.append('\n');
+    }
+
+    @Override
+    public String toString() {
+        return report();
+    }
+
+    // GETTER
+    public List<String> getFermateAggiunte() { return fermateAggiunte; }
+    public List<String> getFermateRimosse() { return fermateRimosse; }
+    public List<String> getFermateModificate() { return fermateModificate; }
+    public List<String> getRotteAggiunte() { return rotteAggiunte; }
+    public List<String> getRotteRimosse() { return rotteRimosse; }
+    public List<String> getTripsAggiunti() { return tripsAggiunti; }
+    public List<String> getTripsRimossi() { return tripsRimossi; }
+    public List<String> getFormeAggiunte() { return formeAggiunte; }
+    public List<String> getFormeRimosse() { return formeRimosse; }
+    public int getStopTimesPrima() { return stopTimesPrima; }
+    public int getStopTimesDopo() { return stopTimesDopo; }
+}
@@ -0,0 +1,362 @@
+package service;
+
+import model.gtfs.*;
+import model.utils.IndiceRicerca;
+
+import java.time.LocalDate;
+import java.util.*;
+
+// Indici di sola lettura su una versione del GTFS statico, costruiti una volta
+// insieme al dataset e condivisi da tutti (pannelli, controller, servizi):
+// un click su una fermata o su una linea diventa una ricerca per codice invece
+// di una scansione di tutti gli orari.
+//
+//   fermate, linee e corse per codice nelle tabelle dei simboli del caricamento (array, niente hash)
+//   corse per linea (e direzione) in formato CSR
+//   percorsi distinti di ogni linea per direzione, con capolinea e riquadro (PercorsiLinea)
+//   orari di una corsa in ordine di sequenza
+//   orari di una fermata in ordine di partenza
+//   linee e direzioni che servono ogni fermata e stazione (LineeFermata)
+//   corse attive per giorno di servizio (bitset, compilato al primo uso del giorno)
+//   fermate vicine a un punto (GrigliaFermate)
+//   cambi a piedi tra fermate vicine e da transfers.txt (GrafoTrasferimenti)
+//   orario compilato per il calcolo dei percorsi (ReteRaptor, al primo uso)
+//   fermate e linee per nome (IndiceRicerca), pesate per passaggi e corse
+//
+// Con l'archivio colonnare gli orari sono viste su StopTimeStore (già ordinate);
+// con le liste di oggetti gli indici sono costruiti qui.
+
+public final class GtfsIndex {
+
+    private static final GtfsIndex VUOTO = costruisci(List.of(), List.of(), List.of(), List.of(), null);
+
+    // Giorni compilati tenuti in memoria: ieri, oggi, domani e il giorno dopo il cambio data
+    private static final int GIORNI_IN_CACHE = 4;
+
+    private final Simboli.Tabelle simboli;                          // quelle con cui sono codificati i dati
+    private final MappaPerCodice<Fermate> fermatePerCodice;
+    private final MappaPerCodice<Route> rottePerCodice;
+    private final MappaPerCodice<Trip> tripsPerCodice;
+    private final GrigliaFermate grigliaFermate;
+    private final GrafoTrasferimenti trasferimenti;
+
+    // Corse della linea r: tripsPerRotta[inizioRotta[r] .. inizioRotta[r + 1]), per direzione
+    private final Trip[] tripsPerRotta;
+    private final int[] inizioRotta;
+    private final PercorsiLinea[] percorsiPerRotta;
+
+    private final StopTimeStore store;                              // null se gli orari sono oggetti
+    private final Map<String, List<StopTime>> orariPerFermata;      // per partenza
+    private final Map<Integer, List<StopTime>> orariPerTrip;        // solo corse non compresse, senza archivio
+
+    private final IndiceRicerca ricerca;
+    private final List<Fermate> fermate;                            // per compilare la rete
+    private volatile ReteRaptor rete;                               // compilata al primo viaggio cercato
+    private final LineeFermata lineeFermata;
+
+    private final CalendarioServizi calendario;
+    private volatile CorseAttive[] giorniCompilati = new CorseAttive[0];   // più recente per primo
+
+    private GtfsIndex(List<Fermate> fermate, List<Route> rotte, List<Trip> trips, List<StopTime> stopTimes,
+                      Map<String, List<StopTime>> orariPerFermata, CalendarioServizi calendario,
+                      List<Trasferimento> trasferimenti) {
+        this.simboli = simboliDi(fermate, rotte, trips);
+        this.fermatePerCodice = MappaPerCodice.di(fermate, Fermate::getCodiceFermata);
+        this.rottePerCodice = MappaPerCodice.di(rotte, Route::getCodiceRotta);
+        this.tripsPerCodice = MappaPerCodice.di(trips, Trip::getCodiceTrip);
+        this.fermate = fermate;
+        this.grigliaFermate = GrigliaFermate.di(fermate);
+        this.trasferimenti = GrafoTrasferimenti.di(fermate, grigliaFermate, trasferimenti,
+                GrafoTrasferimenti.raggioDaProprieta());
+
+        // Corse raggruppate per linea con un counting sort, poi per direzione
+        int massimaRotta = -1;
+        for (Trip t : trips) massimaRotta = Math.max(massimaRotta, t.getCodiceRotta());
+        this.inizioRotta = new int[massimaRotta + 2];
+        for (Trip t : trips) {
+            if (t.getCodiceRotta() >= 0) inizioRotta[t.getCodiceRotta() + 1]++;
+        }
+        for (int r = 0; r <= massimaRotta; r++) inizioRotta[r + 1] += inizioRotta[r];
+        this.tripsPerRotta = new Trip[inizioRotta[massimaRotta + 1]];
+        int[] prossima = Arrays.copyOf(inizioRotta, massimaRotta + 1);
+        for (Trip t : trips) {
+            if (t.getCodiceRotta() >= 0) tripsPerRotta[prossima[t.getCodiceRotta()]++] = t;
+        }
+        for (int r = 0; r <= massimaRotta; r++) {
+            Arrays.sort(tripsPerRotta, inizioRotta[r], inizioRotta[r + 1], Comparator.comparingInt(Trip::getDirectionId));
+        }
+
+        if (stopTimes instanceof StopTimeStore.Vista vista && vista.isCompleta()) {
+            this.store = vista.getStore();
+            this.orariPerFermata = orariPerFermata != null ? orariPerFermata : store.indicePerFermata();
+            this.orariPerTrip = Map.of();
+        } else {
+            this.store = null;
+            this.orariPerFermata = orariPerFermata != null ? orariPerFermata : perFermata(stopTimes);
+            this.orariPerTrip = perTripNonCompressi(stopTimes, tripsPerCodice);
+        }
+        this.calendario = calendario != null ? calendario : CalendarioServizi.vuoto();
+        this.ricerca = IndiceRicerca.di(fermate, rotte,
+                f -> orariFermata(f.getStopId()).size(),
+                r -> tripsPerRotta(r.getCodiceRotta()).size());
+
+        // Percorsi per linea: servono fermate e orari già indicizzati
+        this.percorsiPerRotta = new PercorsiLinea[massimaRotta + 1];
+        for (int r = 0; r <= massimaRotta; r++) {
+            percorsiPerRotta[r] = PercorsiLinea.di(tripsPerRotta(r), this);
+        }
+        this.lineeFermata = LineeFermata.di(this, fermate);
+    }
+
+    // orariPerFermata può essere null (viene costruito qui); se passato deve essere
+    // in ordine di partenza come quello di perFermata()
+    public static GtfsIndex costruisci(List<Fermate> fermate, List<Route> rotte, List<Trip> trips,
+                                       List<StopTime> stopTimes, Map<String, List<StopTime>> orariPerFermata) {
+        return costruisci(fermate, rotte, trips, stopTimes, orariPerFermata, CalendarioServizi.vuoto());
+    }
+
+    // Con il calendario del feed le ricerche per giorno tengono solo le corse che circolano
+    public static GtfsIndex costruisci(List<Fermate> fermate, List<Route> rotte, List<Trip> trips,
+                                       List<StopTime> stopTimes, Map<String, List<StopTime>> orariPerFermata,
+                                       CalendarioServizi calendario) {
+        return costruisci(fermate, rotte, trips, stopTimes, orariPerFermata, calendario, List.of());
+    }
+
+    // Con i cambi di transfers.txt (oltre a quelli a piedi tra fermate vicine)
+    public static GtfsIndex costruisci(List<Fermate> fermate, List<Route> rotte, List<Trip> trips,
+                                       List<StopTime> stopTimes, Map<String, List<StopTime>> orariPerFermata,
+                                       CalendarioServizi calendario, List<Trasferimento> trasferimenti) {
+        return new GtfsIndex(fermate, rotte, trips, stopTimes, orariPerFermata, calendario,
+                trasferimenti != null ? trasferimenti : List.of());
+    }
+
+    public static GtfsIndex vuoto() {
+        return VUOTO;
+    }
+
+    // I dati di un caricamento sono codificati tutti nelle stesse tabelle: basta il primo oggetto
+    private static Simboli.Tabelle simboliDi(List<Fermate> fermate, List<Route> rotte, List<Trip> trips) {
+        if (!fermate.isEmpty()) return fermate.get(0).getSimboli();
+        if (!trips.isEmpty()) return trips.get(0).getSimboli();
+        if (!rotte.isEmpty()) return rotte.get(0).getSimboli();
+        return Simboli.Tabelle.PREDEFINITE;
+    }
+
+    // Orari raggruppati per fermata e ordinati per partenza (archivio: viste già ordinate)
+    public static Map<String, List<StopTime>> perFermata(List<StopTime> stopTimes) {
+        if (stopTimes instanceof StopTimeStore.Vista vista && vista.isCompleta()) {
+            return vista.getStore().indicePerFermata();
+        }
+        Map<String, List<StopTime>> indice = new HashMap<>();
+        for (StopTime st : stopTimes) {
+            indice.computeIfAbsent(st.getStopId(), k -> new ArrayList<>()).add(st);
+        }
+        Comparator<StopTime> perPartenza = Comparator.comparingInt(
+                st -> OrarioServizio.chiavePartenza(st.getArrivoSecondi(), st.getPartenzaSecondi()));
+        for (List<StopTime> lista : indice.values()) {
+            lista.sort(perPartenza);   // stabile: a parità resta l'ordine del file
+        }
+        return indice;
+    }
+
+    // Le corse compresse in schemi (o già collegate a una lista) ricostruiscono da sole
+    // i loro orari: qui si raggruppano solo quelli delle corse rimaste senza
+    private static Map<Integer, List<StopTime>> perTripNonCompressi(List<StopTime> stopTimes,
+                                                                    MappaPerCodice<Trip> trips) {
+        Map<Integer, List<StopTime>> indice = new HashMap<>();
+        for (StopTime st : stopTimes) {
+            Trip t = trips.get(st.getCodiceTrip());
+            if (t != null && t.getNumeroFermate() > 0) continue;
+            indice.computeIfAbsent(st.getCodiceTrip(), k -> new ArrayList<>()).add(st);
+        }
+        for (List<StopTime> lista : indice.values()) {
+            lista.sort(Comparator.comparingInt(StopTime::getStopSequence));
+        }
+        return indice;
+    }
+
+    // ==================== FERMATE, LINEE, CORSE ====================
+
+    public Simboli.Tabelle getSimboli() { return simboli; }
+
+    public Fermate fermata(int codiceFermata) { return fermatePerCodice.get(codiceFermata); }
+    public Fermate fermata(String stopId) { return fermatePerCodice.get(simboli.fermata.cerca(stopId)); }
+    public Route rotta(int codiceRotta) { return rottePerCodice.get(codiceRotta); }
+    public Route rotta(String routeId) { return rottePerCodice.get(simboli.rotta.cerca(routeId)); }
+    public Trip trip(int codiceTrip) { return tripsPerCodice.get(codiceTrip); }
+    public Trip trip(String tripId) { return tripsPerCodice.get(simboli.trip.cerca(tripId)); }
+
+    // Linea della corsa, null se la corsa o la linea non esistono
+    public Route rottaDi(Trip trip) {
+        return trip != null ? rottePerCodice.get(trip.getCodiceRotta()) : null;
+    }
+
+    // Corse della linea, ordinate per direzione
+    public List<Trip> tripsPerRotta(int codiceRotta) {
+        if (codiceRotta < 0 || codiceRotta + 1 >= inizioRotta.length) {
+            return List.of();
+        }
+        return Collections.unmodifiableList(
+                Arrays.asList(tripsPerRotta).subList(inizioRotta[codiceRotta], inizioRotta[codiceRotta + 1]));
+    }
+
+    // Percorsi e direzioni della linea (vuoto se la linea non ha corse)
+    public PercorsiLinea percorsi(int codiceRotta) {
+        if (codiceRotta < 0 || codiceRotta >= percorsiPerRotta.length) {
+            return PercorsiLinea.VUOTO;
+        }
+        return percorsiPerRotta[codiceRotta];
+    }
+
+    public List<Trip> tripsPerRottaEDirezione(int codiceRotta, int direzione) {
+        List<Trip> tutte = tripsPerRotta(codiceRotta);
+        int da = 0;
+        while (da < tutte.size() && tutte.get(da).getDirectionId() < direzione) da++;
+        int a = da;
+        while (a < tutte.size() && tutte.get(a).getDirectionId() == direzione) a++;
+        return tutte.subList(da, a);
+    }
+
+    // ==================== ORARI ====================
+
+    // Orari della corsa in ordine di sequenza
+    public List<StopTime> orariTrip(Trip trip) {
+        if (trip == null) {
+            return List.of();
+        }
+        if (trip.getSchema() != null) {
+            return trip.getStopTimes();
+        }
+        List<StopTime> collegati = trip.getStopTimes();
+        if (collegati instanceof StopTimeStore.Vista vista && !vista.isModificata()) {
+            return collegati;
+        }
+        if (!collegati.isEmpty()) {
+            // lista costruita a mano con aggiungiStopTime: può non essere in ordine
+            List<StopTime> ordinati = new ArrayList<>(collegati);
+            ordinati.sort(Comparator.comparingInt(StopTime::getStopSequence));
+            return ordinati;
+        }
+        if (store != null) {
+            return store.perTrip(trip.getTripId());
+        }
+        return orariPerTrip.getOrDefault(trip.getCodiceTrip(), List.of());
+    }
+
+    public List<StopTime> orariTrip(String tripId) {
+        Trip trip = trip(tripId);
+        if (trip == null && store != null) {
+            return store.perTrip(tripId);
+        }
+        return orariTrip(trip);
+    }
+
+    // Passaggi alla fermata in ordine di partenza
+    public List<StopTime> orariFermata(String stopId) {
+        return orariPerFermata.getOrDefault(stopId, List.of());
+    }
+
+    // Capolinea (ultima fermata) della corsa, null se la corsa non ha orari
+    public Fermate capolinea(Trip trip) {
+        if (trip == null) {
+            return null;
+        }
+        SchemaCorsa schema = trip.getSchema();
+        if (schema != null) {
+            return fermata(schema.getCodiceUltimaFermata());
+        }
+        List<StopTime> orari = orariTrip(trip);
+        return orari.isEmpty() ? null : fermata(orari.get(orari.size() - 1).getCodiceFermata());
+    }
+
+    // ==================== CALENDARIO ====================
+
+    // Corse che circolano nel giorno di servizio dato. Il bitset si compila la prima volta
+    // che il giorno viene chiesto (quindi al cambio data) e poi si riusa: per una ricerca
+    // resta un test su un bit a corsa
+    public CorseAttive corseAttive(LocalDate giorno) {
+        if (calendario.isVuoto()) {
+            return CorseAttive.TUTTE;
+        }
+        CorseAttive trovato = giornoCompilato(giorniCompilati, giorno);
+        if (trovato != null) {
+            return trovato;
+        }
+        synchronized (this) {
+            CorseAttive[] compilati = giorniCompilati;
+            trovato = giornoCompilato(compilati, giorno);
+            if (trovato != null) {
+                return trovato;
+            }
+            long inizio = System.nanoTime();
+            CorseAttive nuovo = calendario.corseAttive(giorno, Arrays.asList(tripsPerRotta));
+            System.out.println("[GtfsIndex] Corse attive " + nuovo + " ("
+                    + (System.nanoTime() - inizio) / 1_000_000 + " ms)");
+
+            CorseAttive[] aggiornati = new CorseAttive[Math.min(compilati.length + 1, GIORNI_IN_CACHE)];
+            aggiornati[0] = nuovo;
+            System.arraycopy(compilati, 0, aggiornati, 1, aggiornati.length - 1);
+            giorniCompilati = aggiornati;
+            return nuovo;
+        }
+    }
+
+    private static CorseAttive giornoCompilato(CorseAttive[] compilati, LocalDate giorno) {
+        for (CorseAttive c : compilati) {
+            if (c.getGiorno().equals(giorno)) return c;
+        }
+        return null;
+    }
+
+    // Orario compilato per PianificatoreViaggi: si costruisce la prima volta che serve
+    // (come i giorni di servizio) perché occupa memoria solo se si cercano viaggi
+    public ReteRaptor getRete() {
+        ReteRaptor compilata = rete;
+        if (compilata != null) {
+            return compilata;
+        }
+        synchronized (this) {
+            if (rete == null) {
+                long inizio = System.nanoTime();
+                rete = ReteRaptor.di(this, fermate, inizioRotta.length - 2);
+                System.out.println("[GtfsIndex] Rete per i viaggi: " + rete + " ("
+                        + (System.nanoTime() - inizio) / 1_000_000 + " ms)");
+            }
+            return rete;
+        }
+    }
+
+    // Indice spaziale delle fermate (più vicine, entro un raggio, nel riquadro)
+    public GrigliaFermate getGrigliaFermate() {
+        return grigliaFermate;
+    }
+
+    // Cambi a piedi tra fermate vicine (e quelli dichiarati in transfers.txt)
+    public GrafoTrasferimenti getTrasferimenti() {
+        return trasferimenti;
+    }
+
+    // Ricerca per nome e per identificativo di fermate e linee
+    public IndiceRicerca getRicerca() {
+        return ricerca;
+    }
+
+    // Linee che servono ogni fermata, con prima e ultima partenza
+    public LineeFermata getLineeFermata() {
+        return lineeFermata;
+    }
+
+    public CalendarioServizi getCalendario() {
+        return calendario;
+    }
+
+    // Mappa stopId -> orari (per il codice che usa ancora GtfsDataset.getStopTimesPerStopId)
+    public Map<String, List<StopTime>> getOrariPerFermata() {
+        return Collections.unmodifiableMap(orariPerFermata);
+    }
+
+    // Archivio colonnare degli orari, null se gli orari sono oggetti
+    public StopTimeStore getStore() {
+        return store;
+    }
+}
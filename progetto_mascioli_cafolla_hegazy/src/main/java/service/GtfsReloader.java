@@ -0,0 +1,292 @@
+package service;
+
+import model.utils.Database;
+import model.utils.GtfsFeedSource;
+import model.utils.GtfsSnapshot;
+import model.utils.StatisticheCaricamento;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Ricaricamento a caldo del GTFS statico.
+// Un thread in background controlla periodicamente il feed indicato con -Dgtfs.feed
+// (zip o cartella): quando cambia ne costruisce una versione completa a parte,
+// mentre l'app continua a usare quella attiva, e la mette "in attesa".
+//
+// Un feed si ricostruisce solo quando è rimasto fermo per due controlli di fila
+// (chi lo sta ancora copiando non lascia un file a metà), e la versione nuova va
+// in attesa solo se è completa: i loader di Database non lanciano eccezioni ma
+// registrano nelle statistiche i file che non hanno potuto leggere, e un feed rotto
+// darebbe un orario vuoto o parziale che alle 03:00 sostituirebbe quello buono.
+// Lo scambio avviene al cambio del giorno di servizio (di notte, quando le
+// corse sono poche) oppure subito con attivaSubito().
+//
+// La sorgente del feed nuovo resta di GtfsReloader finché la versione è in attesa:
+// Database passa alla nuova sorgente (e la vecchia si chiude) solo allo scambio,
+// così chi legge il feed attivo nel frattempo (RinnovoFinestra) resta coerente.
+//
+// Memoria: al massimo due versioni vive insieme, quella attiva e una nuova.
+// Se esce un feed ancora più nuovo mentre una versione è in attesa, quella
+// in attesa viene scartata prima di iniziare a costruire la successiva.
+//
+// Tutto il lavoro (controllo, costruzione, scambio) gira sull'unico thread dello
+// scheduler, quindi lo stato interno non ha bisogno di lock.
+
+public class GtfsReloader implements AutoCloseable {
+
+    // Ora locale in cui si considera chiuso il giorno di servizio ATAC
+    static final LocalTime ORA_CAMBIO_GIORNO = LocalTime.of(3, 0);
+    public static final ZoneId FUSO_ORARIO = ZoneId.of("Europe/Rome");
+    static final Duration INTERVALLO_PREDEFINITO = Duration.ofMinutes(10);
+
+    // File senza i quali la versione nuova non si attiva (gli altri sono opzionali o
+    // hanno un ripiego, come calendar.txt/calendar_dates.txt)
+    static final List<String> FILE_OBBLIGATORI = List.of("stops.txt", "routes.txt", "trips.txt", "stop_times.txt");
+
+    private final GtfsService servizio;
+    private final Path percorsoFeed;
+    private final Supplier<ZonedDateTime> orologio; // serve per i test
+    private final ScheduledExecutorService scheduler;
+
+    private volatile GtfsDataset inAttesa;
+    private GtfsFeedSource sorgenteInAttesa;   // sorgente da cui è stato costruito inAttesa
+    private ScheduledFuture<?> scambioProgrammato;
+    // {dimensione, ultima modifica} del feed: all'ultimo controllo e all'ultima costruzione
+    private long[] ultimoStato;
+    private long[] statoCostruito;
+
+    public GtfsReloader(GtfsService servizio, Path percorsoFeed) {
+        this(servizio, percorsoFeed, () -> ZonedDateTime.now(FUSO_ORARIO));
+    }
+
+    GtfsReloader(GtfsService servizio, Path percorsoFeed, Supplier<ZonedDateTime> orologio) { // serve per i test
+        this.servizio = Objects.requireNonNull(servizio);
+        this.percorsoFeed = Objects.requireNonNull(percorsoFeed);
+        this.orologio = Objects.requireNonNull(orologio);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gtfs-reloader");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    // Reloader per il feed della proprietà gtfs.feed; null se il feed è quello
+    // nelle resources (dentro il jar non può cambiare)
+    public static GtfsReloader perFeedPredefinito(GtfsService servizio) {
+        String percorso = System.getProperty(GtfsFeedSource.PROPRIETA_FEED);
+        if (percorso == null || percorso.isBlank()) {
+            return null;
+        }
+        return new GtfsReloader(servizio, Paths.get(percorso));
+    }
+
+    public void avvia() {
+        avvia(INTERVALLO_PREDEFINITO);
+    }
+
+    public void avvia(Duration intervallo) {
+        // il primo controllo registra solo lo stato del file (il dataset attivo è già aggiornato)
+        ultimoStato = statoFeed();
+        statoCostruito = ultimoStato;
+        scheduler.scheduleWithFixedDelay(this::controllaInSicurezza,
+                intervallo.toMillis(), intervallo.toMillis(), TimeUnit.MILLISECONDS);
+        System.out.println("Ricaricamento GTFS attivo su " + percorsoFeed + " (ogni " + intervallo.toMinutes() + " min)");
+    }
+
+    // Anticipa lo scambio della versione in attesa (se c'è)
+    public void attivaSubito() {
+        scheduler.execute(this::scambia);
+    }
+
+    public boolean haVersioneInAttesa() {
+        return inAttesa != null;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    // Uno scheduler a intervallo fisso smette di girare se il task lancia un'eccezione
+    private void controllaInSicurezza() {
+        try {
+            controlla();
+        } catch (RuntimeException e) {
+            System.err.println("Errore nel controllo del feed GTFS: " + e.getMessage());
+        }
+    }
+
+    // Un giro di controllo; ritorna true se è stata preparata una nuova versione.
+    // Va chiamato sul thread dello scheduler (o da un test, a scheduler fermo).
+    boolean controlla() {
+        long[] stato = statoFeed();
+        if (stato == null) {
+            return false;
+        }
+        if (!Arrays.equals(stato, ultimoStato)) {
+            // cambiato dall'ultimo controllo: forse lo si sta ancora scrivendo, si aspetta il prossimo
+            ultimoStato = stato;
+            return false;
+        }
+        if (Arrays.equals(stato, statoCostruito)) {
+            return false;
+        }
+        statoCostruito = stato;
+
+        GtfsFeedSource nuovaSorgente;
+        byte[] chiave;
+        try {
+            nuovaSorgente = GtfsFeedSource.da(percorsoFeed);
+        } catch (IOException e) {
+            System.err.println("Feed GTFS " + percorsoFeed + " non leggibile: " + e.getMessage());
+            return false;
+        }
+        try {
+            chiave = GtfsSnapshot.calcolaChiaveFeed(nuovaSorgente);
+        } catch (IOException e) {
+            System.err.println("Impossibile calcolare la chiave del feed GTFS: " + e.getMessage());
+            chiudi(nuovaSorgente);
+            return false;
+        }
+
+        GtfsDataset attesa = inAttesa;
+        if (chiave == null || servizio.getDataset().stessaVersione(chiave)
+                || (attesa != null && attesa.stessaVersione(chiave))) {
+            // file toccato ma contenuto uguale a una versione già nota
+            chiudi(nuovaSorgente);
+            return false;
+        }
+
+        System.out.println("Nuova versione del feed GTFS rilevata, costruzione in background...");
+        scartaInAttesa();
+
+        GtfsDataset nuovo;
+        try {
+            nuovo = servizio.caricaNuovaVersione(nuovaSorgente, chiave);
+        } catch (RuntimeException e) {
+            // feed nuovo rotto: si resta sulla versione attiva
+            System.err.println("Caricamento della nuova versione GTFS fallito: " + e.getMessage());
+            chiudi(nuovaSorgente);
+            return false;
+        }
+        String difetto = difetto(nuovo);
+        if (difetto != null) {
+            System.err.println("Nuova versione GTFS " + nuovo.getVersioneBreve() + " scartata: " + difetto
+                    + " (resta attiva " + servizio.getDataset().getVersioneBreve() + ")");
+            chiudi(nuovaSorgente);
+            return false;
+        }
+
+        inAttesa = nuovo;
+        sorgenteInAttesa = nuovaSorgente;
+        Duration attesaScambio = attesaFinoAlCambioGiorno(orologio.get());
+        scambioProgrammato = scheduler.schedule(this::scambia, attesaScambio.toMillis(), TimeUnit.MILLISECONDS);
+        System.out.println("Versione GTFS " + nuovo.getVersioneBreve() + " pronta, attivazione alle "
+                + ORA_CAMBIO_GIORNO + " (tra " + attesaScambio.toMinutes() + " min)");
+        return true;
+    }
+
+    private void scambia() {
+        GtfsDataset nuovo = inAttesa;
+        if (nuovo == null) {
+            return;
+        }
+        GtfsFeedSource nuovaSorgente = sorgenteInAttesa;
+        inAttesa = null;
+        sorgenteInAttesa = null;
+        if (scambioProgrammato != null) {
+            scambioProgrammato.cancel(false);
+            scambioProgrammato = null;
+        }
+        // prima la sorgente e poi il dataset: chi vede il dataset nuovo vede anche il feed nuovo
+        GtfsFeedSource vecchiaSorgente = Database.getSorgente();
+        Database.setSorgente(nuovaSorgente);
+        servizio.attiva(nuovo);
+        chiudi(vecchiaSorgente);
+    }
+
+    private void scartaInAttesa() {
+        if (inAttesa != null) {
+            System.out.println("Versione GTFS in attesa " + inAttesa.getVersioneBreve() + " superata, scartata");
+        }
+        inAttesa = null;
+        if (sorgenteInAttesa != null) {
+            chiudi(sorgenteInAttesa);
+            sorgenteInAttesa = null;
+        }
+        if (scambioProgrammato != null) {
+            scambioProgrammato.cancel(false);
+            scambioProgrammato = null;
+        }
+    }
+
+    // Perché una versione appena costruita non si può attivare; null se è completa
+    static String difetto(GtfsDataset dataset) {
+        for (StatisticheCaricamento stat : dataset.getStatisticheCaricamento()) {
+            if (stat.isFallito() && FILE_OBBLIGATORI.contains(stat.getNomeFile())) {
+                return stat.getNomeFile() + " non letto (" + stat.getErrore() + ")";
+            }
+        }
+        if (dataset.getFermate().isEmpty()) return "nessuna fermata";
+        if (dataset.getRotte().isEmpty()) return "nessuna linea";
+        if (dataset.getTrips().isEmpty()) return "nessuna corsa";
+        if (dataset.getStopTimes().isEmpty()) return "nessun orario";
+        return null;
+    }
+
+    // Tempo che manca al prossimo cambio del giorno di servizio
+    static Duration attesaFinoAlCambioGiorno(ZonedDateTime adesso) {
+        ZonedDateTime cambio = adesso.with(ORA_CAMBIO_GIORNO);
+        if (!cambio.isAfter(adesso)) {
+            cambio = cambio.plusDays(1).with(ORA_CAMBIO_GIORNO);
+        }
+        return Duration.between(adesso, cambio);
+    }
+
+    // Dimensione e ultima modifica del feed (per una cartella: somma e massimo
+    // sui file contenuti), così il controllo periodico non legge i file
+    private long[] statoFeed() {
+        try {
+            if (!Files.isDirectory(percorsoFeed)) {
+                if (!Files.isRegularFile(percorsoFeed)) return null;
+                return new long[]{Files.size(percorsoFeed), Files.getLastModifiedTime(percorsoFeed).toMillis()};
+            }
+            long dimensione = 0;
+            long ultimaModifica = 0;
+            try (Stream<Path> file = Files.walk(percorsoFeed, 2)) {
+                for (Path p : (Iterable<Path>) file.filter(Files::isRegularFile)::iterator) {
+                    dimensione += Files.size(p);
+                    ultimaModifica = Math.max(ultimaModifica, Files.getLastModifiedTime(p).toMillis());
+                }
+            }
+            return new long[]{dimensione, ultimaModifica};
+        } catch (IOException e) {
+            System.err.println("Impossibile leggere lo stato del feed GTFS: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void chiudi(GtfsFeedSource sorgente) {
+        try {
+            sorgente.close();
+        } catch (IOException e) {
+            System.err.println("Errore nella chiusura del feed GTFS: " + e.getMessage());
+        }
+    }
+}
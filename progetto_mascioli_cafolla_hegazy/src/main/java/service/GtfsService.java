@@ -2,8 +2,26 @@ package service;
 
 import model.gtfs.*;
 import model.utils.Database;
+import model.utils.GtfsFeedSource;
+import model.utils.GtfsSnapshot;
+import model.utils.MetricheCaricamento;
+import model.utils.StatisticheCaricamento;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 // >>> NUOVE IMPORT (serve per i test)
 import java.util.Objects;                  // serve per i test
@@ -13,27 +31,58 @@ import java.util.function.Supplier;        // serve per i test
 // Classe di servizio dedicata al caricamento dei dati GTFS.
 public class GtfsService {
 
-    private List<Fermate> fermate;
-    private List<Route> rotte;
-    private Map<String, ShapeRoute> forme;
-    private List<Trip> trips;
-    private List<StopTime> stopTimes;
-    private List<CalendarDate> eccezioni;
-    private Map<String, List<StopTime>> stopTimesPerStopId;
+    // Dataset attivo: un ricaricamento ne costruisce uno nuovo a parte e poi
+    // sostituisce il riferimento in un colpo solo (chi legge non resta mai senza dati)
+    private final AtomicReference<GtfsDataset> attivo = new AtomicReference<>();
+
+    // Caricamento con cui è partito il servizio (per l'avvio progressivo dell'interfaccia)
+    private CaricamentoGtfs caricamentoIniziale;
+
+    // Quanta parte dell'orario tenere in memoria e, col profilo a finestra, quanti giorni
+    private final ProfiloMemoria profilo;
+    private final int giorniFinestra;
+
+    // Notificati (sul thread che fa lo scambio) ogni volta che cambia il dataset attivo
+    private final List<Consumer<GtfsDataset>> ascoltatori = new CopyOnWriteArrayList<>();
 
     // DIPENDENZE INIETTABILI (serve per i test)
-    // Default = comportamento originale basato su Database
+    // Default = comportamento originale basato su Database, sulla sorgente del caricamento
+    // e con le statistiche raccolte nelle sue metriche (vedi Lettura)
 
-    private static Supplier<List<Fermate>> fermateLoader = Database::leggiStopDaFile; // serve per i test
-    private static Supplier<List<Route>> rotteLoader = Database::leggiRouteDaFile;    // serve per i test
-    private static Supplier<Map<String, ShapeRoute>> formeLoader = Database::leggiShapeDaFile; // serve per i test
-    private static Supplier<List<Trip>> tripsLoader = Database::leggiTripsDaFile;     // serve per i test
-    private static Supplier<List<StopTime>> stopTimesLoader = Database::leggiStopTimesDaFile; // serve per i test
-    private static Supplier<List<CalendarDate>> eccezioniLoader = Database::leggiCalendarDatesDaFile; // serve per i test
+    private static Function<Lettura, List<Fermate>> fermateLoader =
+            l -> Database.leggiStopDaFile(l.sorgente(), l.simboli(), l.metriche()); // serve per i test
+    private static Function<Lettura, List<Route>> rotteLoader =
+            l -> Database.leggiRouteDaFile(l.sorgente(), l.simboli(), l.metriche()); // serve per i test
+    private static Function<Lettura, Map<String, ShapeRoute>> formeLoader =
+            l -> Database.leggiShapeDaFile(l.sorgente(), l.metriche()); // serve per i test
+    private static Function<Lettura, List<Trip>> tripsLoader =
+            l -> Database.leggiTripsDaFile(l.sorgente(), l.simboli(), null, l.metriche()); // serve per i test
+    private static Function<Lettura, List<StopTime>> stopTimesLoader =
+            l -> Database.leggiStopTimesDaFile(l.sorgente(), l.simboli(), null, l.metriche()); // serve per i test
+    private static Function<Lettura, List<CalendarDate>> eccezioniLoader =
+            l -> Database.leggiCalendarDatesDaFile(l.sorgente(), l.metriche()); // serve per i test
+    private static Function<Lettura, List<Trasferimento>> trasferimentiLoader =
+            l -> Database.leggiTransfersDaFile(l.sorgente(), l.simboli(), l.metriche()); // serve per i test
 
     private static BiConsumer<List<Trip>, List<StopTime>> stopTimesTripPopulator =
             Database::popolaStopTimePerTrip; // serve per i test
 
+    // Loader del profilo a finestra: calendario completo, poi corse e orari filtrati
+    private static Function<Lettura, Map<String, CalendarDate>> calendariLoader =
+            l -> Database.leggiCalendarDaFile(l.sorgente(), l.metriche()); // serve per i test
+    private static BiFunction<Lettura, Set<String>, List<Trip>> tripsFiltratiLoader =
+            (l, servizi) -> Database.leggiTripsDaFile(l.sorgente(), l.simboli(), servizi, l.metriche()); // serve per i test
+    private static BiFunction<Lettura, Set<String>, List<StopTime>> stopTimesFiltratiLoader =
+            (l, ids) -> Database.leggiStopTimesDaFile(l.sorgente(), l.simboli(), ids, l.metriche()); // serve per i test
+
+    // Ora corrente (per il giorno di servizio su cui centrare la finestra)
+    private static Supplier<ZonedDateTime> orologio =
+            () -> ZonedDateTime.now(GtfsReloader.FUSO_ORARIO); // serve per i test
+
+    // Snapshot binario del feed: usato solo con i loader di default
+    private static boolean snapshotAbilitato = true; // serve per i test
+    private static final Path percorsoSnapshot = GtfsSnapshot.percorsoPredefinito();
+
     // ====== TEST HOOKS (serve per i test) ======
     static void setLoadersForTest( // serve per i test
                                    Supplier<List<Fermate>> fermateL,
@@ -44,61 +93,443 @@ public class GtfsService {
                                    Supplier<List<CalendarDate>> eccezioniL,
                                    BiConsumer<List<Trip>, List<StopTime>> populator) {
 
-        fermateLoader = Objects.requireNonNull(fermateL);       // serve per i test
-        rotteLoader = Objects.requireNonNull(rotteL);           // serve per i test
-        formeLoader = Objects.requireNonNull(formeL);           // serve per i test
-        tripsLoader = Objects.requireNonNull(tripsL);           // serve per i test
-        stopTimesLoader = Objects.requireNonNull(stopTimesL);   // serve per i test
-        eccezioniLoader = Objects.requireNonNull(eccezioniL);   // serve per i test
+        // i loader di test ignorano la sorgente
+        fermateLoader = ignoraSorgente(fermateL);       // serve per i test
+        rotteLoader = ignoraSorgente(rotteL);           // serve per i test
+        formeLoader = ignoraSorgente(formeL);           // serve per i test
+        tripsLoader = ignoraSorgente(tripsL);           // serve per i test
+        stopTimesLoader = ignoraSorgente(stopTimesL);   // serve per i test
+        eccezioniLoader = ignoraSorgente(eccezioniL);   // serve per i test
         stopTimesTripPopulator = Objects.requireNonNull(populator); // serve per i test
+        calendariLoader = l -> Collections.emptyMap(); // serve per i test
+        trasferimentiLoader = l -> List.of(); // serve per i test
+        tripsFiltratiLoader = (l, servizi) -> soloServizi(tripsL.get(), servizi); // serve per i test
+        stopTimesFiltratiLoader = (l, ids) -> soloTrip(stopTimesL.get(), ids); // serve per i test
+        snapshotAbilitato = false; // serve per i test
+    }
+
+    static void setCalendariForTest(Supplier<Map<String, CalendarDate>> calendariL, // serve per i test
+                                    Supplier<ZonedDateTime> orologioL) {
+        calendariLoader = ignoraSorgente(calendariL); // serve per i test
+        orologio = Objects.requireNonNull(orologioL); // serve per i test
     }
 
     static void resetForTest() { // serve per i test
-        fermateLoader = Database::leggiStopDaFile; // serve per i test
-        rotteLoader = Database::leggiRouteDaFile; // serve per i test
-        formeLoader = Database::leggiShapeDaFile; // serve per i test
-        tripsLoader = Database::leggiTripsDaFile; // serve per i test
-        stopTimesLoader = Database::leggiStopTimesDaFile; // serve per i test
-        eccezioniLoader = Database::leggiCalendarDatesDaFile; // serve per i test
+        fermateLoader = l -> Database.leggiStopDaFile(l.sorgente(), l.simboli(), l.metriche()); // serve per i test
+        rotteLoader = l -> Database.leggiRouteDaFile(l.sorgente(), l.simboli(), l.metriche()); // serve per i test
+        formeLoader = l -> Database.leggiShapeDaFile(l.sorgente(), l.metriche()); // serve per i test
+        tripsLoader = l -> Database.leggiTripsDaFile(l.sorgente(), l.simboli(), null, l.metriche()); // serve per i test
+        stopTimesLoader = l -> Database.leggiStopTimesDaFile(l.sorgente(), l.simboli(), null, l.metriche()); // serve per i test
+        eccezioniLoader = l -> Database.leggiCalendarDatesDaFile(l.sorgente(), l.metriche()); // serve per i test
         stopTimesTripPopulator = Database::popolaStopTimePerTrip; // serve per i test
+        calendariLoader = l -> Database.leggiCalendarDaFile(l.sorgente(), l.metriche()); // serve per i test
+        trasferimentiLoader = l -> Database.leggiTransfersDaFile(l.sorgente(), l.simboli(), l.metriche()); // serve per i test
+        tripsFiltratiLoader = (l, servizi) -> Database.leggiTripsDaFile(l.sorgente(), l.simboli(), servizi, l.metriche()); // serve per i test
+        stopTimesFiltratiLoader = (l, ids) -> Database.leggiStopTimesDaFile(l.sorgente(), l.simboli(), ids, l.metriche()); // serve per i test
+        orologio = () -> ZonedDateTime.now(GtfsReloader.FUSO_ORARIO); // serve per i test
+        snapshotAbilitato = true; // serve per i test
+    }
+
+    // Loader reali senza snapshot: un test che legge una cartella non tocca quello dell'utente
+    static void setSnapshotForTest(boolean abilitato) { // serve per i test
+        snapshotAbilitato = abilitato; // serve per i test
+    }
+
+    private static <T> Function<Lettura, T> ignoraSorgente(Supplier<T> loader) { // serve per i test
+        Objects.requireNonNull(loader);
+        return l -> loader.get();
+    }
+
+    private static List<Trip> soloServizi(List<Trip> trips, Set<String> servizi) { // serve per i test
+        if (servizi == null) return trips;
+        List<Trip> tenuti = new ArrayList<>();
+        for (Trip t : trips) {
+            if (servizi.contains(t.getServiceId())) tenuti.add(t);
+        }
+        return tenuti;
     }
 
+    private static List<StopTime> soloTrip(List<StopTime> stopTimes, Set<String> tripIds) { // serve per i test
+        if (tripIds == null) return stopTimes;
+        List<StopTime> tenuti = new ArrayList<>();
+        for (StopTime st : stopTimes) {
+            if (tripIds.contains(st.getTripId())) tenuti.add(st);
+        }
+        return tenuti;
+    }
+
+    // Costruttore bloccante: ritorna con il dataset completo già attivo.
+    // Il profilo di memoria arriva dalle proprietà di sistema (vedi ProfiloMemoria)
     public GtfsService() {
-        caricaDatiGTFS();
+        this(ProfiloMemoria.daProprieta(), ProfiloMemoria.giorniDaProprieta());
+    }
+
+    public GtfsService(ProfiloMemoria profilo, int giorniFinestra) {
+        this(profilo, giorniFinestra, true);
+    }
+
+    private GtfsService(ProfiloMemoria profilo, int giorniFinestra, boolean attendiDataset) {
+        this.profilo = Objects.requireNonNull(profilo);
+        this.giorniFinestra = giorniFinestra;
+        caricamentoIniziale = avviaCaricamento(Database.getSorgente(), null, true,
+                finestraPer(giornoServizio(orologio.get())));
+        if (attendiDataset) {
+            attendi(caricamentoIniziale.getDataset());
+        }
+    }
+
+    // Avvio progressivo: ritorna subito e carica il feed in background.
+    // Finché il caricamento iniziale non è concluso getDataset() è null (e i getter
+    // dei dati non vanno usati): le singole fasi si seguono con getCaricamento()
+    public static GtfsService inBackground() {
+        GtfsService servizio = new GtfsService(ProfiloMemoria.daProprieta(), ProfiloMemoria.giorniDaProprieta(), false);
+        servizio.caricamentoIniziale.getDataset().whenComplete((d, e) -> {
+            if (e != null) {
+                System.err.println("Caricamento dati GTFS fallito: " + e.getMessage());
+            }
+        });
+        return servizio;
     }
 
-    //Legge tutti i file GTFS dal Database
-    private void caricaDatiGTFS() {
+    // Il caricamento con cui è partito il servizio (già completato per il costruttore bloccante)
+    public CaricamentoGtfs getCaricamento() {
+        return caricamentoIniziale;
+    }
+
+    public ProfiloMemoria getProfilo() {
+        return profilo;
+    }
+
+    // Finestra da caricare per il giorno di servizio dato; null con il profilo completo
+    public FinestraServizio finestraPer(LocalDate giorno) {
+        return profilo == ProfiloMemoria.FINESTRA ? FinestraServizio.attorno(giorno, giorniFinestra) : null;
+    }
+
+    // Giorno di servizio in corso: fino all'ora di cambio (03:00) è ancora quello di ieri
+    public static LocalDate giornoServizio(ZonedDateTime adesso) {
+        return adesso.minus(Duration.ofSeconds(GtfsReloader.ORA_CAMBIO_GIORNO.toSecondOfDay())).toLocalDate();
+    }
+
+    public static LocalDate giornoServizioCorrente() {
+        return giornoServizio(orologio.get());
+    }
+
+    //Legge tutti i file GTFS della sorgente dal Database.
+    // I file sono indipendenti tra loro, quindi ogni loader gira su un virtual thread;
+    // si aspetta solo dove c'è una dipendenza reale: il collegamento StopTime -> Trip
+    // (serve trips + stop_times) e l'indice per fermata (serve stop_times).
+    // Anche la chiave e la lettura dello snapshot girano in background, così chi
+    // chiama ottiene subito i future delle singole fasi.
+    // chiaveNota è la chiave del feed se il chiamante l'ha già calcolata (ricaricamento);
+    // con rendiAttivo il dataset diventa quello attivo prima che il suo future si completi,
+    // così chi aspetta il future trova già i dati nei getter del servizio.
+    // Con una finestra (profilo FINESTRA) si risolve prima il calendario e si tengono solo
+    // le corse dei servizi attivi nella finestra, e poi solo i loro orari: stop_times
+    // aspetta trips invece di girare in parallelo, in cambio di molta meno memoria.
+    // Lo snapshot copre sempre il feed intero, quindi con la finestra non si usa.
+    // La sorgente è esplicita: un ricaricamento legge il feed nuovo mentre Database
+    // resta sulla sorgente della versione attiva fino allo scambio.
+    private CaricamentoGtfs avviaCaricamento(GtfsFeedSource sorgente, byte[] chiaveNota, boolean rendiAttivo,
+                                             FinestraServizio finestra) {
         System.out.println("Caricamento dati GTFS...");
+        long inizio = System.nanoTime();
+        // tempi e statistiche di questo caricamento: finiscono nel suo dataset, così un
+        // ricaricamento in background non cancella quelli del dataset attivo;
+        // e tabelle dei simboli nuove: i codici del dataset vecchio spariscono con lui
+        Lettura l = new Lettura(sorgente, Simboli.Tabelle.nuove(), new MetricheCaricamento(),
+                Collections.synchronizedMap(new LinkedHashMap<>()));
 
-        //  usa i loader (default = Database.* come prima)
-        fermate = fermateLoader.get();     // serve per i test
-        rotte = rotteLoader.get();         // serve per i test
-        forme = formeLoader.get();         // serve per i test
-        trips = tripsLoader.get();         // serve per i test
-        stopTimes = stopTimesLoader.get(); // serve per i test
-        eccezioni = eccezioniLoader.get(); // serve per i test
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+        // Se il feed non è cambiato dall'ultimo avvio si parte dallo snapshot binario
+        CompletableFuture<Origine> origineF = CompletableFuture.supplyAsync(() -> {
+            byte[] chiave = chiaveNota != null ? chiaveNota
+                    : snapshotAbilitato ? cronometra(l, "chiave snapshot", () -> calcolaChiaveSnapshot(sorgente))
+                    : null;
+            boolean usaSnapshot = snapshotAbilitato && chiave != null && finestra == null;
+            GtfsSnapshot snapshot = usaSnapshot
+                    ? cronometra(l, "lettura snapshot", () -> GtfsSnapshot.carica(percorsoSnapshot, chiave, l.simboli()))
+                    : null;
+            return new Origine(chiave, usaSnapshot, snapshot);
+        }, executor);
+
+        //  usa i loader (default = Database.* come prima), oppure i dati dello snapshot
+        CompletableFuture<List<Fermate>> fermateF =
+                fase(l, origineF, GtfsSnapshot::getFermate, "stops.txt", da(fermateLoader, l), executor);
+        CompletableFuture<List<Route>> rotteF =
+                fase(l, origineF, GtfsSnapshot::getRotte, "routes.txt", da(rotteLoader, l), executor);
+        CompletableFuture<Map<String, ShapeRoute>> formeF =
+                fase(l, origineF, GtfsSnapshot::getForme, "shapes.txt", da(formeLoader, l), executor);
+        CompletableFuture<List<CalendarDate>> eccezioniF =
+                fase(l, origineF, GtfsSnapshot::getEccezioni, "calendar_dates.txt", da(eccezioniLoader, l), executor);
+        // calendar.txt è piccolo: si legge sempre dal file, serve al filtro per giorno
+        CompletableFuture<Map<String, CalendarDate>> calendariF = avvia(l, "calendar.txt", da(calendariLoader, l), executor);
+        // transfers.txt (opzionale) è piccolo: come calendar.txt non passa dallo snapshot
+        CompletableFuture<List<Trasferimento>> trasferimentiF = avvia(l, "transfers.txt", da(trasferimentiLoader, l), executor);
+        CompletableFuture<List<Trip>> tripsF;
+        CompletableFuture<List<StopTime>> stopTimesF;
+        if (finestra == null) {
+            tripsF = fase(l, origineF, GtfsSnapshot::getTrips, "trips.txt", da(tripsLoader, l), executor);
+            stopTimesF = fase(l, origineF, GtfsSnapshot::getStopTimes, "stop_times.txt", da(stopTimesLoader, l), executor);
+        } else {
+            BiFunction<Lettura, Set<String>, List<Trip>> tripsL = tripsFiltratiLoader;
+            BiFunction<Lettura, Set<String>, List<StopTime>> stopTimesL = stopTimesFiltratiLoader;
+
+            CompletableFuture<Set<String>> serviziF = calendariF
+                    .thenCombineAsync(eccezioniF, (calendari, eccezioni) ->
+                            cronometra(l, "servizi attivi", () -> serviziAttivi(finestra, calendari, eccezioni)), executor);
+            tripsF = serviziF.thenComposeAsync(servizi ->
+                    avvia(l, "trips.txt", () -> tripsL.apply(l, servizi), executor), executor);
+            stopTimesF = tripsF.thenComposeAsync(trips ->
+                    avvia(l, "stop_times.txt", () -> stopTimesL.apply(l, idTrip(trips)), executor), executor);
+        }
+
+        // Calendario compilato con i codici servizio delle corse (le tabelle del caricamento,
+        // o quelle delle corse date dai loader di test)
+        CompletableFuture<CalendarioServizi> calendarioF = CompletableFuture.allOf(calendariF, eccezioniF, tripsF)
+                .thenApplyAsync(v -> cronometra(l, "calendario servizi", () -> CalendarioServizi.di(
+                        calendariF.join(), eccezioniF.join(), simboliDi(tripsF.join(), l).servizio)), executor);
 
         // Collega StopTime ai Trip (default = Database.popolaStopTimePerTrip come prima)
-        stopTimesTripPopulator.accept(trips, stopTimes); // serve per i test
+        BiConsumer<List<Trip>, List<StopTime>> populator = stopTimesTripPopulator;
+        CompletableFuture<Void> popolaF = tripsF.thenAcceptBothAsync(stopTimesF, (t, st) ->
+                cronometra(l, "popolaStopTimePerTrip", () -> {
+                    populator.accept(t, st);
+                    return null;
+                }), executor);
 
-        // Indicizza StopTime per fermata
-        stopTimesPerStopId = new HashMap<>();
-        for (StopTime st : stopTimes) {
-            stopTimesPerStopId
-                    .computeIfAbsent(st.getStopId(), k -> new ArrayList<>())
-                    .add(st);
+        // Comprime le corse in schemi condivisi (serve che gli orari siano già collegati)
+        CompletableFuture<SchemiCorse> schemiF = popolaF.thenApplyAsync(v ->
+                cronometra(l, "schemi corse", () -> SchemiCorse.comprimi(tripsF.join())), executor);
+
+        // Indicizza StopTime per fermata (in parallelo al collegamento con i trip)
+        CompletableFuture<Map<String, List<StopTime>>> indiceF = stopTimesF.thenApplyAsync(st ->
+                cronometra(l, "stopTimesPerStopId", () -> GtfsIndex.perFermata(st)), executor);
+
+        // Indice condiviso (fermate, linee, corse per codice; orari per corsa e per fermata;
+        // corse attive per giorno), dopo la compressione così le corse sanno già ricostruire i propri orari
+        CompletableFuture<GtfsIndex> indiceGtfsF = CompletableFuture.allOf(schemiF, indiceF, calendarioF, trasferimentiF)
+                .thenApplyAsync(v -> cronometra(l, "indice gtfs", () -> GtfsIndex.costruisci(fermateF.join(),
+                        rotteF.join(), tripsF.join(), stopTimesF.join(), indiceF.join(), calendarioF.join(),
+                        trasferimentiF.join())), executor);
+
+        CompletableFuture<GtfsDataset> datasetF = CompletableFuture
+                .allOf(fermateF, rotteF, formeF, tripsF, stopTimesF, eccezioniF, schemiF, indiceF, indiceGtfsF)
+                .thenApplyAsync(v -> {
+                    Origine origine = origineF.join();
+                    GtfsDataset dataset = new GtfsDataset(fermateF.join(), rotteF.join(), formeF.join(),
+                            tripsF.join(), stopTimesF.join(), eccezioniF.join(), indiceF.join(), origine.chiave(),
+                            finestra, schemiF.join(), indiceGtfsF.join());
+
+                    // Feed nuovo o cambiato: si "compila" lo snapshot per i prossimi avvii
+                    if (origine.usaSnapshot() && origine.snapshot() == null) {
+                        cronometra(l, "scrittura snapshot", () -> {
+                            salvaSnapshot(dataset, origine.chiave());
+                            return null;
+                        });
+                    }
+                    stampaTempi(l, inizio, origine.snapshot() == null);
+                    dataset.registraCaricamento(l.tempi(), l.metriche().elenco());
+                    System.out.println("Schemi di corsa: " + dataset.getSchemi().riepilogo());
+                    if (finestra != null) {
+                        System.out.println("Orario limitato ai servizi attivi dal " + finestra.getInizio()
+                                + " al " + finestra.getFine() + ": " + dataset.getTrips().size() + " corse");
+                    }
+                    if (rendiAttivo) {
+                        attivo.set(dataset);
+                    }
+                    return dataset;
+                }, executor);
+
+        // niente close(): aspetterebbe la fine dei task, qui si lascia solo terminare
+        datasetF.whenComplete((d, e) -> executor.shutdown());
+
+        return new CaricamentoGtfs(fermateF, rotteF, formeF, tripsF, stopTimesF, eccezioniF, datasetF);
+    }
+
+    // Servizi da tenere nella finestra; null (nessun filtro) se il feed non ha calendario,
+    // altrimenti si scarterebbe tutto l'orario
+    private static Set<String> serviziAttivi(FinestraServizio finestra, Map<String, CalendarDate> calendari,
+                                             List<CalendarDate> eccezioni) {
+        if (calendari.isEmpty() && eccezioni.isEmpty()) {
+            System.err.println("Calendario GTFS vuoto: orario caricato senza filtro per la finestra " + finestra);
+            return null;
         }
+        Set<String> attivi = finestra.serviziAttivi(calendari, eccezioni);
+        System.out.println("Servizi attivi dal " + finestra.getInizio() + " al " + finestra.getFine() + ": "
+                + attivi.size() + " su " + calendari.size() + " calendari");
+        return attivi;
+    }
 
+    private static Simboli.Tabelle simboliDi(List<Trip> trips, Lettura l) {
+        return trips.isEmpty() ? l.simboli() : trips.get(0).getSimboli();
+    }
+
+    private static Set<String> idTrip(List<Trip> trips) {
+        Set<String> ids = new HashSet<>(trips.size() * 2);
+        for (Trip t : trips) ids.add(t.getTripId());
+        return ids;
+    }
+
+    // Da dove legge un caricamento, in quali tabelle codifica gli ID e dove ne finiscono
+    // statistiche per file e tempi per fase
+    private record Lettura(GtfsFeedSource sorgente, Simboli.Tabelle simboli, MetricheCaricamento metriche,
+                           Map<String, Long> tempi) {
+    }
+
+    // Chiave del feed e snapshot letto (null se da ricostruire o disabilitato)
+    private record Origine(byte[] chiave, boolean usaSnapshot, GtfsSnapshot snapshot) {
+    }
+
+    // Una fase: dai dati dello snapshot se c'è, altrimenti con il loader su un virtual thread
+    private static <T> CompletableFuture<T> fase(Lettura l, CompletableFuture<Origine> origineF,
+                                                 Function<GtfsSnapshot, T> dalloSnapshot,
+                                                 String nome, Supplier<T> loader, ExecutorService executor) {
+        return origineF.thenComposeAsync(origine -> origine.snapshot() != null
+                ? CompletableFuture.completedFuture(dalloSnapshot.apply(origine.snapshot()))
+                : avvia(l, nome, loader, executor), executor);
+    }
+
+    // Il loader legato al caricamento (letto subito, come il campo statico)
+    private static <T> Supplier<T> da(Function<Lettura, T> loader, Lettura l) {
+        return () -> loader.apply(l);
+    }
+
+    private static void stampaTempi(Lettura l, long inizio, boolean daCsv) {
+        long totaleMs = (System.nanoTime() - inizio) / 1_000_000;
+        l.tempi().put("totale", totaleMs);
+
+        System.out.println("Tempi di caricamento GTFS:");
+        synchronized (l.tempi()) {
+            for (Map.Entry<String, Long> tempo : l.tempi().entrySet()) {
+                System.out.println("   " + tempo.getKey() + ": " + tempo.getValue() + " ms");
+            }
+        }
+        // Dettaglio per file (solo se letti dal CSV: dallo snapshot non ci sono righe da parsare)
+        if (daCsv) {
+            System.out.println(l.metriche().tabella());
+        }
         System.out.println("Dati GTFS caricati con successo!\n");
     }
 
-    // GETTER
-    public List<Fermate> getFermate() { return fermate; }
-    public List<Route> getRotte() { return rotte; }
-    public Map<String, ShapeRoute> getForme() { return forme; }
-    public List<Trip> getTrips() { return trips; }
-    public List<StopTime> getStopTimes() { return stopTimes; }
-    public List<CalendarDate> getEccezioni() { return eccezioni; }
-    public Map<String, List<StopTime>> getStopTimesPerStopId() { return stopTimesPerStopId; }
+    // ==================== RICARICAMENTO ====================
+
+    // Costruisce una nuova versione completa (file + indici) dalla sorgente data senza
+    // toccare quella attiva, con la finestra del giorno di servizio in corso.
+    // Né il dataset né la sorgente diventano attivi: lo scambio è di chi chiama.
+    // Va chiamato fuori dall'EDT: il tempo è quello di un avvio a freddo.
+    GtfsDataset caricaNuovaVersione(GtfsFeedSource sorgente, byte[] chiave) {
+        return caricaNuovaVersione(sorgente, chiave, finestraPer(giornoServizioCorrente()));
+    }
+
+    GtfsDataset caricaNuovaVersione(GtfsFeedSource sorgente, byte[] chiave, FinestraServizio finestra) {
+        return attendi(avviaCaricamento(Objects.requireNonNull(sorgente), chiave, false, finestra).getDataset());
+    }
+
+    // Rende attivo il nuovo dataset e avvisa gli ascoltatori; il vecchio resta valido
+    // per chi lo sta ancora leggendo e viene liberato dal GC quando nessuno lo usa più
+    public GtfsDiff attiva(GtfsDataset nuovo) {
+        return notifica(attivo.getAndSet(Objects.requireNonNull(nuovo)), nuovo);
+    }
+
+    // Come attiva, ma solo se quello attivo è ancora previsto (altrimenti null): chi ha
+    // costruito nuovo a partire da previsto non sovrascrive uno scambio avvenuto nel frattempo
+    GtfsDiff attiva(GtfsDataset previsto, GtfsDataset nuovo) {
+        if (!attivo.compareAndSet(previsto, Objects.requireNonNull(nuovo))) {
+            return null;
+        }
+        return notifica(previsto, nuovo);
+    }
+
+    private GtfsDiff notifica(GtfsDataset vecchio, GtfsDataset nuovo) {
+        GtfsDiff diff = GtfsDiff.tra(vecchio, nuovo);
+        System.out.println("Dataset GTFS attivo: versione " + nuovo.getVersioneBreve()
+                + " (prima " + (vecchio != null ? vecchio.getVersioneBreve() : "n/d") + ")");
+        System.out.println(diff.report());
+
+        for (Consumer<GtfsDataset> ascoltatore : ascoltatori) {
+            try {
+                ascoltatore.accept(nuovo);
+            } catch (RuntimeException e) {
+                System.err.println("Errore nell'aggiornamento al nuovo dataset GTFS: " + e.getMessage());
+            }
+        }
+        return diff;
+    }
+
+    public void aggiungiAscoltatore(Consumer<GtfsDataset> ascoltatore) {
+        ascoltatori.add(Objects.requireNonNull(ascoltatore));
+    }
+
+    public void rimuoviAscoltatore(Consumer<GtfsDataset> ascoltatore) {
+        ascoltatori.remove(ascoltatore);
+    }
+
+    // Lancia un loader sull'executor registrandone il tempo di esecuzione
+    private static <T> CompletableFuture<T> avvia(Lettura l, String nome, Supplier<T> loader,
+                                                  ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> cronometra(l, nome, loader), executor);
+    }
+
+    private static <T> T cronometra(Lettura l, String nome, Supplier<T> operazione) {
+        long inizio = System.nanoTime();
+        try {
+            return operazione.get();
+        } finally {
+            l.tempi().put(nome, (System.nanoTime() - inizio) / 1_000_000);
+        }
+    }
+
+    // Attende il risultato e rilancia l'eccezione originale del loader
+    private static <T> T attendi(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+    private static byte[] calcolaChiaveSnapshot(GtfsFeedSource sorgente) {
+        try {
+            return GtfsSnapshot.calcolaChiaveFeed(sorgente);
+        } catch (IOException e) {
+            System.err.println("Impossibile calcolare la chiave dello snapshot GTFS: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Lo snapshot è solo un'accelerazione: un errore di scrittura non blocca l'avvio
+    private static void salvaSnapshot(GtfsDataset d, byte[] chiave) {
+        try {
+            new GtfsSnapshot(d.getFermate(), d.getRotte(), d.getForme(), d.getTrips(), d.getStopTimes(),
+                    d.getEccezioni()).salva(percorsoSnapshot, chiave);
+            System.out.println("Snapshot GTFS salvato in " + percorsoSnapshot);
+        } catch (IOException e) {
+            System.err.println("Impossibile salvare lo snapshot GTFS: " + e.getMessage());
+        }
+    }
+
+    // GETTER (sempre sul dataset attivo: per più letture coerenti usare getDataset())
+    public GtfsDataset getDataset() { return attivo.get(); }
+    public List<Fermate> getFermate() { return attivo.get().getFermate(); }
+    public List<Route> getRotte() { return attivo.get().getRotte(); }
+    public Map<String, ShapeRoute> getForme() { return attivo.get().getForme(); }
+    public List<Trip> getTrips() { return attivo.get().getTrips(); }
+    public List<StopTime> getStopTimes() { return attivo.get().getStopTimes(); }
+    public List<CalendarDate> getEccezioni() { return attivo.get().getEccezioni(); }
+    public Map<String, List<StopTime>> getStopTimesPerStopId() { return attivo.get().getStopTimesPerStopId(); }
+    public GtfsIndex getIndice() { return attivo.get().getIndice(); }
+    // Statistiche per file del dataset attivo, se letto da CSV (byte, righe/s, scarti per motivo)
+    public List<StatisticheCaricamento> getStatisticheCaricamento() {
+        GtfsDataset d = attivo.get();
+        return d != null ? d.getStatisticheCaricamento() : List.of();
+    }
+
+    // Tempi per fase del caricamento del dataset attivo
+    public Map<String, Long> getTempiCaricamento() {
+        GtfsDataset d = attivo.get();
+        return d != null ? d.getTempiCaricamento() : Map.of();
+    }
 }
@@ -0,0 +1,148 @@
+package service;
+
+import model.gtfs.Fermate;
+import model.gtfs.OrarioServizio;
+
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.stream.IntStream;
+
+// Isocrona di una fermata: dove si arriva in 15/30/45 minuti con mezzi e cambi a piedi,
+// attesa compresa. Per ogni minuto della finestra di partenza si fa una ricerca verso
+// tutte le fermate (PianificatoreViaggi.arriviVersoTutte, che non esplora oltre il tempo
+// massimo); i minuti si dividono tra i core sul ForkJoinPool comune, con i pianificatori
+// di una Scorta che finisce con il calcolo. Per ogni fermata si tiene il tempo mediano sulla finestra, così l'isocrona
+// non dipende dall'aver appena preso (o perso) una corsa.
+//
+// Il calcolo dura qualche centinaio di ms sulla rete intera: dalla UI va fatto fuori
+// dall'EDT (vedi SearchResultsPanel), il disegno è IsocronaPainter.
+
+public final class Isocrona {
+
+    public static final int[] FASCE_PREDEFINITE = {15, 30, 45};    // minuti
+    public static final int FINESTRA_PREDEFINITA = 10;              // minuti di partenza
+
+    private static final int INF = Integer.MAX_VALUE;
+
+    // Fermata raggiunta con il tempo di viaggio in secondi dalla partenza
+    public record Raggiunta(Fermate fermata, int secondi) {
+    }
+
+    private final ReteRaptor rete;
+    private final Fermate origine;
+    private final LocalDate giorno;
+    private final int partenzaSecondi;
+    private final int massimoSecondi;
+    private final int[] secondi;                // per fermata densa, -1 se non raggiunta
+    private final List<Raggiunta> raggiunte;    // dalla più vicina
+
+    private Isocrona(ReteRaptor rete, Fermate origine, LocalDate giorno, int partenzaSecondi, int massimoSecondi,
+                     int[] secondi) {
+        this.rete = rete;
+        this.origine = origine;
+        this.giorno = giorno;
+        this.partenzaSecondi = partenzaSecondi;
+        this.massimoSecondi = massimoSecondi;
+        this.secondi = secondi;
+
+        List<Raggiunta> elenco = new ArrayList<>();
+        for (int s = 0; s < secondi.length; s++) {
+            if (secondi[s] >= 0) elenco.add(new Raggiunta(rete.fermate[s], secondi[s]));
+        }
+        elenco.sort(Comparator.comparingInt(Raggiunta::secondi));
+        this.raggiunte = List.copyOf(elenco);
+    }
+
+    // Partenza a un istante: prima delle 03:00 si parte nel giorno di servizio di ieri,
+    // con l'orario oltre le 24:00 (come le corse notturne nel feed)
+    public static Isocrona calcola(ReteRaptor rete, Fermate origine, ZonedDateTime partenza) {
+        LocalDate giorno = GtfsService.giornoServizio(partenza);
+        return calcola(rete, origine, giorno, OrarioServizio.secondiDa(giorno, partenza));
+    }
+
+    public static Isocrona calcola(ReteRaptor rete, Fermate origine, LocalDate giorno, int partenzaSecondi) {
+        return calcola(rete, origine, giorno, partenzaSecondi, FINESTRA_PREDEFINITA,
+                FASCE_PREDEFINITE[FASCE_PREDEFINITE.length - 1]);
+    }
+
+    // giorno null: tutte le corse come se circolassero oggi (come PianificatoreViaggi.cerca)
+    public static Isocrona calcola(ReteRaptor rete, Fermate origine, LocalDate giorno, int partenzaSecondi,
+                                   int finestraMinuti, int massimoMinuti) {
+        int n = rete.getNumeroFermate();
+        int minuti = Math.max(1, finestraMinuti);
+        int massimo = Math.max(0, massimoMinuti) * 60;
+
+        // un minuto di partenza per ricerca, in parallelo: tempi di viaggio per fermata
+        int[][] perMinuto = new int[minuti][n];
+        PianificatoreViaggi.Scorta scorta = new PianificatoreViaggi.Scorta(rete);
+        IntStream.range(0, minuti).parallel().forEach(m -> {
+            int partenza = partenzaSecondi + m * 60;
+            int[] tempi = perMinuto[m];
+            scorta.usa(p -> p.arriviVersoTutte(origine, giorno, partenza, partenza + massimo + 1,
+                    PianificatoreViaggi.CORSE_PREDEFINITE, PianificatoreViaggi.A_PIEDI_PREDEFINITO, tempi));
+            for (int s = 0; s < n; s++) {
+                if (tempi[s] != INF) tempi[s] -= partenza;
+            }
+        });
+
+        // mediana (inferiore) sui minuti: raggiunta se ci si arriva in tempo almeno metà delle volte
+        int[] secondi = new int[n];
+        int[] valori = new int[minuti];
+        for (int s = 0; s < n; s++) {
+            for (int m = 0; m < minuti; m++) valori[m] = perMinuto[m][s];
+            Arrays.sort(valori);
+            int mediana = valori[(minuti - 1) / 2];
+            secondi[s] = mediana <= massimo ? mediana : -1;
+        }
+
+        return new Isocrona(rete, origine, giorno, partenzaSecondi, massimo, secondi);
+    }
+
+    // ==================== LETTURA ====================
+
+    // Tempo di viaggio verso la fermata in secondi, -1 se non si arriva entro il massimo
+    public int secondi(Fermate fermata) {
+        if (fermata == null) return -1;
+        int s = rete.densa(fermata.getCodiceFermata());
+        return s >= 0 ? secondi[s] : -1;
+    }
+
+    // Fermate raggiunte, dalla più vicina
+    public List<Raggiunta> getRaggiunte() {
+        return raggiunte;
+    }
+
+    // Fermate raggiunte entro i minuti dati (un prefisso di getRaggiunte)
+    public List<Raggiunta> entro(int minuti) {
+        long limite = minuti * 60L;
+        int basso = 0, alto = raggiunte.size();
+        while (basso < alto) {
+            int mezzo = (basso + alto) >>> 1;
+            if (raggiunte.get(mezzo).secondi() <= limite) basso = mezzo + 1;
+            else alto = mezzo;
+        }
+        return raggiunte.subList(0, basso);
+    }
+
+    public Fermate getOrigine() {
+        return origine;
+    }
+
+    // Giorno di servizio della partenza (null: tutte le corse)
+    public LocalDate getGiorno() {
+        return giorno;
+    }
+
+    public int getPartenzaSecondi() {
+        return partenzaSecondi;
+    }
+
+    public int getMassimoSecondi() {
+        return massimoSecondi;
+    }
+
+    public boolean isVuota() {
+        return raggiunte.isEmpty();
+    }
+}
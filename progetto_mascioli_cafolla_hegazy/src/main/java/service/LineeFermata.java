@@ -0,0 +1,221 @@
+package service;
+
+import model.gtfs.*;
+
+import java.util.*;
+
+// Linee che servono ogni fermata, calcolate una volta per versione del GTFS con una sola
+// passata sugli orari (GtfsIndex.getLineeFermata). Per fermata e per (linea, direzione):
+// prima e ultima partenza del giorno di servizio e numero di passaggi nel feed caricato.
+// Le stazioni (parent_station) raccolgono le linee di tutte le loro fermate.
+//
+// Formato CSR per codice fermata (Simboli.FERMATA): le voci della fermata f sono
+// inizio[f] .. inizio[f + 1], in ordine di numero di linea e poi di direzione.
+
+public final class LineeFermata {
+
+    // Linea e direzione che passano dalla fermata; orari in secondi dalla mezzanotte del
+    // giorno di servizio (oltre le 24:00 per le corse notturne)
+    public record Servizio(Route rotta, int direzione, int primaPartenza, int ultimaPartenza, int numeroPassaggi) {
+    }
+
+    private final GtfsIndex indice;
+    private final int[] inizio;
+    private final int[] rotta;
+    private final int[] direzione;
+    private final int[] prima;
+    private final int[] ultima;
+    private final int[] passaggi;
+
+    // Voci di una fermata durante la costruzione
+    private static final class Voci {
+        int[] chiave = new int[8];          // codiceRotta << 1 | direzione
+        int[] prima = new int[8];
+        int[] ultima = new int[8];
+        int[] passaggi = new int[8];
+        int n;
+
+        void aggiungi(int c, int primaPartenza, int ultimaPartenza, int numero) {
+            for (int i = 0; i < n; i++) {
+                if (chiave[i] == c) {
+                    prima[i] = Math.min(prima[i], primaPartenza);
+                    ultima[i] = Math.max(ultima[i], ultimaPartenza);
+                    passaggi[i] += numero;
+                    return;
+                }
+            }
+            if (n == chiave.length) {
+                chiave = Arrays.copyOf(chiave, n * 2);
+                prima = Arrays.copyOf(prima, n * 2);
+                ultima = Arrays.copyOf(ultima, n * 2);
+                passaggi = Arrays.copyOf(passaggi, n * 2);
+            }
+            chiave[n] = c;
+            prima[n] = primaPartenza;
+            ultima[n] = ultimaPartenza;
+            passaggi[n] = numero;
+            n++;
+        }
+    }
+
+    private LineeFermata(GtfsIndex indice, List<Fermate> fermate) {
+        this.indice = indice;
+        StopTimeStore store = indice.getStore();
+
+        int massimo = -1;
+        for (Fermate f : fermate) massimo = Math.max(massimo, f.getCodiceFermata());
+        Voci[] perFermata = new Voci[massimo + 1];
+
+        // Passaggi già in ordine di partenza: il primo di una linea è la prima partenza
+        for (Fermate f : fermate) {
+            Voci voci = new Voci();
+            if (store != null) {
+                int s = store.indiceFermata(f.getStopId());
+                if (s >= 0) {
+                    for (int pos = store.inizioFermata(s); pos < store.fineFermata(s); pos++) {
+                        int riga = store.rigaDiFermata(pos);
+                        aggiungi(voci, store.getCodiceTrip(riga),
+                                OrarioServizio.chiavePartenza(store.getArrivoSecondi(riga), store.getPartenzaSecondi(riga)));
+                    }
+                }
+            } else {
+                for (StopTime st : indice.orariFermata(f.getStopId())) {
+                    aggiungi(voci, st.getCodiceTrip(),
+                            OrarioServizio.chiavePartenza(st.getArrivoSecondi(), st.getPartenzaSecondi()));
+                }
+            }
+            perFermata[f.getCodiceFermata()] = voci;
+        }
+
+        // Stazioni: le voci delle fermate figlie confluiscono nella stazione
+        for (Fermate f : fermate) {
+            String padre = f.getParentStation();
+            if (padre == null || padre.isEmpty()) continue;
+            int codicePadre = f.getSimboli().fermata.cerca(padre);
+            if (codicePadre < 0 || codicePadre > massimo || perFermata[codicePadre] == null) continue;
+            Voci figlia = perFermata[f.getCodiceFermata()];
+            for (int i = 0; i < figlia.n; i++) {
+                perFermata[codicePadre].aggiungi(figlia.chiave[i], figlia.prima[i], figlia.ultima[i], figlia.passaggi[i]);
+            }
+        }
+
+        // CSR, voci di ogni fermata in ordine di linea
+        this.inizio = new int[massimo + 2];
+        int totale = 0;
+        for (int c = 0; c <= massimo; c++) {
+            inizio[c] = totale;
+            if (perFermata[c] != null) totale += perFermata[c].n;
+        }
+        inizio[massimo + 1] = totale;
+        this.rotta = new int[totale];
+        this.direzione = new int[totale];
+        this.prima = new int[totale];
+        this.ultima = new int[totale];
+        this.passaggi = new int[totale];
+
+        for (int c = 0; c <= massimo; c++) {
+            Voci voci = perFermata[c];
+            if (voci == null || voci.n == 0) continue;
+            Integer[] ordine = new Integer[voci.n];
+            for (int i = 0; i < voci.n; i++) ordine[i] = i;
+            Arrays.sort(ordine, (x, y) -> {
+                int r = confrontaLinee(indice.rotta(voci.chiave[x] >>> 1), indice.rotta(voci.chiave[y] >>> 1));
+                return r != 0 ? r : Integer.compare(voci.chiave[x], voci.chiave[y]);
+            });
+            for (int i = 0; i < voci.n; i++) {
+                int v = ordine[i], p = inizio[c] + i;
+                rotta[p] = voci.chiave[v] >>> 1;
+                direzione[p] = voci.chiave[v] & 1;
+                prima[p] = voci.prima[v];
+                ultima[p] = voci.ultima[v];
+                passaggi[p] = voci.passaggi[v];
+            }
+        }
+    }
+
+    static LineeFermata di(GtfsIndex indice, List<Fermate> fermate) {
+        return new LineeFermata(indice, fermate);
+    }
+
+    // Solo corse di linee note; le direzioni diverse da 0/1 contano come 1
+    private void aggiungi(Voci voci, int codiceTrip, int partenza) {
+        Trip trip = indice.trip(codiceTrip);
+        if (trip == null || trip.getCodiceRotta() < 0 || indice.rotta(trip.getCodiceRotta()) == null) return;
+        int dir = trip.getDirectionId() == 0 ? 0 : 1;
+        voci.aggiungi(trip.getCodiceRotta() << 1 | dir, partenza, partenza, 1);
+    }
+
+    // ==================== LETTURA ====================
+
+    public List<Servizio> servizi(Fermate fermata) {
+        return fermata != null ? servizi(fermata.getCodiceFermata()) : List.of();
+    }
+
+    public List<Servizio> servizi(int codiceFermata) {
+        if (codiceFermata < 0 || codiceFermata >= inizio.length - 1) {
+            return List.of();
+        }
+        List<Servizio> risultato = new ArrayList<>(inizio[codiceFermata + 1] - inizio[codiceFermata]);
+        for (int p = inizio[codiceFermata]; p < inizio[codiceFermata + 1]; p++) {
+            risultato.add(new Servizio(indice.rotta(rotta[p]), direzione[p], prima[p], ultima[p], passaggi[p]));
+        }
+        return risultato;
+    }
+
+    // Linee distinte che passano dalla fermata, in ordine di numero
+    public List<Route> linee(Fermate fermata) {
+        List<Route> risultato = new ArrayList<>();
+        if (fermata == null) return risultato;
+        int c = fermata.getCodiceFermata();
+        if (c < 0 || c >= inizio.length - 1) return risultato;
+        for (int p = inizio[c]; p < inizio[c + 1]; p++) {
+            if (p == inizio[c] || rotta[p] != rotta[p - 1]) risultato.add(indice.rotta(rotta[p]));
+        }
+        return risultato;
+    }
+
+    // "64, 40, 916" (al massimo "massimo" linee, poi "…"); vuota se non passa nessuna linea
+    public String elencoLinee(Fermate fermata, int massimo) {
+        List<Route> linee = linee(fermata);
+        StringJoiner elenco = new StringJoiner(", ");
+        for (int i = 0; i < linee.size() && i < massimo; i++) {
+            elenco.add(linee.get(i).getRouteShortName());
+        }
+        return linee.size() > massimo ? elenco + ", …" : elenco.toString();
+    }
+
+    public boolean isServita(Fermate fermata) {
+        return fermata != null && isServita(fermata.getCodiceFermata());
+    }
+
+    public boolean isServita(int codiceFermata) {
+        return codiceFermata >= 0 && codiceFermata < inizio.length - 1
+                && inizio[codiceFermata] < inizio[codiceFermata + 1];
+    }
+
+    // La linea passa dalla fermata (in qualunque direzione)?
+    public boolean isServitaDa(int codiceFermata, int codiceRotta) {
+        if (codiceFermata < 0 || codiceFermata >= inizio.length - 1) {
+            return false;
+        }
+        for (int p = inizio[codiceFermata]; p < inizio[codiceFermata + 1]; p++) {
+            if (rotta[p] == codiceRotta) return true;
+        }
+        return false;
+    }
+
+    // Numeri di linea in ordine "naturale": 3, 19, 64, 916, C2, MA
+    static int confrontaLinee(Route a, Route b) {
+        String x = a != null && a.getRouteShortName() != null ? a.getRouteShortName() : "";
+        String y = b != null && b.getRouteShortName() != null ? b.getRouteShortName() : "";
+        boolean nx = !x.isEmpty() && x.chars().allMatch(Character::isDigit);
+        boolean ny = !y.isEmpty() && y.chars().allMatch(Character::isDigit);
+        if (nx && ny) {
+            return x.length() != y.length() ? Integer.compare(x.length(), y.length()) : x.compareTo(y);
+        }
+        if (nx != ny) {
+            return nx ? -1 : 1;
+        }
+        return x.compareTo(y);
+    }
+}
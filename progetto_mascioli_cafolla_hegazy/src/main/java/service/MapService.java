@@ -16,11 +16,8 @@ public class MapService {
 
     private final RouteDrawer routeDrawer;
     private final WaypointDrawer waypointDrawer;
-    private final List<Fermate> fermate;
-    private final List<Route> rotte;
-    private final List<Trip> trips;
-    private final List<StopTime> stopTimes;
-    private final Map<String, ShapeRoute> forme;
+    private GtfsIndex indice;
+    private Map<String, ShapeRoute> forme;
 
 
     // COSTRUTTORE
@@ -35,31 +32,33 @@ public class MapService {
 
         this.routeDrawer = routeDrawer;
         this.waypointDrawer = waypointDrawer;
-        this.fermate = fermate;
-        this.rotte = rotte;
-        this.trips = trips;
-        this.stopTimes = stopTimes;
+        this.indice = GtfsIndex.costruisci(fermate, rotte, trips, stopTimes, null);
         this.forme = forme;
     }
 
 
+    // Passa a una nuova versione del GTFS statico (hot reload); va chiamato sull'EDT
+    public void aggiornaDati(GtfsDataset dataset) {
+        this.indice = dataset.getIndice();
+        this.forme = dataset.getForme();
+    }
+
+    private Fermate fermata(int codiceFermata) {
+        return indice.fermata(codiceFermata);
+    }
+
     // CREA I WAYPOINT ASSOCIATI A UN TRIP
 
     public List<BusWaypoint> creaWaypointsDaTrip(Trip trip) {
         List<BusWaypoint> waypoints = new ArrayList<>();
 
-        for (StopTime st : stopTimes) {
-            if (st.getTripId().equals(trip.getTripId())) {
-                Fermate f = fermate.stream()
-                        .filter(ff -> ff.getStopId().equals(st.getStopId()))
-                        .findFirst()
-                        .orElse(null);
-
-                if (f != null) {
-                    waypoints.add(new BusWaypoint(
-                            new GeoPosition(f.getStopLat(), f.getStopLon())
-                    ));
-                }
+        for (StopTime st : indice.orariTrip(trip)) {
+            Fermate f = fermata(st.getCodiceFermata());
+
+            if (f != null) {
+                waypoints.add(new BusWaypoint(
+                        new GeoPosition(f.getStopLat(), f.getStopLon())
+                ));
             }
         }
         return waypoints;
@@ -89,15 +88,11 @@ public class MapService {
     public void mostraWaypointFermate(Trip trip) {
         if (trip == null || trip.getStopTimes() == null) return;
 
-        List<StopTime> stopTrip = trip.getStopTimes();
-        stopTrip.sort(Comparator.comparingInt(StopTime::getStopSequence));
+        List<StopTime> stopTrip = indice.orariTrip(trip);
 
         Set<BusWaypoint> waypoints = new HashSet<>();
         for (StopTime st : stopTrip) {
-            Fermate fermata = this.fermate.stream()
-                    .filter(f -> f.getStopId().equals(st.getStopId()))
-                    .findFirst()
-                    .orElse(null);
+            Fermate fermata = fermata(st.getCodiceFermata());
 
             if (fermata != null) {
                 GeoPosition pos = new GeoPosition(
@@ -0,0 +1,227 @@
+package service;
+
+import model.gtfs.*;
+import model.utils.GeoUtils;
+
+import java.util.*;
+
+// Percorsi (journey pattern) di una linea per direzione: le sequenze di fermate distinte
+// con il numero di corse, il percorso canonico, i capolinea, la forma e il riquadro
+// delle fermate. Si calcolano una volta per versione del GTFS (GtfsIndex.percorsi):
+// selezionare una linea o proporre le sue direzioni non scorre più corse e orari.
+//
+// Le corse compresse si raggruppano per schema (SchemiCorse), quindi il costo è per
+// schema e non per corsa; schemi con le stesse fermate (headsign o distanze diverse)
+// diventano un solo percorso.
+
+public final class PercorsiLinea {
+
+    static final PercorsiLinea VUOTO = new PercorsiLinea(List.of());
+
+    // Sequenza di fermate (codici Simboli.FERMATA) comune a numeroCorse corse.
+    // corsa è una corsa del percorso con la forma più usata, shapeId
+    public record Percorso(int direzione, int[] fermate, int numeroCorse, Trip corsa, String shapeId) {
+        public int size() {
+            return fermate.length;
+        }
+
+        public int getCodicePrimaFermata() {
+            return fermate[0];
+        }
+
+        public int getCodiceUltimaFermata() {
+            return fermate[fermate.length - 1];
+        }
+    }
+
+    // Una direzione della linea: percorsi dal più frequente, il canonico è quello con i
+    // capolinea più lontani (a parità, il più frequente). Riquadro su tutte le fermate
+    public record Direzione(int direzione, List<Percorso> percorsi, Percorso canonico,
+                            Fermate partenza, Fermate arrivo, int numeroCorse,
+                            double latMin, double lonMin, double latMax, double lonMax) {
+
+        // Corsa rappresentativa della direzione (quella da disegnare)
+        public Trip corsa() {
+            return canonico.corsa();
+        }
+
+        public String shapeId() {
+            return canonico.shapeId();
+        }
+
+        public String descrizione() {
+            return partenza.getStopName() + " → " + arrivo.getStopName();
+        }
+
+        public double latCentro() {
+            return (latMin + latMax) / 2;
+        }
+
+        public double lonCentro() {
+            return (lonMin + lonMax) / 2;
+        }
+    }
+
+    private final List<Direzione> direzioni;   // per direction_id crescente
+
+    private PercorsiLinea(List<Direzione> direzioni) {
+        this.direzioni = direzioni;
+    }
+
+    public List<Direzione> getDirezioni() {
+        return direzioni;
+    }
+
+    // Direzione con quel direction_id, null se la linea non la percorre
+    public Direzione direzione(int direzione) {
+        for (Direzione d : direzioni) {
+            if (d.direzione() == direzione) return d;
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return direzioni.isEmpty();
+    }
+
+    // ==================== COSTRUZIONE ====================
+
+    private record Chiave(int direzione, int[] fermate) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Chiave c && direzione == c.direzione && Arrays.equals(fermate, c.fermate);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * direzione + Arrays.hashCode(fermate);
+        }
+    }
+
+    // Corse di un percorso, con le forme che usano
+    private static final class Accumulo {
+        final Chiave chiave;
+        int numeroCorse;
+        final Map<String, Integer> corsePerForma = new HashMap<>(2);
+        final Map<String, Trip> primaPerForma = new HashMap<>(2);
+
+        Accumulo(Chiave chiave) {
+            this.chiave = chiave;
+        }
+
+        void aggiungi(Trip trip) {
+            numeroCorse++;
+            String forma = trip.getShapeId() != null ? trip.getShapeId() : "";
+            corsePerForma.merge(forma, 1, Integer::sum);
+            primaPerForma.putIfAbsent(forma, trip);
+        }
+
+        Percorso percorso() {
+            String forma = null;
+            int massimo = -1;
+            for (Map.Entry<String, Integer> e : corsePerForma.entrySet()) {
+                if (e.getValue() > massimo || (e.getValue() == massimo && e.getKey().compareTo(forma) < 0)) {
+                    forma = e.getKey();
+                    massimo = e.getValue();
+                }
+            }
+            return new Percorso(chiave.direzione(), chiave.fermate(), numeroCorse, primaPerForma.get(forma),
+                    forma.isEmpty() ? null : forma);
+        }
+    }
+
+    // tripsLinea: le corse di una linea (GtfsIndex.tripsPerRotta)
+    static PercorsiLinea di(List<Trip> tripsLinea, GtfsIndex indice) {
+        if (tripsLinea.isEmpty()) {
+            return VUOTO;
+        }
+        Map<SchemaCorsa, Accumulo> perSchema = new IdentityHashMap<>();
+        Map<Chiave, Accumulo> perSequenza = new LinkedHashMap<>();
+
+        for (Trip t : tripsLinea) {
+            SchemaCorsa schema = t.getSchema();
+            Accumulo a;
+            if (schema != null) {
+                if (schema.size() < 2) continue;
+                a = perSchema.get(schema);
+                if (a == null) {
+                    a = perSequenza.computeIfAbsent(new Chiave(t.getDirectionId(), fermate(schema)), Accumulo::new);
+                    perSchema.put(schema, a);
+                }
+            } else {
+                int[] fermate = fermate(indice.orariTrip(t));
+                if (fermate.length < 2) continue;
+                a = perSequenza.computeIfAbsent(new Chiave(t.getDirectionId(), fermate), Accumulo::new);
+            }
+            a.aggiungi(t);
+        }
+
+        // Percorsi per direzione, dal più frequente
+        TreeMap<Integer, List<Percorso>> perDirezione = new TreeMap<>();
+        for (Accumulo a : perSequenza.values()) {
+            perDirezione.computeIfAbsent(a.chiave.direzione(), k -> new ArrayList<>()).add(a.percorso());
+        }
+
+        List<Direzione> direzioni = new ArrayList<>(perDirezione.size());
+        for (Map.Entry<Integer, List<Percorso>> e : perDirezione.entrySet()) {
+            List<Percorso> percorsi = e.getValue();
+            percorsi.sort(Comparator.comparingInt(Percorso::numeroCorse).reversed());
+            Direzione d = direzione(e.getKey(), percorsi, indice);
+            if (d != null) direzioni.add(d);
+        }
+        return new PercorsiLinea(List.copyOf(direzioni));
+    }
+
+    // null se nessun percorso ha entrambi i capolinea tra le fermate note
+    private static Direzione direzione(int direzione, List<Percorso> percorsi, GtfsIndex indice) {
+        Percorso canonico = null;
+        Fermate partenza = null, arrivo = null;
+        double distanzaMassima = -1;
+        int numeroCorse = 0;
+        double latMin = Double.MAX_VALUE, lonMin = Double.MAX_VALUE;
+        double latMax = -Double.MAX_VALUE, lonMax = -Double.MAX_VALUE;
+
+        for (Percorso p : percorsi) {
+            numeroCorse += p.numeroCorse();
+            for (int codice : p.fermate()) {
+                Fermate f = indice.fermata(codice);
+                if (f == null) continue;
+                latMin = Math.min(latMin, f.getStopLat());
+                lonMin = Math.min(lonMin, f.getStopLon());
+                latMax = Math.max(latMax, f.getStopLat());
+                lonMax = Math.max(lonMax, f.getStopLon());
+            }
+
+            Fermate inizio = indice.fermata(p.getCodicePrimaFermata());
+            Fermate fine = indice.fermata(p.getCodiceUltimaFermata());
+            if (inizio == null || fine == null) continue;
+            double distanza = GeoUtils.distanzaKm(inizio.getStopLat(), inizio.getStopLon(),
+                    fine.getStopLat(), fine.getStopLon());
+            // percorsi già dal più frequente: a parità di distanza resta il primo
+            if (distanza > distanzaMassima) {
+                distanzaMassima = distanza;
+                canonico = p;
+                partenza = inizio;
+                arrivo = fine;
+            }
+        }
+
+        if (canonico == null) {
+            return null;
+        }
+        return new Direzione(direzione, List.copyOf(percorsi), canonico, partenza, arrivo, numeroCorse,
+                latMin, lonMin, latMax, lonMax);
+    }
+
+    private static int[] fermate(SchemaCorsa schema) {
+        int[] fermate = new int[schema.size()];
+        for (int i = 0; i < fermate.length; i++) fermate[i] = schema.getCodiceFermata(i);
+        return fermate;
+    }
+
+    private static int[] fermate(List<StopTime> orari) {
+        int[] fermate = new int[orari.size()];
+        for (int i = 0; i < fermate.length; i++) fermate[i] = orari.get(i).getCodiceFermata();
+        return fermate;
+    }
+}
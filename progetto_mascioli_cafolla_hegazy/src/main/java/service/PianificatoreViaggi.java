@@ -0,0 +1,436 @@
+package service;
+
+import model.gtfs.*;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+// Viaggio da una fermata a un'altra con il minimo tempo di arrivo (RAPTOR a round):
+// al round k si conoscono gli arrivi migliori con al massimo k corse. Ogni round scorre
+// una volta i percorsi (ReteRaptor) che passano dalle fermate migliorate al round prima,
+// poi i cambi a piedi. Il risultato sono gli itinerari Pareto-ottimi per arrivo e numero
+// di corse: uno per ogni k che arriva prima di tutti quelli con meno corse. Senza
+// destinazione (arriviVersoTutte) dà l'arrivo migliore a ogni fermata, per Isocrona.
+//
+// Giorni di servizio: si guardano le corse di ieri (quelle oltre la mezzanotte), di oggi
+// e di domani, ognuna con il suo bitset di corse attive (GtfsIndex.corseAttive).
+// Gli array di lavoro sono allocati una volta con il pianificatore: una ricerca non
+// alloca (a parte gli itinerari che restituisce). Un pianificatore non è thread-safe:
+// ReteRaptor.pianificatore() ne crea uno, le ricerche in parallelo ne tengono una Scorta.
+
+public final class PianificatoreViaggi {
+
+    public static final int MASSIMO_CORSE = 6;            // al massimo 5 cambi
+    public static final int CORSE_PREDEFINITE = 5;
+    public static final int A_PIEDI_PREDEFINITO = 600;    // secondi per ogni tratta a piedi
+
+    private static final int INF = Integer.MAX_VALUE;
+    private static final int[] SCARTO_GIORNO = {-OrarioServizio.SECONDI_GIORNO, 0, OrarioServizio.SECONDI_GIORNO};
+
+    // Tratta a bordo di una corsa, o a piedi se corsa è null; orari in secondi dalla
+    // mezzanotte del giorno della ricerca
+    public record Tratta(Fermate da, Fermate a, int partenza, int arrivo, Trip corsa) {
+        public boolean isAPiedi() {
+            return corsa == null;
+        }
+    }
+
+    public record Itinerario(List<Tratta> tratte, int partenza, int arrivo, int numeroCorse) {
+        public int getCambi() {
+            return Math.max(0, numeroCorse - 1);
+        }
+
+        public int getDurata() {
+            return arrivo - partenza;
+        }
+    }
+
+    public record Richiesta(Fermate origine, Fermate destinazione, LocalDate giorno, int partenzaSecondi) {
+    }
+
+    private final ReteRaptor rete;
+    private final int n;    // fermate
+
+    // Per round e fermata (k * n + s): arrivo migliore, arrivo a bordo (senza l'ultima
+    // tratta a piedi) e come ci si è arrivati
+    private final int[] arrivo;
+    private final int[] arrivoBordo;
+    private final int[] padreCorsa;      // corsa globale (arrivo a bordo)
+    private final int[] padreSalita;     // posizione di salita nel percorso
+    private final int[] padreDiscesa;    // posizione di discesa nel percorso
+    private final byte[] padreGiorno;    // indice in SCARTO_GIORNO
+    private final int[] padrePiedi;      // fermata da cui si arriva a piedi, -1 se a bordo
+    private final int[] migliore;        // arrivo migliore su tutti i round
+    private final int[] miglioreBordo;   // arrivo a bordo migliore su tutti i round
+
+    // fermate migliorate nel round (elenco + flag), a bordo e in tutto
+    private final int[] bordo;
+    private final boolean[] diBordo;
+    private int numeroBordo;
+    private final int[] marcate;
+    private final boolean[] marcata;
+    private int numeroMarcate;
+
+    // percorsi da scorrere con la prima posizione da cui farlo
+    private final int[] coda;
+    private final int[] daPosizione;
+    private int numeroCoda;
+
+    private final boolean[] destinazione;
+    private final int[] origini;
+    private final int[] destinazioni;
+    private int numeroOrigini, numeroDestinazioni;
+
+    private final CorseAttive[] attive = new CorseAttive[SCARTO_GIORNO.length];
+    private int primoGiorno, ultimoGiorno;
+    private int entro = INF;     // limite agli arrivi nella ricerca verso tutte
+
+    PianificatoreViaggi(ReteRaptor rete) {
+        this.rete = rete;
+        this.n = rete.getNumeroFermate();
+        int celle = (MASSIMO_CORSE + 1) * n;
+        this.arrivo = new int[celle];
+        this.arrivoBordo = new int[celle];
+        this.padreCorsa = new int[celle];
+        this.padreSalita = new int[celle];
+        this.padreDiscesa = new int[celle];
+        this.padreGiorno = new byte[celle];
+        this.padrePiedi = new int[celle];
+        this.migliore = new int[n];
+        this.miglioreBordo = new int[n];
+        this.bordo = new int[n];
+        this.diBordo = new boolean[n];
+        this.marcate = new int[n];
+        this.marcata = new boolean[n];
+        int percorsi = rete.getNumeroPercorsi();
+        this.coda = new int[percorsi];
+        this.daPosizione = new int[percorsi];
+        Arrays.fill(daPosizione, INF);
+        this.destinazione = new boolean[n];
+        this.origini = new int[n];
+        this.destinazioni = new int[n];
+    }
+
+    public List<Itinerario> cerca(Fermate origine, Fermate arrivoA, LocalDate giorno, int partenzaSecondi) {
+        return cerca(origine, arrivoA, giorno, partenzaSecondi, CORSE_PREDEFINITE, A_PIEDI_PREDEFINITO);
+    }
+
+    // giorno null: tutte le corse del feed come se circolassero oggi.
+    // Le stazioni valgono come tutte le loro fermate
+    public List<Itinerario> cerca(Fermate origine, Fermate arrivoA, LocalDate giorno, int partenzaSecondi,
+                                  int massimoCorse, int massimoSecondiAPiedi) {
+        int corseMassime = Math.max(0, Math.min(massimoCorse, MASSIMO_CORSE));
+        numeroOrigini = espandi(origine, origini);
+        numeroDestinazioni = espandi(arrivoA, destinazioni);
+        if (numeroOrigini == 0 || numeroDestinazioni == 0) {
+            return List.of();
+        }
+        entro = INF;
+        prepara(giorno, corseMassime);
+        esegui(partenzaSecondi, corseMassime, massimoSecondiAPiedi);
+
+        List<Itinerario> risultato = itinerari(corseMassime);
+        for (int i = 0; i < numeroDestinazioni; i++) destinazione[destinazioni[i]] = false;
+        return risultato;
+    }
+
+    // Arrivo migliore a ogni fermata densa s in arrivi[s] (ricerca verso tutte, per le
+    // isocrone), INF dove non si arriva prima di "entro": gli arrivi più tardi non si esplorano
+    void arriviVersoTutte(Fermate origine, LocalDate giorno, int partenzaSecondi, int entro,
+                          int massimoCorse, int massimoSecondiAPiedi, int[] arrivi) {
+        int corseMassime = Math.max(0, Math.min(massimoCorse, MASSIMO_CORSE));
+        numeroOrigini = espandi(origine, origini);
+        numeroDestinazioni = 0;
+        if (numeroOrigini == 0) {
+            Arrays.fill(arrivi, INF);
+            return;
+        }
+        this.entro = entro;
+        prepara(giorno, corseMassime);
+        esegui(partenzaSecondi, corseMassime, massimoSecondiAPiedi);
+        System.arraycopy(migliore, 0, arrivi, 0, n);
+    }
+
+    // Richieste indipendenti in parallelo sul ForkJoinPool comune, un pianificatore per task in corso
+    public static List<List<Itinerario>> cercaInParallelo(ReteRaptor rete, List<Richiesta> richieste) {
+        List<List<Itinerario>> risultati = new ArrayList<>(Collections.nCopies(richieste.size(), List.of()));
+        Scorta scorta = new Scorta(rete);
+        IntStream.range(0, richieste.size()).parallel().forEach(i -> {
+            Richiesta r = richieste.get(i);
+            scorta.usa(p -> risultati.set(i, p.cerca(r.origine(), r.destinazione(), r.giorno(), r.partenzaSecondi())));
+        });
+        return risultati;
+    }
+
+    // Pianificatori di una chiamata in parallelo: al massimo uno per task in corso, riusati
+    // dai task successivi e lasciati al GC con la scorta a fine chiamata
+    static final class Scorta {
+        private final ReteRaptor rete;
+        private final Queue<PianificatoreViaggi> liberi = new ConcurrentLinkedQueue<>();
+
+        Scorta(ReteRaptor rete) {
+            this.rete = rete;
+        }
+
+        void usa(Consumer<PianificatoreViaggi> ricerca) {
+            PianificatoreViaggi p = liberi.poll();
+            if (p == null) p = rete.pianificatore();
+            try {
+                ricerca.accept(p);
+            } finally {
+                liberi.offer(p);
+            }
+        }
+    }
+
+    // ==================== RICERCA ====================
+
+    private void esegui(int partenzaSecondi, int corseMassime, int massimoSecondiAPiedi) {
+        // round 0: le origini, poi a piedi
+        for (int i = 0; i < numeroOrigini; i++) {
+            int o = origini[i];
+            arrivo[o] = partenzaSecondi;
+            arrivoBordo[o] = partenzaSecondi;
+            padrePiedi[o] = -1;
+            migliore[o] = partenzaSecondi;
+            miglioreBordo[o] = partenzaSecondi;
+            segnaBordo(o);
+            segna(o);
+        }
+        int limite = limite();
+        piedi(0, massimoSecondiAPiedi, limite);
+
+        for (int k = 1; k <= corseMassime && numeroMarcate > 0; k++) {
+            accodaPercorsi();
+            for (int q = 0; q < numeroCoda; q++) {
+                int p = coda[q];
+                limite = scorri(p, daPosizione[p], k, limite());
+                daPosizione[p] = INF;
+            }
+            numeroCoda = 0;
+            piedi(k, massimoSecondiAPiedi, limite());
+        }
+    }
+
+    private void prepara(LocalDate giorno, int corseMassime) {
+        Arrays.fill(arrivo, 0, (corseMassime + 1) * n, INF);
+        Arrays.fill(arrivoBordo, 0, (corseMassime + 1) * n, INF);
+        Arrays.fill(migliore, INF);
+        Arrays.fill(miglioreBordo, INF);
+        for (int i = 0; i < numeroMarcate; i++) marcata[marcate[i]] = false;
+        numeroMarcate = 0;
+        numeroBordo = 0;
+        for (int i = 0; i < numeroDestinazioni; i++) destinazione[destinazioni[i]] = true;
+
+        if (giorno == null) {
+            primoGiorno = ultimoGiorno = 1;
+            attive[1] = CorseAttive.TUTTE;
+        } else {
+            primoGiorno = 0;
+            ultimoGiorno = 2;
+            attive[0] = rete.indice.corseAttive(giorno.minusDays(1));
+            attive[1] = rete.indice.corseAttive(giorno);
+            attive[2] = rete.indice.corseAttive(giorno.plusDays(1));
+        }
+    }
+
+    // Fermate dense della fermata (o delle fermate della stazione)
+    private int espandi(Fermate fermata, int[] dove) {
+        if (fermata == null) return 0;
+        int s = rete.densa(fermata.getCodiceFermata());
+        if (s < 0) return 0;
+        int quante = 0;
+        for (int i = rete.inizioFigli[s]; i < rete.inizioFigli[s + 1]; i++) dove[quante++] = rete.figli[i];
+        if (quante == 0) dove[quante++] = s;
+        return quante;
+    }
+
+    // Arrivo migliore alla destinazione finora (o il limite della ricerca verso tutte):
+    // gli arrivi più tardi non servono
+    private int limite() {
+        int limite = entro;
+        for (int i = 0; i < numeroDestinazioni; i++) limite = Math.min(limite, migliore[destinazioni[i]]);
+        return limite;
+    }
+
+    private void segnaBordo(int s) {
+        if (!diBordo[s]) {
+            diBordo[s] = true;
+            bordo[numeroBordo++] = s;
+        }
+    }
+
+    private void segna(int s) {
+        if (!marcata[s]) {
+            marcata[s] = true;
+            marcate[numeroMarcate++] = s;
+        }
+    }
+
+    // Percorsi che passano dalle fermate migliorate, dalla prima di queste lungo il percorso
+    private void accodaPercorsi() {
+        for (int i = 0; i < numeroMarcate; i++) {
+            int s = marcate[i];
+            marcata[s] = false;
+            for (int q = rete.inizioPercorsiFermata[s]; q < rete.inizioPercorsiFermata[s + 1]; q++) {
+                int p = rete.percorsoFermata[q];
+                int posizione = rete.posizioneFermata[q];
+                if (daPosizione[p] == INF) coda[numeroCoda++] = p;
+                if (posizione < daPosizione[p]) daPosizione[p] = posizione;
+            }
+        }
+        numeroMarcate = 0;
+    }
+
+    // Scorre il percorso p dalla posizione "da" nel round k: sale sulla prima corsa utile
+    // e la cambia con una precedente se a una fermata successiva si arriva prima
+    private int scorri(int p, int da, int k, int limite) {
+        int inizioFermate = rete.inizioFermatePercorso[p];
+        int fermate = rete.inizioFermatePercorso[p + 1] - inizioFermate;
+        int primaCorsa = rete.inizioCorsePercorso[p];
+        int inizioOrari = rete.inizioOrariPercorso[p];
+        int precedente = (k - 1) * n, attuale = k * n;
+
+        int corsa = -1, giorno = 0, salita = -1;
+        for (int i = da; i < fermate; i++) {
+            int s = rete.fermatePercorso[inizioFermate + i];
+            if (corsa >= 0) {
+                int a = rete.arrivi[inizioOrari + corsa * fermate + i] + SCARTO_GIORNO[giorno];
+                // anche un arrivo a bordo non migliore di uno a piedi serve: i cambi a piedi
+                // partono solo da fermate raggiunte a bordo
+                if (a < miglioreBordo[s] && a < limite) {
+                    int c = attuale + s;
+                    arrivoBordo[c] = a;
+                    padreCorsa[c] = primaCorsa + corsa;
+                    padreSalita[c] = salita;
+                    padreDiscesa[c] = i;
+                    padreGiorno[c] = (byte) giorno;
+                    miglioreBordo[s] = a;
+                    segnaBordo(s);
+                    if (a < migliore[s]) {
+                        arrivo[c] = a;
+                        padrePiedi[c] = -1;
+                        migliore[s] = a;
+                        segna(s);
+                        if (destinazione[s]) limite = a;
+                    } else if (arrivo[c] != INF) {
+                        arrivo[c] = a;      // etichetta del round già a bordo: resta coerente con i padri
+                    }
+                }
+            }
+            int pronto = arrivo[precedente + s];
+            if (pronto == INF) continue;
+            if (corsa >= 0 && pronto > rete.partenze[inizioOrari + corsa * fermate + i] + SCARTO_GIORNO[giorno]) continue;
+
+            // prima corsa che parte da qui non prima di "pronto", su tutti i giorni di servizio
+            int migliorePartenza = corsa >= 0 ? rete.partenze[inizioOrari + corsa * fermate + i] + SCARTO_GIORNO[giorno] : INF;
+            int numeroCorse = rete.inizioCorsePercorso[p + 1] - primaCorsa;
+            for (int g = primoGiorno; g <= ultimoGiorno; g++) {
+                long cercato = (long) pronto - SCARTO_GIORNO[g];
+                int basso = 0, alto = numeroCorse;
+                while (basso < alto) {
+                    int mezzo = (basso + alto) >>> 1;
+                    if (rete.partenze[inizioOrari + mezzo * fermate + i] < cercato) basso = mezzo + 1;
+                    else alto = mezzo;
+                }
+                for (int j = basso; j < numeroCorse; j++) {
+                    int partenza = rete.partenze[inizioOrari + j * fermate + i] + SCARTO_GIORNO[g];
+                    if (partenza >= migliorePartenza) break;
+                    if (attive[g].contiene(rete.codiciCorse[primaCorsa + j])) {
+                        migliorePartenza = partenza;
+                        corsa = j;
+                        giorno = g;
+                        salita = i;
+                        break;
+                    }
+                }
+            }
+        }
+        return limite;
+    }
+
+    // Cambi a piedi dalle fermate raggiunte a bordo (o dalle origini) nel round k
+    private void piedi(int k, int massimoSecondi, int limite) {
+        int base = k * n;
+        for (int i = 0; i < numeroBordo; i++) {
+            int s = bordo[i];
+            diBordo[s] = false;
+            int partenza = arrivoBordo[base + s];
+            for (int q = rete.inizioPiedi[s]; q < rete.inizioPiedi[s + 1]; q++) {
+                int secondi = rete.piediSecondi[q];
+                if (secondi > massimoSecondi) continue;
+                int t = rete.piediVerso[q];
+                int a = partenza + secondi;
+                if (a < migliore[t] && a < limite) {
+                    arrivo[base + t] = a;
+                    padrePiedi[base + t] = s;
+                    migliore[t] = a;
+                    segna(t);
+                    if (destinazione[t]) limite = a;
+                }
+            }
+        }
+        numeroBordo = 0;
+    }
+
+    // ==================== ITINERARI ====================
+
+    private List<Itinerario> itinerari(int corseMassime) {
+        List<Itinerario> risultato = new ArrayList<>();
+        int migliorArrivo = INF;
+        for (int k = 0; k <= corseMassime; k++) {
+            int arrivato = -1;
+            for (int i = 0; i < numeroDestinazioni; i++) {
+                int d = destinazioni[i];
+                if (arrivo[k * n + d] < migliorArrivo) {
+                    migliorArrivo = arrivo[k * n + d];
+                    arrivato = d;
+                }
+            }
+            if (arrivato >= 0) {
+                Itinerario it = ricostruisci(k, arrivato);
+                if (!it.tratte().isEmpty()) risultato.add(it);
+            }
+        }
+        return risultato;
+    }
+
+    private Itinerario ricostruisci(int k, int s) {
+        List<Tratta> tratte = new ArrayList<>();
+        boolean aBordo = false;     // dopo una tratta a piedi si segue l'arrivo a bordo
+        int corse = 0;
+        while (true) {
+            int c = k * n + s;
+            if (!aBordo && padrePiedi[c] >= 0) {
+                int da = padrePiedi[c];
+                tratte.add(new Tratta(rete.fermate[da], rete.fermate[s], arrivoBordo[k * n + da], arrivo[c], null));
+                s = da;
+                aBordo = true;
+                continue;
+            }
+            if (k == 0) break;
+            int corsa = padreCorsa[c];
+            int p = rete.percorsoDiCorsa[corsa];
+            int fermate = rete.inizioFermatePercorso[p + 1] - rete.inizioFermatePercorso[p];
+            int base = rete.inizioOrariPercorso[p] + (corsa - rete.inizioCorsePercorso[p]) * fermate;
+            int scarto = SCARTO_GIORNO[padreGiorno[c]];
+            int salita = rete.fermatePercorso[rete.inizioFermatePercorso[p] + padreSalita[c]];
+            tratte.add(new Tratta(rete.fermate[salita], rete.fermate[s],
+                    rete.partenze[base + padreSalita[c]] + scarto,
+                    rete.arrivi[base + padreDiscesa[c]] + scarto, rete.corse[corsa]));
+            corse++;
+            s = salita;
+            k--;
+            aBordo = false;
+        }
+        Collections.reverse(tratte);
+        if (tratte.isEmpty()) {
+            return new Itinerario(List.of(), 0, 0, 0);
+        }
+        return new Itinerario(List.copyOf(tratte), tratte.get(0).partenza(),
+                tratte.get(tratte.size() - 1).arrivo(), corse);
+    }
+}
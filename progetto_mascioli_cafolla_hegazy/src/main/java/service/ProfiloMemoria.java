@@ -0,0 +1,48 @@
+package service;
+
+// Quanta parte dell'orario GTFS tenere in memoria.
+// Si sceglie all'avvio con -Dgtfs.profilo=finestra (e -Dgtfs.finestra.giorni=N, default 2):
+// pensato per i totem con poca RAM, dove le corse dei servizi non attivi nei prossimi
+// giorni (molte, nel feed di Roma) sono solo heap sprecato.
+
+public enum ProfiloMemoria {
+
+    // Tutto il feed, come sempre (default)
+    COMPLETO,
+
+    // Solo le corse dei servizi attivi tra oggi - N e oggi + N giorni,
+    // con la finestra che si sposta a ogni cambio del giorno di servizio
+    FINESTRA;
+
+    public static final String PROPRIETA_PROFILO = "gtfs.profilo";
+    public static final String PROPRIETA_GIORNI = "gtfs.finestra.giorni";
+    public static final int GIORNI_PREDEFINITI = 2;
+
+    // Profilo indicato dalle proprietà di sistema (COMPLETO se assente o non valido)
+    public static ProfiloMemoria daProprieta() {
+        String valore = System.getProperty(PROPRIETA_PROFILO);
+        if (valore == null || valore.isBlank()) {
+            return COMPLETO;
+        }
+        try {
+            return valueOf(valore.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Profilo di memoria GTFS sconosciuto: " + valore + " (uso COMPLETO)");
+            return COMPLETO;
+        }
+    }
+
+    public static int giorniDaProprieta() {
+        String valore = System.getProperty(PROPRIETA_GIORNI);
+        if (valore == null || valore.isBlank()) {
+            return GIORNI_PREDEFINITI;
+        }
+        try {
+            return Math.max(0, Integer.parseInt(valore.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Giorni della finestra GTFS non validi: " + valore
+                    + " (uso " + GIORNI_PREDEFINITI + ")");
+            return GIORNI_PREDEFINITI;
+        }
+    }
+}
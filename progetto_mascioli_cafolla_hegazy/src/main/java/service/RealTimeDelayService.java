@@ -4,7 +4,6 @@ import com.google.transit.realtime.GtfsRealtime.*;
 import model.gtfs.*;
 import java.io.IOException;
 import java.util.*;
-import java.util.stream.Collectors;
 
 // >>> NUOVE IMPORT (serve per i test)
 import java.util.function.Function;   // serve per i test
@@ -31,10 +30,8 @@ public class RealTimeDelayService {
     private long lastFetchEpochMillis = 0;
     private static final long CACHE_MS = 30_000; // 30 secondi
 
-    // MAPPE per lookup O(1)
-    private final Map<String, Trip> tripsById;
-    private final Map<String, Route> routesById;
-    private final Set<String> validTripStopPairs;
+    // MAPPE per lookup O(1), sostituite tutte insieme quando cambia il GTFS statico
+    private volatile IndiciStatici indici;
 
     // CACHE DEI DELAY PER TRIP (fallback)
     private final Map<String, Integer> delayByTrip = new HashMap<>();
@@ -72,20 +69,11 @@ public class RealTimeDelayService {
         this.clockMillis = System::currentTimeMillis; // serve per i test
 
         // CREA MAPPE PER LOOKUP VELOCE
-        this.tripsById = trips.stream()
-                .collect(Collectors.toMap(Trip::getTripId, t -> t, (a, b) -> a));
-
-        this.routesById = routes.stream()
-                .collect(Collectors.toMap(Route::getRouteId, r -> r, (a, b) -> a));
-
-        // COPPIE VALIDE (trip_id#stop_id) dallo statico
-        this.validTripStopPairs = stopTimes.stream()
-                .map(st -> st.getTripId() + "#" + st.getStopId())
-                .collect(Collectors.toSet());
+        this.indici = new IndiciStatici(trips, routes, stopTimes);
 
         System.out.println("[RealTimeDelayService]  Inizializzato");
-        System.out.println("[RealTimeDelayService]   " + tripsById.size() + " trip");
-        System.out.println("[RealTimeDelayService]   " + validTripStopPairs.size() + " coppie trip/stop valide");
+        System.out.println("[RealTimeDelayService]   " + indici.tripsById.numeroPresenti() + " trip");
+        System.out.println("[RealTimeDelayService]   " + indici.validTripStopPairs.length + " coppie trip/stop valide");
     }
 
     //COSTRUTTORE PER TEST (serve per i test)
@@ -107,15 +95,61 @@ public class RealTimeDelayService {
         this.tripFeedParser = Objects.requireNonNull(tripFeedParser);   // serve per i test
         this.clockMillis = Objects.requireNonNull(clockMillis);         // serve per i test
 
-        this.tripsById = trips.stream()
-                .collect(Collectors.toMap(Trip::getTripId, t -> t, (a, b) -> a));
+        this.indici = new IndiciStatici(trips, routes, stopTimes);
+    }
+
+    // Passa a una nuova versione del GTFS statico (hot reload).
+    // Le mappe si costruiscono sul thread chiamante, poi si sostituiscono in un colpo solo:
+    // una richiesta in corso finisce con le mappe vecchie, le successive usano le nuove.
+    public void aggiornaDati(GtfsDataset dataset) {
+        this.indici = new IndiciStatici(dataset.getTrips(), dataset.getRotte(), dataset.getStopTimes());
+        System.out.println("[RealTimeDelayService]  Indici aggiornati alla versione " + dataset.getVersioneBreve());
+    }
+
+    // Lookup derivati dal GTFS statico, per codice Simboli: gli ID del feed RT si convertono
+    // con cerca sulle tabelle dello statico (un ID mai visto nello statico non ha codice)
+    private static final class IndiciStatici {
+        final Simboli.Tabelle simboli;
+        final MappaPerCodice<Trip> tripsById;
+        final MappaPerCodice<Route> routesById;
+        // COPPIE VALIDE (codice trip << 32 | codice stop) dallo statico, ordinate
+        final long[] validTripStopPairs;
+
+        IndiciStatici(List<Trip> trips, List<Route> routes, List<StopTime> stopTimes) {
+            this.simboli = !trips.isEmpty() ? trips.get(0).getSimboli()
+                    : !stopTimes.isEmpty() ? stopTimes.get(0).getSimboli()
+                    : !routes.isEmpty() ? routes.get(0).getSimboli()
+                    : Simboli.Tabelle.PREDEFINITE;
+            this.tripsById = MappaPerCodice.di(trips, Trip::getCodiceTrip);
+            this.routesById = MappaPerCodice.di(routes, Route::getCodiceRotta);
+
+            long[] coppie = new long[stopTimes.size()];
+            int n = 0;
+            for (StopTime st : stopTimes) {
+                coppie[n++] = coppia(st.getCodiceTrip(), st.getCodiceFermata());
+            }
+            Arrays.sort(coppie);
+            this.validTripStopPairs = coppie;
+        }
+
+        Trip trip(String tripId) {
+            return tripsById.get(simboli.trip.cerca(tripId));
+        }
 
-        this.routesById = routes.stream()
-                .collect(Collectors.toMap(Route::getRouteId, r -> r, (a, b) -> a));
+        Route rotta(String routeId) {
+            return routesById.get(simboli.rotta.cerca(routeId));
+        }
 
-        this.validTripStopPairs = stopTimes.stream()
-                .map(st -> st.getTripId() + "#" + st.getStopId())
-                .collect(Collectors.toSet());
+        boolean coppiaValida(String tripId, String stopId) {
+            int trip = simboli.trip.cerca(tripId);
+            int fermata = simboli.fermata.cerca(stopId);
+            if (trip == Simboli.NESSUNO || fermata == Simboli.NESSUNO) return false;
+            return Arrays.binarySearch(validTripStopPairs, coppia(trip, fermata)) >= 0;
+        }
+
+        private static long coppia(int codiceTrip, int codiceFermata) {
+            return ((long) codiceTrip << 32) | (codiceFermata & 0xFFFFFFFFL);
+        }
     }
 
 
@@ -125,6 +159,7 @@ public class RealTimeDelayService {
 
     public Map<String, List<Integer>> getAllDelaysForStop(String stopId) {
         Map<String, List<Integer>> delays = new HashMap<>();
+        IndiciStatici indici = this.indici; // stessa versione per tutta la richiesta
 
         byte[] tripData;
         try {
@@ -176,10 +211,10 @@ public class RealTimeDelayService {
 
                 if (tripId == null || tripId.isEmpty()) continue;
 
-                Trip staticTrip = tripsById.get(tripId);
+                Trip staticTrip = indici.trip(tripId);
                 if (staticTrip == null) continue;
 
-                Route route = routesById.get(staticTrip.getRouteId());
+                Route route = indici.routesById.get(staticTrip.getCodiceRotta());
                 if (route == null || route.getRouteShortName() == null) continue;
 
                 String routeShortName = route.getRouteShortName();
@@ -208,8 +243,7 @@ public class RealTimeDelayService {
                 // FALLBACK: Se non trova delay specifico, usa delay del trip
                 if (!foundExactStop && delayByTrip.containsKey(tripId)) {
                     // VERIFICA CHE LA COPPIA TRIP/STOP SIA VALIDA
-                    String pairKey = tripId + "#" + stopId;
-                    if (validTripStopPairs.contains(pairKey)) {
+                    if (indici.coppiaValida(tripId, stopId)) {
                         int delaySeconds = delayByTrip.get(tripId);
                         delays.computeIfAbsent(routeShortName, k -> new ArrayList<>())
                                 .add(delaySeconds);
@@ -236,6 +270,7 @@ public class RealTimeDelayService {
 
     public Map<String, Integer> getDelaysByTripId(String stopId) {
         Map<String, Integer> delaysByLineaOrario = new HashMap<>();
+        IndiciStatici indici = this.indici; // stessa versione per tutta la richiesta
 
         // Per il monitor qualità: stopName
         String stopName = "N/A"; // Verrà sovrascritto se disponibile
@@ -264,7 +299,7 @@ public class RealTimeDelayService {
                 if (routeIdRT == null) continue;
 
                 //Converti route_id in route_short_name (numero linea)
-                Route route = routesById.get(routeIdRT);
+                Route route = indici.rotta(routeIdRT);
                 if (route == null) continue;
 
                 String nomeLinea = route.getRouteShortName();
@@ -0,0 +1,300 @@
+package service;
+
+import model.gtfs.*;
+
+import java.util.*;
+
+// Orario compilato per il calcolo dei percorsi (RAPTOR, vedi PianificatoreViaggi).
+// Le corse di ogni linea sono raggruppate per sequenza di fermate in "percorsi" e ordinate
+// per partenza; un percorso non contiene sorpassi (ogni corsa passa da ogni fermata non
+// prima della precedente), quindi la prima corsa utile a una fermata si trova con una
+// ricerca binaria. Tutto è in array di int indicizzati per fermata "densa" (0 .. n-1):
+//
+//   fermate del percorso p:   fermatePercorso[inizioFermatePercorso[p] .. [p + 1])
+//   corse del percorso p:     inizioCorsePercorso[p] .. [p + 1] (indici di corsa globali)
+//   orari della corsa j di p: arrivi/partenze[inizioOrariPercorso[p] + j * fermate + i]
+//   percorsi della fermata s: percorsoFermata/posizioneFermata[inizioPercorsiFermata[s] .. [s + 1])
+//   cambi a piedi da s:       piediVerso/piediSecondi[inizioPiedi[s] .. [s + 1]) (GrafoTrasferimenti)
+//   fermate della stazione s: figli[inizioFigli[s] .. [s + 1])
+//
+// Si compila una volta per versione del GTFS (GtfsIndex.getRete, al primo uso) ed è di
+// sola lettura: la condividono tutti i PianificatoreViaggi, uno per thread.
+
+public final class ReteRaptor {
+
+    final GtfsIndex indice;
+    final Fermate[] fermate;
+    private final int[] indiceDiCodice;     // codice Simboli.FERMATA -> fermata densa, -1 se assente
+
+    final int[] inizioFermatePercorso;
+    final int[] fermatePercorso;
+    final int[] inizioCorsePercorso;
+    final int[] inizioOrariPercorso;
+    final int[] arrivi;
+    final int[] partenze;
+
+    final Trip[] corse;
+    final int[] codiciCorse;
+    final int[] percorsoDiCorsa;
+
+    final int[] inizioPercorsiFermata;
+    final int[] percorsoFermata;
+    final int[] posizioneFermata;
+
+    final int[] inizioPiedi;
+    final int[] piediVerso;
+    final int[] piediSecondi;
+
+    final int[] inizioFigli;
+    final int[] figli;
+
+    // Corsa con gli orari già completi (senza buchi) sulle fermate dense della sequenza
+    private record CorsaCompilata(Trip trip, int[] arrivi, int[] partenze) {
+        // nessun orario prima di quello della corsa precedente
+        boolean nonSorpassa(CorsaCompilata precedente) {
+            for (int i = 0; i < arrivi.length; i++) {
+                if (arrivi[i] < precedente.arrivi[i] || partenze[i] < precedente.partenze[i]) return false;
+            }
+            return true;
+        }
+    }
+
+    private record Chiave(int rotta, int[] fermate) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Chiave c && rotta == c.rotta && Arrays.equals(fermate, c.fermate);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * rotta + Arrays.hashCode(fermate);
+        }
+    }
+
+    private ReteRaptor(GtfsIndex indice, List<Fermate> elenco, int massimaRotta) {
+        this.indice = indice;
+        this.fermate = elenco.toArray(new Fermate[0]);
+        int n = fermate.length;
+        int massimo = -1;
+        for (Fermate f : fermate) massimo = Math.max(massimo, f.getCodiceFermata());
+        this.indiceDiCodice = new int[massimo + 1];
+        Arrays.fill(indiceDiCodice, -1);
+        for (int s = 0; s < n; s++) indiceDiCodice[fermate[s].getCodiceFermata()] = s;
+
+        // corse raggruppate per linea e sequenza di fermate
+        Map<Chiave, List<CorsaCompilata>> gruppi = new LinkedHashMap<>();
+        for (int r = 0; r <= massimaRotta; r++) {
+            for (Trip t : indice.tripsPerRotta(r)) {
+                int[] sequenza = sequenza(t);
+                if (sequenza == null) continue;
+                CorsaCompilata c = compila(t, sequenza.length);
+                if (c != null) gruppi.computeIfAbsent(new Chiave(r, sequenza), k -> new ArrayList<>()).add(c);
+            }
+        }
+
+        // ogni gruppo diventa uno o più percorsi senza sorpassi
+        List<int[]> sequenze = new ArrayList<>();
+        List<List<CorsaCompilata>> percorsi = new ArrayList<>();
+        for (Map.Entry<Chiave, List<CorsaCompilata>> e : gruppi.entrySet()) {
+            List<CorsaCompilata> ordinate = e.getValue();
+            ordinate.sort(Comparator.comparingInt((CorsaCompilata c) -> c.partenze()[0])
+                    .thenComparingInt(c -> c.arrivi()[c.arrivi().length - 1]));
+            List<List<CorsaCompilata>> senzaSorpassi = new ArrayList<>(1);
+            for (CorsaCompilata c : ordinate) {
+                List<CorsaCompilata> dove = null;
+                for (List<CorsaCompilata> l : senzaSorpassi) {
+                    if (c.nonSorpassa(l.get(l.size() - 1))) {
+                        dove = l;
+                        break;
+                    }
+                }
+                if (dove == null) {
+                    dove = new ArrayList<>();
+                    senzaSorpassi.add(dove);
+                }
+                dove.add(c);
+            }
+            for (List<CorsaCompilata> l : senzaSorpassi) {
+                sequenze.add(e.getKey().fermate());
+                percorsi.add(l);
+            }
+        }
+
+        int numeroPercorsi = percorsi.size();
+        this.inizioFermatePercorso = new int[numeroPercorsi + 1];
+        this.inizioCorsePercorso = new int[numeroPercorsi + 1];
+        this.inizioOrariPercorso = new int[numeroPercorsi + 1];
+        for (int p = 0; p < numeroPercorsi; p++) {
+            int fermatePerCorsa = sequenze.get(p).length;
+            int numeroCorse = percorsi.get(p).size();
+            inizioFermatePercorso[p + 1] = inizioFermatePercorso[p] + fermatePerCorsa;
+            inizioCorsePercorso[p + 1] = inizioCorsePercorso[p] + numeroCorse;
+            inizioOrariPercorso[p + 1] = inizioOrariPercorso[p] + fermatePerCorsa * numeroCorse;
+        }
+        this.fermatePercorso = new int[inizioFermatePercorso[numeroPercorsi]];
+        this.corse = new Trip[inizioCorsePercorso[numeroPercorsi]];
+        this.codiciCorse = new int[corse.length];
+        this.percorsoDiCorsa = new int[corse.length];
+        this.arrivi = new int[inizioOrariPercorso[numeroPercorsi]];
+        this.partenze = new int[arrivi.length];
+        int[] passaggiFermata = new int[n + 1];
+        for (int p = 0; p < numeroPercorsi; p++) {
+            int[] sequenza = sequenze.get(p);
+            System.arraycopy(sequenza, 0, fermatePercorso, inizioFermatePercorso[p], sequenza.length);
+            for (int s : sequenza) passaggiFermata[s + 1]++;
+            List<CorsaCompilata> l = percorsi.get(p);
+            for (int j = 0; j < l.size(); j++) {
+                CorsaCompilata c = l.get(j);
+                int g = inizioCorsePercorso[p] + j;
+                corse[g] = c.trip();
+                codiciCorse[g] = c.trip().getCodiceTrip();
+                percorsoDiCorsa[g] = p;
+                int base = inizioOrariPercorso[p] + j * sequenza.length;
+                System.arraycopy(c.arrivi(), 0, arrivi, base, sequenza.length);
+                System.arraycopy(c.partenze(), 0, partenze, base, sequenza.length);
+            }
+        }
+
+        // percorsi che passano da ogni fermata, con la posizione nella sequenza
+        for (int s = 0; s < n; s++) passaggiFermata[s + 1] += passaggiFermata[s];
+        this.inizioPercorsiFermata = passaggiFermata;
+        this.percorsoFermata = new int[passaggiFermata[n]];
+        this.posizioneFermata = new int[passaggiFermata[n]];
+        int[] prossima = Arrays.copyOf(passaggiFermata, n);
+        for (int p = 0; p < numeroPercorsi; p++) {
+            for (int i = inizioFermatePercorso[p]; i < inizioFermatePercorso[p + 1]; i++) {
+                int q = prossima[fermatePercorso[i]]++;
+                percorsoFermata[q] = p;
+                posizioneFermata[q] = i - inizioFermatePercorso[p];
+            }
+        }
+
+        // cambi a piedi sulle fermate dense
+        GrafoTrasferimenti grafo = indice.getTrasferimenti();
+        this.inizioPiedi = new int[n + 1];
+        int[] verso = new int[grafo.size()];
+        int[] secondi = new int[grafo.size()];
+        int archi = 0;
+        for (int s = 0; s < n; s++) {
+            int c = fermate[s].getCodiceFermata();
+            for (int q = grafo.inizio(c); q < grafo.fine(c); q++) {
+                int t = densa(grafo.getCodiceFermataVerso(q));
+                if (t < 0) continue;
+                verso[archi] = t;
+                secondi[archi++] = grafo.getSecondi(q);
+            }
+            inizioPiedi[s + 1] = archi;
+        }
+        this.piediVerso = Arrays.copyOf(verso, archi);
+        this.piediSecondi = Arrays.copyOf(secondi, archi);
+
+        // fermate di ogni stazione (parent_station)
+        this.inizioFigli = new int[n + 1];
+        int[] padreDi = new int[n];
+        for (int s = 0; s < n; s++) {
+            String padre = fermate[s].getParentStation();
+            padreDi[s] = padre == null || padre.isEmpty() ? -1 : densa(fermate[s].getSimboli().fermata.cerca(padre));
+            if (padreDi[s] >= 0) inizioFigli[padreDi[s] + 1]++;
+        }
+        for (int s = 0; s < n; s++) inizioFigli[s + 1] += inizioFigli[s];
+        this.figli = new int[inizioFigli[n]];
+        int[] prossimoFiglio = Arrays.copyOf(inizioFigli, n);
+        for (int s = 0; s < n; s++) {
+            if (padreDi[s] >= 0) figli[prossimoFiglio[padreDi[s]]++] = s;
+        }
+    }
+
+    static ReteRaptor di(GtfsIndex indice, List<Fermate> fermate, int massimaRotta) {
+        return new ReteRaptor(indice, fermate, massimaRotta);
+    }
+
+    // Fermate dense della corsa, null se è troppo corta o passa da fermate sconosciute
+    private int[] sequenza(Trip t) {
+        SchemaCorsa schema = t.getSchema();
+        int[] sequenza;
+        if (schema != null) {
+            sequenza = new int[schema.size()];
+            for (int i = 0; i < sequenza.length; i++) sequenza[i] = densa(schema.getCodiceFermata(i));
+        } else {
+            List<StopTime> orari = indice.orariTrip(t);
+            sequenza = new int[orari.size()];
+            for (int i = 0; i < sequenza.length; i++) sequenza[i] = densa(orari.get(i).getCodiceFermata());
+        }
+        if (sequenza.length < 2) return null;
+        for (int s : sequenza) {
+            if (s < 0) return null;
+        }
+        return sequenza;
+    }
+
+    // Orari della corsa: un arrivo o una partenza mancante prende l'altro, le fermate senza
+    // orari (non "timepoint") si interpolano tra le vicine; null se la corsa non ha orari
+    private CorsaCompilata compila(Trip t, int n) {
+        int[] arr = new int[n];
+        int[] dep = new int[n];
+        SchemaCorsa schema = t.getSchema();
+        List<StopTime> orari = schema == null ? indice.orariTrip(t) : null;
+        for (int i = 0; i < n; i++) {
+            int a = schema != null ? t.getArrivoSecondi(i) : orari.get(i).getArrivoSecondi();
+            int d = schema != null ? t.getPartenzaSecondi(i) : orari.get(i).getPartenzaSecondi();
+            arr[i] = a >= 0 ? a : d;
+            dep[i] = d >= 0 ? d : a;
+        }
+
+        int precedente = -1;
+        for (int i = 0; i < n; i++) {
+            if (arr[i] < 0) continue;
+            if (precedente < 0 && i > 0) {
+                for (int j = 0; j < i; j++) arr[j] = dep[j] = arr[i];
+            } else if (precedente >= 0 && i - precedente > 1) {
+                for (int j = precedente + 1; j < i; j++) {
+                    int v = dep[precedente] + (arr[i] - dep[precedente]) * (j - precedente) / (i - precedente);
+                    arr[j] = dep[j] = v;
+                }
+            }
+            precedente = i;
+        }
+        if (precedente < 0) {
+            return null;
+        }
+        for (int j = precedente + 1; j < n; j++) arr[j] = dep[j] = dep[precedente];
+
+        // orari che tornano indietro (dati sporchi): mai prima della fermata precedente
+        for (int i = 0; i < n; i++) {
+            if (i > 0) arr[i] = Math.max(arr[i], dep[i - 1]);
+            dep[i] = Math.max(dep[i], arr[i]);
+        }
+        return new CorsaCompilata(t, arr, dep);
+    }
+
+    // ==================== LETTURA ====================
+
+    // Fermata densa del codice Simboli.FERMATA, -1 se non è nella rete
+    int densa(int codiceFermata) {
+        return codiceFermata >= 0 && codiceFermata < indiceDiCodice.length ? indiceDiCodice[codiceFermata] : -1;
+    }
+
+    // Nuovo pianificatore con i propri array di lavoro: lo tiene chi lo usa (niente
+    // ThreadLocal, che sui worker del pool comune terrebbe in vita la rete vecchia)
+    public PianificatoreViaggi pianificatore() {
+        return new PianificatoreViaggi(this);
+    }
+
+    public int getNumeroFermate() {
+        return fermate.length;
+    }
+
+    public int getNumeroPercorsi() {
+        return inizioCorsePercorso.length - 1;
+    }
+
+    public int getNumeroCorse() {
+        return corse.length;
+    }
+
+    @Override
+    public String toString() {
+        return fermate.length + " fermate, " + getNumeroPercorsi() + " percorsi, " + corse.length
+                + " corse, " + arrivi.length + " orari, " + piediVerso.length + " cambi a piedi";
+    }
+}
@@ -0,0 +1,97 @@
+package service;
+
+import model.gtfs.FinestraServizio;
+import model.utils.Database;
+import model.utils.GtfsFeedSource;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Sposta la finestra dell'orario (profilo FINESTRA) a ogni cambio del giorno di servizio.
+// Quando il giorno su cui è centrato il dataset attivo è passato, ricarica corse e orari
+// per la nuova finestra e li scambia come un ricaricamento a caldo.
+// Il controllo è periodico e non solo alle 03:00: se nel frattempo GtfsReloader attiva
+// una versione costruita il giorno prima, la finestra viene corretta al giro successivo.
+
+public class RinnovoFinestra implements AutoCloseable {
+
+    static final Duration INTERVALLO_PREDEFINITO = Duration.ofMinutes(30);
+
+    private final GtfsService servizio;
+    private final Supplier<ZonedDateTime> orologio; // serve per i test
+    private final ScheduledExecutorService scheduler;
+
+    public RinnovoFinestra(GtfsService servizio) {
+        this(servizio, () -> ZonedDateTime.now(GtfsReloader.FUSO_ORARIO));
+    }
+
+    RinnovoFinestra(GtfsService servizio, Supplier<ZonedDateTime> orologio) { // serve per i test
+        this.servizio = Objects.requireNonNull(servizio);
+        this.orologio = Objects.requireNonNull(orologio);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gtfs-finestra");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    // Rinnovo per il servizio dato; null se carica il feed intero (niente da spostare)
+    public static RinnovoFinestra perServizio(GtfsService servizio) {
+        return servizio.getProfilo() == ProfiloMemoria.FINESTRA ? new RinnovoFinestra(servizio) : null;
+    }
+
+    public void avvia() {
+        avvia(INTERVALLO_PREDEFINITO);
+    }
+
+    public void avvia(Duration intervallo) {
+        scheduler.scheduleWithFixedDelay(this::rinnovaInSicurezza,
+                intervallo.toMillis(), intervallo.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void rinnovaInSicurezza() {
+        try {
+            rinnova();
+        } catch (RuntimeException e) {
+            System.err.println("Errore nello spostamento della finestra GTFS: " + e.getMessage());
+        }
+    }
+
+    // Un giro di controllo; ritorna true se è stata attivata una finestra nuova.
+    // Va chiamato sul thread dello scheduler (o da un test, a scheduler fermo).
+    boolean rinnova() {
+        GtfsDataset attivo = servizio.getDataset();
+        if (attivo == null || attivo.getFinestra() == null) {
+            return false;
+        }
+        LocalDate oggi = GtfsService.giornoServizio(orologio.get());
+        if (!attivo.getFinestra().daSpostare(oggi)) {
+            return false;
+        }
+
+        // la sorgente si legge dopo il dataset: GtfsReloader la cambia prima di attivare
+        // la versione nuova, quindi qui non si legge mai un feed più vecchio di attivo
+        GtfsFeedSource sorgente = Database.getSorgente();
+        FinestraServizio nuova = servizio.finestraPer(oggi);
+        System.out.println("Nuovo giorno di servizio " + oggi + ": orario GTFS ricaricato per " + nuova);
+        GtfsDataset rinnovato = servizio.caricaNuovaVersione(sorgente, attivo.getVersione(), nuova);
+        if (servizio.attiva(attivo, rinnovato) == null) {
+            // nel frattempo GtfsReloader ha attivato un'altra versione: la finestra si sposta al giro dopo
+            System.out.println("Dataset GTFS cambiato durante il rinnovo della finestra, rinnovo scartato");
+            return false;
+        }
+        return true;
+    }
+}
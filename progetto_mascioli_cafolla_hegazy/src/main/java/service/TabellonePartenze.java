@@ -0,0 +1,225 @@
+package service;
+
+import model.gtfs.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Tabellone delle prossime partenze da una fermata.
+// I passaggi di ogni fermata sono già in ordine di partenza (archivio colonnare o
+// GtfsIndex.perFermata): l'inizio della finestra si trova con una ricerca binaria
+// e si scorre solo fino alla fine dell'orizzonte, quindi O(log n + k) per tabellone.
+// Filtri su linea e direzione, righe duplicate e giorno di servizio lavorano sugli
+// interi; il risultato va in un contenitore Righe riusabile, senza oggetti per riga.
+//
+// La finestra è in secondi dalla mezzanotte di oggi: una corsa di ieri alle 24:30
+// cade alle 00:30, una di domani alle 00:10 cade alle 24:10 (come OrarioServizio.inFinestra).
+// Per questo si cercano tre intervalli (ieri, oggi, domani) e si fondono in ordine.
+// Con la data di oggi ogni intervallo tiene solo le corse attive nel proprio giorno di
+// servizio (bitset compilati da GtfsIndex.corseAttive): niente corse festive nei feriali.
+
+public final class TabellonePartenze {
+
+    // Filtro disattivato (linea o direzione qualsiasi)
+    public static final int QUALSIASI = -1;
+
+    // Spostamento sulla scala di oggi degli orari di ciascun giorno di servizio
+    private static final int IERI = -OrarioServizio.SECONDI_GIORNO;
+    private static final int OGGI = 0;
+    private static final int DOMANI = OrarioServizio.SECONDI_GIORNO;
+
+    private final GtfsIndex indice;
+    private final StopTimeStore store;
+
+    public TabellonePartenze(GtfsIndex indice) {
+        this.indice = indice;
+        this.store = indice.getStore();
+    }
+
+    // Righe di un tabellone: colonne di interi, riusabili tra una ricerca e l'altra
+    public static final class Righe {
+        private final int[] codiceTrip;
+        private final int[] codiceRotta;
+        private final int[] arrivo;      // secondi del giorno di servizio, ASSENTE se manca
+        private final int[] partenza;
+        private final int[] secondi;     // partenza sulla scala di oggi (può essere < 0 o >= 24h)
+        private int n;
+
+        public Righe(int massimo) {
+            codiceTrip = new int[massimo];
+            codiceRotta = new int[massimo];
+            arrivo = new int[massimo];
+            partenza = new int[massimo];
+            secondi = new int[massimo];
+        }
+
+        public int size() { return n; }
+        public boolean isEmpty() { return n == 0; }
+        public int getMassimo() { return codiceTrip.length; }
+        public int getCodiceTrip(int i) { return codiceTrip[controlla(i)]; }
+        public int getCodiceRotta(int i) { return codiceRotta[controlla(i)]; }
+        public int getArrivoSecondi(int i) { return arrivo[controlla(i)]; }
+        public int getPartenzaSecondi(int i) { return partenza[controlla(i)]; }
+        public int getSecondi(int i) { return secondi[controlla(i)]; }
+
+        private int controlla(int i) {
+            if (i < 0 || i >= n) throw new IndexOutOfBoundsException(i);
+            return i;
+        }
+
+        private boolean piena() {
+            return n == codiceTrip.length;
+        }
+
+        // Stessa linea alla stessa ora (al minuto): varianti di calendario della stessa corsa
+        private boolean giaPresente(int rotta, int valore) {
+            int minuto = Math.floorDiv(valore, 60);
+            for (int j = n - 1; j >= 0 && Math.floorDiv(secondi[j], 60) == minuto; j--) {
+                if (codiceRotta[j] == rotta) return true;
+            }
+            return false;
+        }
+
+        private void aggiungi(int trip, int rotta, int arr, int par, int valore) {
+            codiceTrip[n] = trip;
+            codiceRotta[n] = rotta;
+            arrivo[n] = arr;
+            partenza[n] = par;
+            secondi[n] = valore;
+            n++;
+        }
+    }
+
+    // Riga del tabellone con gli oggetti del modello, per chi deve mostrarla
+    public record Partenza(Trip trip, Route rotta, Fermate capolinea,
+                           int arrivoSecondi, int partenzaSecondi, int secondi) {
+    }
+
+    public Partenza partenza(Righe righe, int i) {
+        Trip trip = indice.trip(righe.getCodiceTrip(i));
+        return new Partenza(trip, indice.rottaDi(trip), indice.capolinea(trip),
+                righe.getArrivoSecondi(i), righe.getPartenzaSecondi(i), righe.getSecondi(i));
+    }
+
+    // Riempie "righe" con le partenze da stopId in [inizio, fine] (secondi da mezzanotte
+    // di "oggi"), in ordine, fino alla sua capienza. Ritorna il numero di righe trovate
+    public int cerca(String stopId, LocalDate oggi, int inizio, int fine, int codiceRotta, int direzione,
+                     Righe righe) {
+        CorseAttive ieri = CorseAttive.TUTTE, diOggi = CorseAttive.TUTTE, domani = CorseAttive.TUTTE;
+        if (oggi != null) {
+            ieri = indice.corseAttive(oggi.minusDays(1));
+            diOggi = indice.corseAttive(oggi);
+            domani = indice.corseAttive(oggi.plusDays(1));
+        }
+
+        righe.n = 0;
+        // Linea che non passa dalla fermata: niente da scorrere
+        if (codiceRotta != QUALSIASI && indice.rotta(codiceRotta) != null
+                && !indice.getLineeFermata().isServitaDa(indice.getSimboli().fermata.cerca(stopId), codiceRotta)) {
+            return 0;
+        }
+        if (store != null) {
+            int f = store.indiceFermata(stopId);
+            if (f < 0) return 0;
+            cerca(null, store.inizioFermata(f), store.fineFermata(f), inizio, fine, codiceRotta, direzione,
+                    ieri, diOggi, domani, righe);
+        } else {
+            List<StopTime> orari = indice.orariFermata(stopId);
+            cerca(orari, 0, orari.size(), inizio, fine, codiceRotta, direzione, ieri, diOggi, domani, righe);
+        }
+        return righe.n;
+    }
+
+    // Senza data: tutte le corse, qualunque sia il loro calendario
+    public int cerca(String stopId, int inizio, int fine, int codiceRotta, int direzione, Righe righe) {
+        return cerca(stopId, null, inizio, fine, codiceRotta, direzione, righe);
+    }
+
+    // Fusione dei tre intervalli di posizioni [da, a), uno per giorno di servizio
+    private void cerca(List<StopTime> orari, int inizioSegmento, int fineSegmento,
+                       int inizio, int fine, int codiceRotta, int direzione,
+                       CorseAttive ieri, CorseAttive oggi, CorseAttive domani, Righe righe) {
+        int da0 = primaNonMinore(orari, inizioSegmento, fineSegmento, inizio - IERI);
+        int a0 = primaNonMinore(orari, da0, fineSegmento, fine - IERI + 1);
+        int da1 = primaNonMinore(orari, inizioSegmento, fineSegmento, inizio - OGGI);
+        int a1 = primaNonMinore(orari, da1, fineSegmento, fine - OGGI + 1);
+        int da2 = primaNonMinore(orari, inizioSegmento, fineSegmento, inizio - DOMANI);
+        int a2 = primaNonMinore(orari, da2, fineSegmento, fine - DOMANI + 1);
+
+        while (!righe.piena()) {
+            int v0 = da0 < a0 ? chiave(orari, da0) + IERI : Integer.MAX_VALUE;
+            int v1 = da1 < a1 ? chiave(orari, da1) + OGGI : Integer.MAX_VALUE;
+            int v2 = da2 < a2 ? chiave(orari, da2) + DOMANI : Integer.MAX_VALUE;
+            int pos;
+            int valore;
+            CorseAttive attive;
+            if (v0 == Integer.MAX_VALUE && v1 == Integer.MAX_VALUE && v2 == Integer.MAX_VALUE) {
+                return;
+            } else if (v0 <= v1 && v0 <= v2) {
+                pos = da0++;
+                valore = v0;
+                attive = ieri;
+            } else if (v1 <= v2) {
+                pos = da1++;
+                valore = v1;
+                attive = oggi;
+            } else {
+                pos = da2++;
+                valore = v2;
+                attive = domani;
+            }
+            valuta(orari, pos, valore, codiceRotta, direzione, attive, righe);
+        }
+    }
+
+    private void valuta(List<StopTime> orari, int pos, int valore, int codiceRotta, int direzione,
+                        CorseAttive attive, Righe righe) {
+        int codiceTrip, arr, par;
+        if (orari == null) {
+            int riga = store.rigaDiFermata(pos);
+            codiceTrip = store.getCodiceTrip(riga);
+            arr = store.getArrivoSecondi(riga);
+            par = store.getPartenzaSecondi(riga);
+        } else {
+            StopTime st = orari.get(pos);
+            codiceTrip = st.getCodiceTrip();
+            arr = st.getArrivoSecondi();
+            par = st.getPartenzaSecondi();
+        }
+
+        if (!attive.contiene(codiceTrip)) return;
+        Trip trip = indice.trip(codiceTrip);
+        if (trip == null) return;
+        int rotta = trip.getCodiceRotta();
+        if (codiceRotta != QUALSIASI && rotta != codiceRotta) return;
+        if (direzione != QUALSIASI && trip.getDirectionId() != direzione) return;
+        if (indice.rotta(rotta) == null) return;
+        if (righe.giaPresente(rotta, valore)) return;
+
+        righe.aggiungi(codiceTrip, rotta, arr, par, valore);
+    }
+
+    // Chiave di ordinamento del passaggio in posizione pos (vedi OrarioServizio.chiavePartenza)
+    private int chiave(List<StopTime> orari, int pos) {
+        if (orari == null) {
+            int riga = store.rigaDiFermata(pos);
+            return OrarioServizio.chiavePartenza(store.getArrivoSecondi(riga), store.getPartenzaSecondi(riga));
+        }
+        StopTime st = orari.get(pos);
+        return OrarioServizio.chiavePartenza(st.getArrivoSecondi(), st.getPartenzaSecondi());
+    }
+
+    // Prima posizione in [da, a) con chiave >= valore (a se non c'è)
+    private int primaNonMinore(List<StopTime> orari, int da, int a, int valore) {
+        int basso = da, alto = a;
+        while (basso < alto) {
+            int medio = (basso + alto) >>> 1;
+            if (chiave(orari, medio) < valore) {
+                basso = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return basso;
+    }
+}
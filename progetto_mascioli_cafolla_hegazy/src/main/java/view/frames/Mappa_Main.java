@@ -3,6 +3,7 @@ package view.frames;
 import model.gtfs.*;
 import model.user.UserManager;
 import model.utils.Database;
+import model.utils.IndiceRicerca;
 import org.jxmapviewer.JXMapViewer;
 import org.jxmapviewer.viewer.GeoPosition;
 import view.panels.*;
@@ -14,8 +15,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 //import classi
 import service.MapService;
+import service.CaricamentoGtfs;
+import service.GtfsDataset;
+import service.GtfsReloader;
 import service.GtfsService;
 import service.RealTimeDelayService;
+import service.RinnovoFinestra;
 import controller.MapController;
 import view.map.BusWaypoint;
 import view.map.RouteDrawer;
@@ -33,19 +38,17 @@ public class Mappa_Main extends JFrame {
     private FavoritesPanel favoritesPanel;
     private UserProfilePanel userProfilePanel;
     private SettingsPanel settingsPanel;
+    private LoadingPanel loadingPanel;
     private String currentTheme = SettingsPanel.COLOR_BLU;
 
     //per tornare indietro
     private Route currentSelectedRoute = null;
     private Trip currentSelectedTrip = null;
 
-    // Dati GTFS
+    // Dati GTFS: null finché la fase di caricamento corrispondente non è conclusa
     private List<Fermate> fermate;
     private List<Route> rotte;
     private Map<String, ShapeRoute> forme;
-    private List<Trip> trips;
-    private List<StopTime> stopTimes;
-    private Map<String, List<StopTime>> stopTimesPerStopId;  // indice per fermata
 
     private Map<String, CalendarDate> calendari;
     private List<CalendarDate> eccezioni;
@@ -53,8 +56,22 @@ public class Mappa_Main extends JFrame {
     private WaypointDrawer waypointDrawer;
     private MapService mapService;
     private MapController mapController;
-    private RealTimeDelayService delayService;
+    private volatile RealTimeDelayService delayService;
     private ServiceQualityPanel qualityPanel;
+    private GtfsService gtfsService;
+    private volatile GtfsReloader gtfsReloader;
+    private volatile RinnovoFinestra rinnovoFinestra;
+
+    // true quando il dataset GTFS completo (con gli indici) è arrivato all'interfaccia
+    private boolean datiPronti = false;
+
+    // Fermate per posizione, per il click destro sulla mappa
+    private GrigliaFermate grigliaFermate = GrigliaFermate.vuota();
+    private static final double RAGGIO_SELEZIONE_METRI = 300;
+
+    // Ricerca per nome con l'indice del dataset (null finché il dataset non è pronto)
+    private IndiceRicerca indiceRicerca;
+    private static final int MASSIMO_RISULTATI = 50;
 
 
     // COSTRUTTORE PER TEST (serve per i test)
@@ -82,6 +99,7 @@ public class Mappa_Main extends JFrame {
             favoritesPanel = new FavoritesPanel(); // serve per i test
             userProfilePanel = new UserProfilePanel(); // serve per i test
             settingsPanel = new SettingsPanel(); // serve per i test
+            loadingPanel = new LoadingPanel(); // serve per i test
 
             // qualityPanel: proviamo a costruirlo con delayService null (in test non lo usiamo)
             // Se il tuo ServiceQualityPanel non accetta null, dimmelo e lo rendiamo iniettabile.
@@ -92,6 +110,7 @@ public class Mappa_Main extends JFrame {
             favoritesPanel.setVisible(false); // serve per i test
             userProfilePanel.setVisible(false); // serve per i test
             settingsPanel.setVisible(false); // serve per i test
+            loadingPanel.setVisible(false); // serve per i test
             qualityPanel.setVisible(false); // serve per i test
 
             add(layeredPane, BorderLayout.CENTER); // serve per i test
@@ -110,15 +129,9 @@ public class Mappa_Main extends JFrame {
         UserManager.caricaUtenti();
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        // Caricamento dati GTFS tramite GtfsService
-        GtfsService gtfsService = new GtfsService();
-        fermate = gtfsService.getFermate();
-        rotte = gtfsService.getRotte();
-        forme = gtfsService.getForme();
-        trips = gtfsService.getTrips();
-        stopTimes = gtfsService.getStopTimes();
-        eccezioni = gtfsService.getEccezioni();
-        stopTimesPerStopId = gtfsService.getStopTimesPerStopId();
+        // Caricamento dati GTFS in background: mappa e barra di ricerca sono subito
+        // utilizzabili, le funzioni si abilitano man mano che i loro dati sono pronti
+        gtfsService = GtfsService.inBackground();
 
         // Setup mappa di base
         mapViewer = MapInitializer.creaMappaBase();
@@ -169,6 +182,10 @@ public class Mappa_Main extends JFrame {
         settingsPanel.setVisible(false);
         layeredPane.add(settingsPanel, JLayeredPane.PALETTE_LAYER);
 
+        loadingPanel = new LoadingPanel();
+        loadingPanel.setBounds(30, getHeight() - 110, 400, 70);
+        layeredPane.add(loadingPanel, JLayeredPane.PALETTE_LAYER);
+
         // Bottoni e pannelli
         setupButtonListeners();
         userProfilePanel.setOnLoginListener(() -> {
@@ -179,10 +196,11 @@ public class Mappa_Main extends JFrame {
             }
         });
 
-        // Servizi e controller
+        // Servizi e controller (senza dati: li ricevono a caricamento concluso)
         routeDrawer = new RouteDrawer(mapViewer);
         waypointDrawer = new WaypointDrawer(mapViewer, routeDrawer);
-        mapService = new MapService(routeDrawer, waypointDrawer, fermate, rotte, trips, stopTimes, forme);
+        mapService = new MapService(routeDrawer, waypointDrawer,
+                List.of(), List.of(), List.of(), List.of(), Map.of());
 
         // CREAZIONE CONTROLLER PRIMA DEI LISTENER
         mapController = new MapController(
@@ -191,23 +209,15 @@ public class Mappa_Main extends JFrame {
                 routeDrawer,
                 waypointDrawer,
                 resultsPanel,
-                fermate,
-                rotte,
-                trips,
-                stopTimes,
-                forme
+                List.of(),
+                List.of(),
+                List.of(),
+                List.of(),
+                Map.of()
         );
 
-        //INIZIALIZZAZIONE SERVIZIO RITARDI REAL-TIME
-        System.out.println("Inizializzazione servizio ritardi real-time...");
-        delayService = new RealTimeDelayService(trips, rotte, stopTimes);
-
-        // PASSA IL SERVIZIO AL PANNELLO RISULTATI
-        resultsPanel.setDelayService(delayService);
-        System.out.println("Servizio ritardi collegato al pannello risultati");
-
-        //INIZIALIZZA PANNELLO QUALITÀ CONTESTUALE
-        qualityPanel = new ServiceQualityPanel(delayService);  //passa delayService
+        //INIZIALIZZA PANNELLO QUALITÀ CONTESTUALE (il servizio ritardi arriva con il dataset)
+        qualityPanel = new ServiceQualityPanel(null);
         qualityPanel.setBounds(getWidth() - 410, 100, 380, 500);
         qualityPanel.setVisible(false);
         layeredPane.add(qualityPanel, JLayeredPane.PALETTE_LAYER);
@@ -218,20 +228,22 @@ public class Mappa_Main extends JFrame {
 
         System.out.println("Dashboard qualità contestuale inizializzata");
 
-        // Configura i pannelli con i drawer
-        resultsPanel.setRouteDrawer(routeDrawer, forme);
-        resultsPanel.setWaypointDrawer(waypointDrawer, fermate, rotte, trips, stopTimes);
-
         // Listener di ricerca (mapController è inizializzato )
         setupSearchListener();
+        setupSelezioneFermataSullaMappa();
 
         // Listener per i preferiti
         favoritesPanel.setOnFavoriteClickListener(preferito -> {
             System.out.println("Preferito cliccato: " + preferito.getNome() + " (" + preferito.getTipo() + ")");
+            if ((preferito.getTipo().equals("FERMATA") && fermate == null)
+                    || (preferito.getTipo().equals("LINEA") && rotte == null)) {
+                JOptionPane.showMessageDialog(this, "Dati GTFS in caricamento, riprova tra poco.");
+                return;
+            }
             resultsPanel.clearResults();
 
             if (preferito.getTipo().equals("FERMATA")) {
-                List<Fermate> fermateTrovate = Database.ricercaFermatePerNome(fermate, preferito.getNome());
+                List<Fermate> fermateTrovate = cercaFermate(fermate, preferito.getNome());
                 if (!fermateTrovate.isEmpty()) {
                     resultsPanel.aggiornaRisultati(fermateTrovate);
                     resultsPanel.setVisible(true);
@@ -240,7 +252,7 @@ public class Mappa_Main extends JFrame {
                     JOptionPane.showMessageDialog(this, "Fermata non trovata nel database!");
                 }
             } else if (preferito.getTipo().equals("LINEA")) {
-                List<Route> rotteTrovate = Database.ricercaRottePerNome(rotte, preferito.getNome());
+                List<Route> rotteTrovate = cercaRotte(rotte, preferito.getNome());
                 if (!rotteTrovate.isEmpty()) {
                     resultsPanel.aggiornaRisultatiRotte(rotteTrovate);
                     resultsPanel.setVisible(true);
@@ -255,6 +267,102 @@ public class Mappa_Main extends JFrame {
         add(layeredPane, BorderLayout.CENTER);
         setVisible(true);
         setExtendedState(JFrame.MAXIMIZED_BOTH);
+
+        seguiCaricamento(gtfsService.getCaricamento());
+    }
+
+    // Collega l'interfaccia alle fasi del caricamento GTFS.
+    // I future si completano sui thread del caricamento: ogni modifica ai campi
+    // e ai pannelli passa dall'EDT.
+    private void seguiCaricamento(CaricamentoGtfs caricamento) {
+        caricamento.aggiungiAscoltatore((fase, completate, totali) ->
+                SwingUtilities.invokeLater(() -> loadingPanel.aggiorna(fase, completate, totali)));
+        // fasi già concluse prima della registrazione (es. dallo snapshot)
+        int giaConcluse = caricamento.getFasiCompletate();
+        if (giaConcluse > 0) {
+            loadingPanel.aggiorna("in corso", giaConcluse, caricamento.getFasiTotali());
+        }
+
+        // Ricerca per nome/ID: fermate e linee servono da sole
+        caricamento.getFermate().thenAccept(f -> SwingUtilities.invokeLater(() -> {
+            if (!datiPronti) {
+                fermate = f;
+                System.out.println("Ricerca fermate disponibile (" + f.size() + " fermate)");
+            }
+        }));
+        caricamento.getRotte().thenAccept(r -> SwingUtilities.invokeLater(() -> {
+            if (!datiPronti) {
+                rotte = r;
+                System.out.println("Ricerca linee disponibile (" + r.size() + " linee)");
+            }
+        }));
+
+        // Orari, disegno delle linee e ritardi: servono il dataset completo e i suoi indici
+        caricamento.getDataset().whenComplete((dataset, errore) -> {
+            if (errore != null) {
+                SwingUtilities.invokeLater(() -> loadingPanel.errore("Caricamento dati GTFS non riuscito"));
+                return;
+            }
+            //INIZIALIZZAZIONE SERVIZIO RITARDI REAL-TIME (fuori dall'EDT)
+            System.out.println("Inizializzazione servizio ritardi real-time...");
+            RealTimeDelayService servizioRitardi =
+                    new RealTimeDelayService(dataset.getTrips(), dataset.getRotte(), dataset.getStopTimes());
+
+            SwingUtilities.invokeLater(() -> {
+                delayService = servizioRitardi;
+                // PASSA IL SERVIZIO AL PANNELLO RISULTATI
+                resultsPanel.setDelayService(servizioRitardi);
+                qualityPanel.setDelayService(servizioRitardi);
+                System.out.println("Servizio ritardi collegato al pannello risultati");
+                applicaDataset(dataset);
+            });
+
+            // Ricaricamento a caldo del feed GTFS (solo con -Dgtfs.feed=...)
+            gtfsService.aggiungiAscoltatore(this::aggiornaDatasetGtfs);
+            gtfsReloader = GtfsReloader.perFeedPredefinito(gtfsService);
+            if (gtfsReloader != null) {
+                gtfsReloader.avvia();
+            }
+            // Profilo a finestra: l'orario segue il giorno di servizio
+            rinnovoFinestra = RinnovoFinestra.perServizio(gtfsService);
+            if (rinnovoFinestra != null) {
+                rinnovoFinestra.avvia();
+            }
+        });
+    }
+
+    // Chiamato dal reloader quando diventa attiva una nuova versione del GTFS.
+    // Gli indici del servizio ritardi si ricostruiscono qui, fuori dall'EDT; il resto
+    // si aggiorna in un unico task sull'EDT, così nessun listener vede dati a metà.
+    private void aggiornaDatasetGtfs(GtfsDataset dataset) {
+        if (delayService != null) {
+            delayService.aggiornaDati(dataset);
+        }
+        SwingUtilities.invokeLater(() -> applicaDataset(dataset));
+    }
+
+    // Porta campi, servizi e pannelli su un dataset completo; va chiamato sull'EDT
+    private void applicaDataset(GtfsDataset dataset) {
+        fermate = dataset.getFermate();
+        rotte = dataset.getRotte();
+        forme = dataset.getForme();
+        eccezioni = dataset.getEccezioni();
+
+        mapService.aggiornaDati(dataset);
+        mapController.aggiornaDati(dataset);
+        resultsPanel.setRouteDrawer(routeDrawer, forme);
+        resultsPanel.setWaypointDrawer(waypointDrawer, dataset.getIndice());
+        grigliaFermate = dataset.getIndice().getGrigliaFermate();
+        indiceRicerca = dataset.getIndice().getRicerca();
+        datiPronti = true;
+        System.out.println("Interfaccia aggiornata al GTFS versione " + dataset.getVersioneBreve());
+    }
+
+    // Risultato provvisorio per le azioni che arrivano prima dei dati che usano
+    private void mostraDatiInCaricamento() {
+        resultsPanel.clearResults();
+        resultsPanel.addResult("Dati in caricamento...", "Riprova tra qualche secondo", "", null);
+        resultsPanel.setVisible(true);
     }
 
     private void setupSearchListener() {
@@ -268,6 +376,14 @@ public class Mappa_Main extends JFrame {
 
             if (testo.isEmpty()) return;
 
+            if (fermate == null && rotte == null) {
+                mostraDatiInCaricamento();
+                return;
+            }
+            // Una delle due può essere ancora in caricamento: si cerca in quella pronta
+            List<Fermate> fermate = this.fermate != null ? this.fermate : List.of();
+            List<Route> rotte = this.rotte != null ? this.rotte : List.of();
+
             resultsPanel.clearResults();
             boolean trovataFermata = false;
             boolean trovataRotta = false;
@@ -277,10 +393,9 @@ public class Mappa_Main extends JFrame {
                 System.out.println("Ricerca numerica: controllo ID fermata e ID linea");
 
                 // 1 Cerca fermata con stop_id uguale
-                Fermate fermataTrovata = fermate.stream()
-                        .filter(f -> f.getStopId().equals(testo))
-                        .findFirst()
-                        .orElse(null);
+                Fermate fermataTrovata = indiceRicerca != null
+                        ? indiceRicerca.fermataPerId(testo)
+                        : fermate.stream().filter(f -> f.getStopId().equals(testo)).findFirst().orElse(null);
 
                 if (fermataTrovata != null) {
                     trovataFermata = true;
@@ -289,10 +404,9 @@ public class Mappa_Main extends JFrame {
                 }
 
                 // 2 Cerca linea con route_id uguale
-                Route rottaTrovata = rotte.stream()
-                        .filter(r -> r.getRouteId().equals(testo))
-                        .findFirst()
-                        .orElse(null);
+                Route rottaTrovata = indiceRicerca != null
+                        ? indiceRicerca.rottaPerId(testo)
+                        : rotte.stream().filter(r -> r.getRouteId().equals(testo)).findFirst().orElse(null);
 
                 if (rottaTrovata != null) {
                     trovataRotta = true;
@@ -302,7 +416,7 @@ public class Mappa_Main extends JFrame {
 
                 // 3 Se non trova nulla come ID → cerca per nome numerico
                 if (!trovataFermata && !trovataRotta) {
-                    List<Route> rotteTrovate = Database.ricercaRottePerNome(rotte, testo);
+                    List<Route> rotteTrovate = cercaRotte(rotte, testo);
                     trovataRotta = !rotteTrovate.isEmpty();
                     resultsPanel.aggiornaRisultatiRotte(rotteTrovate);
                 }
@@ -311,8 +425,8 @@ public class Mappa_Main extends JFrame {
                 // Ricerca testuale (nome)
                 System.out.println("Ricerca testuale: cerco fermate e linee per nome");
 
-                List<Fermate> fermateTrovate = Database.ricercaFermatePerNome(fermate, testo);
-                List<Route> rotteTrovate = Database.ricercaRottePerNome(rotte, testo);
+                List<Fermate> fermateTrovate = cercaFermate(fermate, testo);
+                List<Route> rotteTrovate = cercaRotte(rotte, testo);
 
                 trovataFermata = !fermateTrovate.isEmpty();
                 trovataRotta = !rotteTrovate.isEmpty();
@@ -343,11 +457,21 @@ public class Mappa_Main extends JFrame {
                 mapController.fermaAggiornamentoRealtimeBus();
             }
 
-            resultsPanel.mostraOrariFermata(fermata, stopTimes, trips, rotte, fermate, null, null, "RICERCA");
+            if (!datiPronti) {
+                mostraDatiInCaricamento();
+                return;
+            }
+            resultsPanel.mostraOrariFermata(fermata, null, null, null, "RICERCA");
             mapService.mostraWaypointLinee(fermata);
         });
 
-        resultsPanel.setOnRouteClickListener(mapController::mostraLinea);
+        resultsPanel.setOnRouteClickListener(rotta -> {
+            if (!datiPronti) {
+                mostraDatiInCaricamento();
+                return;
+            }
+            mapController.mostraLinea(rotta);
+        });
 
         resultsPanel.setOnLineaStopClickListener(fermata -> {
             System.out.println("Fermata cliccata: " + fermata.getStopName());
@@ -364,32 +488,42 @@ public class Mappa_Main extends JFrame {
                 return;
             }
 
-            List<Trip> tripsLinea = new ArrayList<>();
-            for (Trip t : trips) {
-                if (t.getRouteId().equals(lineaSelezionata.getRouteId())) {
-                    tripsLinea.add(t);
-                }
-            }
+            resultsPanel.clearResults();
+            resultsPanel.mostraOrariFermata(fermata, lineaSelezionata, null, null, "RICERCA");
+        });
+    }
 
-            List<StopTime> stopTimesFermata =
-                    stopTimesPerStopId.getOrDefault(fermata.getStopId(), Collections.emptyList());
+    // Con l'indice: i migliori MASSIMO_RISULTATI per qualità e importanza; prima che sia pronto
+    // (dataset ancora in caricamento) la scansione lineare sulle liste già arrivate
+    private List<Fermate> cercaFermate(List<Fermate> fermate, String testo) {
+        return indiceRicerca != null
+                ? indiceRicerca.cercaFermate(testo, MASSIMO_RISULTATI)
+                : Database.ricercaFermatePerNome(fermate, testo);
+    }
 
-            List<StopTime> stopTimesLinea = new ArrayList<>();
-            for (StopTime st : stopTimesFermata) {
-                for (Trip t : tripsLinea) {
-                    if (st.getTripId().equals(t.getTripId())) {
-                        stopTimesLinea.add(st);
-                        break;
-                    }
-                }
-            }
+    private List<Route> cercaRotte(List<Route> rotte, String testo) {
+        return indiceRicerca != null
+                ? indiceRicerca.cercaRotte(testo, MASSIMO_RISULTATI)
+                : Database.ricercaRottePerNome(rotte, testo);
+    }
 
-            resultsPanel.clearResults();
-            resultsPanel.mostraOrariFermata(
-                    fermata, stopTimesLinea, tripsLinea,
-                    List.of(lineaSelezionata), fermate,
-                    null, null, "RICERCA"
-            );
+    // Click destro sulla mappa: orari della fermata più vicina al punto (entro RAGGIO_SELEZIONE_METRI)
+    private void setupSelezioneFermataSullaMappa() {
+        mapViewer.addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                if (!SwingUtilities.isRightMouseButton(e) || !datiPronti) return;
+
+                GeoPosition punto = mapViewer.convertPointToGeoPosition(e.getPoint());
+                Fermate fermata = grigliaFermate.piuVicina(punto.getLatitude(), punto.getLongitude(),
+                        RAGGIO_SELEZIONE_METRI);
+                if (fermata == null) return;   // niente fermate vicine: il click non fa nulla
+
+                mapController.fermaAggiornamentoRealtimeBus();
+                resultsPanel.mostraOrariFermata(fermata, null, null, null, "RICERCA");
+                mapService.mostraWaypointLinee(fermata);
+                resultsPanel.setVisible(true);
+            }
         });
     }
 
@@ -459,6 +593,7 @@ public class Mappa_Main extends JFrame {
         userProfilePanel.updateTheme(colorTheme);
         settingsPanel.updateTheme(colorTheme);
         qualityPanel.updateTheme(colorTheme);
+        loadingPanel.updateTheme(colorTheme);
         layeredPane.repaint();
     }
 
@@ -485,6 +620,9 @@ public class Mappa_Main extends JFrame {
                 qualityPanel.setBounds(layeredPane.getWidth() - 410, 100, 380, 500);
 
             }
+            if (loadingPanel != null) {
+                loadingPanel.setBounds(30, layeredPane.getHeight() - 100, 400, 70);
+            }
 
         }
     }
@@ -494,6 +632,12 @@ public class Mappa_Main extends JFrame {
         if (mapController != null) {
             mapController.fermaAggiornamentoRealtimeBus();
         }
+        if (gtfsReloader != null) {
+            gtfsReloader.close();
+        }
+        if (rinnovoFinestra != null) {
+            rinnovoFinestra.close();
+        }
         super.dispose();
     }
 
@@ -0,0 +1,126 @@
+package view.map;
+
+import model.gtfs.Fermate;
+import model.gtfs.GrafoTrasferimenti;
+import org.jxmapviewer.JXMapViewer;
+import org.jxmapviewer.painter.Painter;
+import org.jxmapviewer.viewer.GeoPosition;
+import service.Isocrona;
+import service.PianificatoreViaggi;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+
+ // Disegna un'isocrona (service.Isocrona) come zone colorate semitrasparenti, una per fascia:
+ // attorno a ogni fermata raggiunta un cerchio grande quanto si cammina nel tempo che resta
+ // (al massimo il limite a piedi del pianificatore). I cerchi si disegnano opachi in una
+ // maschera e la maschera si stende una volta sola, così le sovrapposizioni non si scuriscono.
+
+public class IsocronaPainter implements Painter<JXMapViewer> {
+
+    // dalla fascia più vicina alla più lontana
+    private static final Color[] COLORI = {
+            new Color(0, 160, 80),
+            new Color(255, 190, 0),
+            new Color(230, 90, 40)
+    };
+    private static final float OPACITA = 0.35f;
+    private static final double METRI_PER_GRADO = 111_320.0;
+    private static final double METRI_MASSIMI = GrafoTrasferimenti.metriAPiedi(PianificatoreViaggi.A_PIEDI_PREDEFINITO);
+
+    private final Isocrona isocrona;
+    private final int[] fasce;
+
+    // posizioni in pixel delle fermate raggiunte, ricalcolate solo quando cambia lo zoom
+    private int zoomPosizioni = Integer.MIN_VALUE;
+    private double[] x, y;
+
+    // maschera riusata tra un disegno e l'altro, riallocata solo se cambia la dimensione della mappa
+    private BufferedImage maschera;
+
+    public IsocronaPainter(Isocrona isocrona) {
+        this(isocrona, Isocrona.FASCE_PREDEFINITE);
+    }
+
+    public IsocronaPainter(Isocrona isocrona, int[] fasceMinuti) {
+        this.isocrona = isocrona;
+        this.fasce = fasceMinuti.clone();
+        Arrays.sort(this.fasce);
+    }
+
+    public Isocrona getIsocrona() {
+        return isocrona;
+    }
+
+    // Colore della fascia i-esima (dalla più vicina), usato anche per la legenda
+    public static Color colore(int fascia) {
+        return COLORI[Math.min(fascia, COLORI.length - 1)];
+    }
+
+    @Override
+    public void paint(Graphics2D g, JXMapViewer map, int w, int h) {
+        List<Isocrona.Raggiunta> raggiunte = isocrona.getRaggiunte();
+        if (raggiunte.isEmpty() || w <= 0 || h <= 0) return;
+
+        int zoom = map.getZoom();
+        if (zoom != zoomPosizioni) posizioni(map, zoom, raggiunte);
+
+        // pixel per metro alla latitudine dell'origine
+        Fermate origine = isocrona.getOrigine();
+        double lat = origine != null ? origine.getStopLat() : raggiunte.get(0).fermata().getStopLat();
+        double lon = origine != null ? origine.getStopLon() : raggiunte.get(0).fermata().getStopLon();
+        Point2D a = map.getTileFactory().geoToPixel(new GeoPosition(lat, lon), zoom);
+        Point2D b = map.getTileFactory().geoToPixel(new GeoPosition(lat + 0.01, lon), zoom);
+        double pixelPerMetro = Math.abs(a.getY() - b.getY()) / (0.01 * METRI_PER_GRADO);
+
+        Rectangle rect = map.getViewportBounds();
+        if (maschera == null || maschera.getWidth() != w || maschera.getHeight() != h) {
+            maschera = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D m = maschera.createGraphics();
+        m.setComposite(AlphaComposite.Clear);
+        m.fillRect(0, 0, w, h);
+        m.setComposite(AlphaComposite.SrcOver);
+        m.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        m.translate(-rect.x, -rect.y);
+
+        // dalla fascia più lontana alla più vicina, che resta sopra
+        Ellipse2D.Double cerchio = new Ellipse2D.Double();
+        for (int f = fasce.length - 1; f >= 0; f--) {
+            int limite = fasce[f] * 60;
+            m.setColor(colore(f));
+            int quante = isocrona.entro(fasce[f]).size();
+            for (int i = 0; i < quante; i++) {
+                double metri = Math.min(GrafoTrasferimenti.metriAPiedi(limite - raggiunte.get(i).secondi()), METRI_MASSIMI);
+                double raggio = Math.max(2, metri * pixelPerMetro);
+                if (x[i] + raggio < rect.x || x[i] - raggio > rect.x + w
+                        || y[i] + raggio < rect.y || y[i] - raggio > rect.y + h) continue;
+                cerchio.setFrame(x[i] - raggio, y[i] - raggio, 2 * raggio, 2 * raggio);
+                m.fill(cerchio);
+            }
+        }
+        m.dispose();
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, OPACITA));
+        g2.drawImage(maschera, 0, 0, null);
+        g2.dispose();
+    }
+
+    private void posizioni(JXMapViewer map, int zoom, List<Isocrona.Raggiunta> raggiunte) {
+        x = new double[raggiunte.size()];
+        y = new double[raggiunte.size()];
+        for (int i = 0; i < raggiunte.size(); i++) {
+            Fermate f = raggiunte.get(i).fermata();
+            Point2D p = map.getTileFactory().geoToPixel(new GeoPosition(f.getStopLat(), f.getStopLon()), zoom);
+            x[i] = p.getX();
+            y[i] = p.getY();
+        }
+        zoomPosizioni = zoom;
+    }
+}
@@ -1,7 +1,7 @@
 package view.map;
 
+import model.gtfs.GeometriaForma;
 import model.gtfs.ShapeRoute;
-import model.gtfs.ShapeRoute.GeoPoint;
 import org.jxmapviewer.JXMapViewer;
 import org.jxmapviewer.painter.CompoundPainter;
 import org.jxmapviewer.painter.Painter;
@@ -30,15 +30,17 @@ public class RouteDrawer {
      // @param shapeRoute La shape da disegnare
      //@param color      Il colore della linea (es. Color.BLUE)
     public void drawShape(ShapeRoute shapeRoute, Color color) {
-        if (shapeRoute == null || shapeRoute.getGeoPoints().isEmpty()) {
+        GeometriaForma geometria = shapeRoute != null ? shapeRoute.getGeometria() : null;
+        if (geometria == null || geometria.isEmpty()) {
             System.err.println("Shape vuota o nulla, impossibile disegnare!");
             return;
         }
 
-        // Converte i punti in GeoPosition
-        List<GeoPosition> geoPositions = new ArrayList<>();
-        for (GeoPoint p : shapeRoute.getGeoPoints()) {
-            geoPositions.add(new GeoPosition(p.getLatitude(), p.getLongitude()));
+        // Converte i punti in GeoPosition (dal cursore, senza passare da GeoPoint)
+        List<GeoPosition> geoPositions = new ArrayList<>(geometria.size());
+        GeometriaForma.Cursore punto = geometria.cursore();
+        while (punto.avanza()) {
+            geoPositions.add(new GeoPosition(punto.getLatitudine(), punto.getLongitudine()));
         }
 
         // >>> usa metodo comune (serve per i test)
@@ -16,6 +16,7 @@ public class WaypointDrawer {
     private final JXMapViewer mapViewer;
     private final Set<BusWaypoint> waypoints = new HashSet<>();
     private final RouteDrawer routeDrawer;
+    private IsocronaPainter isocrona;      // zona raggiungibile, sotto linea e waypoint
 
 
    //(serve per i test)
@@ -55,11 +56,20 @@ public class WaypointDrawer {
         updatePainters();
     }
 
+     // Mostra (o toglie, con null) l'isocrona di una fermata sotto linea e waypoint
+
+    public void setIsocrona(IsocronaPainter isocrona) {
+        if (isocrona == this.isocrona) return;
+        this.isocrona = isocrona;
+        updatePainters();
+    }
+
     private void updatePainters() {
-        if (!waypoints.isEmpty()) {
+        if (!waypoints.isEmpty() || isocrona != null) {
             WaypointPainter waypointPainter = new WaypointPainter(waypoints);
 
             List<Painter<JXMapViewer>> allPainters = new ArrayList<>();
+            if (isocrona != null) allPainters.add(isocrona);
 
             if (routeDrawer != null) {
                 List<GeoPosition> routePoints = routeDrawer.getGeoPositions();
@@ -0,0 +1,85 @@
+package view.panels;
+
+import javax.swing.*;
+import java.awt.*;
+
+// Indicatore del caricamento GTFS in background: fase appena conclusa e barra di avanzamento.
+// Va aggiornato sull'EDT; a caricamento finito si nasconde da solo.
+public class LoadingPanel extends JPanel {
+    private JLabel messaggio;
+    private JProgressBar barra;
+    private String currentTheme = "Blu";
+
+    public LoadingPanel() {
+        initializeUI();
+    }
+
+    private void initializeUI() {
+        setLayout(new BorderLayout(0, 6));
+        setOpaque(false);
+        setBorder(BorderFactory.createEmptyBorder(10, 15, 12, 15));
+
+        messaggio = new JLabel("Caricamento dati GTFS...");
+        messaggio.setFont(new Font("Segoe UI", Font.PLAIN, 13));
+        messaggio.setForeground(new Color(40, 40, 40));
+        add(messaggio, BorderLayout.NORTH);
+
+        barra = new JProgressBar(0, 1);
+        barra.setIndeterminate(true);
+        barra.setBorderPainted(false);
+        barra.setForeground(SettingsPanel.getThemeColor(currentTheme));
+        add(barra, BorderLayout.CENTER);
+    }
+
+    // Una fase è conclusa: "completate" su "totali"
+    public void aggiorna(String fase, int completate, int totali) {
+        barra.setIndeterminate(false);
+        barra.setMaximum(totali);
+        barra.setValue(completate);
+        messaggio.setText("Caricamento dati GTFS (" + completate + "/" + totali + "): " + fase);
+        if (completate >= totali) {
+            setVisible(false);
+        }
+    }
+
+    // Il caricamento si è interrotto: resta visibile con il messaggio d'errore
+    public void errore(String testo) {
+        barra.setIndeterminate(false);
+        barra.setValue(0);
+        messaggio.setText(testo);
+        messaggio.setForeground(new Color(180, 40, 40));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2d = (Graphics2D) g;
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // Ombra
+        g2d.setColor(new Color(0, 0, 0, 20));
+        g2d.fillRoundRect(2, 2, getWidth() - 4, getHeight() - 4, 20, 20);
+
+        g2d.setColor(Color.WHITE);
+        g2d.fillRoundRect(0, 0, getWidth() - 2, getHeight() - 2, 20, 20);
+
+        g2d.setStroke(new BasicStroke(1.5f));
+        g2d.setColor(SettingsPanel.getThemeColor(currentTheme));
+        g2d.drawRoundRect(0, 0, getWidth() - 2, getHeight() - 2, 20, 20);
+    }
+
+    public void updateTheme(String theme) {
+        this.currentTheme = theme;
+        barra.setForeground(SettingsPanel.getThemeColor(theme));
+        repaint();
+    }
+
+    // AGGIUNTE (serve per i test)
+
+    JProgressBar getBarraForTest() { // serve per i test
+        return barra; // serve per i test
+    }
+
+    JLabel getMessaggioForTest() { // serve per i test
+        return messaggio; // serve per i test
+    }
+}
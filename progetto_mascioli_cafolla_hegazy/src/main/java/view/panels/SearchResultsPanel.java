@@ -11,10 +11,16 @@ import view.panels.search.ServiceQualitySupport;
 import model.gtfs.*;
 import model.user.Favorite;
 import model.user.UserManager;
+import service.GtfsIndex;
+import service.GtfsReloader;
+import service.Isocrona;
+import view.map.IsocronaPainter;
 import view.map.RouteDrawer;
 import view.map.WaypointDrawer;
 
+import java.time.ZonedDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import javax.swing.*;
 import java.awt.*;
 import java.util.List;
@@ -46,10 +52,9 @@ public class SearchResultsPanel extends JPanel {
     private WaypointDrawer waypointDrawer;
     private RouteDrawer routeDrawer;
     private Map<String, ShapeRoute> forme;
-    private List<Fermate> tutteLeFermate;
-    private List<Route> tutteLeRotte;
-    private List<Trip> tuttiITrips;
-    private List<StopTime> tuttiGliStopTimes;
+    private GtfsIndex indice = GtfsIndex.vuoto();   // indice del dataset attivo
+    private static final int LINEE_IN_DESCRIZIONE = 8;   // linee elencate sotto ogni fermata trovata
+    private int richiestaIsocrona = 0;   // le isocrone arrivate dopo un cambio di vista si scartano
     private service.RealTimeDelayService delayService;
     private ServiceQualityPanel qualityPanel;
 
@@ -70,13 +75,9 @@ public class SearchResultsPanel extends JPanel {
     }
 
     // Metodo setter per waypoint
-    public void setWaypointDrawer(WaypointDrawer drawer, List<Fermate> fermate,
-                                  List<Route> rotte, List<Trip> trips, List<StopTime> stopTimes) {
+    public void setWaypointDrawer(WaypointDrawer drawer, GtfsIndex indice) {
         this.waypointDrawer = drawer;
-        this.tutteLeFermate = fermate;
-        this.tutteLeRotte = rotte;
-        this.tuttiITrips = trips;
-        this.tuttiGliStopTimes = stopTimes;
+        this.indice = indice;
     }
 
     // Metodo setter per route drawer
@@ -155,6 +156,8 @@ public class SearchResultsPanel extends JPanel {
     public void clearResults() {
         view.getResultsContainer().removeAll();
         results.clear();
+        richiestaIsocrona++;
+        if (waypointDrawer != null) waypointDrawer.setIsocrona(null);
     }
 
     // Aggiorna i colori
@@ -187,6 +190,8 @@ public class SearchResultsPanel extends JPanel {
 
         for (Fermate f : fermate) {
             String descrizione = "ID: " + f.getStopId() + "  (FERMATA)";
+            String linee = indice.getLineeFermata().elencoLinee(f, LINEE_IN_DESCRIZIONE);
+            if (!linee.isEmpty()) descrizione += "  linee: " + linee;
             addResult(f.getStopName(), descrizione, "", f);
         }
 
@@ -298,12 +303,9 @@ public class SearchResultsPanel extends JPanel {
 
 
 
-    // metodo per mostrare le fermate
+    // metodo per mostrare le fermate; soloLinea != null limita gli orari a quella linea
     public void mostraOrariFermata(Fermate fermata,
-                                   List<StopTime> stopTimes,
-                                   List<Trip> trips,
-                                   List<Route> rotte,
-                                   List<Fermate> tutteLeFermate,
+                                   Route soloLinea,
                                    Route rottaCorrente,
                                    Trip direzioneCorrente,
                                    String contesto) {
@@ -313,31 +315,9 @@ public class SearchResultsPanel extends JPanel {
             stopScheduleEngine = new StopScheduleEngine(delayService);
         }
 
-        // Mappe hash per lookups O(1)
-        Map<String, Trip> tripMap = new HashMap<>(trips.size());
-        Map<String, Route> routeMap = new HashMap<>(rotte.size());
-        Map<String, Fermate> fermatePerId = new HashMap<>(tutteLeFermate.size());
-
-        for (Trip trip : trips) tripMap.put(trip.getTripId(), trip);
-        for (Route route : rotte) routeMap.put(route.getRouteId(), route);
-        for (Fermate f : tutteLeFermate) fermatePerId.put(f.getStopId(), f);
-
-        // Indice stopTimes per fermata (serve per WAYPOINTS)
-        Map<String, List<StopTime>> stopTimePerFermata = new HashMap<>();
-
-        for (StopTime st : stopTimes) {
-            stopTimePerFermata.computeIfAbsent(st.getStopId(), k -> new ArrayList<>()).add(st);
-        }
-
-        // WAYPOINTS - Loop minimo
+        // WAYPOINTS - dai passaggi della fermata nell'indice
         if (waypointSupport == null) waypointSupport = new WaypointSupport();
-        waypointSupport.updateStopWaypoint(
-                waypointDrawer,
-                fermata,
-                tripMap,
-                routeMap,
-                stopTimePerFermata
-        );
+        waypointSupport.updateStopWaypoint(waypointDrawer, fermata, indice);
         // Titolo + bottone preferiti
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 3));
         topPanel.setOpaque(false);
@@ -367,17 +347,20 @@ public class SearchResultsPanel extends JPanel {
 
         });
 
+        JSpinner partenzaIso = selettorePartenza();
+        JButton isoBtn = new JButton(" Isocrona");
+        isoBtn.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        isoBtn.setToolTipText("Dove si arriva in 15, 30 e 45 minuti partendo all'ora indicata");
+        isoBtn.addActionListener(e -> mostraIsocrona(fermata, isoBtn,
+                ((Date) partenzaIso.getValue()).toInstant().atZone(GtfsReloader.FUSO_ORARIO)));
+
         topPanel.add(titolo);
         topPanel.add(favBtn);
+        topPanel.add(partenzaIso);
+        topPanel.add(isoBtn);
         view.getResultsContainer().add(topPanel);
 
-        List<String[]> righeTabella = stopScheduleEngine.calcolaRigheTabella(
-                fermata,
-                stopTimes,
-                trips,
-                rotte,
-                tutteLeFermate
-        );
+        List<String[]> righeTabella = stopScheduleEngine.calcolaRigheTabella(fermata, indice, soloLinea);
 
         view.getResultsContainer().add(Box.createVerticalStrut(-5));
 
@@ -482,7 +465,7 @@ public class SearchResultsPanel extends JPanel {
             backBtn.addActionListener(e -> {
                 clearResults();
                 ripristinando = true;
-                mostraFermateLinea(rottaCorrente, direzioneCorrente, tuttiITrips, tuttiGliStopTimes, tutteLeFermate);
+                mostraFermateLinea(rottaCorrente, direzioneCorrente);
             });
             view.getResultsContainer().add(backBtn);
         }
@@ -508,15 +491,47 @@ public class SearchResultsPanel extends JPanel {
         view.getResultsContainer().repaint();
     }
 
+    // Data e ora di partenza dell'isocrona, all'ora di Roma; parte da adesso
+    private static JSpinner selettorePartenza() {
+        JSpinner spinner = new JSpinner(new SpinnerDateModel(new Date(), null, null, Calendar.MINUTE));
+        JSpinner.DateEditor editor = new JSpinner.DateEditor(spinner, "dd/MM HH:mm");
+        editor.getFormat().setTimeZone(TimeZone.getTimeZone(GtfsReloader.FUSO_ORARIO));
+        spinner.setEditor(editor);
+        spinner.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        spinner.setToolTipText("Partenza dell'isocrona");
+        return spinner;
+    }
+
+    // Calcola l'isocrona della fermata fuori dall'EDT (le partenze si dividono tra i core)
+    // e la disegna sotto il waypoint; se nel frattempo si è cambiata vista non si mostra.
+    // Prima delle 03:00 la partenza cade nel giorno di servizio di ieri (vedi Isocrona.calcola)
+    private void mostraIsocrona(Fermate fermata, JButton bottone, ZonedDateTime partenza) {
+        if (waypointDrawer == null) return;
+        GtfsIndex indiceAttivo = indice;
+        int richiesta = ++richiestaIsocrona;
+        bottone.setEnabled(false);
+
+        CompletableFuture.supplyAsync(() -> Isocrona.calcola(indiceAttivo.getRete(), fermata, partenza))
+                .whenComplete((isocrona, errore) -> SwingUtilities.invokeLater(() -> {
+                    bottone.setEnabled(true);
+                    if (richiesta != richiestaIsocrona) return;
+                    if (errore != null) {
+                        System.err.println("Errore nel calcolo dell'isocrona: " + errore.getMessage());
+                        return;
+                    }
+                    if (isocrona.isVuota()) {
+                        JOptionPane.showMessageDialog(this, "Nessun viaggio possibile da questa fermata.");
+                        return;
+                    }
+                    waypointDrawer.setIsocrona(new IsocronaPainter(isocrona));
+                }));
+    }
+
     public void setOnCloseListener(java.util.function.Consumer<Void> listener) {
         this.onCloseListener = listener;
     }
 
-    public void mostraFermateLinea(Route rotta,
-                                   Trip direzioneScelta,
-                                   List<Trip> tuttiTrips,
-                                   List<StopTime> stopTimes,
-                                   List<Fermate> tutteLeFermate) {
+    public void mostraFermateLinea(Route rotta, Trip direzioneScelta) {
 
         clearResults();
 
@@ -524,12 +539,7 @@ public class SearchResultsPanel extends JPanel {
             lineStopsViewBuilder = new LineStopsViewBuilder();
         }
         if (waypointSupport == null) waypointSupport = new WaypointSupport();
-        waypointSupport.updateLineWaypoints(
-                waypointDrawer,
-                direzioneScelta,
-                stopTimes,
-                tutteLeFermate
-        );
+        waypointSupport.updateLineWaypoints(waypointDrawer, direzioneScelta, indice);
 
 
         lineStopsViewBuilder.build(
@@ -537,33 +547,8 @@ public class SearchResultsPanel extends JPanel {
                 waypointDrawer,
                 rotta,
                 direzioneScelta,
-                stopTimes,
-                tutteLeFermate,
-                fermata -> {
-                    Map<String, Trip> tripMap = new HashMap<>(tuttiITrips.size());
-                    for (Trip t : tuttiITrips) tripMap.put(t.getTripId(), t);
-
-                    List<StopTime> stopTimesLineaEFermata = new ArrayList<>();
-                    for (StopTime st : tuttiGliStopTimes) {
-                        if (!st.getStopId().equals(fermata.getStopId())) continue;
-
-                        Trip trip = tripMap.get(st.getTripId());
-                        if (trip != null && trip.getRouteId().equals(rotta.getRouteId())) {
-                            stopTimesLineaEFermata.add(st);
-                        }
-                    }
-
-                    mostraOrariFermata(
-                            fermata,
-                            stopTimesLineaEFermata,
-                            tuttiITrips,
-                            List.of(rotta),
-                            tutteLeFermate,
-                            rotta,
-                            direzioneScelta,
-                            "LINEA"
-                    );
-                },
+                indice,
+                fermata -> mostraOrariFermata(fermata, rotta, rotta, direzioneScelta, "LINEA"),
                 () -> {
                     clearResults();
                     ripristinando = true;
@@ -23,6 +23,11 @@ public class ServiceQualityPanel extends JPanel {
         initializeUI();
     }
 
+    // Il servizio ritardi è pronto solo a caricamento GTFS finito (avvio progressivo)
+    public void setDelayService(RealTimeDelayService delayService) {
+        this.delayService = delayService;
+    }
+
     private void initializeUI() {
         setLayout(new BorderLayout());
         setOpaque(false);
@@ -2,9 +2,11 @@ package view.panels.search;
 
 import model.gtfs.Fermate;
 import model.gtfs.Route;
+import model.gtfs.SchemaCorsa;
 import model.gtfs.StopTime;
 import model.gtfs.Trip;
 import org.jxmapviewer.viewer.GeoPosition;
+import service.GtfsIndex;
 import view.map.BusWaypoint;
 import view.map.WaypointDrawer;
 
@@ -22,20 +24,11 @@ public class LineStopsViewBuilder {
                       WaypointDrawer waypointDrawer,
                       Route rotta,
                       Trip direzioneScelta,
-                      List<StopTime> stopTimes,
-                      List<Fermate> tutteLeFermate,
+                      GtfsIndex indice,
                       Consumer<Fermate> onStopSelected,
                       Runnable onBackToLines,
                       Runnable onTogglePreferitiLinea) {
 
-        // Crea mappa per ricerche O(1)
-        Map<String, Fermate> fermatePerId = new HashMap<>();
-        for (Fermate f : tutteLeFermate) {
-            fermatePerId.put(f.getStopId(), f);
-        }
-
-
-
         // Titolo + bottone preferiti (UI IDENTICA)
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 10, 3));
         topPanel.setOpaque(false);
@@ -59,21 +52,18 @@ public class LineStopsViewBuilder {
         resultsContainer.add(dirLabel);
 
         // Tabella fermate
-        List<StopTime> stopTrip = new ArrayList<>();
-        for (StopTime st : stopTimes) {
-            if (st.getTripId().equals(direzioneScelta.getTripId())) {
-                stopTrip.add(st);
-            }
-        }
-
-        stopTrip.sort(Comparator.comparingInt(StopTime::getStopSequence));
-
         String[] colonne = {"Fermata"};
         List<String[]> righe = new ArrayList<>();
-        for (StopTime st : stopTrip) {
-            Fermate f = fermatePerId.get(st.getStopId());
-            if (f != null) {
-                righe.add(new String[]{f.getStopName()});
+        List<Fermate> fermateRighe = new ArrayList<>();   // fermata di ogni riga, per il click
+        SchemaCorsa schema = direzioneScelta.getSchema();
+        if (schema != null) {
+            // corsa compressa: le fermate sono già nello schema, in ordine di sequenza
+            for (int i = 0; i < schema.size(); i++) {
+                aggiungiFermata(indice.fermata(schema.getCodiceFermata(i)), righe, fermateRighe);
+            }
+        } else {
+            for (StopTime st : indice.orariTrip(direzioneScelta)) {
+                aggiungiFermata(indice.fermata(st.getCodiceFermata()), righe, fermateRighe);
             }
         }
 
@@ -95,20 +85,9 @@ public class LineStopsViewBuilder {
                 public void mouseClicked(MouseEvent e) {
                     int riga = tabella.getSelectedRow();
                     if (riga >= 0 && onStopSelected != null) {
-                        String nomeFermata = (String) tabella.getValueAt(riga, 0);
-
-                        Fermate fermataSelezionata = fermatePerId.get(
-                                tutteLeFermate.stream()
-                                        .filter(f -> f.getStopName().equalsIgnoreCase(nomeFermata))
-                                        .map(Fermate::getStopId)
-                                        .findFirst()
-                                        .orElse(null)
-                        );
-
-                        if (fermataSelezionata != null) {
-                            System.out.println("Fermata cliccata: " + fermataSelezionata.getStopName());
-                            onStopSelected.accept(fermataSelezionata);
-                        }
+                        Fermate fermataSelezionata = fermateRighe.get(tabella.convertRowIndexToModel(riga));
+                        System.out.println("Fermata cliccata: " + fermataSelezionata.getStopName());
+                        onStopSelected.accept(fermataSelezionata);
                     }
                 }
             });
@@ -128,4 +107,11 @@ public class LineStopsViewBuilder {
         resultsContainer.add(Box.createVerticalStrut(10));
         resultsContainer.add(backBtn);
     }
+
+    private static void aggiungiFermata(Fermate f, List<String[]> righe, List<Fermate> fermateRighe) {
+        if (f != null) {
+            righe.add(new String[]{f.getStopName()});
+            fermateRighe.add(f);
+        }
+    }
 }
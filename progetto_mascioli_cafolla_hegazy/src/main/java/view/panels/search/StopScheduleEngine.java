@@ -1,12 +1,16 @@
 package view.panels.search;
 
 import model.gtfs.Fermate;
+import model.gtfs.OrarioServizio;
 import model.gtfs.Route;
 import model.gtfs.StopTime;
 import model.gtfs.Trip;
+import service.GtfsIndex;
+import service.TabellonePartenze;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 
 
@@ -15,6 +19,13 @@ import java.util.*;
 
 public class StopScheduleEngine {
 
+    // Finestra degli orari mostrati: da 5 minuti fa a 65 minuti dopo
+    private static final int SECONDI_PRIMA = 5 * 60;
+    private static final int DURATA_FINESTRA = 65 * 60;
+
+    // Righe al massimo in un tabellone
+    private static final int MASSIMO_RIGHE = 200;
+
     private service.RealTimeDelayService delayService;
 
     public StopScheduleEngine(service.RealTimeDelayService delayService) {
@@ -30,6 +41,7 @@ public class StopScheduleEngine {
         public String direzione;
         public String orarioFormattato;
         public String tripId;  //CHIAVE per matching real-time
+        public int secondi;    // orario sulla scala di oggi (dopo mezzanotte > 24h), per l'ordinamento
 
         public OrarioRow(String nomeLinea, String direzione, String orarioFormattato, String tripId) {
             this.nomeLinea = nomeLinea;
@@ -38,6 +50,11 @@ public class StopScheduleEngine {
             this.tripId = tripId;
         }
 
+        public OrarioRow(String nomeLinea, String direzione, String orarioFormattato, String tripId, int secondi) {
+            this(nomeLinea, direzione, orarioFormattato, tripId);
+            this.secondi = secondi;
+        }
+
         public String[] toArray() {
             return new String[]{nomeLinea, direzione, orarioFormattato};
         }
@@ -47,6 +64,14 @@ public class StopScheduleEngine {
      //costruisce righeConRT
      // sceglie righeDaMostrare (RT se c'è, altrimenti statico)
      // restituisce righeTabella
+    public List<String[]> calcolaRigheTabella(Fermate fermata, GtfsIndex indice, Route soloLinea) {
+        LocalDateTime adesso = LocalDateTime.now();
+        return calcolaRigheTabella(fermata, indice, soloLinea, adesso.toLocalDate(),
+                adesso.toLocalTime().toSecondOfDay());
+    }
+
+    // Variante a liste: costruisce un indice solo su quelle (le linee e le corse fuori
+    // dalle liste vengono ignorate come prima). Per l'interfaccia usare l'indice del dataset
     public List<String[]> calcolaRigheTabella(
             Fermate fermata,
             List<StopTime> stopTimes,
@@ -54,73 +79,34 @@ public class StopScheduleEngine {
             List<Route> rotte,
             List<Fermate> tutteLeFermate
     ) {
+        return calcolaRigheTabella(fermata, stopTimes, trips, rotte, tutteLeFermate, LocalTime.now().toSecondOfDay());
+    }
 
-        // Mappe hash per lookups O(1)
-        Map<String, Trip> tripMap = new HashMap<>(trips.size());
-        Map<String, Route> routeMap = new HashMap<>(rotte.size());
-        Map<String, Fermate> fermatePerId = new HashMap<>(tutteLeFermate.size());
-
-        for (Trip trip : trips) tripMap.put(trip.getTripId(), trip);
-        for (Route route : rotte) routeMap.put(route.getRouteId(), route);
-        for (Fermate f : tutteLeFermate) fermatePerId.put(f.getStopId(), f);
-
-        // Indice stopTimes per fermata
-        Map<String, List<StopTime>> stopTimePerFermata = new HashMap<>();
-        Map<String, StopTime> ultimoStopPerTrip = new HashMap<>();
-
-        LocalTime oraCorrente = LocalTime.now().minusMinutes(5);
-        LocalTime oraMax = oraCorrente.plusMinutes(65);
-
-        for (StopTime st : stopTimes) {
-            stopTimePerFermata.computeIfAbsent(st.getStopId(), k -> new ArrayList<>()).add(st);
-
-            String tripId = st.getTripId();
-            StopTime existing = ultimoStopPerTrip.get(tripId);
-            if (existing == null || st.getStopSequence() > existing.getStopSequence()) {
-                ultimoStopPerTrip.put(tripId, st);
-            }
-        }
-
-        // PRE-CALCOLO CAPOLINEA
-        Map<String, String> capolineaPerTrip = new HashMap<>();
-        for (Map.Entry<String, StopTime> entry : ultimoStopPerTrip.entrySet()) {
-            Fermate capolinea = fermatePerId.get(entry.getValue().getStopId());
-            if (capolinea != null) {
-                capolineaPerTrip.put(entry.getKey(), capolinea.getStopName());
-            }
-        }
-
-        // RACCOLTA DATI - Unico loop ottimizzato
-        List<OrarioRow> righe = new ArrayList<>();
-        Set<String> orariGiaAggiunti = new HashSet<>();
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("HH:mm");
-
-        List<StopTime> fermataStops = stopTimePerFermata.get(fermata.getStopId());
-        if (fermataStops != null) {
-            for (StopTime st : fermataStops) {
-                if (st.getArrivalTime() == null) continue;
-
-                LocalTime arrivo = st.getArrivalTime();
-                if (arrivo.isBefore(oraCorrente) || arrivo.isAfter(oraMax)) continue;
+    // Variante con l'ora corrente esplicita in secondi dalla mezzanotte (serve per i test)
+    List<String[]> calcolaRigheTabella(
+            Fermate fermata,
+            List<StopTime> stopTimes,
+            List<Trip> trips,
+            List<Route> rotte,
+            List<Fermate> tutteLeFermate,
+            int secondiAdesso
+    ) {
+        GtfsIndex indice = GtfsIndex.costruisci(tutteLeFermate, rotte, trips, stopTimes, null);
+        return calcolaRigheTabella(fermata, indice, null, LocalDate.now(), secondiAdesso);
+    }
 
-                Trip trip = tripMap.get(st.getTripId());
-                if (trip == null) continue;
+    // soloLinea != null limita gli orari a quella linea (fermata vista da una linea);
+    // "oggi" è il giorno di servizio: le corse che quel giorno non circolano non compaiono
+    List<String[]> calcolaRigheTabella(Fermate fermata, GtfsIndex indice, Route soloLinea,
+                                       LocalDate oggi, int secondiAdesso) {
 
-                Route route = routeMap.get(trip.getRouteId());
-                if (route == null) continue;
+        // Finestra in secondi dalla mezzanotte di oggi; gli orari GTFS oltre le 24:00
+        // (corse notturne del giorno di servizio precedente) vengono riportati su questa scala
+        int inizioFinestra = secondiAdesso - SECONDI_PRIMA;
+        int fineFinestra = inizioFinestra + DURATA_FINESTRA;
 
-                String nomeLinea = route.getRouteShortName();
-                String orarioFormattato = arrivo.format(fmt);
-                String tripId = st.getTripId();
-                String chiave = nomeLinea + "|" + orarioFormattato + "|" + tripId;
-
-                if (orariGiaAggiunti.add(chiave)) {
-                    String capolineaNome = capolineaPerTrip.getOrDefault(tripId, "?");
-                    String direzione = " → " + capolineaNome;
-                    righe.add(new OrarioRow(nomeLinea, direzione, orarioFormattato, tripId));
-                }
-            }
-        }
+        // RACCOLTA DATI (già in ordine e senza doppioni linea+orario)
+        List<OrarioRow> righe = raccogli(fermata, indice, soloLinea, oggi, inizioFinestra, fineFinestra);
 
         //CARICA RITARDI REAL-TIME
         List<OrarioRow> righeConRT = new ArrayList<>();
@@ -169,23 +155,44 @@ public class StopScheduleEngine {
             }
             righeDaMostrare = new ArrayList<>(mappaUnica.values());
          } else {
-            // Anche per lo statico: rimuovi duplicati linea+orario
-            Map<String, OrarioRow> mappaUnica = new LinkedHashMap<>();
-            for (OrarioRow riga : righe) {
-                String chiaveUnica = riga.nomeLinea + "#" + riga.orarioFormattato.replaceAll("\\s*\\([^)]*\\)", "");
-                mappaUnica.putIfAbsent(chiaveUnica, riga);
-            }
-            righeDaMostrare = new ArrayList<>(mappaUnica.values());
-            System.out.println("[SearchResultsPanel]  Nessun dato RT, mostrando " + righeDaMostrare.size() + " orari statici (rimosse " + (righe.size() - righeDaMostrare.size()) + " duplicati)");
+            righeDaMostrare = righe;
+            System.out.println("[SearchResultsPanel]  Nessun dato RT, mostrando " + righeDaMostrare.size() + " orari statici");
         }
 
+        //  Le righe arrivano dal tabellone già in ordine di orario (dopo mezzanotte in fondo)
+
         //  Converti in String[] per la tabella
         List<String[]> righeTabella = righeDaMostrare.stream()
                 .map(OrarioRow::toArray)
                 .collect(java.util.stream.Collectors.toList());
 
-        righeTabella.sort(Comparator.comparing(arr -> arr[2]));
-
         return righeTabella;
     }
+
+    // Raccolta dal tabellone delle partenze: ricerca binaria sui passaggi della fermata
+    // e solo le righe della finestra; stringhe e oggetti solo per le righe mostrate
+    private List<OrarioRow> raccogli(Fermate fermata,
+                                     GtfsIndex indice,
+                                     Route soloLinea,
+                                     LocalDate oggi,
+                                     int inizioFinestra,
+                                     int fineFinestra) {
+
+        TabellonePartenze tabellone = new TabellonePartenze(indice);
+        TabellonePartenze.Righe trovate = new TabellonePartenze.Righe(MASSIMO_RIGHE);
+        int codiceRotta = soloLinea != null ? soloLinea.getCodiceRotta() : TabellonePartenze.QUALSIASI;
+        tabellone.cerca(fermata.getStopId(), oggi, inizioFinestra, fineFinestra,
+                codiceRotta, TabellonePartenze.QUALSIASI, trovate);
+
+        List<OrarioRow> righe = new ArrayList<>(trovate.size());
+        for (int i = 0; i < trovate.size(); i++) {
+            TabellonePartenze.Partenza p = tabellone.partenza(trovate, i);
+            String capolineaNome = p.capolinea() != null ? p.capolinea().getStopName() : "?";
+            // si mostra (e si confronta col real-time) l'orario di arrivo, come prima
+            int orario = p.arrivoSecondi() >= 0 ? p.arrivoSecondi() : p.partenzaSecondi();
+            righe.add(new OrarioRow(p.rotta().getRouteShortName(), " → " + capolineaNome,
+                    OrarioServizio.formatta(orario), p.trip().getTripId(), p.secondi()));
+        }
+        return righe;
+    }
 }
@@ -1,10 +1,10 @@
 package view.panels.search;
 
 import model.gtfs.Fermate;
-import model.gtfs.Route;
 import model.gtfs.StopTime;
 import model.gtfs.Trip;
 import org.jxmapviewer.viewer.GeoPosition;
+import service.GtfsIndex;
 import view.map.BusWaypoint;
 import view.map.WaypointDrawer;
 
@@ -17,26 +17,15 @@ public class WaypointSupport {
 
     public void updateStopWaypoint(WaypointDrawer waypointDrawer,
                                    Fermate fermata,
-                                   Map<String, Trip> tripMap,
-                                   Map<String, Route> routeMap,
-                                   Map<String, List<StopTime>> stopTimePerFermata) {
+                                   GtfsIndex indice) {
 
         if (waypointDrawer == null || fermata == null) return;
 
         waypointDrawer.clearWaypoints();
         Set<BusWaypoint> waypoints = new HashSet<>();
 
-        List<StopTime> fermataStops = stopTimePerFermata.get(fermata.getStopId());
-        if (fermataStops == null) return;
-
-        boolean hasValidTrip = false;
-        for (StopTime st : fermataStops) {
-            Trip t = tripMap.get(st.getTripId());
-            if (t != null && routeMap.containsKey(t.getRouteId())) {
-                hasValidTrip = true;
-                break;
-            }
-        }
+        // basta una linea nota che passi dalla fermata (indice costruito al caricamento)
+        boolean hasValidTrip = indice.getLineeFermata().isServita(fermata);
 
         if (hasValidTrip) {
             GeoPosition pos = new GeoPosition(fermata.getStopLat(), fermata.getStopLon());
@@ -45,39 +34,22 @@ public class WaypointSupport {
         }
     }
 
-     // Disegna i waypoint di tutte le fermate di una linea (per quella direzione/trip).
-     // Replica 1:1 la logica che avevi in mostraFermateLinea:
+     // Disegna i waypoint di tutte le fermate di una linea (per quella direzione/trip):
      // clearWaypoints()
-     // filtra stopTimes per tripId della direzione
-     // ordina per stopSequence
+     // orari della corsa dall'indice (già in ordine di sequenza)
      // aggiunge waypoint per ogni fermata trovata.
 
     public void updateLineWaypoints(WaypointDrawer waypointDrawer,
                                     Trip direzioneScelta,
-                                    List<StopTime> stopTimes,
-                                    List<Fermate> tutteLeFermate) {
+                                    GtfsIndex indice) {
 
-        if (waypointDrawer == null || direzioneScelta == null || stopTimes == null || tutteLeFermate == null) return;
+        if (waypointDrawer == null || direzioneScelta == null || indice == null) return;
 
         waypointDrawer.clearWaypoints();
         Set<BusWaypoint> waypoints = new HashSet<>();
 
-        Map<String, Fermate> fermatePerId = new HashMap<>(tutteLeFermate.size());
-        for (Fermate f : tutteLeFermate) {
-            fermatePerId.put(f.getStopId(), f);
-        }
-
-        List<StopTime> stopTrip = new ArrayList<>();
-        for (StopTime st : stopTimes) {
-            if (st.getTripId().equals(direzioneScelta.getTripId())) {
-                stopTrip.add(st);
-            }
-        }
-
-        stopTrip.sort(Comparator.comparingInt(StopTime::getStopSequence));
-
-        for (StopTime st : stopTrip) {
-            Fermate f = fermatePerId.get(st.getStopId());
+        for (StopTime st : indice.orariTrip(direzioneScelta)) {
+            Fermate f = indice.fermata(st.getCodiceFermata());
             if (f != null) {
                 GeoPosition pos = new GeoPosition(f.getStopLat(), f.getStopLon());
                 waypoints.add(new BusWaypoint(pos));
@@ -0,0 +1,89 @@
+package model.gtfs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe CalendarioServizi")
+class CalendarioServiziTest {
+
+    // Lunedì 5 ottobre 2026 .. domenica 11 ottobre 2026
+    private static final LocalDate LUNEDI = LocalDate.of(2026, 10, 5);
+    private static final LocalDate DOMENICA = LocalDate.of(2026, 10, 11);
+
+    private static final CalendarDate FERIALE = new CalendarDate("cs_FER",
+            true, true, true, true, true, false, false, LocalDate.of(2026, 9, 1), LocalDate.of(2026, 12, 31));
+    private static final CalendarDate FESTIVO = new CalendarDate("cs_FES",
+            false, false, false, false, false, false, true, LocalDate.of(2026, 9, 1), LocalDate.of(2026, 12, 31));
+
+    private static CalendarioServizi calendario(List<CalendarDate> eccezioni) {
+        return CalendarioServizi.di(Map.of("cs_FER", FERIALE, "cs_FES", FESTIVO), eccezioni);
+    }
+
+    private static int servizio(String id) {
+        return Simboli.SERVIZIO.codice(id);
+    }
+
+    @Test
+    @DisplayName("Calendario ricorrente: giorni della settimana e intervallo di validità")
+    void testRicorrente() {
+        CalendarioServizi c = calendario(List.of());
+
+        assertTrue(c.isAttivo(servizio("cs_FER"), LUNEDI));
+        assertFalse(c.isAttivo(servizio("cs_FER"), DOMENICA));
+        assertTrue(c.isAttivo(servizio("cs_FES"), DOMENICA));
+        assertFalse(c.isAttivo(servizio("cs_FER"), LocalDate.of(2027, 1, 4)));
+        assertFalse(c.isAttivo(servizio("cs_sconosciuto"), LUNEDI));
+    }
+
+    @Test
+    @DisplayName("Le eccezioni tolgono e aggiungono servizi, anche solo da calendar_dates.txt")
+    void testEccezioni() {
+        CalendarioServizi c = calendario(List.of(
+                new CalendarDate("cs_FER", LUNEDI, 2),
+                new CalendarDate("cs_FES", LUNEDI, 1),
+                new CalendarDate("cs_SPECIALE", DOMENICA, 1)));
+
+        assertFalse(c.isAttivo(servizio("cs_FER"), LUNEDI));
+        assertTrue(c.isAttivo(servizio("cs_FES"), LUNEDI));
+        assertTrue(c.isAttivo(servizio("cs_SPECIALE"), DOMENICA));
+        assertFalse(c.isAttivo(servizio("cs_SPECIALE"), LUNEDI));
+
+        long[] attivi = c.serviziAttivi(LUNEDI);
+        int fer = servizio("cs_FER");
+        int fes = servizio("cs_FES");
+        assertEquals(0, attivi[fer >>> 6] & (1L << fer));
+        assertNotEquals(0, attivi[fes >>> 6] & (1L << fes));
+    }
+
+    @Test
+    @DisplayName("Bitset delle corse attive in un giorno")
+    void testCorseAttive() {
+        Trip feriale = new Trip("cs_R", "cs_FER", "cs_T1", "Termini");
+        Trip festiva = new Trip("cs_R", "cs_FES", "cs_T2", "Termini");
+        CalendarioServizi c = calendario(List.of());
+
+        CorseAttive lunedi = c.corseAttive(LUNEDI, List.of(feriale, festiva));
+        assertTrue(lunedi.contiene(feriale));
+        assertFalse(lunedi.contiene(festiva));
+        assertEquals(1, lunedi.getNumeroCorse());
+        assertEquals(LUNEDI, lunedi.getGiorno());
+
+        CorseAttive domenica = c.corseAttive(DOMENICA, List.of(feriale, festiva));
+        assertFalse(domenica.contiene(feriale));
+        assertTrue(domenica.contiene(festiva));
+        assertFalse(domenica.contiene(-1));
+    }
+
+    @Test
+    @DisplayName("Senza calendario tutte le corse sono attive")
+    void testVuoto() {
+        CalendarioServizi c = CalendarioServizi.di(Map.of(), List.of());
+        assertTrue(c.isVuoto());
+        assertSame(CorseAttive.TUTTE, c.corseAttive(LUNEDI, List.of()));
+        assertTrue(CorseAttive.TUTTE.contiene(12345));
+    }
+}
@@ -0,0 +1,80 @@
+package model.gtfs;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe FinestraServizio")
+class FinestraServizioTest {
+
+    // Lunedì 2 marzo 2026
+    private static final LocalDate LUNEDI = LocalDate.of(2026, 3, 2);
+
+    private static CalendarDate feriale(String id, LocalDate inizio, LocalDate fine) {
+        return new CalendarDate(id, true, true, true, true, true, false, false, inizio, fine);
+    }
+
+    private static CalendarDate domenicale(String id, LocalDate inizio, LocalDate fine) {
+        return new CalendarDate(id, false, false, false, false, false, false, true, inizio, fine);
+    }
+
+    @Test
+    @DisplayName("attorno: estremi inclusi e numero di giorni")
+    void testAttorno() {
+        FinestraServizio finestra = FinestraServizio.attorno(LUNEDI, 2);
+
+        assertEquals(LUNEDI.minusDays(2), finestra.getInizio());
+        assertEquals(LUNEDI.plusDays(2), finestra.getFine());
+        assertEquals(5, finestra.getNumeroGiorni());
+        assertTrue(finestra.contiene(LUNEDI.minusDays(2)));
+        assertFalse(finestra.contiene(LUNEDI.plusDays(3)));
+        assertThrows(IllegalArgumentException.class, () -> FinestraServizio.attorno(LUNEDI, -1));
+    }
+
+    @Test
+    @DisplayName("daSpostare: solo quando cambia il giorno centrale")
+    void testDaSpostare() {
+        FinestraServizio finestra = FinestraServizio.attorno(LUNEDI, 1);
+
+        assertFalse(finestra.daSpostare(LUNEDI));
+        assertTrue(finestra.daSpostare(LUNEDI.plusDays(1)));
+    }
+
+    @Test
+    @DisplayName("serviziAttivi: giorni della settimana e periodo di validità")
+    void testServiziAttiviDaCalendario() {
+        Map<String, CalendarDate> calendari = Map.of(
+                "FER", feriale("FER", LUNEDI.minusMonths(1), LUNEDI.plusMonths(1)),
+                "DOM", domenicale("DOM", LUNEDI.minusMonths(1), LUNEDI.plusMonths(1)),
+                "SCADUTO", feriale("SCADUTO", LUNEDI.minusMonths(3), LUNEDI.minusMonths(2)),
+                "FUTURO", feriale("FUTURO", LUNEDI.plusMonths(2), LUNEDI.plusMonths(3)));
+
+        // lunedì ±1: da domenica a martedì
+        Set<String> attivi = FinestraServizio.attorno(LUNEDI, 1).serviziAttivi(calendari, List.of());
+        assertEquals(Set.of("FER", "DOM"), attivi);
+
+        // solo il lunedì: niente servizio domenicale
+        assertEquals(Set.of("FER"), FinestraServizio.attorno(LUNEDI, 0).serviziAttivi(calendari, List.of()));
+    }
+
+    @Test
+    @DisplayName("serviziAttivi: le eccezioni tolgono e aggiungono servizi")
+    void testServiziAttiviConEccezioni() {
+        Map<String, CalendarDate> calendari = Map.of(
+                "FER", feriale("FER", LUNEDI.minusMonths(1), LUNEDI.plusMonths(1)));
+        List<CalendarDate> eccezioni = List.of(
+                new CalendarDate("FER", LUNEDI, 2),          // sciopero: lunedì soppresso
+                new CalendarDate("SPECIALE", LUNEDI, 1),     // servizio solo in calendar_dates
+                new CalendarDate("LONTANO", LUNEDI.plusDays(30), 1));
+
+        Set<String> attivi = FinestraServizio.attorno(LUNEDI, 0).serviziAttivi(calendari, eccezioni);
+
+        assertEquals(Set.of("SPECIALE"), attivi);
+    }
+}
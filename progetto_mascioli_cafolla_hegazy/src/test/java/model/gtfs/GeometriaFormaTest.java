@@ -0,0 +1,117 @@
+package model.gtfs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GeometriaForma")
+class GeometriaFormaTest {
+
+    // Forma lunga più blocchi: a zig-zag verso sud-est, con distanza del feed in metri
+    private static GeometriaForma formaLunga(int punti) {
+        GeometriaForma.Costruttore c = new GeometriaForma.Costruttore();
+        for (int i = 0; i < punti; i++) {
+            double lat = 41.9009 - i * 0.0003 + (i % 2 == 0 ? 0.00005 : -0.00005);
+            double lon = 12.5021 + i * 0.0004;
+            c.aggiungi(lat, lon, i + 1, i * 37.5);
+        }
+        return c.costruisci();
+    }
+
+    @Test
+    @DisplayName("I punti decodificati sono quelli inseriti, anche oltre il primo blocco")
+    void testDecodifica() {
+        GeometriaForma g = formaLunga(100);
+        assertEquals(100, g.size());
+
+        GeometriaForma.Cursore c = g.cursore();
+        int letti = 0;
+        while (c.avanza()) {
+            int i = c.getIndice();
+            assertEquals(41.9009 - i * 0.0003 + (i % 2 == 0 ? 0.00005 : -0.00005), c.getLatitudine(), 1e-6);
+            assertEquals(12.5021 + i * 0.0004, c.getLongitudine(), 1e-6);
+            assertEquals(i + 1, c.getSequenza());
+            assertEquals(i * 37.5, c.getDistanzaPercorsa(), 1e-4);
+            letti++;
+        }
+        assertEquals(100, letti);
+    }
+
+    @Test
+    @DisplayName("Accesso diretto a un punto e cursore da una posizione")
+    void testAccessoDiretto() {
+        GeometriaForma g = formaLunga(100);
+
+        assertEquals(71, g.getPunto(70).getSequence());
+        GeometriaForma.Cursore c = g.cursoreDa(33);
+        assertTrue(c.avanza());
+        assertEquals(33, c.getIndice());
+        assertEquals(34, c.getSequenza());
+        assertFalse(g.cursoreDa(100).avanza());
+        assertThrows(IndexOutOfBoundsException.class, () -> g.getPunto(100));
+    }
+
+    @Test
+    @DisplayName("Lunghezza e distanze cumulative coincidono con Haversine punto per punto")
+    void testDistanze() {
+        GeometriaForma g = formaLunga(50);
+        List<ShapeRoute.GeoPoint> punti = g.comePunti();
+
+        double attesa = 0;
+        for (int i = 1; i < punti.size(); i++) {
+            attesa += GeometriaForma.distanzaKm(punti.get(i - 1).getLatitude(), punti.get(i - 1).getLongitude(),
+                    punti.get(i).getLatitude(), punti.get(i).getLongitude());
+        }
+        assertEquals(attesa, g.getLunghezzaKm(), 1e-4);
+        assertEquals(0.0, g.getDistanzaCumulataKm(0), 0.0);
+        assertEquals(g.getDistanzaCumulataKm(30) - g.getDistanzaCumulataKm(10), g.distanzaTraKm(10, 30), 1e-6);
+    }
+
+    @Test
+    @DisplayName("Ricerca del punto raggiunto a una certa distanza")
+    void testIndiceAllaDistanza() {
+        GeometriaForma g = formaLunga(50);
+
+        assertEquals(0, g.indiceAllaDistanzaKm(0));
+        assertEquals(49, g.indiceAllaDistanzaKm(1000));
+        int i = g.indiceAllaDistanzaKm(g.getDistanzaCumulataKm(20) + 0.001);
+        assertEquals(20, i);
+        assertEquals(-1, GeometriaForma.vuota().indiceAllaDistanzaKm(1));
+    }
+
+    @Test
+    @DisplayName("Ordinamento per sequenza nel costruttore")
+    void testOrdinaPerSequenza() {
+        GeometriaForma g = new GeometriaForma.Costruttore()
+                .aggiungi(41.9, 12.5, 3, 0)
+                .aggiungi(41.8, 12.4, 1, 0)
+                .aggiungi(41.85, 12.45, 2, 0)
+                .ordinaPerSequenza()
+                .costruisci();
+
+        assertEquals(List.of(1, 2, 3), g.comePunti().stream().map(ShapeRoute.GeoPoint::getSequence).toList());
+        assertEquals(41.8, g.getPunto(0).getLatitude(), 0.0);
+    }
+
+    @Test
+    @DisplayName("I punti occupano pochi byte e sopravvivono al passaggio per i byte compressi")
+    void testCompressione() {
+        GeometriaForma g = formaLunga(500);
+        assertTrue(g.getDimensioneDati() < 500 * 10, "Byte per punto: " + g.getDimensioneDati() / 500.0);
+
+        GeometriaForma copia = GeometriaForma.daDatiCompressi(g.size(), g.getDatiCompressi());
+        assertEquals(g.size(), copia.size());
+        assertEquals(g.getLunghezzaKm(), copia.getLunghezzaKm(), 0.0);
+        assertEquals(g.getPunto(499).getLongitude(), copia.getPunto(499).getLongitude(), 0.0);
+    }
+
+    @Test
+    @DisplayName("Geometria vuota")
+    void testVuota() {
+        GeometriaForma g = GeometriaForma.di(List.of());
+        assertTrue(g.isEmpty());
+        assertEquals(0.0, g.getLunghezzaKm(), 0.0);
+        assertFalse(g.cursore().avanza());
+    }
+}
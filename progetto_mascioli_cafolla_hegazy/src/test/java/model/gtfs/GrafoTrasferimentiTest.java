@@ -0,0 +1,131 @@
+package model.gtfs;
+
+import model.utils.GeoUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GrafoTrasferimenti")
+class GrafoTrasferimentiTest {
+
+    // Termini: due fermate a pochi metri, una stazione e Repubblica a ~450 m
+    private static final Fermate TERMINI_A = new Fermate("gt_TA", "Termini A", 41.9009, 12.5021);
+    private static final Fermate TERMINI_B = new Fermate("gt_TB", "Termini B", 41.9011, 12.5025);
+    private static final Fermate STAZIONE = new Fermate("gt_TS", "Stazione Termini", "", 41.9010, 12.5023, "", "1", "");
+    private static final Fermate REPUBBLICA = new Fermate("gt_REP", "Repubblica", 41.9025, 12.4965);
+
+    private static GrafoTrasferimenti grafo(List<Fermate> fermate, List<Trasferimento> trasferimenti, double raggio) {
+        return GrafoTrasferimenti.di(fermate, GrigliaFermate.di(fermate), trasferimenti, raggio);
+    }
+
+    @Test
+    @DisplayName("Fermate vicine entro il raggio, con tempo a piedi, senza la fermata stessa né le stazioni")
+    void testVicine() {
+        GrafoTrasferimenti grafo = grafo(List.of(TERMINI_A, TERMINI_B, STAZIONE, REPUBBLICA), List.of(), 300);
+
+        List<GrafoTrasferimenti.Collegamento> daA = grafo.collegamenti(TERMINI_A);
+        assertEquals(1, daA.size());
+        assertSame(TERMINI_B, daA.get(0).fermata());
+        double metri = GeoUtils.distanzaKm(41.9009, 12.5021, 41.9011, 12.5025) * 1000;
+        assertEquals(Math.round(metri), daA.get(0).metri());
+        assertEquals(GrafoTrasferimenti.secondiAPiedi(metri), daA.get(0).secondi());
+
+        // simmetrico e nel formato CSR
+        assertEquals(1, grafo.collegamenti(TERMINI_B).size());
+        assertTrue(grafo.collegamenti(STAZIONE).isEmpty());
+        assertTrue(grafo.collegamenti(REPUBBLICA).isEmpty());
+        assertEquals(2, grafo.size());
+        int c = TERMINI_A.getCodiceFermata();
+        assertEquals(1, grafo.fine(c) - grafo.inizio(c));
+        assertEquals(TERMINI_B.getCodiceFermata(), grafo.getCodiceFermataVerso(grafo.inizio(c)));
+
+        // con un raggio più ampio entra anche Repubblica, dopo Termini B
+        List<GrafoTrasferimenti.Collegamento> largo = grafo(List.of(TERMINI_A, TERMINI_B, REPUBBLICA), List.of(), 600)
+                .collegamenti(TERMINI_A);
+        assertEquals(2, largo.size());
+        assertSame(REPUBBLICA, largo.get(1).fermata());
+        assertTrue(largo.get(0).secondi() < largo.get(1).secondi());
+    }
+
+    @Test
+    @DisplayName("transfers.txt aggiunge cambi lontani, cambia i tempi e toglie quelli non possibili")
+    void testTransfers() {
+        List<Trasferimento> trasferimenti = List.of(
+                new Trasferimento("gt_TA", "gt_REP", Trasferimento.TEMPO_MINIMO, 420),
+                new Trasferimento("gt_TB", "gt_TA", Trasferimento.NON_POSSIBILE, -1),
+                new Trasferimento("gt_REP", "gt_TB", Trasferimento.CONSIGLIATO, -1),
+                new Trasferimento("gt_TA", "gt_TA", Trasferimento.TEMPO_MINIMO, 120));
+        GrafoTrasferimenti grafo = grafo(List.of(TERMINI_A, TERMINI_B, REPUBBLICA), trasferimenti, 300);
+
+        List<GrafoTrasferimenti.Collegamento> daA = grafo.collegamenti(TERMINI_A);
+        assertEquals(2, daA.size());
+        assertSame(REPUBBLICA, daA.get(1).fermata());
+        assertEquals(420, daA.get(1).secondi());
+
+        assertTrue(grafo.collegamenti(TERMINI_B).isEmpty());
+
+        // senza min_transfer_time si usa il tempo a piedi sulla distanza
+        GrafoTrasferimenti.Collegamento daRep = grafo.collegamenti(REPUBBLICA).get(0);
+        assertSame(TERMINI_B, daRep.fermata());
+        assertEquals(GrafoTrasferimenti.secondiAPiedi(daRep.metri()), daRep.secondi());
+    }
+
+    @Test
+    @DisplayName("Il risultato in parallelo coincide con il confronto tra tutte le coppie")
+    void testConfrontoForzaBruta() {
+        Random random = new Random(7);
+        List<Fermate> fermate = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            fermate.add(new Fermate("gt_" + i, "Fermata " + i,
+                    41.88 + random.nextDouble() * 0.04, 12.48 + random.nextDouble() * 0.04));
+        }
+        GrafoTrasferimenti grafo = grafo(fermate, List.of(), 250);
+
+        Map<Fermate, Integer> attesi = new HashMap<>();
+        int totale = 0;
+        for (Fermate f : fermate) {
+            int n = 0;
+            for (Fermate g : fermate) {
+                if (f != g && GeoUtils.distanzaKm(f.getStopLat(), f.getStopLon(),
+                        g.getStopLat(), g.getStopLon()) * 1000 <= 250) n++;
+            }
+            attesi.put(f, n);
+            totale += n;
+        }
+        for (Fermate f : fermate) {
+            List<GrafoTrasferimenti.Collegamento> collegamenti = grafo.collegamenti(f);
+            assertEquals(attesi.get(f), collegamenti.size());
+            for (int i = 1; i < collegamenti.size(); i++) {
+                assertTrue(collegamenti.get(i - 1).secondi() <= collegamenti.get(i).secondi());
+            }
+        }
+        assertEquals(totale, grafo.size());
+    }
+
+    @Test
+    @DisplayName("Grafo vuoto, fermate sconosciute e raggio dalle proprietà")
+    void testCasiLimite() {
+        GrafoTrasferimenti vuoto = grafo(List.of(), List.of(), 300);
+        assertEquals(0, vuoto.size());
+        assertTrue(vuoto.collegamenti(TERMINI_A).isEmpty());
+        assertTrue(vuoto.collegamenti(null).isEmpty());
+        assertEquals(0, vuoto.fine(-1));
+        assertEquals(0, vuoto.fine(Integer.MAX_VALUE));
+
+        String precedente = System.getProperty(GrafoTrasferimenti.PROPRIETA_RAGGIO);
+        try {
+            System.setProperty(GrafoTrasferimenti.PROPRIETA_RAGGIO, "150");
+            assertEquals(150, GrafoTrasferimenti.raggioDaProprieta());
+            System.setProperty(GrafoTrasferimenti.PROPRIETA_RAGGIO, "tanto");
+            assertEquals(GrafoTrasferimenti.RAGGIO_PREDEFINITO, GrafoTrasferimenti.raggioDaProprieta());
+        } finally {
+            if (precedente == null) System.clearProperty(GrafoTrasferimenti.PROPRIETA_RAGGIO);
+            else System.setProperty(GrafoTrasferimenti.PROPRIETA_RAGGIO, precedente);
+        }
+    }
+}
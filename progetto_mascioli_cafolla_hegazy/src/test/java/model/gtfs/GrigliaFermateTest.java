@@ -0,0 +1,102 @@
+package model.gtfs;
+
+import model.utils.GeoUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GrigliaFermate")
+class GrigliaFermateTest {
+
+    private static final Fermate TERMINI = new Fermate("gf_TER", "Termini", 41.9009, 12.5021);
+    private static final Fermate COLOSSEO = new Fermate("gf_COL", "Colosseo", 41.8902, 12.4922);
+    private static final Fermate VENEZIA = new Fermate("gf_VEN", "Piazza Venezia", 41.8960, 12.4823);
+    private static final Fermate REPUBBLICA = new Fermate("gf_REP", "Repubblica", 41.9025, 12.4965);
+
+    private static List<Fermate> casuali(int n) {
+        Random random = new Random(42);
+        List<Fermate> fermate = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            fermate.add(new Fermate("gf_" + i, "Fermata " + i,
+                    41.80 + random.nextDouble() * 0.20, 12.35 + random.nextDouble() * 0.30));
+        }
+        return fermate;
+    }
+
+    private static double metri(Fermate f, double lat, double lon) {
+        return GeoUtils.distanzaKm(lat, lon, f.getStopLat(), f.getStopLon()) * 1000;
+    }
+
+    @Test
+    @DisplayName("La più vicina e le k più vicine in ordine di distanza")
+    void testVicine() {
+        GrigliaFermate griglia = GrigliaFermate.di(List.of(TERMINI, COLOSSEO, VENEZIA, REPUBBLICA));
+
+        List<GrigliaFermate.Vicina> vicine = griglia.vicine(41.9012, 12.5010, 2);
+        assertEquals(2, vicine.size());
+        assertSame(TERMINI, vicine.get(0).fermata());
+        assertSame(REPUBBLICA, vicine.get(1).fermata());
+        assertTrue(vicine.get(0).metri() < vicine.get(1).metri());
+
+        assertEquals(4, griglia.vicine(41.9012, 12.5010, 10).size());
+        assertTrue(griglia.vicine(41.9012, 12.5010, 0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Stesso risultato della ricerca esaustiva, anche fuori dalla griglia")
+    void testConfrontoEsaustivo() {
+        List<Fermate> fermate = casuali(3000);
+        GrigliaFermate griglia = GrigliaFermate.di(fermate);
+        assertEquals(3000, griglia.size());
+
+        double[][] punti = {{41.90, 12.50}, {41.85, 12.40}, {41.70, 12.20}, {42.10, 12.90}};
+        for (double[] p : punti) {
+            List<Fermate> attese = new ArrayList<>(fermate);
+            attese.sort(Comparator.comparingDouble(f -> metri(f, p[0], p[1])));
+
+            List<GrigliaFermate.Vicina> vicine = griglia.vicine(p[0], p[1], 5);
+            for (int i = 0; i < 5; i++) {
+                assertSame(attese.get(i), vicine.get(i).fermata());
+            }
+
+            long entro = fermate.stream().filter(f -> metri(f, p[0], p[1]) <= 800).count();
+            List<GrigliaFermate.Vicina> raggio = griglia.entroRaggio(p[0], p[1], 800);
+            assertEquals(entro, raggio.size());
+            for (int i = 1; i < raggio.size(); i++) {
+                assertTrue(raggio.get(i - 1).metri() <= raggio.get(i).metri());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Fermate nel riquadro e più vicina entro un raggio")
+    void testRiquadroERaggio() {
+        GrigliaFermate griglia = GrigliaFermate.di(List.of(TERMINI, COLOSSEO, VENEZIA, REPUBBLICA));
+
+        List<Fermate> centro = griglia.nelRiquadro(41.895, 12.480, 41.903, 12.498);
+        assertEquals(2, centro.size());
+        assertTrue(centro.contains(VENEZIA) && centro.contains(REPUBBLICA));
+
+        assertSame(COLOSSEO, griglia.piuVicina(41.8905, 12.4925, 100));
+        assertNull(griglia.piuVicina(41.95, 12.60, 300));
+    }
+
+    @Test
+    @DisplayName("Griglia vuota e coordinate non valide")
+    void testCasiLimite() {
+        GrigliaFermate vuota = GrigliaFermate.di(List.of());
+        assertEquals(0, vuota.size());
+        assertTrue(vuota.vicine(41.9, 12.5, 3).isEmpty());
+        assertTrue(vuota.entroRaggio(41.9, 12.5, 500).isEmpty());
+        assertNull(vuota.piuVicina(41.9, 12.5, 500));
+
+        Fermate senzaPosizione = new Fermate("gf_NAN", "Senza posizione", Double.NaN, Double.NaN);
+        GrigliaFermate griglia = GrigliaFermate.di(List.of(TERMINI, senzaPosizione));
+        assertEquals(1, griglia.size());
+        assertSame(TERMINI, griglia.piuVicina(41.9009, 12.5021, 10));
+    }
+}
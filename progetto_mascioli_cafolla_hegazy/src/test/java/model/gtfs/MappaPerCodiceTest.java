@@ -0,0 +1,43 @@
+package model.gtfs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe MappaPerCodice")
+class MappaPerCodiceTest {
+
+    @Test
+    @DisplayName("Trova gli elementi per codice e null per i codici assenti")
+    void testGet() {
+        Fermate a = new Fermate("mappa-test-a", "A", 41.9, 12.5);
+        Fermate b = new Fermate("mappa-test-b", "B", 41.8, 12.4);
+        MappaPerCodice<Fermate> mappa = MappaPerCodice.di(List.of(a, b), Fermate::getCodiceFermata);
+
+        assertSame(a, mappa.get(a.getCodiceFermata()));
+        assertSame(b, mappa.get(b.getCodiceFermata()));
+        assertNull(mappa.get(Simboli.NESSUNO));
+        assertNull(mappa.get(Integer.MAX_VALUE));
+        assertEquals(2, mappa.numeroPresenti());
+    }
+
+    @Test
+    @DisplayName("Con codici duplicati vince il primo elemento")
+    void testDuplicati() {
+        Fermate prima = new Fermate("mappa-test-dup", "Prima", 41.9, 12.5);
+        Fermate seconda = new Fermate("mappa-test-dup", "Seconda", 41.9, 12.5);
+        MappaPerCodice<Fermate> mappa = MappaPerCodice.di(List.of(prima, seconda), Fermate::getCodiceFermata);
+
+        assertEquals("Prima", mappa.get(prima.getCodiceFermata()).getStopName());
+        assertEquals(1, mappa.numeroPresenti());
+    }
+
+    @Test
+    @DisplayName("Una collezione vuota dà una mappa vuota")
+    void testVuota() {
+        MappaPerCodice<Fermate> mappa = MappaPerCodice.di(List.of(), Fermate::getCodiceFermata);
+        assertNull(mappa.get(0));
+        assertEquals(0, mappa.numeroPresenti());
+    }
+}
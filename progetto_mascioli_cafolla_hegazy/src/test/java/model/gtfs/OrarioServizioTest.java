@@ -0,0 +1,74 @@
+package model.gtfs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe OrarioServizio")
+class OrarioServizioTest {
+
+    private static final int ORA = 3600;
+    private static final ZoneId ROMA = ZoneId.of("Europe/Rome");
+
+    @Test
+    @DisplayName("Parsing di orari normali, notturni e non validi")
+    void testParse() {
+        assertEquals(8 * ORA + 30 * 60 + 15, OrarioServizio.parse("08:30:15"));
+        assertEquals(25 * ORA + 10 * 60, OrarioServizio.parse("25:10:00"));
+        assertEquals(7 * ORA, OrarioServizio.parse("7:00:00"));
+        assertEquals(OrarioServizio.ASSENTE, OrarioServizio.parse(""));
+        assertEquals(OrarioServizio.ASSENTE, OrarioServizio.parse("08:30"));
+        assertEquals(OrarioServizio.ASSENTE, OrarioServizio.parse("08:3a:00"));
+    }
+
+    @Test
+    @DisplayName("Orario da orologio e formattazione HH:mm")
+    void testOraDelGiorno() {
+        assertEquals(LocalTime.of(1, 10), OrarioServizio.oraDelGiorno(25 * ORA + 10 * 60));
+        assertSame(OrarioServizio.oraDelGiorno(ORA), OrarioServizio.oraDelGiorno(25 * ORA));
+        assertNull(OrarioServizio.oraDelGiorno(OrarioServizio.ASSENTE));
+        assertEquals("01:10", OrarioServizio.formatta(25 * ORA + 10 * 60));
+        assertEquals("23:05", OrarioServizio.formatta(23 * ORA + 5 * 60 + 59));
+        assertEquals("", OrarioServizio.formatta(OrarioServizio.ASSENTE));
+    }
+
+    @Test
+    @DisplayName("Data e ora reali di un orario oltre le 24:00")
+    void testDataOra() {
+        LocalDate giorno = LocalDate.of(2024, 5, 10);
+        ZonedDateTime reale = OrarioServizio.dataOra(giorno, 25 * ORA + 10 * 60, ROMA);
+        assertEquals(LocalDate.of(2024, 5, 11), reale.toLocalDate());
+        assertEquals(LocalTime.of(1, 10), reale.toLocalTime());
+        assertEquals(25 * ORA + 10 * 60, OrarioServizio.secondiDa(giorno, reale));
+    }
+
+    @Test
+    @DisplayName("Nel giorno del cambio all'ora legale il giorno di servizio parte da mezzogiorno meno 12 ore")
+    void testDataOraCambioOraLegale() {
+        // 31/03/2024: alle 02:00 si passa alle 03:00, mezzogiorno - 12h = 23:00 del giorno prima
+        LocalDate giorno = LocalDate.of(2024, 3, 31);
+        ZonedDateTime reale = OrarioServizio.dataOra(giorno, 12 * ORA, ROMA);
+        assertEquals(LocalTime.NOON, reale.toLocalTime());
+    }
+
+    @Test
+    @DisplayName("Finestra che scavalca la mezzanotte")
+    void testInFinestra() {
+        // adesso 00:10, finestra 00:05 - 01:10
+        int inizio = 5 * 60;
+        int fine = 70 * 60;
+        assertEquals(15 * 60, OrarioServizio.inFinestra(24 * ORA + 15 * 60, inizio, fine)); // N di ieri
+        assertEquals(30 * 60, OrarioServizio.inFinestra(30 * 60, inizio, fine));
+        assertEquals(OrarioServizio.FUORI_FINESTRA, OrarioServizio.inFinestra(23 * ORA + 55 * 60, inizio, fine));
+
+        // adesso 23:50, finestra 23:45 - 00:50
+        inizio = 23 * ORA + 45 * 60;
+        fine = inizio + 65 * 60;
+        assertEquals(24 * ORA + 20 * 60, OrarioServizio.inFinestra(20 * 60, inizio, fine)); // corsa di domani
+        assertEquals(OrarioServizio.FUORI_FINESTRA, OrarioServizio.inFinestra(OrarioServizio.ASSENTE, inizio, fine));
+    }
+}
@@ -0,0 +1,138 @@
+package model.gtfs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe SchemiCorse")
+class SchemiCorseTest {
+
+    // Corsa sulla linea 64 con tre fermate; "passi" sono i minuti tra una fermata e la successiva
+    private static Trip corsa(String tripId, String[] fermate, LocalTime partenza, int... passi) {
+        Trip trip = new Trip("64", "WD", tripId, "Termini", "", 0, "", "", 0, 0);
+        LocalTime ora = partenza;
+        for (int i = 0; i < fermate.length; i++) {
+            if (i > 0) ora = ora.plusMinutes(passi[i - 1]);
+            trip.aggiungiStopTime(new StopTime(tripId, ora, ora, fermate[i], i + 1));
+        }
+        return trip;
+    }
+
+    private static final String[] PERCORSO = {"sc_1", "sc_2", "sc_3"};
+
+    @Test
+    @DisplayName("Corse con le stesse fermate condividono lo schema e il profilo")
+    void testSchemaEProfiloCondivisi() {
+        Trip a = corsa("sc_t1", PERCORSO, LocalTime.of(8, 0), 5, 7);
+        Trip b = corsa("sc_t2", PERCORSO, LocalTime.of(9, 30), 5, 7);
+
+        SchemiCorse schemi = SchemiCorse.comprimi(List.of(a, b));
+
+        assertEquals(1, schemi.getNumeroSchemi());
+        assertEquals(1, schemi.getNumeroProfili());
+        assertEquals(2, schemi.getNumeroCorse());
+        assertSame(a.getSchema(), b.getSchema());
+        assertSame(a.getProfilo(), b.getProfilo());
+        assertEquals(8 * 3600, a.getInizioSecondi());
+        assertEquals(9 * 3600 + 30 * 60, b.getInizioSecondi());
+    }
+
+    @Test
+    @DisplayName("Tempi di percorrenza diversi danno profili diversi nello stesso schema")
+    void testProfiliDiversi() {
+        Trip a = corsa("sc_t3", PERCORSO, LocalTime.of(8, 0), 5, 7);
+        Trip b = corsa("sc_t4", PERCORSO, LocalTime.of(17, 0), 9, 12);
+
+        SchemiCorse schemi = SchemiCorse.comprimi(List.of(a, b));
+
+        assertEquals(1, schemi.getNumeroSchemi());
+        assertEquals(2, schemi.getNumeroProfili());
+        assertNotSame(a.getProfilo(), b.getProfilo());
+        assertEquals(21 * 60, b.getProfilo().getDurata());
+    }
+
+    @Test
+    @DisplayName("Sequenze di fermate diverse danno schemi diversi")
+    void testSchemiDiversi() {
+        Trip a = corsa("sc_t5", PERCORSO, LocalTime.of(8, 0), 5, 7);
+        Trip b = corsa("sc_t6", new String[]{"sc_1", "sc_2"}, LocalTime.of(8, 0), 5);
+
+        SchemiCorse schemi = SchemiCorse.comprimi(List.of(a, b));
+
+        assertEquals(2, schemi.getNumeroSchemi());
+        assertEquals(2, schemi.perRotta(a.getCodiceRotta()).size());
+        assertEquals(2, schemi.perRottaEDirezione(a.getCodiceRotta(), 0).size());
+        assertTrue(schemi.perRottaEDirezione(a.getCodiceRotta(), 1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Gli orari ricostruiti dallo schema sono quelli originali")
+    void testOrariRicostruiti() {
+        Trip a = corsa("sc_t7", PERCORSO, LocalTime.of(22, 55), 5, 7);
+        SchemiCorse.comprimi(List.of(a));
+
+        List<StopTime> orari = a.getStopTimes();
+        assertEquals(3, orari.size());
+        assertEquals(3, a.getNumeroFermate());
+        assertEquals("sc_t7", orari.get(0).getTripId());
+        assertEquals("sc_2", orari.get(1).getStopId());
+        assertEquals(2, orari.get(1).getStopSequence());
+        assertEquals(22 * 3600 + 55 * 60 + 5 * 60, orari.get(1).getArrivoSecondi());
+        assertEquals(orari.get(2).getArrivoSecondi(), a.getArrivoSecondi(2));
+        assertEquals("sc_3", a.getUltimoStop().getStopId());
+        assertEquals(3, a.getStopByFermataId("sc_3").getStopSequence());
+        assertEquals(List.of("sc_1", "sc_2", "sc_3"), a.getStopIds());
+    }
+
+    @Test
+    @DisplayName("Ordinare orari già in sequenza non cambia nulla, riordinarli lascia lo schema")
+    void testOrdinamento() {
+        Trip a = corsa("sc_t8", PERCORSO, LocalTime.of(8, 0), 5, 7);
+        SchemiCorse.comprimi(List.of(a));
+
+        a.getStopTimes().sort(Comparator.comparingInt(StopTime::getStopSequence));
+        assertNotNull(a.getSchema());
+
+        List<StopTime> orari = a.getStopTimes();
+        orari.sort(Comparator.comparingInt(StopTime::getStopSequence).reversed());
+        assertNull(a.getSchema());
+        assertSame(orari, a.getStopTimes());
+        assertEquals("sc_3", a.getPrimoStop().getStopId());
+        assertEquals(3, a.getNumeroFermate());
+
+        // anche una modifica diretta della lista resta nella corsa
+        Trip b = corsa("sc_t11", PERCORSO, LocalTime.of(9, 0), 5, 7);
+        SchemiCorse.comprimi(List.of(b));
+        b.getStopTimes().remove(2);
+        assertNull(b.getSchema());
+        assertEquals(2, b.getNumeroFermate());
+        assertEquals("sc_2", b.getUltimoStop().getStopId());
+    }
+
+    @Test
+    @DisplayName("Aggiungere uno stop a una corsa compressa la riporta a una lista propria")
+    void testAggiuntaDopoCompressione() {
+        Trip a = corsa("sc_t9", PERCORSO, LocalTime.of(8, 0), 5, 7);
+        SchemiCorse.comprimi(List.of(a));
+
+        a.aggiungiStopTime(new StopTime("sc_t9", LocalTime.of(8, 20), LocalTime.of(8, 20), "sc_4", 4));
+
+        assertNull(a.getSchema());
+        assertEquals(4, a.getNumeroFermate());
+        assertEquals("sc_4", a.getUltimoStop().getStopId());
+    }
+
+    @Test
+    @DisplayName("Le corse senza orari restano fuori dagli schemi")
+    void testCorsaSenzaOrari() {
+        Trip vuota = new Trip("64", "WD", "sc_t10", "Termini");
+        SchemiCorse schemi = SchemiCorse.comprimi(List.of(vuota));
+
+        assertEquals(0, schemi.getNumeroSchemi());
+        assertNull(vuota.getSchema());
+        assertTrue(vuota.getStopTimes().isEmpty());
+    }
+}
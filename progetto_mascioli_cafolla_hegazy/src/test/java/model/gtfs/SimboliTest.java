@@ -0,0 +1,66 @@
+package model.gtfs;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe Simboli")
+class SimboliTest {
+
+    @Test
+    @DisplayName("Lo stesso ID riceve sempre lo stesso codice e la stessa istanza di String")
+    void testCodiceStabile() {
+        int codice = Simboli.TRIP.codice("simboli-test-trip-1");
+        assertEquals(codice, Simboli.TRIP.codice(new String("simboli-test-trip-1")));
+        assertSame(Simboli.TRIP.valore(codice), Simboli.TRIP.valore(Simboli.TRIP.codice("simboli-test-trip-1")));
+        assertEquals("simboli-test-trip-1", Simboli.TRIP.valore(codice));
+    }
+
+    @Test
+    @DisplayName("ID diversi ricevono codici diversi e densi")
+    void testCodiciDiversi() {
+        int a = Simboli.FERMATA.codice("simboli-test-a");
+        int b = Simboli.FERMATA.codice("simboli-test-b");
+        assertNotEquals(a, b);
+        assertTrue(a >= 0 && a < Simboli.FERMATA.size());
+        assertTrue(b >= 0 && b < Simboli.FERMATA.size());
+    }
+
+    @Test
+    @DisplayName("cerca non aggiunge ID sconosciuti")
+    void testCercaSenzaAggiungere() {
+        int prima = Simboli.ROTTA.size();
+        assertEquals(Simboli.NESSUNO, Simboli.ROTTA.cerca("simboli-test-mai-visto"));
+        assertEquals(prima, Simboli.ROTTA.size());
+    }
+
+    @Test
+    @DisplayName("null corrisponde a NESSUNO e viceversa")
+    void testNull() {
+        assertEquals(Simboli.NESSUNO, Simboli.HEADSIGN.codice(null));
+        assertEquals(Simboli.NESSUNO, Simboli.HEADSIGN.cerca(null));
+        assertNull(Simboli.HEADSIGN.valore(Simboli.NESSUNO));
+    }
+
+    @Test
+    @DisplayName("La tabella cresce oltre la capacità iniziale")
+    void testCrescita() {
+        int primo = Simboli.SERVIZIO.codice("simboli-test-servizio-0");
+        for (int i = 1; i < 3000; i++) {
+            Simboli.SERVIZIO.codice("simboli-test-servizio-" + i);
+        }
+        assertEquals("simboli-test-servizio-0", Simboli.SERVIZIO.valore(primo));
+        int ultimo = Simboli.SERVIZIO.cerca("simboli-test-servizio-2999");
+        assertEquals("simboli-test-servizio-2999", Simboli.SERVIZIO.valore(ultimo));
+    }
+
+    @Test
+    @DisplayName("I modelli confrontano gli ID per codice")
+    void testModelliUsanoCodici() {
+        Fermate a = new Fermate("simboli-test-stop", "A", 41.9, 12.5);
+        Fermate b = new Fermate("simboli-test-stop", "B", 41.8, 12.4);
+        assertEquals(a.getCodiceFermata(), b.getCodiceFermata());
+        assertEquals(a, b);
+        assertEquals("simboli-test-stop", a.getStopId());
+    }
+}
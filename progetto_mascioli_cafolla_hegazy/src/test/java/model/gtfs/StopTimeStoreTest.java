@@ -0,0 +1,168 @@
+package model.gtfs;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe StopTimeStore")
+class StopTimeStoreTest {
+
+    private static final int ORA = 3600;
+
+    // Due blocchi come quelli prodotti dal parsing parallelo, con le righe mescolate
+    private static StopTimeStore creaArchivio() {
+        StopTimeStore.Builder primo = new StopTimeStore.Builder();
+        primo.aggiungi("T2", 9 * ORA, 9 * ORA + 60, "S1", 1, "", 0, 0, 0.0);
+        primo.aggiungi("T1", 8 * ORA + 600, 8 * ORA + 600, "S2", 2, "Termini", 0, 1, 1.5);
+
+        StopTimeStore.Builder secondo = new StopTimeStore.Builder();
+        secondo.aggiungi("T1", 8 * ORA, -1, "S1", 1, "Termini", 1, 0, 0.0);
+        secondo.aggiungi("T2", 25 * ORA, 25 * ORA, "S3", 2, "", 0, 0, 2.0);
+
+        return StopTimeStore.unisci(List.of(primo, new StopTimeStore.Builder(), secondo));
+    }
+
+    @Test
+    @DisplayName("Righe ordinate per trip e sequenza indipendentemente dai blocchi")
+    void testOrdinamento() {
+        StopTimeStore store = creaArchivio();
+
+        assertEquals(4, store.size());
+        assertEquals(2, store.getNumeroTrip());
+        assertEquals(3, store.getNumeroFermate());
+
+        assertEquals("T1", store.getTripId(0));
+        assertEquals(1, store.getStopSequence(0));
+        assertEquals("T1", store.getTripId(1));
+        assertEquals(2, store.getStopSequence(1));
+        assertEquals("T2", store.getTripId(2));
+        assertEquals("S3", store.getStopId(3));
+    }
+
+    @Test
+    @DisplayName("Il cursore legge le colonne senza creare StopTime")
+    void testCursore() {
+        StopTimeStore store = creaArchivio();
+
+        StopTimeStore.Cursore c = store.cursorePerTrip("T1");
+        assertTrue(c.avanza());
+        assertEquals("S1", c.getStopId());
+        assertEquals(8 * ORA, c.getArrivoSecondi());
+        assertEquals(-1, c.getPartenzaSecondi());
+        assertNull(c.getDepartureTime());
+        assertEquals(1, c.getPickupType());
+        assertEquals("Termini", c.getStopHeadsign());
+        assertTrue(c.avanza());
+        assertEquals(1.5, c.getShapeDistTraveled(), 0.0);
+        assertEquals(1, c.getDropOffType());
+        assertFalse(c.avanza());
+
+        assertFalse(store.cursorePerTrip("SCONOSCIUTO").avanza());
+    }
+
+    @Test
+    @DisplayName("Orari oltre le 24: secondi originali nel cursore, LocalTime modulo 24")
+    void testOrariOltreMezzanotte() {
+        StopTimeStore store = creaArchivio();
+
+        StopTimeStore.Cursore c = store.cursorePerFermata("S3");
+        assertTrue(c.avanza());
+        assertEquals(25 * ORA, c.getArrivoSecondi());
+        assertEquals(LocalTime.of(1, 0), c.getArrivalTime());
+        // gli orari sono istanze condivise
+        assertSame(c.getArrivalTime(), store.getArrivalTime(c.getRiga()));
+    }
+
+    @Test
+    @DisplayName("Indice per fermata con le righe in ordine di trip")
+    void testIndicePerFermata() {
+        StopTimeStore store = creaArchivio();
+
+        Map<String, List<StopTime>> indice = store.indicePerFermata();
+        List<StopTime> s1 = indice.get("S1");
+        assertEquals(2, s1.size());
+        assertEquals("T1", s1.get(0).getTripId());
+        assertEquals("T2", s1.get(1).getTripId());
+        assertEquals(LocalTime.of(9, 1), s1.get(1).getDepartureTime());
+
+        assertTrue(store.perFermata("NESSUNA").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Le viste si ordinano e si modificano passando a una copia, l'archivio non cambia")
+    void testVistaModificata() {
+        StopTimeStore store = creaArchivio();
+        StopTimeStore.Vista vista = (StopTimeStore.Vista) store.perTrip("T1");
+        assertThrows(IndexOutOfBoundsException.class, () -> vista.get(2));
+
+        // ordinamento che non cambia nulla: resta una vista dell'archivio
+        vista.sort(Comparator.comparingInt(StopTime::getStopSequence));
+        assertFalse(vista.isModificata());
+
+        vista.sort(Comparator.comparingInt(StopTime::getStopSequence).reversed());
+        assertTrue(vista.isModificata());
+        assertEquals(2, vista.get(0).getStopSequence());
+        vista.add(vista.get(1));
+        assertEquals(3, vista.size());
+        vista.remove(0);
+        assertEquals(List.of(1, 1), vista.stream().map(StopTime::getStopSequence).toList());
+
+        assertEquals(2, store.perTrip("T1").size());
+        assertEquals(1, store.perTrip("T1").get(0).getStopSequence());
+        assertFalse(((StopTimeStore.Vista) store.tutti()).isModificata());
+
+        // sort(null) è l'ordine naturale, come per un ArrayList: StopTime non è Comparable
+        List<StopTime> naturale = store.perTrip("T1");
+        assertThrows(ClassCastException.class, () -> naturale.sort(null));
+    }
+
+    @Test
+    @DisplayName("Trip collegato a una vista: aggiungiStopTime passa a una copia")
+    void testTripConVista() {
+        StopTimeStore store = creaArchivio();
+        Trip trip = new Trip("R1", "FER", "T1", "Termini");
+
+        trip.collegaStopTimes(store.perTrip("T1"));
+        assertEquals(2, trip.getNumeroFermate());
+        assertEquals("S2", trip.getUltimoStop().getStopId());
+
+        trip.aggiungiStopTime(new StopTime("T1", LocalTime.of(8, 20), LocalTime.of(8, 20), "S9", 3));
+        assertEquals(3, trip.getNumeroFermate());
+        assertEquals(2, store.perTrip("T1").size());
+    }
+
+    @Test
+    @DisplayName("Sequenze che non stanno in 16 bit")
+    void testSequenzeLarghe() {
+        StopTimeStore.Builder builder = new StopTimeStore.Builder();
+        builder.aggiungi("T1", 0, 0, "S1", 100_000, "", 0, 0, 0.0);
+        builder.aggiungi("T1", 60, 60, "S2", 70_000, "", 0, 0, 0.0);
+
+        StopTimeStore store = StopTimeStore.unisci(List.of(builder));
+        assertEquals(70_000, store.getStopSequence(0));
+        assertEquals(100_000, store.getStopSequence(1));
+    }
+
+    @Test
+    @DisplayName("filtraPerTrip e filtraPerFermata funzionano anche su liste normali")
+    void testFiltri() {
+        StopTimeStore store = creaArchivio();
+        List<StopTime> lista = new ArrayList<>(store.tutti());
+
+        assertEquals(2, StopTimeStore.filtraPerTrip(lista, "T2").size());
+        assertEquals(2, StopTimeStore.filtraPerTrip(store.tutti(), "T2").size());
+        assertEquals(1, StopTimeStore.filtraPerFermata(lista, "S2").size());
+        assertEquals(1, StopTimeStore.filtraPerFermata(store.tutti(), "S2").size());
+
+        StopTimeStore copia = StopTimeStore.da(lista);
+        assertEquals(store.size(), copia.size());
+        assertEquals("S3", copia.getStopId(3));
+    }
+}
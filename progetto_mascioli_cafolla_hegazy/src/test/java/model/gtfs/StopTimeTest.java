@@ -143,6 +143,27 @@ class StopTimeTest {
         assertEquals(30, tempo.getMinute());
     }
 
+    @Test
+    @DisplayName("Test parseSecondiGTFS mantiene le ore >= 24")
+    void testParseSecondiGTFS() {
+        assertEquals(14 * 3600 + 30 * 60, StopTime.parseSecondiGTFS("14:30:00"));
+        assertEquals(25 * 3600 + 30 * 60, StopTime.parseSecondiGTFS("25:30:00"));
+        assertEquals(7 * 3600 + 5 * 60, StopTime.parseSecondiGTFS(" 7:05:00 "));
+        assertEquals(-1, StopTime.parseSecondiGTFS("invalid"));
+        assertEquals(-1, StopTime.parseSecondiGTFS("12:60:00"));
+        assertEquals(-1, StopTime.parseSecondiGTFS(null));
+    }
+
+    @Test
+    @DisplayName("Test orari in secondi oltre la mezzanotte")
+    void testOrariOltreMezzanotte() {
+        StopTime notturno = new StopTime("trip_n", 25 * 3600 + 10 * 60, 25 * 3600 + 12 * 60, "S1", 1, "", 0, 0, 0.0);
+
+        assertEquals(25 * 3600 + 10 * 60, notturno.getArrivoSecondi());
+        assertEquals(LocalTime.of(1, 10), notturno.getArrivalTime());
+        assertEquals(120, notturno.getTempoFermata());
+    }
+
     @Test
     @DisplayName("Test parseTempoGTFS con formato invalido")
     void testParseTempoGTFSInvalido() {
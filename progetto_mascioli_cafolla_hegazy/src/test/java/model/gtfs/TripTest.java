@@ -109,6 +109,17 @@ class TripTest {
         assertEquals(1200, durata);
     }
 
+    @Test
+    @DisplayName("Test durata di una corsa notturna oltre la mezzanotte")
+    void testGetDurataCorsaNotturna() {
+        Trip notturna = new Trip("N1", "WD", "trip_n1", "Termini");
+        notturna.aggiungiStopTime(new StopTime("trip_n1", 23 * 3600 + 50 * 60, 23 * 3600 + 50 * 60, "S1", 1, "", 0, 0, 0.0));
+        notturna.aggiungiStopTime(new StopTime("trip_n1", 24 * 3600 + 20 * 60, 24 * 3600 + 20 * 60, "S2", 2, "", 0, 0, 0.0));
+
+        // 23:50 -> 24:20 = 30 minuti
+        assertEquals(1800, notturna.getDurataTotaleCorse());
+    }
+
     @Test
     @DisplayName("Test get stop by sequence")
     void testGetStopAtSequence() {
@@ -0,0 +1,101 @@
+package model.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe ChunkedCsvParser")
+class ChunkedCsvParserTest {
+
+    // Parser di prova: "trip_id|stop_sequence" per ogni riga
+    private static void leggiRighe(GtfsCsvReader csv, List<String> destinazione) throws IOException {
+        int colTrip = csv.colonna("trip_id");
+        int colSeq = csv.colonna("stop_sequence");
+        while (csv.prossimaRiga()) {
+            destinazione.add(csv.getString(colTrip) + "|" + csv.getInt(colSeq, -1));
+        }
+    }
+
+    private static String creaFile(int righe, String fineRiga) {
+        StringBuilder sb = new StringBuilder("trip_id,stop_sequence,stop_headsign" + fineRiga);
+        for (int i = 0; i < righe; i++) {
+            sb.append("T").append(i / 10).append(',').append(i % 10).append(",\"Capolinea, è qui\"").append(fineRiga);
+        }
+        return sb.toString();
+    }
+
+    private static List<String> sequenziale(String contenuto) throws IOException {
+        List<String> righe = new ArrayList<>();
+        try (GtfsCsvReader csv = new GtfsCsvReader(new StringReader(contenuto))) {
+            leggiRighe(csv, righe);
+        }
+        return righe;
+    }
+
+    private static List<String> appiattisci(List<List<String>> blocchi) {
+        List<String> tutte = new ArrayList<>();
+        blocchi.forEach(tutte::addAll);
+        return tutte;
+    }
+
+    private static ByteBuffer bytes(String contenuto) {
+        return ByteBuffer.wrap(contenuto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Il risultato a blocchi coincide con la lettura sequenziale")
+    void testStessoRisultatoDelSequenziale() throws IOException {
+        String contenuto = creaFile(5000, "\n");
+        List<String> attese = sequenziale(contenuto);
+
+        for (int dimensione : new int[]{1, 7, 64, 1000, 1 << 20}) {
+            List<List<String>> blocchi = ChunkedCsvParser.parse(bytes(contenuto), ChunkedCsvParserTest::leggiRighe, dimensione);
+            assertEquals(attese, appiattisci(blocchi), "dimensione blocco " + dimensione);
+        }
+    }
+
+    @Test
+    @DisplayName("Più blocchi con file grande e ultima riga senza a capo")
+    void testPiuBlocchiSenzaACapoFinale() throws IOException {
+        String contenuto = creaFile(2000, "\r\n") + "TX,1,fine";
+        List<List<String>> blocchi = ChunkedCsvParser.parse(bytes(contenuto), ChunkedCsvParserTest::leggiRighe, 512);
+
+        assertTrue(blocchi.size() > 1);
+        List<String> tutte = appiattisci(blocchi);
+        assertEquals(2001, tutte.size());
+        assertEquals("T0|0", tutte.get(0));
+        assertEquals("TX|1", tutte.get(2000));
+    }
+
+    @Test
+    @DisplayName("I confini dei blocchi cadono sempre a inizio riga")
+    void testConfiniAllineati() {
+        String contenuto = creaFile(300, "\n");
+        ByteBuffer buffer = bytes(contenuto);
+        int inizioDati = contenuto.indexOf('\n') + 1;
+
+        List<int[]> intervalli = ChunkedCsvParser.dividi(buffer, inizioDati, buffer.limit(), 100);
+
+        assertEquals(inizioDati, intervalli.get(0)[0]);
+        assertEquals(buffer.limit(), intervalli.get(intervalli.size() - 1)[1]);
+        for (int i = 1; i < intervalli.size(); i++) {
+            assertEquals(intervalli.get(i - 1)[1], intervalli.get(i)[0]);
+            assertEquals('\n', buffer.get(intervalli.get(i)[0] - 1));
+        }
+    }
+
+    @Test
+    @DisplayName("File con sola intestazione")
+    void testSoloIntestazione() throws IOException {
+        List<List<String>> blocchi = ChunkedCsvParser.parse(bytes("trip_id,stop_sequence\n"), ChunkedCsvParserTest::leggiRighe);
+        assertTrue(appiattisci(blocchi).isEmpty());
+    }
+}
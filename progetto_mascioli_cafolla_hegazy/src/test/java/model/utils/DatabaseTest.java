@@ -2,11 +2,16 @@ package model.utils;
 
 import model.gtfs.Fermate;
 import model.gtfs.Route;
+import model.gtfs.StopTime;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DisplayName("Test della classe Database")
@@ -198,6 +203,47 @@ class DatabaseTest {
         assertEquals(1, risultato2.size());
     }
 
+    @Test
+    @DisplayName("Test leggiStopTimes - ordine deterministico per trip e stop_sequence")
+    void testLeggiStopTimesOrdinati() throws Exception {
+        String contenuto = "trip_id,arrival_time,departure_time,stop_id,stop_sequence\n" +
+                "T2,08:10:00,08:10:00,S3,2\n" +
+                "T1,07:05:00,07:05:00,S2,2\n" +
+                "T2,08:00:00,08:00:00,S1,1\n" +
+                "riga,non,valida\n" +
+                "T1,25:00:00,25:01:00,S1,1\n";
+
+        List<StopTime> stopTimes = Database.leggiStopTimes(
+                ByteBuffer.wrap(contenuto.getBytes(StandardCharsets.UTF_8))).tutti();
+
+        assertEquals(4, stopTimes.size());
+        assertEquals("T1", stopTimes.get(0).getTripId());
+        assertEquals(1, stopTimes.get(0).getStopSequence());
+        assertEquals(LocalTime.of(1, 0), stopTimes.get(0).getArrivalTime());
+        assertEquals("T1", stopTimes.get(1).getTripId());
+        assertEquals(2, stopTimes.get(1).getStopSequence());
+        assertEquals("T2", stopTimes.get(2).getTripId());
+        assertEquals("S1", stopTimes.get(2).getStopId());
+        assertEquals("S3", stopTimes.get(3).getStopId());
+    }
+
+    @Test
+    @DisplayName("Test leggiStopTimes - solo le corse attive")
+    void testLeggiStopTimesFiltrati() throws Exception {
+        String contenuto = "trip_id,arrival_time,departure_time,stop_id,stop_sequence\n" +
+                "T1,07:00:00,07:00:00,S1,1\n" +
+                "T1,07:05:00,07:05:00,S2,2\n" +
+                "T2,08:00:00,08:00:00,S1,1\n" +
+                "T3,09:00:00,09:00:00,S3,1\n";
+
+        List<StopTime> stopTimes = Database.leggiStopTimes(
+                ByteBuffer.wrap(contenuto.getBytes(StandardCharsets.UTF_8)),
+                new StatisticheCaricamento("stop_times.txt"), Set.of("T1", "T3")).tutti();
+
+        assertEquals(3, stopTimes.size());
+        assertTrue(stopTimes.stream().noneMatch(st -> st.getTripId().equals("T2")));
+    }
+
     @Test
     @DisplayName("Test leggiStopDaFile non lancia eccezioni")
     void testLeggiStopDaFile() {
@@ -235,4 +281,13 @@ class DatabaseTest {
         });
     }
 
+    @Test
+    @DisplayName("Test leggiTransfersDaFile non lancia eccezioni (file opzionale)")
+    void testLeggiTransfersDaFile() {
+        assertDoesNotThrow(() -> {
+            var result = Database.leggiTransfersDaFile();
+            assertNotNull(result);
+        });
+    }
+
 }
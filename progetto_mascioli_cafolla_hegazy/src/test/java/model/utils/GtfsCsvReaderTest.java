@@ -0,0 +1,143 @@
+package model.utils;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GtfsCsvReader")
+class GtfsCsvReaderTest {
+
+    private GtfsCsvReader apri(String contenuto) throws IOException {
+        return new GtfsCsvReader(new StringReader(contenuto));
+    }
+
+    @Test
+    @DisplayName("Colonne risolte per nome dall'header")
+    void testColonnePerNome() throws IOException {
+        GtfsCsvReader csv = apri("stop_id,stop_name,stop_lat\n70001,Termini,41.9009\n");
+
+        assertEquals(0, csv.colonna("stop_id"));
+        assertEquals(2, csv.colonna("stop_lat"));
+        assertEquals(-1, csv.colonna("stop_url"));
+        assertTrue(csv.haColonna("stop_name"));
+
+        assertTrue(csv.prossimaRiga());
+        assertEquals("70001", csv.getString(csv.colonna("stop_id")));
+        assertEquals("Termini", csv.getString(csv.colonna("stop_name")));
+        assertFalse(csv.prossimaRiga());
+    }
+
+    @Test
+    @DisplayName("Campi quotati con virgole e virgolette interne")
+    void testCampiQuotati() throws IOException {
+        GtfsCsvReader csv = apri("stop_id,stop_name\n\"1\",\"Piazza Venezia, lato \"\"Vittoriano\"\"\"\n");
+
+        assertTrue(csv.prossimaRiga());
+        assertEquals(2, csv.getNumeroCampi());
+        assertEquals("1", csv.getString(0));
+        assertEquals("Piazza Venezia, lato \"Vittoriano\"", csv.getString(1));
+    }
+
+    @Test
+    @DisplayName("Campo quotato su più linee")
+    void testCampoMultilinea() throws IOException {
+        GtfsCsvReader csv = apri("a,b\n\"riga1\nriga2\",x\n");
+
+        assertTrue(csv.prossimaRiga());
+        assertEquals("riga1\nriga2", csv.getString(0));
+        assertEquals("x", csv.getString(1));
+    }
+
+    @Test
+    @DisplayName("BOM, CRLF, spazi e righe vuote")
+    void testBomCrlfSpazi() throws IOException {
+        GtfsCsvReader csv = apri("\uFEFFtrip_id, stop_id\r\n T1 , S1 \r\n\r\nT2,S2");
+
+        assertEquals(0, csv.colonna("trip_id"));
+        assertEquals(1, csv.colonna("stop_id"));
+
+        assertTrue(csv.prossimaRiga());
+        assertEquals("T1", csv.getString(0));
+        assertEquals("S1", csv.getString(1));
+
+        assertTrue(csv.prossimaRiga());
+        assertEquals("T2", csv.getString(0));
+        assertEquals("S2", csv.getString(1));
+
+        assertFalse(csv.prossimaRiga());
+        assertEquals(2, csv.getRigheLette());
+    }
+
+    @Test
+    @DisplayName("Campi mancanti e vuoti")
+    void testCampiMancanti() throws IOException {
+        GtfsCsvReader csv = apri("a,b,c\n1,,\n2\n");
+
+        assertTrue(csv.prossimaRiga());
+        assertTrue(csv.isVuoto(1));
+        assertEquals("", csv.getString(1));
+        assertEquals("def", csv.getString(2, "def"));
+
+        assertTrue(csv.prossimaRiga());
+        assertTrue(csv.isVuoto(2));
+        assertTrue(csv.isVuoto(-1));
+        assertEquals(7, csv.getInt(2, 7));
+    }
+
+    @Test
+    @DisplayName("Parsing numerico direttamente dal buffer")
+    void testParsingNumerico() throws IOException {
+        GtfsCsvReader csv = apri("i,d,neg,exp\n42,41.902783,-12.5,1.5e3\n");
+
+        assertTrue(csv.prossimaRiga());
+        assertEquals(42, csv.getInt(0, 0));
+        assertEquals(41.902783, csv.getDouble(1, 0), 0.0);
+        assertEquals(-12.5, csv.getDouble(2, 0), 0.0);
+        assertEquals(1500.0, csv.getDouble(3, 0), 0.0);
+        assertThrows(NumberFormatException.class, () -> csv.getInt(1, 0));
+    }
+
+    @Test
+    @DisplayName("Orari GTFS in secondi, anche oltre le 24")
+    void testTempoSecondi() throws IOException {
+        GtfsCsvReader csv = apri("a,b,c,d\n08:30:15,25:10:00,7:05:00,8:61:00\n");
+
+        assertTrue(csv.prossimaRiga());
+        assertEquals(8 * 3600 + 30 * 60 + 15, csv.getTempoSecondi(0));
+        assertEquals(25 * 3600 + 10 * 60, csv.getTempoSecondi(1));
+        assertEquals(7 * 3600 + 5 * 60, csv.getTempoSecondi(2));
+        assertEquals(-1, csv.getTempoSecondi(3));
+        assertEquals(-1, csv.getTempoSecondi(9));
+    }
+
+    @Test
+    @DisplayName("campoUguale confronta senza creare stringhe")
+    void testCampoUguale() throws IOException {
+        GtfsCsvReader csv = apri("a,b\nT1,\n");
+
+        assertTrue(csv.prossimaRiga());
+        assertTrue(csv.campoUguale(0, "T1"));
+        assertFalse(csv.campoUguale(0, "T10"));
+        assertTrue(csv.campoUguale(1, ""));
+    }
+
+    @Test
+    @DisplayName("Righe più lunghe del buffer interno")
+    void testRigheLunghe() throws IOException {
+        StringBuilder sb = new StringBuilder("id,nome\n");
+        String nomeLungo = "x".repeat(200_000);
+        sb.append("1,").append(nomeLungo).append('\n');
+        sb.append("2,breve\n");
+
+        GtfsCsvReader csv = apri(sb.toString());
+
+        assertTrue(csv.prossimaRiga());
+        assertEquals(nomeLungo, csv.getString(1));
+        assertTrue(csv.prossimaRiga());
+        assertEquals("breve", csv.getString(1));
+    }
+}
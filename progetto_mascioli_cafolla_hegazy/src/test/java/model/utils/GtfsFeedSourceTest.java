@@ -0,0 +1,162 @@
+package model.utils;
+
+import model.gtfs.Fermate;
+import model.gtfs.ShapeRoute;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GtfsFeedSource")
+class GtfsFeedSourceTest {
+
+    @TempDir
+    Path cartella;
+
+    private static final String STOPS = "stop_id,stop_name,stop_lat,stop_lon\n"
+            + "70001,Piazza di Spagna - Trinità,41.9058,12.4823\n"
+            + "70002,Colosseo,41.8902,12.4922\n";
+
+    private Path creaZip(String prefisso, String nome, String contenuto) throws IOException {
+        Path zip = cartella.resolve("feed.zip");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry(prefisso + nome));
+            out.write(contenuto.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return zip;
+    }
+
+    private static String leggiTutto(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[4096];
+        int letti;
+        while ((letti = reader.read(buffer, 0, buffer.length)) != -1) {
+            sb.append(buffer, 0, letti);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    @DisplayName("Cartella esterna: lettura in streaming e mappata")
+    void testCartella() throws IOException {
+        Files.writeString(cartella.resolve("stops.txt"), STOPS, StandardCharsets.UTF_8);
+
+        try (GtfsFeedSource sorgente = GtfsFeedSource.da(cartella)) {
+            assertTrue(sorgente.esiste("stops.txt"));
+            assertFalse(sorgente.esiste("shapes.txt"));
+
+            try (Reader reader = sorgente.apri("stops.txt")) {
+                assertEquals(STOPS, leggiTutto(reader));
+            }
+            ByteBuffer dati = sorgente.leggiByte("stops.txt");
+            assertEquals(STOPS.getBytes(StandardCharsets.UTF_8).length, dati.remaining());
+            assertNull(sorgente.impronta("stops.txt"));
+            assertThrows(FileNotFoundException.class, () -> sorgente.apri("trips.txt"));
+        }
+    }
+
+    @Test
+    @DisplayName("Cartella: shapes.txt letto in una copia che non dipende dal file")
+    void testCartellaDaTenere() throws IOException {
+        String shapes = "shape_id,shape_pt_lat,shape_pt_lon,shape_pt_sequence\n"
+                + "S1,41.9000,12.5000,1\n"
+                + "S1,41.9100,12.5100,2\n";
+        Path file = cartella.resolve("shapes.txt");
+        Files.writeString(file, shapes, StandardCharsets.UTF_8);
+
+        try (GtfsFeedSource sorgente = GtfsFeedSource.da(cartella)) {
+            GtfsFeedSource originale = Database.getSorgente();
+            Map<String, ShapeRoute> forme;
+            try {
+                Database.setSorgente(sorgente);
+                forme = Database.leggiShapeDaFile();
+            } finally {
+                Database.setSorgente(originale);
+            }
+            ByteBuffer dati = sorgente.leggiByteDaTenere("shapes.txt");
+
+            // il feed nuovo riscrive il file: una mappatura vedrebbe i byte nuovi (o, oltre la
+            // fine del file troncato, farebbe cadere la JVM)
+            Files.writeString(file, "shape_id\n", StandardCharsets.UTF_8);
+
+            byte[] bytes = new byte[dati.remaining()];
+            dati.get(bytes);
+            assertEquals(shapes, new String(bytes, StandardCharsets.UTF_8));
+            assertEquals(2, forme.get("S1").getGeoPoints().size());
+            assertEquals(41.91, forme.get("S1").getGeoPoints().get(1).getLatitude(), 1e-9);
+        }
+    }
+
+    @Test
+    @DisplayName("Zip con i file in una sottocartella, letto senza estrarlo")
+    void testZip() throws IOException {
+        Path zip = creaZip("rome_static_gtfs/", "stops.txt", STOPS);
+
+        try (GtfsFeedSource sorgente = GtfsFeedSource.da(zip)) {
+            assertTrue(sorgente.esiste("stops.txt"));
+            try (Reader reader = sorgente.apri("stops.txt")) {
+                assertEquals(STOPS, leggiTutto(reader));
+            }
+
+            ByteBuffer dati = sorgente.leggiByte("stops.txt");
+            byte[] bytes = new byte[dati.remaining()];
+            dati.get(bytes);
+            assertEquals(STOPS, new String(bytes, StandardCharsets.UTF_8));
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            assertArrayEquals(new long[]{bytes.length, crc.getValue()}, sorgente.impronta("stops.txt"));
+            assertThrows(FileNotFoundException.class, () -> sorgente.leggiByte("trips.txt"));
+        }
+    }
+
+    @Test
+    @DisplayName("Caratteri multibyte a cavallo del buffer di lettura")
+    void testCaratteriMultibyte() throws IOException {
+        String riga = "70001,Trinità dei Monti – €\n";
+        String contenuto = "stop_id,stop_name\n" + riga.repeat(100_000);
+        Path zip = creaZip("", "stops.txt", contenuto);
+
+        try (GtfsFeedSource sorgente = GtfsFeedSource.zip(zip);
+             Reader reader = sorgente.apri("stops.txt")) {
+            assertEquals(contenuto, leggiTutto(reader));
+        }
+    }
+
+    @Test
+    @DisplayName("Database legge le fermate dalla sorgente impostata")
+    void testDatabaseConZip() throws IOException {
+        Path zip = creaZip("", "stops.txt", STOPS);
+        GtfsFeedSource originale = Database.getSorgente();
+
+        try (GtfsFeedSource sorgente = GtfsFeedSource.zip(zip)) {
+            Database.setSorgente(sorgente);
+            List<Fermate> fermate = Database.leggiStopDaFile();
+
+            assertEquals(2, fermate.size());
+            assertEquals("Piazza di Spagna - Trinità", fermate.get(0).getStopName());
+        } finally {
+            Database.setSorgente(originale);
+        }
+    }
+
+    @Test
+    @DisplayName("Percorso inesistente")
+    void testPercorsoInesistente() {
+        assertThrows(IOException.class, () -> GtfsFeedSource.zip(cartella.resolve("manca.zip")));
+        assertThrows(IOException.class, () -> GtfsFeedSource.cartella(cartella.resolve("manca")));
+    }
+}
@@ -0,0 +1,158 @@
+package model.utils;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GtfsSnapshot")
+class GtfsSnapshotTest {
+
+    @TempDir
+    Path cartella;
+
+    private static final byte[] CHIAVE = new byte[32];
+
+    private static GtfsSnapshot creaSnapshot() {
+        List<Fermate> fermate = List.of(
+                new Fermate("70001", "Termini", "Piazza dei Cinquecento", 41.9009, 12.5018, "", "0", null),
+                new Fermate("70002", "Colosseo", 41.8902, 12.4922));
+
+        Route rotta = new Route("MEA", "ATAC", "A", "Battistini - Anagnina", null, 1, "", "FF7F00", "FFFFFF");
+        rotta.setShapeId("S1");
+        rotta.setDirectionId(1);
+
+        ShapeRoute forma = new ShapeRoute("S1");
+        forma.aggiungiPunto(41.9, 12.5, 1, 0.0);
+        forma.aggiungiPunto(41.89, 12.49, 2, 1.25);
+        Map<String, ShapeRoute> forme = new HashMap<>();
+        forme.put("S1", forma);
+
+        List<Trip> trips = List.of(new Trip("MEA", "FER", "T1", "Anagnina", "", 1, "B1", "S1", 1, 2));
+
+        List<StopTime> stopTimes = List.of(
+                new StopTime("T1", LocalTime.of(8, 0), LocalTime.of(8, 1), "70001", 1, "Anagnina", 0, 1, 0.0),
+                new StopTime("T1", LocalTime.of(8, 5), null, "70002", 2, "", 0, 0, 1.25));
+
+        List<CalendarDate> eccezioni = List.of(
+                new CalendarDate("FER", LocalDate.of(2025, 12, 25), 2),
+                new CalendarDate("FER", true, true, true, true, true, false, true,
+                        LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31)));
+
+        return new GtfsSnapshot(fermate, List.of(rotta), forme, trips, stopTimes, eccezioni);
+    }
+
+    @Test
+    @DisplayName("Salvataggio e caricamento conservano tutti i dati")
+    void testSalvaECarica() throws IOException {
+        Path file = cartella.resolve("gtfs.snapshot");
+        creaSnapshot().salva(file, CHIAVE);
+
+        GtfsSnapshot letto = GtfsSnapshot.carica(file, CHIAVE);
+        assertNotNull(letto);
+
+        Fermate termini = letto.getFermate().get(0);
+        assertEquals("70001", termini.getStopId());
+        assertEquals("Piazza dei Cinquecento", termini.getStopDesc());
+        assertEquals(41.9009, termini.getStopLat(), 0.0);
+        assertNull(termini.getParentStation());
+        assertEquals("Colosseo", letto.getFermate().get(1).getStopName());
+
+        Route rotta = letto.getRotte().get(0);
+        assertEquals("A", rotta.getRouteShortName());
+        assertEquals(1, rotta.getRouteType());
+        assertNull(rotta.getRouteDesc());
+        assertEquals("FF7F00", rotta.getRouteColor());
+        assertEquals("S1", rotta.getShapeId());
+        assertEquals(1, rotta.getDirectionId());
+
+        ShapeRoute forma = letto.getForme().get("S1");
+        assertTrue(forma.isPigra()); // punti letti dal blocco dello snapshot solo su richiesta
+        assertEquals(2, forma.getNumPunti());
+        assertEquals(1.25, forma.getGeoPoints().get(1).getDistanceTraveled(), 0.0);
+
+        Trip trip = letto.getTrips().get(0);
+        assertEquals("FER", trip.getServiceId());
+        assertEquals("B1", trip.getBlockId());
+        assertEquals(2, trip.getBikesAllowed());
+        assertTrue(trip.getStopTimes().isEmpty());
+
+        StopTime primo = letto.getStopTimes().get(0);
+        assertEquals(LocalTime.of(8, 1), primo.getDepartureTime());
+        assertEquals("Anagnina", primo.getStopHeadsign());
+        assertEquals(1, primo.getDropOffType());
+        assertNull(letto.getStopTimes().get(1).getDepartureTime());
+        // stringhe uguali diventano una sola istanza
+        assertSame(primo.getTripId(), letto.getStopTimes().get(1).getTripId());
+
+        CalendarDate natale = letto.getEccezioni().get(0);
+        assertEquals(LocalDate.of(2025, 12, 25), natale.getDate());
+        assertEquals(2, natale.getExceptionType());
+        CalendarDate calendario = letto.getEccezioni().get(1);
+        assertNull(calendario.getDate());
+        assertTrue(calendario.isThursday());
+        assertFalse(calendario.isSaturday());
+        assertTrue(calendario.isSunday());
+        assertEquals(LocalDate.of(2025, 12, 31), calendario.getEndDate());
+    }
+
+    @Test
+    @DisplayName("Chiave diversa: lo snapshot viene ignorato")
+    void testChiaveDiversa() throws IOException {
+        Path file = cartella.resolve("gtfs.snapshot");
+        creaSnapshot().salva(file, CHIAVE);
+
+        byte[] altraChiave = CHIAVE.clone();
+        altraChiave[0] = 1;
+        assertNull(GtfsSnapshot.carica(file, altraChiave));
+        assertNull(GtfsSnapshot.carica(file, null));
+        assertNull(GtfsSnapshot.carica(cartella.resolve("assente.snapshot"), CHIAVE));
+    }
+
+    @Test
+    @DisplayName("File troncato: lo snapshot viene ignorato")
+    void testFileTroncato() throws IOException {
+        Path file = cartella.resolve("gtfs.snapshot");
+        creaSnapshot().salva(file, CHIAVE);
+
+        byte[] contenuto = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(contenuto, contenuto.length / 2));
+
+        assertNull(GtfsSnapshot.carica(file, CHIAVE));
+    }
+
+    @Test
+    @DisplayName("La chiave cambia quando cambia un file sorgente")
+    void testChiaveFeed() throws IOException {
+        Map<String, String> feed = new HashMap<>();
+        feed.put("stops.txt", "stop_id,stop_name\n1,Termini\n");
+        feed.put("stop_times.txt", "trip_id,stop_id\nT1,1\n");
+
+        GtfsSnapshot.LettoreFile lettore = nome -> {
+            String contenuto = feed.get(nome);
+            if (contenuto == null) throw new FileNotFoundException(nome);
+            return ByteBuffer.wrap(contenuto.getBytes(StandardCharsets.UTF_8));
+        };
+
+        byte[] prima = GtfsSnapshot.calcolaChiave(lettore);
+        assertArrayEquals(prima, GtfsSnapshot.calcolaChiave(lettore));
+
+        feed.put("stop_times.txt", "trip_id,stop_id\nT1,2\n");
+        assertFalse(Arrays.equals(prima, GtfsSnapshot.calcolaChiave(lettore)));
+
+        feed.clear();
+        assertNull(GtfsSnapshot.calcolaChiave(lettore));
+    }
+}
@@ -0,0 +1,93 @@
+package model.utils;
+
+import model.gtfs.ShapeRoute;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe IndiceForme")
+class IndiceFormeTest {
+
+    private static ByteBuffer file(String contenuto) {
+        byte[] bytes = contenuto.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    }
+
+    private static final String SHAPES =
+            "shape_id,shape_pt_lat,shape_pt_lon,shape_pt_sequence,shape_dist_traveled\n"
+                    + "A,41.90,12.50,2,0.1\n"
+                    + "A,41.89,12.49,1,0\n"
+                    + "\"B\",41.80,12.40,1,0\n"
+                    + "B,x,12.41,2,0.2\n"
+                    + "A,41.88,12.48,3,0.3\r\n";
+
+    @Test
+    @DisplayName("All'avvio si indicizzano gli ID senza decodificare i punti")
+    void testIndiceSenzaDecodifica() throws IOException {
+        IndiceForme indice = IndiceForme.costruisci(file(SHAPES));
+        Map<String, ShapeRoute> forme = indice.forme();
+
+        assertEquals(2, indice.getNumeroForme());
+        assertEquals(Set.of("A", "B"), forme.keySet());
+        assertTrue(forme.get("A").isPigra());
+        assertEquals(0, indice.getFormeInCache());
+    }
+
+    @Test
+    @DisplayName("Punti decodificati alla prima richiesta, ordinati e anche da blocchi non consecutivi")
+    void testDecodificaSuRichiesta() throws IOException {
+        IndiceForme indice = IndiceForme.costruisci(file(SHAPES));
+        ShapeRoute a = indice.forme().get("A");
+
+        List<ShapeRoute.GeoPoint> punti = a.getGeoPoints();
+        assertEquals(3, punti.size());
+        assertEquals(List.of(1, 2, 3), punti.stream().map(ShapeRoute.GeoPoint::getSequence).toList());
+        assertEquals(41.89, punti.get(0).getLatitude(), 0.0);
+        assertEquals(0.3, punti.get(2).getDistanceTraveled(), 0.0);
+        assertSame(a.getGeometria(), a.getGeometria()); // seconda volta dalla cache
+
+        // la riga con latitudine non valida viene scartata come nel caricamento completo
+        assertEquals(1, indice.forme().get("B").getNumPunti());
+    }
+
+    @Test
+    @DisplayName("La cache tiene al massimo il numero di forme configurato")
+    void testCacheLimitata() throws IOException {
+        IndiceForme indice = IndiceForme.costruisci(file(SHAPES), 1);
+        Map<String, ShapeRoute> forme = indice.forme();
+
+        forme.get("A").getGeoPoints();
+        forme.get("B").getGeoPoints();
+        assertEquals(1, indice.getFormeInCache());
+        assertEquals(3, forme.get("A").getNumPunti()); // ridecodificata
+    }
+
+    @Test
+    @DisplayName("Modificare una forma pigra ne crea una copia propria")
+    void testMaterializzazione() throws IOException {
+        IndiceForme indice = IndiceForme.costruisci(file(SHAPES));
+        ShapeRoute a = indice.forme().get("A");
+
+        a.aggiungiPunto(41.87, 12.47, 4);
+
+        assertFalse(a.isPigra());
+        assertEquals(4, a.getNumPunti());
+        assertEquals(3, indice.geometria("A").size());
+    }
+
+    @Test
+    @DisplayName("File con sola intestazione: nessuna forma")
+    void testFileVuoto() throws IOException {
+        IndiceForme indice = IndiceForme.costruisci(file("shape_id,shape_pt_lat,shape_pt_lon\n"));
+        assertEquals(0, indice.getNumeroForme());
+        assertTrue(indice.geometria("X").isEmpty());
+    }
+}
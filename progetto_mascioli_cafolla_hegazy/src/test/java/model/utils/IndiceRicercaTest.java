@@ -0,0 +1,122 @@
+package model.utils;
+
+import model.gtfs.Fermate;
+import model.gtfs.Route;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe IndiceRicerca")
+class IndiceRicercaTest {
+
+    private static final Fermate TERMINI = new Fermate("ir_70001", "Termini", 41.9009, 12.5021);
+    private static final Fermate TERMINI_GIOLITTI = new Fermate("ir_70005", "Termini/Giolitti", 41.9010, 12.5025);
+    private static final Fermate VENEZIA = new Fermate("ir_70004", "P.ZA Venezia", 41.8960, 12.4833);
+    private static final Fermate SAN_GIOVANNI = new Fermate("ir_70006", "S.Giovanni", 41.8860, 12.5070);
+    private static final Fermate CAVOUR = new Fermate("ir_70007", "Cavour/Farini", 41.8980, 12.4960);
+    private static final Fermate NICCOLO = new Fermate("ir_70008", "Niccolò da Tolentino", 41.9030, 12.4930);
+    private static final Fermate MARIA_MAGGIORE = new Fermate("ir_70009", "S. MARIA MAGGIORE", 41.8976, 12.4984);
+    private static final Fermate MARIA_SOCCORSO = new Fermate("ir_70010", "SANTA MARIA DEL SOCCORSO", 41.9253, 12.5690);
+
+    private static final Route L64 = new Route("ir_100", "ATAC", "64", "Stazione Termini - Casilina", "", 3, "", "", "");
+    private static final Route L640 = new Route("ir_105", "ATAC", "640", "Piazzale Flaminio - Ottaviano", "", 3, "", "", "");
+    private static final Route MA = new Route("ir_101", "ATAC", "MA", "Metro Linea A", "", 1, "", "", "");
+
+    private static final List<Fermate> FERMATE = List.of(TERMINI, TERMINI_GIOLITTI, VENEZIA, SAN_GIOVANNI, CAVOUR, NICCOLO,
+            MARIA_MAGGIORE, MARIA_SOCCORSO);
+    private static final List<Route> ROTTE = List.of(L64, L640, MA);
+
+    private static IndiceRicerca indice() {
+        return IndiceRicerca.di(FERMATE, ROTTE);
+    }
+
+    @Test
+    @DisplayName("Normalizzazione: minuscole, accenti e abbreviazioni")
+    void testNormalizza() {
+        assertEquals("piazza venezia", IndiceRicerca.normalizza("P.ZA Venezia"));
+        assertEquals("san giovanni", IndiceRicerca.normalizza("S.Giovanni"));
+        assertEquals("san pietro", IndiceRicerca.normalizza("S. Pietro"));
+        assertEquals("san maria", IndiceRicerca.normalizza("Santa Maria"));
+        assertEquals("san agnese", IndiceRicerca.normalizza("Sant'Agnese"));
+        assertEquals("san pietro e paolo", IndiceRicerca.normalizza("SS. Pietro e Paolo"));
+        assertEquals("viale trastevere", IndiceRicerca.normalizza("V.le Trastevere"));
+        assertEquals("niccolo da tolentino", IndiceRicerca.normalizza("Niccolò  da Tolentino"));
+        assertEquals("termini giolitti", IndiceRicerca.normalizza("Termini/Giolitti"));
+        assertEquals("", IndiceRicerca.normalizza(null));
+    }
+
+    @Test
+    @DisplayName("Prima il nome esatto, poi gli altri che iniziano allo stesso modo")
+    void testOrdinamento() {
+        List<Fermate> trovate = indice().cercaFermate("termini", 10);
+        assertEquals(List.of(TERMINI, TERMINI_GIOLITTI), trovate);
+
+        assertEquals(List.of(VENEZIA), indice().cercaFermate("piazza ven", 10));
+        assertEquals(List.of(VENEZIA), indice().cercaFermate("p.za venezia", 10));
+        assertEquals(List.of(SAN_GIOVANNI), indice().cercaFermate("san giov", 10));
+        assertEquals(List.of(NICCOLO), indice().cercaFermate("niccolo", 10));
+        assertEquals(List.of(CAVOUR), indice().cercaFermate("farini cav", 10));
+    }
+
+    @Test
+    @DisplayName("\"S.\" abbreviato vale San, Santa, Santo e Santi")
+    void testSanta() {
+        List<Fermate> trovate = indice().cercaFermate("santa maria", 10);
+        assertTrue(trovate.contains(MARIA_MAGGIORE));
+        assertTrue(trovate.contains(MARIA_SOCCORSO));
+        assertEquals(List.of(MARIA_MAGGIORE), indice().cercaFermate("s. maria magg", 10));
+        assertEquals(List.of(SAN_GIOVANNI), indice().cercaFermate("santo giovanni", 10));
+    }
+
+    @Test
+    @DisplayName("Numero di linea: prima la linea identica, poi quelle che iniziano così")
+    void testLinee() {
+        assertEquals(List.of(L64, L640), indice().cercaRotte("64", 10));
+        assertEquals(List.of(MA), indice().cercaRotte("ma", 10));
+
+        // le linee che passano da Termini nel nome lungo
+        assertEquals(List.of(L64), indice().cercaRotte("termini", 10));
+    }
+
+    @Test
+    @DisplayName("Errori di battitura trovati solo se mancano risultati migliori")
+    void testSimili() {
+        assertEquals(List.of(TERMINI, TERMINI_GIOLITTI), indice().cercaFermate("temrini", 10));
+        assertEquals(List.of(VENEZIA), indice().cercaFermate("venezzia", 10));
+        assertTrue(indice().cercaFermate("xyz", 10).isEmpty());
+        assertTrue(indice().cercaFermate("", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("A parità di corrispondenza conta l'importanza; al massimo k risultati")
+    void testImportanzaELimite() {
+        Map<Fermate, Integer> passaggi = Map.of(TERMINI_GIOLITTI, 5000, TERMINI, 10);
+        IndiceRicerca pesato = IndiceRicerca.di(FERMATE, ROTTE, f -> passaggi.getOrDefault(f, 0), r -> 0);
+
+        List<IndiceRicerca.Risultato> trovati = pesato.cerca("term", 10);
+        assertSame(TERMINI_GIOLITTI, trovati.get(0).fermata());
+        assertTrue(trovati.get(0).punteggio() > trovati.get(1).punteggio());
+
+        assertEquals(1, pesato.cerca("term", 1).size());
+    }
+
+    @Test
+    @DisplayName("Ricerca per identificativo esatto")
+    void testPerId() {
+        assertSame(TERMINI, indice().fermataPerId("ir_70001"));
+        assertSame(L64, indice().rottaPerId(" ir_100 "));
+        assertNull(indice().fermataPerId("ir_100"));
+        assertNull(indice().rottaPerId(null));
+    }
+
+    @Test
+    @DisplayName("Distanza dal prefisso più simile")
+    void testDistanza() {
+        assertEquals(0, IndiceRicerca.distanzaDaPrefisso("term", "termini", 1));
+        assertEquals(1, IndiceRicerca.distanzaDaPrefisso("temrini", "termini", 1));
+        assertEquals(1, IndiceRicerca.distanzaDaPrefisso("venezzia", "venezia", 2));
+        assertEquals(2, IndiceRicerca.distanzaDaPrefisso("casa", "termini", 1));
+    }
+}
@@ -0,0 +1,103 @@
+package model.utils;
+
+import model.gtfs.Fermate;
+import model.utils.StatisticheCaricamento.Motivo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe StatisticheCaricamento")
+class StatisticheCaricamentoTest {
+
+    @TempDir
+    Path cartella;
+
+    @Test
+    @DisplayName("stop_times: righe lette, accettate e scartate con esempio")
+    void testStopTimes() throws Exception {
+        String contenuto = "trip_id,arrival_time,departure_time,stop_id,stop_sequence\n" +
+                "T1,08:00:00,08:00:00,S1,1\n" +
+                "riga,non,valida\n" +
+                "T1,08:05:00,08:05:00,S2,x\n" +
+                "T1,08:10:00,08:10:00,S3,3\n";
+        byte[] bytes = contenuto.getBytes(StandardCharsets.UTF_8);
+        StatisticheCaricamento stat = new StatisticheCaricamento("stop_times.txt");
+
+        Database.leggiStopTimes(ByteBuffer.wrap(bytes), stat);
+        stat.aggiungiByte(bytes.length);
+        stat.termina();
+
+        assertEquals(4, stat.getRigheLette());
+        assertEquals(2, stat.getRigheAccettate());
+        assertEquals(2, stat.getRigheScartate());
+        assertEquals(bytes.length, stat.getByteLetti());
+        assertEquals("riga,non,valida", stat.getScarti().get(Motivo.CAMPO_OBBLIGATORIO_VUOTO).getEsempio());
+        assertEquals(1, stat.getScarti().get(Motivo.NUMERO_NON_VALIDO).getConteggio());
+    }
+
+    @Test
+    @DisplayName("stops.txt da una cartella: le statistiche finiscono in MetricheCaricamento")
+    void testRegistrazioneLoader() throws Exception {
+        Files.writeString(cartella.resolve("stops.txt"),
+                "stop_id,stop_name,stop_lat,stop_lon\n" +
+                "70001,Termini,41.9009,12.5021\n" +
+                ",Senza id,41.9,12.5\n" +
+                "70002,Coordinate rotte,abc,12.5\n" +
+                "70003,Colosseo,41.8902,12.4922\n");
+
+        GtfsFeedSource originale = Database.getSorgente();
+        try (GtfsFeedSource sorgente = GtfsFeedSource.cartella(cartella)) {
+            Database.setSorgente(sorgente);
+            List<Fermate> fermate = Database.leggiStopDaFile();
+            assertEquals(2, fermate.size());
+        } finally {
+            Database.setSorgente(originale);
+        }
+
+        StatisticheCaricamento stat = MetricheCaricamento.get("stops.txt");
+        assertNotNull(stat);
+        assertEquals(4, stat.getRigheLette());
+        assertEquals(2, stat.getRigheAccettate());
+        assertEquals(1, stat.getScarti().get(Motivo.CAMPO_OBBLIGATORIO_VUOTO).getConteggio());
+        assertEquals(1, stat.getScarti().get(Motivo.NUMERO_NON_VALIDO).getConteggio());
+        assertEquals(Files.size(cartella.resolve("stops.txt")), stat.getByteLetti());
+        assertTrue(MetricheCaricamento.riepilogo().contains("numero non valido"));
+    }
+
+    @Test
+    @DisplayName("I byte letti sono contati in UTF-8")
+    void testByteUtf8() throws Exception {
+        String contenuto = "stop_id,stop_name\n1,Città\n";
+        try (GtfsCsvReader csv = new GtfsCsvReader(new StringReader(contenuto))) {
+            while (csv.prossimaRiga()) {
+                // legge tutto
+            }
+            assertEquals(contenuto.getBytes(StandardCharsets.UTF_8).length, csv.getByteLetti());
+        }
+    }
+
+    @Test
+    @DisplayName("Il riepilogo riporta motivo ed esempio solo per la prima riga scartata")
+    void testRiepilogo() {
+        StatisticheCaricamento stat = new StatisticheCaricamento("trips.txt");
+        stat.scarta(Motivo.DATA_NON_VALIDA, null);
+        stat.scarta(Motivo.DATA_NON_VALIDA, null);
+        stat.aggiungiRighe(10, 8);
+        stat.termina();
+
+        assertEquals(2, stat.getRigheScartate());
+        assertNull(stat.getScarti().get(Motivo.DATA_NON_VALIDA).getEsempio());
+        assertTrue(stat.riepilogo().contains("scartate 2 per data non valida"));
+        assertTrue(stat.getMsParsing() >= 0);
+        assertTrue(stat.getMsLettura() <= stat.getMsTotali());
+    }
+}
@@ -0,0 +1,94 @@
+package service;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe CaricamentoGtfs")
+class CaricamentoGtfsTest {
+
+    private CompletableFuture<List<Fermate>> fermate;
+    private CompletableFuture<List<Route>> rotte;
+    private CompletableFuture<Map<String, ShapeRoute>> forme;
+    private CompletableFuture<List<Trip>> trips;
+    private CompletableFuture<List<StopTime>> stopTimes;
+    private CompletableFuture<List<CalendarDate>> eccezioni;
+    private CompletableFuture<GtfsDataset> dataset;
+    private CaricamentoGtfs caricamento;
+
+    @BeforeEach
+    void setUp() {
+        fermate = new CompletableFuture<>();
+        rotte = new CompletableFuture<>();
+        forme = new CompletableFuture<>();
+        trips = new CompletableFuture<>();
+        stopTimes = new CompletableFuture<>();
+        eccezioni = new CompletableFuture<>();
+        dataset = new CompletableFuture<>();
+        caricamento = new CaricamentoGtfs(fermate, rotte, forme, trips, stopTimes, eccezioni, dataset);
+    }
+
+    @Test
+    @DisplayName("Ogni fase conclusa avvisa gli ascoltatori con il conteggio aggiornato")
+    void testAvanzamentoPerFase() {
+        List<String> eventi = new ArrayList<>();
+        caricamento.aggiungiAscoltatore((fase, completate, totali) ->
+                eventi.add(fase + " " + completate + "/" + totali));
+
+        fermate.complete(List.of());
+        rotte.complete(List.of());
+
+        assertEquals(List.of("fermate 1/7", "linee 2/7"), eventi);
+        assertEquals(2, caricamento.getFasiCompletate());
+        assertFalse(caricamento.isCompletato());
+    }
+
+    @Test
+    @DisplayName("Anche una fase fallita conta come conclusa")
+    void testFaseFallitaConclusa() {
+        List<String> fasi = new ArrayList<>();
+        caricamento.aggiungiAscoltatore((fase, completate, totali) -> fasi.add(fase));
+
+        stopTimes.completeExceptionally(new IllegalStateException("file mancante"));
+
+        assertEquals(List.of("orari"), fasi);
+        assertEquals(1, caricamento.getFasiCompletate());
+    }
+
+    @Test
+    @DisplayName("Un ascoltatore che lancia eccezioni non blocca gli altri")
+    void testAscoltatoreConEccezione() {
+        List<String> fasi = new ArrayList<>();
+        caricamento.aggiungiAscoltatore((fase, completate, totali) -> {
+            throw new RuntimeException("errore");
+        });
+        caricamento.aggiungiAscoltatore((fase, completate, totali) -> fasi.add(fase));
+
+        forme.complete(Map.of());
+
+        assertEquals(List.of("forme"), fasi);
+    }
+
+    @Test
+    @DisplayName("Completato solo quando il dataset è pronto")
+    void testCompletatoConDataset() {
+        fermate.complete(List.of());
+        rotte.complete(List.of());
+        forme.complete(Map.of());
+        trips.complete(List.of());
+        stopTimes.complete(List.of());
+        eccezioni.complete(List.of());
+        assertFalse(caricamento.isCompletato());
+
+        dataset.complete(null);
+
+        assertTrue(caricamento.isCompletato());
+        assertEquals(caricamento.getFasiTotali(), caricamento.getFasiCompletate());
+    }
+}
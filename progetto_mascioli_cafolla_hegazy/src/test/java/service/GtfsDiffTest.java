@@ -0,0 +1,76 @@
+package service;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GtfsDiff")
+class GtfsDiffTest {
+
+    private static GtfsDataset dataset(List<Fermate> fermate, List<Route> rotte, List<Trip> trips,
+                                       Map<String, ShapeRoute> forme) {
+        return new GtfsDataset(fermate, rotte, forme, trips, List.of(), List.of(), Map.of(), null);
+    }
+
+    private static Route rotta(String id) {
+        return new Route(id, "ATAC", id, "Linea " + id, "", 3, "", "", "");
+    }
+
+    @Test
+    @DisplayName("Aggiunte, rimozioni e fermate spostate tra due versioni")
+    void testDifferenze() {
+        GtfsDataset vecchio = dataset(
+                List.of(new Fermate("S1", "Termini", 41.90, 12.50), new Fermate("S2", "Colosseo", 41.89, 12.49)),
+                List.of(rotta("64"), rotta("40")),
+                List.of(new Trip("64", "FER", "T1", "San Pietro"), new Trip("40", "FER", "T2", "Borgo")),
+                Map.of("SH1", new ShapeRoute("SH1")));
+        GtfsDataset nuovo = dataset(
+                List.of(new Fermate("S1", "Termini", 41.91, 12.50), new Fermate("S3", "Piramide", 41.87, 12.48)),
+                List.of(rotta("64"), rotta("H")),
+                List.of(new Trip("64", "FER", "T1", "San Pietro"), new Trip("H", "FER", "T3", "Capolinea")),
+                Map.of("SH1", new ShapeRoute("SH1"), "SH2", new ShapeRoute("SH2")));
+
+        GtfsDiff diff = GtfsDiff.tra(vecchio, nuovo);
+
+        assertEquals(List.of("S3"), diff.getFermateAggiunte());
+        assertEquals(List.of("S2"), diff.getFermateRimosse());
+        assertEquals(List.of("S1"), diff.getFermateModificate());
+        assertEquals(List.of("H"), diff.getRotteAggiunte());
+        assertEquals(List.of("40"), diff.getRotteRimosse());
+        assertEquals(List.of("T3"), diff.getTripsAggiunti());
+        assertEquals(List.of("T2"), diff.getTripsRimossi());
+        assertEquals(List.of("SH2"), diff.getFormeAggiunte());
+        assertTrue(diff.getFormeRimosse().isEmpty());
+        assertFalse(diff.isVuoto());
+        assertTrue(diff.report().contains("fermate rimosse: 1 [S2]"));
+    }
+
+    @Test
+    @DisplayName("Stessi dati: nessuna differenza")
+    void testNessunaDifferenza() {
+        GtfsDataset a = dataset(List.of(new Fermate("S1", "Termini", 41.90, 12.50)),
+                List.of(rotta("64")), List.of(new Trip("64", "FER", "T1", "San Pietro")), Map.of());
+        GtfsDataset b = dataset(List.of(new Fermate("S1", "Termini", 41.90, 12.50)),
+                List.of(rotta("64")), List.of(new Trip("64", "FER", "T1", "San Pietro")), Map.of());
+
+        assertTrue(GtfsDiff.tra(a, b).isVuoto());
+    }
+
+    @Test
+    @DisplayName("Senza versione precedente tutto risulta aggiunto")
+    void testPrimaVersione() {
+        GtfsDataset nuovo = dataset(List.of(new Fermate("S1", "Termini", 41.90, 12.50)),
+                List.of(rotta("64")), List.of(), Map.of());
+
+        GtfsDiff diff = GtfsDiff.tra(null, nuovo);
+
+        assertEquals(List.of("S1"), diff.getFermateAggiunte());
+        assertEquals(List.of("64"), diff.getRotteAggiunte());
+        assertTrue(diff.getFermateRimosse().isEmpty());
+    }
+}
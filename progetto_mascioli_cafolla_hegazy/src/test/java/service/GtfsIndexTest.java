@@ -0,0 +1,137 @@
+package service;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.time.LocalTime;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GtfsIndex")
+class GtfsIndexTest {
+
+    // Corse senza orari nella rete: gli orari (in disordine) li passa ogni test
+    private final ReteDiProva rete = new ReteDiProva();
+    private final Fermate a = rete.fermata("gi_A", "Piazza A", 41.90, 12.50);
+    private final Fermate b = rete.fermata("gi_B", "Via B", 41.91, 12.51);
+    private final Fermate c = rete.fermata("gi_C", "Largo C", 41.92, 12.52);
+
+    private final Route linea = rete.linea("gi_R1", "gi1", "Linea 1");
+    private final Route altra = rete.linea("gi_R2", "gi2", "Linea 2");
+
+    private final Trip andata = rete.corsa(new Trip("gi_R1", "WD", "gi_T1", "Largo C", "", 0, "", "", 0, 0), 0, 0);
+    private final Trip ritorno = rete.corsa(new Trip("gi_R1", "WD", "gi_T2", "Piazza A", "", 1, "", "", 0, 0), 0, 0);
+    private final Trip andata2 = rete.corsa(new Trip("gi_R1", "WD", "gi_T3", "Largo C", "", 0, "", "", 0, 0), 0, 0);
+    private final Trip corsaAltra = rete.corsa(new Trip("gi_R2", "WD", "gi_T4", "Via B", "", 0, "", "", 0, 0), 0, 0);
+
+    private static StopTime st(String tripId, int ora, int minuto, String stopId, int sequenza) {
+        LocalTime t = LocalTime.of(ora, minuto);
+        return new StopTime(tripId, t, t, stopId, sequenza);
+    }
+
+    // Orari volutamente non in ordine né per corsa né per orario
+    private List<StopTime> orari() {
+        return List.of(
+                st("gi_T1", 8, 10, "gi_C", 3),
+                st("gi_T2", 7, 30, "gi_C", 1),
+                st("gi_T1", 8, 0, "gi_A", 1),
+                st("gi_T4", 9, 0, "gi_B", 1),
+                st("gi_T1", 8, 5, "gi_B", 2),
+                st("gi_T2", 7, 40, "gi_B", 2),
+                st("gi_T2", 7, 50, "gi_A", 3));
+    }
+
+    @Test
+    @DisplayName("Fermate, linee e corse si trovano per codice e per ID")
+    void testRicerche() {
+        GtfsIndex indice = rete.indice(orari());
+
+        assertSame(b, indice.fermata("gi_B"));
+        assertSame(b, indice.fermata(b.getCodiceFermata()));
+        assertSame(altra, indice.rotta("gi_R2"));
+        assertSame(ritorno, indice.trip("gi_T2"));
+        assertSame(linea, indice.rottaDi(andata));
+        assertNull(indice.fermata("gi_inesistente"));
+        assertNull(indice.rottaDi(null));
+    }
+
+    @Test
+    @DisplayName("Corse per linea raggruppate e ordinate per direzione")
+    void testCorsePerLinea() {
+        GtfsIndex indice = rete.indice(orari());
+
+        List<Trip> corse = indice.tripsPerRotta(linea.getCodiceRotta());
+        assertEquals(3, corse.size());
+        assertEquals(0, corse.get(0).getDirectionId());
+        assertEquals(0, corse.get(1).getDirectionId());
+        assertEquals(1, corse.get(2).getDirectionId());
+
+        assertEquals(List.of(andata, andata2), indice.tripsPerRottaEDirezione(linea.getCodiceRotta(), 0));
+        assertEquals(List.of(ritorno), indice.tripsPerRottaEDirezione(linea.getCodiceRotta(), 1));
+        assertEquals(List.of(corsaAltra), indice.tripsPerRotta(altra.getCodiceRotta()));
+        assertTrue(indice.tripsPerRotta(-1).isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> corse.remove(0));
+    }
+
+    @Test
+    @DisplayName("Orari di una corsa in ordine di sequenza e capolinea")
+    void testOrariCorsa() {
+        GtfsIndex indice = rete.indice(orari());
+
+        List<StopTime> orariAndata = indice.orariTrip(andata);
+        assertEquals(List.of("gi_A", "gi_B", "gi_C"), orariAndata.stream().map(StopTime::getStopId).toList());
+        assertSame(c, indice.capolinea(andata));
+        assertSame(a, indice.capolinea(indice.trip("gi_T2")));
+
+        assertTrue(indice.orariTrip(andata2).isEmpty());
+        assertNull(indice.capolinea(andata2));
+    }
+
+    @Test
+    @DisplayName("Passaggi a una fermata in ordine di partenza")
+    void testOrariFermata() {
+        GtfsIndex indice = rete.indice(orari());
+
+        List<StopTime> aB = indice.orariFermata("gi_B");
+        assertEquals(List.of("gi_T2", "gi_T1", "gi_T4"), aB.stream().map(StopTime::getTripId).toList());
+        assertTrue(indice.orariFermata("gi_inesistente").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Con l'archivio colonnare gli orari sono viste già ordinate")
+    void testArchivio() {
+        StopTimeStore store = StopTimeStore.da(orari());
+        GtfsIndex indice = rete.indice(store.tutti());
+
+        assertSame(store, indice.getStore());
+        assertEquals(List.of("gi_T2", "gi_T1", "gi_T4"),
+                indice.orariFermata("gi_B").stream().map(StopTime::getTripId).toList());
+        assertEquals(List.of(1, 2, 3),
+                indice.orariTrip("gi_T2").stream().map(StopTime::getStopSequence).toList());
+        assertSame(c, indice.capolinea(andata));
+    }
+
+    @Test
+    @DisplayName("Le corse compresse in schemi usano i propri orari")
+    void testCorseCompresse() {
+        Trip compressa = new Trip("gi_R1", "WD", "gi_T5", "Largo C", "", 0, "", "", 0, 0);
+        compressa.aggiungiStopTime(st("gi_T5", 10, 0, "gi_A", 1));
+        compressa.aggiungiStopTime(st("gi_T5", 10, 9, "gi_C", 2));
+        SchemiCorse.comprimi(List.of(compressa));
+
+        GtfsIndex indice = GtfsIndex.costruisci(List.of(a, b, c), List.of(linea), List.of(compressa), List.of(), null);
+
+        assertEquals(2, indice.orariTrip(compressa).size());
+        assertSame(c, indice.capolinea(compressa));
+    }
+
+    @Test
+    @DisplayName("Indice vuoto")
+    void testVuoto() {
+        GtfsIndex vuoto = GtfsIndex.vuoto();
+        assertNull(vuoto.fermata("gi_A"));
+        assertTrue(vuoto.tripsPerRotta(0).isEmpty());
+        assertTrue(vuoto.orariFermata("gi_A").isEmpty());
+        assertNull(vuoto.getStore());
+    }
+}
@@ -0,0 +1,199 @@
+package service;
+
+import model.gtfs.*;
+import model.utils.Database;
+import model.utils.GtfsFeedSource;
+import model.utils.StatisticheCaricamento;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe GtfsReloader")
+class GtfsReloaderTest {
+
+    @TempDir
+    Path feed;
+
+    private GtfsFeedSource sorgenteOriginale;
+    private final AtomicReference<List<Fermate>> fermateCorrenti = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sorgenteOriginale = Database.getSorgente();
+        Files.writeString(feed.resolve("stops.txt"), "stop_id,stop_name\nS1,Termini\n");
+        fermateCorrenti.set(List.of(new Fermate("S1", "Termini", 41.90, 12.50)));
+
+        // i loader leggono la versione "corrente" del feed simulato (una linea con una corsa)
+        List<Route> rotte = List.of(new Route("R1", "ATAC", "64", "", "", 3, "", "", ""));
+        List<Trip> trips = List.of(new Trip("R1", "FER", "T1", "Termini", "", 0, "", "", 0, 0));
+        List<StopTime> orari = List.of(new StopTime("T1", 8 * 3600, 8 * 3600, "S1", 1, "", 0, 0, 0.0));
+        GtfsService.setLoadersForTest(
+                fermateCorrenti::get,
+                () -> rotte,
+                Map::of,
+                () -> trips,
+                () -> orari,
+                List::of,
+                (t, st) -> { });
+    }
+
+    @AfterEach
+    void tearDown() {
+        GtfsService.resetForTest();
+        Database.setSorgente(sorgenteOriginale);
+    }
+
+    private static ZonedDateTime alle(int ora, int minuti) {
+        return ZonedDateTime.of(2025, 3, 10, ora, minuti, 0, 0, GtfsReloader.FUSO_ORARIO);
+    }
+
+    @Test
+    @DisplayName("Lo scambio è programmato al prossimo cambio del giorno di servizio")
+    void testAttesaFinoAlCambioGiorno() {
+        assertEquals(Duration.ofHours(2), GtfsReloader.attesaFinoAlCambioGiorno(alle(1, 0)));
+        assertEquals(Duration.ofHours(24), GtfsReloader.attesaFinoAlCambioGiorno(alle(3, 0)));
+        assertEquals(Duration.ofMinutes(270), GtfsReloader.attesaFinoAlCambioGiorno(alle(22, 30)));
+    }
+
+    @Test
+    @DisplayName("Nuovo feed: costruito a parte e attivato solo allo scambio")
+    void testNuovaVersioneScambiata() throws Exception {
+        GtfsService servizio = new GtfsService();
+        List<Fermate> vecchie = servizio.getFermate();
+
+        CountDownLatch notificato = new CountDownLatch(1);
+        AtomicReference<GtfsDataset> ricevuto = new AtomicReference<>();
+        servizio.aggiungiAscoltatore(d -> {
+            ricevuto.set(d);
+            notificato.countDown();
+        });
+
+        List<Fermate> nuove = List.of(new Fermate("S1", "Termini", 41.90, 12.50),
+                new Fermate("S2", "Colosseo", 41.89, 12.49));
+        fermateCorrenti.set(nuove);
+        Files.writeString(feed.resolve("stops.txt"), "stop_id,stop_name\nS1,Termini\nS2,Colosseo\n");
+
+        try (GtfsReloader reloader = new GtfsReloader(servizio, feed, () -> alle(12, 0))) {
+            // al primo controllo il feed potrebbe essere ancora in scrittura: si aspetta che resti fermo
+            assertFalse(reloader.controlla());
+            assertTrue(reloader.controlla());
+            assertTrue(reloader.haVersioneInAttesa());
+
+            // finché non c'è lo scambio l'app vede la versione attiva, anche nella sorgente
+            assertSame(vecchie, servizio.getFermate());
+            assertSame(sorgenteOriginale, Database.getSorgente());
+
+            reloader.attivaSubito();
+            assertTrue(notificato.await(5, TimeUnit.SECONDS));
+        }
+        assertNotSame(sorgenteOriginale, Database.getSorgente());
+
+        assertSame(nuove, servizio.getFermate());
+        assertSame(ricevuto.get(), servizio.getDataset());
+        assertNotNull(servizio.getDataset().getVersione());
+    }
+
+    @Test
+    @DisplayName("Feed non modificato o toccato con lo stesso contenuto: nessun ricaricamento")
+    void testFeedInvariato() throws Exception {
+        GtfsService servizio = new GtfsService();
+        CountDownLatch notificato = new CountDownLatch(1);
+        servizio.aggiungiAscoltatore(d -> notificato.countDown());
+
+        try (GtfsReloader reloader = new GtfsReloader(servizio, feed, () -> alle(12, 0))) {
+            assertFalse(reloader.controlla());
+            assertTrue(reloader.controlla()); // il dataset iniziale non ha chiave
+            reloader.attivaSubito();
+            assertTrue(notificato.await(5, TimeUnit.SECONDS));
+            assertFalse(reloader.haVersioneInAttesa());
+
+            // stesso stato del file
+            assertFalse(reloader.controlla());
+
+            // data di modifica cambiata ma stesso contenuto: stessa chiave
+            Files.setLastModifiedTime(feed.resolve("stops.txt"), FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+            assertFalse(reloader.controlla());
+            assertFalse(reloader.controlla());
+            assertFalse(reloader.haVersioneInAttesa());
+        }
+    }
+
+    @Test
+    @DisplayName("Feed senza stop_times.txt: la versione nuova viene scartata, resta quella attiva")
+    void testFeedIncompletoScartato() throws Exception {
+        GtfsService servizio = new GtfsService();
+        GtfsDataset attivo = servizio.getDataset();
+
+        // da qui il feed si legge davvero dalla cartella
+        GtfsService.resetForTest();
+        GtfsService.setSnapshotForTest(false);
+        Files.writeString(feed.resolve("stops.txt"),
+                "stop_id,stop_name,stop_lat,stop_lon\n" +
+                "70001,Termini,41.9009,12.5021\n" +
+                "70002,Cavour,41.8945,12.4935\n");
+        Files.writeString(feed.resolve("routes.txt"),
+                "route_id,route_short_name,route_type\n" +
+                "R1,64,3\n");
+        Files.writeString(feed.resolve("trips.txt"),
+                "route_id,service_id,trip_id,trip_headsign\n" +
+                "R1,FER,T1,Cavour\n");
+        Files.writeString(feed.resolve("stop_times.txt"),
+                "trip_id,arrival_time,departure_time,stop_id,stop_sequence\n" +
+                "T1,08:00:00,08:00:00,70001,1\n" +
+                "T1,08:05:00,08:05:00,70002,2\n");
+
+        try (GtfsReloader reloader = new GtfsReloader(servizio, feed, () -> alle(12, 0))) {
+            // feed completo: la versione va in attesa
+            assertFalse(reloader.controlla());
+            assertTrue(reloader.controlla());
+            assertTrue(reloader.haVersioneInAttesa());
+
+            // stop_times.txt sparisce: la nuova versione avrebbe corse senza orari
+            Files.delete(feed.resolve("stop_times.txt"));
+            assertFalse(reloader.controlla());
+            assertFalse(reloader.controlla());
+            assertFalse(reloader.haVersioneInAttesa());
+
+            // niente da attivare: resta il dataset di prima, anche nella sorgente
+            reloader.attivaSubito();
+        }
+        assertSame(attivo, servizio.getDataset());
+        assertSame(sorgenteOriginale, Database.getSorgente());
+    }
+
+    @Test
+    @DisplayName("Versione con un file obbligatorio non letto o senza orari: non si attiva")
+    void testDifetto() {
+        GtfsService servizio = new GtfsService();
+        assertNull(GtfsReloader.difetto(servizio.getDataset()));
+
+        StatisticheCaricamento stopTimes = new StatisticheCaricamento("stop_times.txt");
+        stopTimes.fallito(new NoSuchFileException("stop_times.txt"));
+        StatisticheCaricamento forme = new StatisticheCaricamento("shapes.txt");
+        forme.fallito(new IOException("illeggibile"));
+
+        GtfsDataset senzaForme = servizio.getDataset();
+        senzaForme.registraCaricamento(Map.of(), List.of(forme));
+        assertNull(GtfsReloader.difetto(senzaForme));   // shapes.txt è opzionale
+
+        senzaForme.registraCaricamento(Map.of(), List.of(forme, stopTimes));
+        assertTrue(GtfsReloader.difetto(senzaForme).startsWith("stop_times.txt non letto"));
+    }
+}
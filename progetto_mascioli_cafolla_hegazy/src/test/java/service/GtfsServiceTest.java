@@ -2,12 +2,22 @@
 package service;
 
 import model.gtfs.*;
+import model.utils.GtfsFeedSource;
+import model.utils.StatisticheCaricamento;
         import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.*;
         import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -64,6 +74,260 @@ class GtfsServiceTest {
         assertTrue(service.getStopTimesPerStopId().isEmpty());
     }
 
+    @Test
+    @DisplayName("Caricamento concorrente: i loader indipendenti girano in parallelo")
+    void testLoaderEseguitiInParallelo() {
+        // stops e routes si aspettano a vicenda: con un caricamento sequenziale il latch scadrebbe
+        CountDownLatch entrambiAvviati = new CountDownLatch(2);
+        AtomicInteger attesaRiuscita = new AtomicInteger(0);
+
+        Supplier<Boolean> attendiAltro = () -> {
+            entrambiAvviati.countDown();
+            try {
+                return entrambiAvviati.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        };
+
+        GtfsService.setLoadersForTest(
+                () -> {
+                    if (attendiAltro.get()) attesaRiuscita.incrementAndGet();
+                    return Collections.emptyList();
+                },
+                () -> {
+                    if (attendiAltro.get()) attesaRiuscita.incrementAndGet();
+                    return Collections.emptyList();
+                },
+                Collections::emptyMap,
+                Collections::emptyList,
+                Collections::emptyList,
+                Collections::emptyList,
+                (t, st) -> { }
+        );
+
+        new GtfsService();
+
+        assertEquals(2, attesaRiuscita.get());
+    }
+
+    @Test
+    @DisplayName("Caricamento concorrente: collegamento trip/stop times con i dati di entrambi i loader")
+    void testPopolaDopoTripsEStopTimes() {
+        Trip trip = new Trip("R1", "S1", "T1", "Capolinea");
+        StopTime st = new StopTime("T1", LocalTime.of(8, 0), LocalTime.of(8, 1), "F1", 1);
+        List<Trip> trips = new ArrayList<>(List.of(trip));
+        List<StopTime> stopTimes = new ArrayList<>(List.of(st));
+
+        GtfsService.setLoadersForTest(
+                Collections::emptyList,
+                Collections::emptyList,
+                Collections::emptyMap,
+                () -> trips,
+                () -> stopTimes,
+                Collections::emptyList,
+                (t, s) -> {
+                    assertSame(trips, t);
+                    assertSame(stopTimes, s);
+                    t.get(0).aggiungiStopTime(s.get(0));
+                }
+        );
+
+        GtfsService service = new GtfsService();
+
+        assertEquals(1, service.getTrips().get(0).getNumeroFermate());
+        assertEquals(List.of(st), service.getStopTimesPerStopId().get("F1"));
+
+        // Tempi registrati per ogni file e per le fasi dipendenti
+        Map<String, Long> tempi = service.getTempiCaricamento();
+        assertTrue(tempi.containsKey("stop_times.txt"));
+        assertTrue(tempi.containsKey("trips.txt"));
+        assertTrue(tempi.containsKey("popolaStopTimePerTrip"));
+        assertTrue(tempi.containsKey("stopTimesPerStopId"));
+        assertTrue(tempi.containsKey("totale"));
+    }
+
+    @Test
+    @DisplayName("Avvio in background: le fasi pronte si vedono prima del dataset completo")
+    void testInBackgroundFasiProgressive() throws Exception {
+        List<Fermate> fermate = new ArrayList<>();
+        CountDownLatch sbloccaOrari = new CountDownLatch(1);
+
+        GtfsService.setLoadersForTest(
+                () -> fermate,
+                Collections::emptyList,
+                Collections::emptyMap,
+                Collections::emptyList,
+                () -> {
+                    try {
+                        sbloccaOrari.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Collections.emptyList();
+                },
+                Collections::emptyList,
+                (t, st) -> { }
+        );
+
+        GtfsService service = GtfsService.inBackground();
+        CaricamentoGtfs caricamento = service.getCaricamento();
+
+        // stops.txt è pronto anche se stop_times.txt è ancora fermo
+        assertSame(fermate, caricamento.getFermate().get(5, TimeUnit.SECONDS));
+        assertFalse(caricamento.isCompletato());
+        assertNull(service.getDataset());
+
+        sbloccaOrari.countDown();
+        GtfsDataset dataset = caricamento.getDataset().get(5, TimeUnit.SECONDS);
+
+        // il dataset è già attivo quando il suo future si completa
+        assertSame(dataset, service.getDataset());
+        assertSame(fermate, service.getFermate());
+        assertEquals(caricamento.getFasiTotali(), caricamento.getFasiCompletate());
+    }
+
+    @Test
+    @DisplayName("Costruttore bloccante: il caricamento esposto è già completato")
+    void testCostruttoreCaricamentoCompletato() {
+        GtfsService.setLoadersForTest(
+                Collections::emptyList,
+                Collections::emptyList,
+                Collections::emptyMap,
+                Collections::emptyList,
+                Collections::emptyList,
+                Collections::emptyList,
+                (t, st) -> { }
+        );
+
+        GtfsService service = new GtfsService();
+
+        assertTrue(service.getCaricamento().isCompletato());
+        assertSame(service.getDataset(), service.getCaricamento().getDataset().join());
+    }
+
+    @Test
+    @DisplayName("Profilo a finestra: solo corse e orari dei servizi attivi")
+    void testProfiloFinestraFiltraServizi() {
+        LocalDate oggi = LocalDate.of(2026, 3, 2); // lunedì
+        Map<String, CalendarDate> calendari = Map.of(
+                "FER", new CalendarDate("FER", true, true, true, true, true, false, false,
+                        oggi.minusDays(10), oggi.plusDays(10)),
+                "ESTATE", new CalendarDate("ESTATE", true, true, true, true, true, true, true,
+                        oggi.plusMonths(3), oggi.plusMonths(5)));
+        List<Trip> trips = List.of(new Trip("R1", "FER", "T1", "Termini"),
+                new Trip("R1", "ESTATE", "T2", "Ostia"));
+        List<StopTime> stopTimes = List.of(
+                new StopTime("T1", LocalTime.of(8, 0), LocalTime.of(8, 0), "F1", 1),
+                new StopTime("T2", LocalTime.of(9, 0), LocalTime.of(9, 0), "F1", 1));
+
+        GtfsService.setLoadersForTest(Collections::emptyList, Collections::emptyList, Collections::emptyMap,
+                () -> trips, () -> stopTimes, Collections::emptyList, (t, st) -> { });
+        GtfsService.setCalendariForTest(() -> calendari,
+                () -> oggi.atTime(12, 0).atZone(GtfsReloader.FUSO_ORARIO));
+
+        GtfsService service = new GtfsService(ProfiloMemoria.FINESTRA, 2);
+
+        assertEquals(List.of("T1"), service.getTrips().stream().map(Trip::getTripId).toList());
+        assertEquals(List.of("T1"), service.getStopTimes().stream().map(StopTime::getTripId).toList());
+        assertEquals(oggi, service.getDataset().getFinestra().getCentro());
+    }
+
+    @Test
+    @DisplayName("Profilo a finestra senza calendario: orario caricato senza filtro")
+    void testProfiloFinestraSenzaCalendario() {
+        List<Trip> trips = List.of(new Trip("R1", "FER", "T1", "Termini"));
+
+        GtfsService.setLoadersForTest(Collections::emptyList, Collections::emptyList, Collections::emptyMap,
+                () -> trips, Collections::emptyList, Collections::emptyList, (t, st) -> { });
+
+        GtfsService service = new GtfsService(ProfiloMemoria.FINESTRA, 2);
+
+        assertSame(trips, service.getTrips());
+    }
+
+    @Test
+    @DisplayName("Nuova versione in background: tempi e statistiche restano quelli del dataset attivo")
+    void testStatisticheNuovaVersione(@TempDir Path cartella) throws Exception {
+        Files.writeString(cartella.resolve("stops.txt"),
+                "stop_id,stop_name,stop_lat,stop_lon\n" +
+                "70001,Termini,41.9009,12.5021\n" +
+                ",Senza id,41.9,12.5\n");
+        GtfsService.setLoadersForTest(Collections::emptyList, Collections::emptyList, Collections::emptyMap,
+                Collections::emptyList, Collections::emptyList, Collections::emptyList, (t, st) -> { });
+
+        GtfsService service = new GtfsService();
+        Map<String, Long> tempiAttivi = service.getTempiCaricamento();
+        assertTrue(service.getStatisticheCaricamento().isEmpty());
+
+        // la nuova versione legge la cartella con i loader reali
+        GtfsService.resetForTest();
+        GtfsService.setSnapshotForTest(false);
+        GtfsDataset nuovo;
+        try (GtfsFeedSource sorgente = GtfsFeedSource.cartella(cartella)) {
+            nuovo = service.caricaNuovaVersione(sorgente, null, null);
+        }
+
+        assertEquals(tempiAttivi, service.getTempiCaricamento());
+        assertTrue(service.getStatisticheCaricamento().isEmpty());
+
+        StatisticheCaricamento stops = nuovo.getStatisticheCaricamento().stream()
+                .filter(st -> st.getNomeFile().equals("stops.txt")).findFirst().orElseThrow();
+        assertEquals(1, stops.getRigheScartate());
+        assertTrue(nuovo.getTempiCaricamento().containsKey("totale"));
+
+        // allo scambio si vedono quelli della versione nuova
+        service.attiva(nuovo);
+        assertEquals(nuovo.getStatisticheCaricamento(), service.getStatisticheCaricamento());
+    }
+
+    @Test
+    @DisplayName("Ricaricamenti: ogni versione ha le sue tabelle dei simboli, che non crescono")
+    void testSimboliPerVersione(@TempDir Path cartella) throws Exception {
+        Files.writeString(cartella.resolve("stops.txt"),
+                "stop_id,stop_name,stop_lat,stop_lon\n" +
+                "70001,Termini,41.9009,12.5021\n" +
+                "70002,Cavour,41.8945,12.4935\n");
+        Files.writeString(cartella.resolve("routes.txt"),
+                "route_id,route_short_name,route_type\n" +
+                "R1,64,3\n");
+        Files.writeString(cartella.resolve("trips.txt"),
+                "route_id,service_id,trip_id,trip_headsign\n" +
+                "R1,FER,T1,Cavour\n");
+        Files.writeString(cartella.resolve("stop_times.txt"),
+                "trip_id,arrival_time,departure_time,stop_id,stop_sequence\n" +
+                "T1,08:00:00,08:00:00,70001,1\n" +
+                "T1,08:05:00,08:05:00,70002,2\n");
+        GtfsService.setLoadersForTest(Collections::emptyList, Collections::emptyList, Collections::emptyMap,
+                Collections::emptyList, Collections::emptyList, Collections::emptyList, (t, st) -> { });
+        GtfsService service = new GtfsService();
+
+        GtfsService.resetForTest();
+        GtfsService.setSnapshotForTest(false);
+        int predefinite = Simboli.Tabelle.PREDEFINITE.size();
+        GtfsDataset primo, secondo;
+        try (GtfsFeedSource sorgente = GtfsFeedSource.cartella(cartella)) {
+            primo = service.caricaNuovaVersione(sorgente, null, null);
+            service.attiva(primo);
+            secondo = service.caricaNuovaVersione(sorgente, null, null);
+            service.attiva(secondo);
+        }
+
+        Simboli.Tabelle tabelle1 = primo.getIndice().getSimboli();
+        Simboli.Tabelle tabelle2 = secondo.getIndice().getSimboli();
+        assertNotSame(tabelle1, tabelle2);
+        assertNotSame(Simboli.Tabelle.PREDEFINITE, tabelle2);
+        // stesso feed: stesse voci a ogni versione, niente accumulo tra un ricaricamento e l'altro
+        assertEquals(tabelle1.size(), tabelle2.size());
+        assertEquals(predefinite, Simboli.Tabelle.PREDEFINITE.size());
+
+        // gli oggetti delle due versioni restano confrontabili per ID
+        assertEquals(primo.getIndice().trip("T1"), secondo.getIndice().trip("T1"));
+        assertEquals(0, secondo.getIndice().trip("T1").getCodiceTrip());
+        assertEquals("70002", secondo.getIndice().fermata("70002").getStopId());
+    }
+
     @Test
     @DisplayName("Reset: ripristina i loader reali (nessuna eccezione)")
     void testResetForTestDoesNotThrow() {
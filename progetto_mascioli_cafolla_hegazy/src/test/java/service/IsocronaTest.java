@@ -0,0 +1,109 @@
+package service;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe Isocrona")
+class IsocronaTest {
+
+    private static final int ORA = ReteDiProva.ORA;
+    private static final int MINUTO = ReteDiProva.MINUTO;
+
+    // La rete di PianificatoreViaggiTest, con gli ID "is_"
+    private final ReteDiProva esempio = ReteDiProva.esempio("is");
+    private final Fermate a = esempio.fermataDi("is_A");
+    private final Fermate b = esempio.fermataDi("is_B");
+    private final Fermate b2 = esempio.fermataDi("is_B2");
+    private final Fermate stazione = esempio.fermataDi("is_SC");
+    private final Fermate c = esempio.fermataDi("is_C");
+    private final Fermate d = esempio.fermataDi("is_D");
+    private final Fermate e = esempio.fermataDi("is_E");
+
+    private ReteRaptor rete() {
+        return esempio.indice(CalendarioServizi.vuoto()).getRete();
+    }
+
+    @Test
+    @DisplayName("Tempi verso tutte le fermate con una sola partenza, per fasce")
+    void testUnaPartenza() {
+        Isocrona isocrona = Isocrona.calcola(rete(), a, null, 8 * ORA, 1, 45);
+
+        assertEquals(0, isocrona.secondi(a));
+        assertEquals(10 * MINUTO, isocrona.secondi(b));
+        assertEquals(20 * MINUTO, isocrona.secondi(c));
+        assertEquals(30 * MINUTO, isocrona.secondi(e));      // a piedi da B a B2, poi la linea 3
+        assertEquals(35 * MINUTO, isocrona.secondi(d));      // cambio a C, non la diretta delle 9
+        int b2Secondi = isocrona.secondi(b2);
+        assertTrue(b2Secondi > 10 * MINUTO && b2Secondi < 12 * MINUTO);
+        assertEquals(-1, isocrona.secondi(stazione));
+
+        assertEquals(List.of(a, b, b2), isocrona.entro(15).stream().map(Isocrona.Raggiunta::fermata).toList());
+        assertEquals(5, isocrona.entro(30).size());
+        assertEquals(6, isocrona.entro(45).size());
+        assertEquals(isocrona.getRaggiunte(), isocrona.entro(45));
+        assertEquals(45 * MINUTO, isocrona.getMassimoSecondi());
+    }
+
+    @Test
+    @DisplayName("Tempo mediano sulla finestra di partenza e limite massimo")
+    void testFinestra() {
+        ReteRaptor rete = rete();
+        // partenze dalle 7:51 alle 8:00, tutte sulla corsa delle 8: a B in 19..10 minuti
+        Isocrona isocrona = Isocrona.calcola(rete, a, null, 7 * ORA + 51 * MINUTO, 10, 45);
+        assertEquals(14 * MINUTO, isocrona.secondi(b));
+        assertEquals(39 * MINUTO, isocrona.secondi(d));
+        assertEquals(7 * ORA + 51 * MINUTO, isocrona.getPartenzaSecondi());
+
+        // entro 20 minuti D non c'è più
+        Isocrona breve = Isocrona.calcola(rete, a, null, 7 * ORA + 51 * MINUTO, 10, 20);
+        assertEquals(-1, breve.secondi(d));
+        assertEquals(14 * MINUTO, breve.secondi(b));
+
+        // dalle 8:01 la corsa delle 8 è persa: la mediana segue quella delle 8:20
+        assertEquals(24 * MINUTO, Isocrona.calcola(rete, a, null, 8 * ORA, 10, 45).secondi(b));
+
+        // ogni minuto della finestra, calcolato da solo
+        for (int m = 0; m < 10; m++) {
+            Isocrona minuto = Isocrona.calcola(rete, a, null, 7 * ORA + 51 * MINUTO + m * MINUTO, 1, 45);
+            assertEquals(44 * MINUTO - m * MINUTO, minuto.secondi(d));
+        }
+    }
+
+    @Test
+    @DisplayName("Partenza a un istante: dopo mezzanotte vale il giorno di servizio di ieri")
+    void testPartenzaIstante() {
+        ReteRaptor rete = rete();
+        Isocrona mattina = Isocrona.calcola(rete, a,
+                ZonedDateTime.of(2026, 3, 10, 8, 0, 0, 0, GtfsReloader.FUSO_ORARIO));
+        assertEquals(LocalDate.of(2026, 3, 10), mattina.getGiorno());
+        assertEquals(8 * ORA, mattina.getPartenzaSecondi());
+
+        Isocrona notte = Isocrona.calcola(rete, a,
+                ZonedDateTime.of(2026, 3, 11, 1, 30, 0, 0, GtfsReloader.FUSO_ORARIO));
+        assertEquals(LocalDate.of(2026, 3, 10), notte.getGiorno());
+        assertEquals(25 * ORA + 30 * MINUTO, notte.getPartenzaSecondi());
+    }
+
+    @Test
+    @DisplayName("Stazione come origine, nessuna corsa utile e fermata sconosciuta")
+    void testCasiLimite() {
+        ReteRaptor rete = rete();
+        Isocrona daStazione = Isocrona.calcola(rete, stazione, null, 8 * ORA + 20 * MINUTO, 1, 45);
+        assertEquals(0, daStazione.secondi(c));
+        assertEquals(15 * MINUTO, daStazione.secondi(d));
+
+        Isocrona tardi = Isocrona.calcola(rete, a, null, 9 * ORA, 1, 45);
+        assertEquals(1, tardi.getRaggiunte().size());
+        assertEquals(-1, tardi.secondi(b));
+
+        Isocrona ignota = Isocrona.calcola(rete, new Fermate("is_ignota", "Ignota", 41.0, 12.0), null, 8 * ORA);
+        assertTrue(ignota.isVuota());
+        assertTrue(ignota.entro(45).isEmpty());
+        assertEquals(-1, ignota.secondi(null));
+    }
+}
@@ -0,0 +1,106 @@
+package service;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe LineeFermata")
+class LineeFermataTest {
+
+    private final ReteDiProva rete = new ReteDiProva();
+    private final Fermate stazione = rete.fermata("lf_S", "Stazione S", 41.90, 12.50, "1", "");
+    private final Fermate a = rete.fermata("lf_A", "Stazione S banchina A", 41.90, 12.50, "0", "lf_S");
+    private final Fermate b = rete.fermata("lf_B", "Stazione S banchina B", 41.90, 12.50, "0", "lf_S");
+    private final Fermate c = rete.fermata("lf_C", "Via C", 41.91, 12.51);
+    private final Fermate vuota = rete.fermata("lf_V", "Via Vuota", 41.92, 12.52);
+
+    private final Route l64 = rete.linea("lf_R64", "64", "Linea 64");
+    private final Route l916 = rete.linea("lf_R916", "916", "Linea 916");
+    private final Route c2 = rete.linea("lf_RC2", "C2", "Linea C2");
+
+    // Corsa che parte alle "minuto" (dalle 8:00) e ferma in ordine alle fermate date, ogni 5 minuti
+    private void corsa(String routeId, String tripId, int direzione, int minuto, String... fermate) {
+        rete.corsa(routeId, "WD", tripId, direzione, 8 * ReteDiProva.ORA + minuto * ReteDiProva.MINUTO, 5, fermate);
+    }
+
+    private void corseDiEsempio() {
+        corsa("lf_R916", "lf_T1", 0, 0, "lf_A", "lf_C");
+        corsa("lf_R64", "lf_T2", 0, 10, "lf_A", "lf_C");
+        corsa("lf_R64", "lf_T3", 0, 30, "lf_A", "lf_C");
+        corsa("lf_R64", "lf_T4", 1, 20, "lf_C", "lf_B");
+        corsa("lf_RC2", "lf_T5", 0, 60, "lf_B", "lf_C");
+    }
+
+    @Test
+    @DisplayName("Linee e direzioni per fermata con prima e ultima partenza e passaggi")
+    void testServizi() {
+        corseDiEsempio();
+        LineeFermata linee = rete.indice().getLineeFermata();
+
+        List<LineeFermata.Servizio> servizi = linee.servizi(a);
+        assertEquals(2, servizi.size());
+        assertSame(l64, servizi.get(0).rotta());
+        assertEquals(0, servizi.get(0).direzione());
+        assertEquals(8 * 3600 + 10 * 60, servizi.get(0).primaPartenza());
+        assertEquals(8 * 3600 + 30 * 60, servizi.get(0).ultimaPartenza());
+        assertEquals(2, servizi.get(0).numeroPassaggi());
+        assertSame(l916, servizi.get(1).rotta());
+
+        // 64 in entrambe le direzioni, una sola volta nell'elenco
+        assertEquals(4, linee.servizi(c).size());
+        assertEquals(List.of(l64, l916, c2), linee.linee(c));
+        assertEquals("64, 916, C2", linee.elencoLinee(c, 8));
+        assertEquals("64, 916, …", linee.elencoLinee(c, 2));
+    }
+
+    @Test
+    @DisplayName("La stazione raccoglie le linee delle sue fermate")
+    void testStazione() {
+        corseDiEsempio();
+        LineeFermata linee = rete.indice().getLineeFermata();
+
+        assertEquals("64, 916, C2", linee.elencoLinee(stazione, 8));
+        LineeFermata.Servizio andata64 = linee.servizi(stazione).get(0);
+        assertEquals(2, andata64.numeroPassaggi());
+        assertTrue(linee.isServita(stazione));
+        assertTrue(linee.isServitaDa(stazione.getCodiceFermata(), c2.getCodiceRotta()));
+        assertFalse(linee.isServitaDa(a.getCodiceFermata(), c2.getCodiceRotta()));
+    }
+
+    @Test
+    @DisplayName("Con l'archivio colonnare il risultato non cambia")
+    void testArchivio() {
+        corseDiEsempio();
+        LineeFermata daOggetti = rete.indice().getLineeFermata();
+        LineeFermata daArchivio = rete.indice(StopTimeStore.da(rete.orari).tutti()).getLineeFermata();
+
+        for (Fermate f : List.of(stazione, a, b, c, vuota)) {
+            assertEquals(daOggetti.servizi(f), daArchivio.servizi(f));
+        }
+    }
+
+    @Test
+    @DisplayName("Fermate senza passaggi, corse di linee sconosciute e codici fuori intervallo")
+    void testCasiLimite() {
+        corsa("lf_ignota", "lf_T9", 0, 0, "lf_V", "lf_C");
+        LineeFermata linee = rete.indice().getLineeFermata();
+
+        assertFalse(linee.isServita(vuota));
+        assertTrue(linee.servizi(vuota).isEmpty());
+        assertEquals("", linee.elencoLinee(vuota, 8));
+        assertTrue(linee.servizi(-1).isEmpty());
+        assertTrue(linee.servizi((Fermate) null).isEmpty());
+        assertFalse(linee.isServitaDa(Integer.MAX_VALUE, l64.getCodiceRotta()));
+    }
+
+    @Test
+    @DisplayName("Ordine naturale dei numeri di linea")
+    void testOrdineLinee() {
+        Route l3 = new Route("lf_R3", "ATAC", "3", "", "", 3, "", "", "");
+        assertTrue(LineeFermata.confrontaLinee(l3, l64) < 0);
+        assertTrue(LineeFermata.confrontaLinee(l916, l64) > 0);
+        assertTrue(LineeFermata.confrontaLinee(l916, c2) < 0);
+    }
+}
@@ -0,0 +1,107 @@
+package service;
+
+import model.gtfs.*;
+import model.utils.Database;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe PercorsiLinea")
+class PercorsiLineaTest {
+
+    private final ReteDiProva rete = new ReteDiProva();
+    private final Fermate a = rete.fermata("pl_A", "Piazza A", 41.90, 12.50);
+    private final Fermate b = rete.fermata("pl_B", "Via B", 41.91, 12.51);
+    private final Fermate c = rete.fermata("pl_C", "Largo C", 41.93, 12.53);
+
+    private final Route linea = rete.linea("pl_R1", "pl1", "Linea 1");
+    private final Route senzaCorse = rete.linea("pl_R2", "pl2", "Linea 2");
+
+    // Corsa della linea pl_R1 che parte alle "minuto" (dalle 8:00) e ferma in ordine alle fermate date
+    private Trip corsa(String tripId, int direzione, String shapeId, int minuto, String... fermate) {
+        return rete.corsa(new Trip("pl_R1", "WD", tripId, "", "", direzione, "", shapeId, 0, 0),
+                8 * ReteDiProva.ORA + minuto * ReteDiProva.MINUTO, 5, fermate);
+    }
+
+    private void corseDiEsempio() {
+        // andata: tre corse limitate A-B, una intera A-B-C con un'altra forma
+        corsa("pl_T1", 0, "pl_S1", 0, "pl_A", "pl_B");
+        corsa("pl_T2", 0, "pl_S1", 10, "pl_A", "pl_B");
+        corsa("pl_T3", 0, "pl_S1", 20, "pl_A", "pl_B");
+        corsa("pl_T4", 0, "pl_S2", 30, "pl_A", "pl_B", "pl_C");
+        // ritorno: C-B-A
+        corsa("pl_T5", 1, "pl_S3", 0, "pl_C", "pl_B", "pl_A");
+        corsa("pl_T6", 1, "pl_S3", 40, "pl_C", "pl_B", "pl_A");
+    }
+
+    @Test
+    @DisplayName("Percorsi distinti per direzione, dal più frequente; canonico con i capolinea più lontani")
+    void testPercorsi() {
+        corseDiEsempio();
+        PercorsiLinea percorsi = rete.indice().percorsi(linea.getCodiceRotta());
+
+        assertEquals(2, percorsi.getDirezioni().size());
+        PercorsiLinea.Direzione andata = percorsi.direzione(0);
+        assertEquals(2, andata.percorsi().size());
+        assertEquals(3, andata.percorsi().get(0).numeroCorse());
+        assertEquals(4, andata.numeroCorse());
+
+        assertEquals(3, andata.canonico().size());
+        assertEquals("pl_T4", andata.corsa().getTripId());
+        assertEquals("pl_S2", andata.shapeId());
+        assertSame(a, andata.partenza());
+        assertSame(c, andata.arrivo());
+        assertEquals("Piazza A → Largo C", andata.descrizione());
+
+        assertEquals(41.90, andata.latMin(), 1e-9);
+        assertEquals(12.53, andata.lonMax(), 1e-9);
+        assertEquals(41.915, andata.latCentro(), 1e-9);
+
+        PercorsiLinea.Direzione ritorno = percorsi.direzione(1);
+        assertEquals(1, ritorno.percorsi().size());
+        assertEquals(2, ritorno.numeroCorse());
+        assertEquals("pl_T5", ritorno.corsa().getTripId());
+    }
+
+    @Test
+    @DisplayName("Con le corse compresse in schemi il risultato non cambia")
+    void testSchemi() {
+        corseDiEsempio();
+        Database.popolaStopTimePerTrip(rete.trips, rete.orari);
+        SchemiCorse.comprimi(rete.trips);
+
+        PercorsiLinea percorsi = rete.indice(List.of())
+                .percorsi(linea.getCodiceRotta());
+
+        PercorsiLinea.Direzione andata = percorsi.direzione(0);
+        assertEquals(2, andata.percorsi().size());
+        assertEquals(3, andata.percorsi().get(0).numeroCorse());
+        assertEquals("pl_T4", andata.corsa().getTripId());
+        assertSame(c, percorsi.direzione(1).partenza());
+    }
+
+    @Test
+    @DisplayName("La forma più usata dal percorso sceglie la corsa rappresentativa")
+    void testFormaPiuUsata() {
+        corsa("pl_T7", 0, "pl_S9", 0, "pl_A", "pl_C");
+        corsa("pl_T8", 0, "pl_S4", 10, "pl_A", "pl_C");
+        corsa("pl_T9", 0, "pl_S4", 20, "pl_A", "pl_C");
+
+        PercorsiLinea.Direzione andata = rete.indice().percorsi(linea.getCodiceRotta()).direzione(0);
+        assertEquals("pl_S4", andata.shapeId());
+        assertEquals("pl_T8", andata.corsa().getTripId());
+    }
+
+    @Test
+    @DisplayName("Linee senza corse, fermate sconosciute e codici fuori intervallo")
+    void testCasiLimite() {
+        corsa("pl_T10", 0, "pl_S1", 0, "pl_A", "pl_ignota");
+        GtfsIndex indice = rete.indice();
+
+        assertTrue(indice.percorsi(linea.getCodiceRotta()).isEmpty());
+        assertTrue(indice.percorsi(senzaCorse.getCodiceRotta()).isEmpty());
+        assertTrue(indice.percorsi(-1).isEmpty());
+        assertNull(indice.percorsi(linea.getCodiceRotta()).direzione(0));
+    }
+}
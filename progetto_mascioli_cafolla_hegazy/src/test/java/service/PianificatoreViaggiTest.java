@@ -0,0 +1,162 @@
+package service;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe PianificatoreViaggi")
+class PianificatoreViaggiTest {
+
+    private static final int ORA = ReteDiProva.ORA;
+    private static final int MINUTO = ReteDiProva.MINUTO;
+
+    private final ReteDiProva rete = ReteDiProva.esempio("pv");
+    private final Fermate a = rete.fermataDi("pv_A");
+    private final Fermate b = rete.fermataDi("pv_B");
+    private final Fermate b2 = rete.fermataDi("pv_B2");
+    private final Fermate stazione = rete.fermataDi("pv_SC");
+    private final Fermate c = rete.fermataDi("pv_C");
+    private final Fermate d = rete.fermataDi("pv_D");
+    private final Fermate e = rete.fermataDi("pv_E");
+
+    private PianificatoreViaggi pianificatore() {
+        return rete.indice(CalendarioServizi.vuoto()).getRete().pianificatore();
+    }
+
+    @Test
+    @DisplayName("Itinerari Pareto-ottimi: diretto più lento e con un cambio più veloce")
+    void testPareto() {
+        List<PianificatoreViaggi.Itinerario> itinerari = pianificatore().cerca(a, d, null, 7 * ORA + 55 * MINUTO);
+
+        assertEquals(2, itinerari.size());
+        PianificatoreViaggi.Itinerario diretto = itinerari.get(0);
+        assertEquals(1, diretto.numeroCorse());
+        assertEquals(0, diretto.getCambi());
+        assertEquals(9 * ORA, diretto.arrivo());
+        assertEquals("pv_T6", diretto.tratte().get(0).corsa().getTripId());
+
+        PianificatoreViaggi.Itinerario conCambio = itinerari.get(1);
+        assertEquals(2, conCambio.numeroCorse());
+        assertEquals(8 * ORA + 35 * MINUTO, conCambio.arrivo());
+        assertEquals(8 * ORA, conCambio.partenza());
+        List<PianificatoreViaggi.Tratta> tratte = conCambio.tratte();
+        assertEquals(2, tratte.size());
+        assertSame(a, tratte.get(0).da());
+        assertSame(c, tratte.get(0).a());
+        assertEquals("pv_T1", tratte.get(0).corsa().getTripId());
+        assertEquals(8 * ORA + 20 * MINUTO, tratte.get(0).arrivo());
+        assertSame(c, tratte.get(1).da());
+        assertEquals(8 * ORA + 25 * MINUTO, tratte.get(1).partenza());
+        assertEquals("pv_T3", tratte.get(1).corsa().getTripId());
+    }
+
+    @Test
+    @DisplayName("Cambio a piedi tra fermate vicine, entro il limite di tempo a piedi")
+    void testCambioAPiedi() {
+        PianificatoreViaggi pianificatore = pianificatore();
+        List<PianificatoreViaggi.Itinerario> itinerari = pianificatore.cerca(a, e, null, 7 * ORA + 55 * MINUTO);
+
+        assertEquals(1, itinerari.size());
+        List<PianificatoreViaggi.Tratta> tratte = itinerari.get(0).tratte();
+        assertEquals(3, tratte.size());
+        assertSame(b, tratte.get(0).a());
+        assertTrue(tratte.get(1).isAPiedi());
+        assertSame(b2, tratte.get(1).a());
+        assertEquals(8 * ORA + 10 * MINUTO, tratte.get(1).partenza());
+        assertTrue(tratte.get(1).arrivo() <= 8 * ORA + 15 * MINUTO);
+        assertEquals("pv_T5", tratte.get(2).corsa().getTripId());
+        assertEquals(8 * ORA + 30 * MINUTO, itinerari.get(0).arrivo());
+
+        // con al massimo 30 secondi a piedi E non si raggiunge
+        assertTrue(pianificatore.cerca(a, e, null, 7 * ORA + 55 * MINUTO,
+                PianificatoreViaggi.CORSE_PREDEFINITE, 30).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Corse di ieri oltre la mezzanotte e di domani secondo il calendario")
+    void testGiorniDiServizio() {
+        LocalDate lunedi = LocalDate.of(2026, 10, 5);
+        CalendarDate feriale = new CalendarDate("pv_FER", true, true, true, true, true, false, false,
+                lunedi.minusDays(30), lunedi.plusDays(30));
+        CalendarDate festivo = new CalendarDate("pv_FES", false, false, false, false, false, false, true,
+                lunedi.minusDays(30), lunedi.plusDays(30));
+        rete.corsa("pv_R1", "pv_FES", "pv_T7", 0, 24 * ORA + 20 * MINUTO, 10, "pv_A", "pv_B", "pv_C");   // notturna della domenica
+
+        PianificatoreViaggi pianificatore = rete.indice(CalendarioServizi.di(
+                Map.of("pv_FER", feriale, "pv_FES", festivo), List.of())).getRete().pianificatore();
+
+        // lunedì alle 00:05 passa ancora la notturna di domenica
+        List<PianificatoreViaggi.Itinerario> notte = pianificatore.cerca(a, b, lunedi, 5 * MINUTO);
+        assertEquals(30 * MINUTO, notte.get(0).arrivo());
+        assertEquals("pv_T7", notte.get(0).tratte().get(0).corsa().getTripId());
+
+        // martedì no: la prima corsa è quella delle 8
+        assertEquals(8 * ORA + 10 * MINUTO, pianificatore.cerca(a, b, lunedi.plusDays(1), 5 * MINUTO).get(0).arrivo());
+
+        // lunedì sera si arriva martedì mattina
+        assertEquals(24 * ORA + 8 * ORA + 10 * MINUTO,
+                pianificatore.cerca(a, b, lunedi, 23 * ORA + 50 * MINUTO).get(0).arrivo());
+
+        // sabato niente corse feriali: la prima è la notturna di domenica, lunedì alle 00:30
+        assertEquals(24 * ORA + 24 * ORA + 30 * MINUTO,
+                pianificatore.cerca(a, b, lunedi.plusDays(5), 8 * ORA).get(0).arrivo());
+    }
+
+    @Test
+    @DisplayName("Stazioni come insieme delle loro fermate e ricerche in parallelo")
+    void testStazioniEParallelo() {
+        ReteRaptor raptor = rete.indice(CalendarioServizi.vuoto()).getRete();
+
+        List<PianificatoreViaggi.Itinerario> versoStazione = raptor.pianificatore().cerca(a, stazione, null, 8 * ORA);
+        assertEquals(1, versoStazione.size());
+        assertSame(c, versoStazione.get(0).tratte().get(0).a());
+
+        List<PianificatoreViaggi.Richiesta> richieste = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            richieste.add(new PianificatoreViaggi.Richiesta(i % 2 == 0 ? a : b, i % 3 == 0 ? d : e, null,
+                    7 * ORA + i * MINUTO));
+        }
+        List<List<PianificatoreViaggi.Itinerario>> inParallelo = PianificatoreViaggi.cercaInParallelo(raptor, richieste);
+        PianificatoreViaggi sequenziale = raptor.pianificatore();
+        for (int i = 0; i < richieste.size(); i++) {
+            PianificatoreViaggi.Richiesta r = richieste.get(i);
+            assertEquals(sequenziale.cerca(r.origine(), r.destinazione(), r.giorno(), r.partenzaSecondi()),
+                    inParallelo.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Scorta: un pianificatore nuovo per rete, riusato tra task successivi")
+    void testScorta() {
+        ReteRaptor raptor = rete.indice(CalendarioServizi.vuoto()).getRete();
+        assertNotSame(raptor.pianificatore(), raptor.pianificatore());
+
+        PianificatoreViaggi.Scorta scorta = new PianificatoreViaggi.Scorta(raptor);
+        List<PianificatoreViaggi> usati = new ArrayList<>();
+        scorta.usa(usati::add);
+        scorta.usa(usati::add);
+        assertSame(usati.get(0), usati.get(1));
+        // in uso da un task: chi arriva nel frattempo ne riceve un altro
+        scorta.usa(esterno -> scorta.usa(interno -> assertNotSame(esterno, interno)));
+    }
+
+    @Test
+    @DisplayName("Fermate sconosciute, stessa fermata e nessuna corsa utile")
+    void testCasiLimite() {
+        PianificatoreViaggi pianificatore = pianificatore();
+        Fermate ignota = new Fermate("pv_ignota", "Ignota", 41.0, 12.0);
+
+        assertTrue(pianificatore.cerca(ignota, d, null, 8 * ORA).isEmpty());
+        assertTrue(pianificatore.cerca(a, null, null, 8 * ORA).isEmpty());
+        assertTrue(pianificatore.cerca(a, a, null, 8 * ORA).isEmpty());
+        assertTrue(pianificatore.cerca(a, d, null, 10 * ORA).isEmpty());
+        assertTrue(pianificatore.cerca(d, a, null, 7 * ORA).isEmpty());
+        // dopo ricerche vuote il pianificatore riparte pulito
+        assertEquals(2, pianificatore.cerca(a, d, null, 7 * ORA).size());
+    }
+}
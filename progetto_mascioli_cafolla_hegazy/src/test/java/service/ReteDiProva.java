@@ -0,0 +1,106 @@
+package service;
+
+import model.gtfs.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Rete costruita a mano per i test del package: fermate, linee e corse si aggiungono alle
+// liste, poi indice() costruisce il GtfsIndex (e da lì rete RAPTOR, linee per fermata,
+// percorsi...). Ogni classe di test usa il suo prefisso negli ID.
+
+final class ReteDiProva {
+
+    static final int ORA = 3600;
+    static final int MINUTO = 60;
+
+    final List<Fermate> fermate = new ArrayList<>();
+    final List<Route> rotte = new ArrayList<>();
+    final List<Trip> trips = new ArrayList<>();
+    final List<StopTime> orari = new ArrayList<>();
+
+    Fermate fermata(String stopId, String nome, double lat, double lon) {
+        return fermata(new Fermate(stopId, nome, lat, lon));
+    }
+
+    // Fermata (locationType "0") o stazione ("1") con la sua stazione padre
+    Fermate fermata(String stopId, String nome, double lat, double lon, String locationType, String padre) {
+        return fermata(new Fermate(stopId, nome, "", lat, lon, "", locationType, padre));
+    }
+
+    private Fermate fermata(Fermate f) {
+        fermate.add(f);
+        return f;
+    }
+
+    Fermate fermataDi(String stopId) {
+        for (Fermate f : fermate) {
+            if (f.getStopId().equals(stopId)) return f;
+        }
+        throw new IllegalArgumentException("fermata di prova sconosciuta: " + stopId);
+    }
+
+    Route linea(String routeId, String nomeBreve, String nomeLungo) {
+        Route r = new Route(routeId, "ATAC", nomeBreve, nomeLungo, "", 3, "", "", "");
+        rotte.add(r);
+        return r;
+    }
+
+    // Corsa che parte alle "partenza" (secondi) e ferma in ordine alle fermate date,
+    // una ogni "passo" minuti
+    Trip corsa(String routeId, String servizio, String tripId, int direzione, int partenza, int passo,
+               String... stopIds) {
+        return corsa(new Trip(routeId, servizio, tripId, "", "", direzione, "", "", 0, 0), partenza, passo, stopIds);
+    }
+
+    // Come sopra per una corsa già costruita (headsign, forma...); senza fermate non ha orari
+    Trip corsa(Trip trip, int partenza, int passo, String... stopIds) {
+        trips.add(trip);
+        for (int i = 0; i < stopIds.length; i++) {
+            int secondi = partenza + i * passo * MINUTO;
+            orari.add(new StopTime(trip.getTripId(), secondi, secondi, stopIds[i], i + 1, "", 0, 0, 0.0));
+        }
+        return trip;
+    }
+
+    GtfsIndex indice() {
+        return indice(orari);
+    }
+
+    GtfsIndex indice(List<StopTime> stopTimes) {
+        return GtfsIndex.costruisci(fermate, rotte, trips, stopTimes, null);
+    }
+
+    GtfsIndex indice(CalendarioServizi calendario) {
+        return GtfsIndex.costruisci(fermate, rotte, trips, orari, null, calendario);
+    }
+
+    // Rete dei test di PianificatoreViaggi e Isocrona: fermate a circa 2 km l'una
+    // dall'altra lungo un meridiano, tranne B2 a ~50 m da B; C è una fermata della stazione SC.
+    //   linea 1: A-B-C alle 8:00 e alle 8:20, 10 minuti tra le fermate
+    //   linea 2: C-D alle 8:25 e alle 8:45
+    //   linea 3: B2-E alle 8:15, 15 minuti
+    //   linea 4: A-D diretta alle 8:05, 55 minuti
+    // Tutte le corse sono del servizio <prefisso>_FER
+    static ReteDiProva esempio(String prefisso) {
+        ReteDiProva rete = new ReteDiProva();
+        String p = prefisso + "_";
+        rete.fermata(p + "A", "Fermata A", 41.80, 12.40);
+        rete.fermata(p + "B", "Fermata B", 41.82, 12.40);
+        rete.fermata(p + "B2", "Fermata B2", 41.8204, 12.4003);
+        rete.fermata(p + "SC", "Stazione C", 41.84, 12.40, "1", "");
+        rete.fermata(p + "C", "Fermata C", 41.84, 12.40, "0", p + "SC");
+        rete.fermata(p + "D", "Fermata D", 41.86, 12.40);
+        rete.fermata(p + "E", "Fermata E", 41.88, 12.40);
+        for (int i = 1; i <= 4; i++) rete.linea(p + "R" + i, String.valueOf(i), "");
+
+        String feriale = p + "FER";
+        rete.corsa(p + "R1", feriale, p + "T1", 0, 8 * ORA, 10, p + "A", p + "B", p + "C");
+        rete.corsa(p + "R1", feriale, p + "T2", 0, 8 * ORA + 20 * MINUTO, 10, p + "A", p + "B", p + "C");
+        rete.corsa(p + "R2", feriale, p + "T3", 0, 8 * ORA + 25 * MINUTO, 10, p + "C", p + "D");
+        rete.corsa(p + "R2", feriale, p + "T4", 0, 8 * ORA + 45 * MINUTO, 10, p + "C", p + "D");
+        rete.corsa(p + "R3", feriale, p + "T5", 0, 8 * ORA + 15 * MINUTO, 15, p + "B2", p + "E");
+        rete.corsa(p + "R4", feriale, p + "T6", 0, 8 * ORA + 5 * MINUTO, 55, p + "A", p + "D");
+        return rete;
+    }
+}
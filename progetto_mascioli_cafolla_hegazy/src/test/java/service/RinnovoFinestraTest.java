@@ -0,0 +1,89 @@
+package service;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe RinnovoFinestra")
+class RinnovoFinestraTest {
+
+    // Lunedì 2 marzo 2026, pomeriggio
+    private static final ZonedDateTime LUNEDI =
+            LocalDate.of(2026, 3, 2).atTime(15, 0).atZone(GtfsReloader.FUSO_ORARIO);
+
+    private final AtomicReference<ZonedDateTime> adesso = new AtomicReference<>(LUNEDI);
+
+    @AfterEach
+    void tearDown() {
+        GtfsService.resetForTest();
+    }
+
+    private GtfsService servizioAFinestra() {
+        // feriale fino a martedì, poi solo la domenica
+        LocalDate lunedi = LUNEDI.toLocalDate();
+        Map<String, CalendarDate> calendari = Map.of(
+                "FER", new CalendarDate("FER", true, true, true, true, true, false, false,
+                        lunedi.minusDays(7), lunedi.plusDays(1)),
+                "DOM", new CalendarDate("DOM", false, false, false, false, false, false, true,
+                        lunedi, lunedi.plusDays(30)));
+        List<Trip> trips = List.of(new Trip("R1", "FER", "T_FER", "Termini"),
+                new Trip("R1", "DOM", "T_DOM", "Termini"));
+
+        GtfsService.setLoadersForTest(Collections::emptyList, Collections::emptyList, Collections::emptyMap,
+                () -> trips, Collections::emptyList, Collections::emptyList, (t, st) -> { });
+        GtfsService.setCalendariForTest(() -> calendari, adesso::get);
+        return new GtfsService(ProfiloMemoria.FINESTRA, 0);
+    }
+
+    @Test
+    @DisplayName("Stesso giorno di servizio: nessun ricaricamento")
+    void testStessoGiorno() {
+        GtfsService servizio = servizioAFinestra();
+        RinnovoFinestra rinnovo = new RinnovoFinestra(servizio, adesso::get);
+
+        // le 02:00 di martedì sono ancora il giorno di servizio di lunedì
+        adesso.set(LUNEDI.plusDays(1).with(LocalTime.of(2, 0)));
+
+        assertFalse(rinnovo.rinnova());
+        assertEquals(List.of("T_FER"), servizio.getTrips().stream().map(Trip::getTripId).toList());
+        rinnovo.close();
+    }
+
+    @Test
+    @DisplayName("Nuovo giorno di servizio: la finestra si sposta e cambia le corse tenute")
+    void testCambioGiorno() {
+        GtfsService servizio = servizioAFinestra();
+        RinnovoFinestra rinnovo = new RinnovoFinestra(servizio, adesso::get);
+
+        // domenica 8 marzo: il feriale è scaduto, vale il domenicale
+        adesso.set(LUNEDI.plusDays(6));
+
+        assertTrue(rinnovo.rinnova());
+        assertEquals(LUNEDI.toLocalDate().plusDays(6), servizio.getDataset().getFinestra().getCentro());
+        assertEquals(List.of("T_DOM"), servizio.getTrips().stream().map(Trip::getTripId).toList());
+        assertFalse(rinnovo.rinnova());
+        rinnovo.close();
+    }
+
+    @Test
+    @DisplayName("Profilo completo: nessun rinnovo")
+    void testProfiloCompleto() {
+        GtfsService.setLoadersForTest(Collections::emptyList, Collections::emptyList, Collections::emptyMap,
+                Collections::emptyList, Collections::emptyList, Collections::emptyList, (t, st) -> { });
+        GtfsService servizio = new GtfsService(ProfiloMemoria.COMPLETO, 2);
+
+        assertNull(RinnovoFinestra.perServizio(servizio));
+        assertNull(servizio.getDataset().getFinestra());
+    }
+}
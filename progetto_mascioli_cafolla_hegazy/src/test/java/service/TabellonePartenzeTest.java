@@ -0,0 +1,149 @@
+package service;
+
+import model.gtfs.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe TabellonePartenze")
+class TabellonePartenzeTest {
+
+    private static final int ORA = ReteDiProva.ORA;
+
+    private final ReteDiProva rete = new ReteDiProva();
+    private final Fermate fermata = rete.fermata("tp_F1", "Piazza Venezia", 41.896, 12.482);
+    private final Fermate capolinea = rete.fermata("tp_F2", "Termini", 41.901, 12.501);
+    private final Route n1 = rete.linea("tp_R1", "N1", "Notturna");
+    private final Route l64 = rete.linea("tp_R2", "64", "Diurna");
+
+    private static Trip perTermini(String routeId, String servizio, String tripId, int direzione) {
+        return new Trip(routeId, servizio, tripId, "Termini", "", direzione, "", "", 0, 0);
+    }
+
+    // Corsa feriale da tp_F1 a Termini, 10 minuti dopo
+    private void corsa(String routeId, String tripId, int direzione, int secondi) {
+        rete.corsa(perTermini(routeId, "WD", tripId, direzione), secondi, 10, "tp_F1", "tp_F2");
+    }
+
+    private static List<Integer> secondi(TabellonePartenze.Righe righe) {
+        List<Integer> valori = new ArrayList<>();
+        for (int i = 0; i < righe.size(); i++) valori.add(righe.getSecondi(i));
+        return valori;
+    }
+
+    @Test
+    @DisplayName("Solo le partenze nella finestra, in ordine")
+    void testFinestra() {
+        for (int m = 0; m < 24 * 60; m += 10) {
+            corsa("tp_R2", "tp_64_" + m, 0, m * 60);
+        }
+        TabellonePartenze tabellone = new TabellonePartenze(rete.indice());
+        TabellonePartenze.Righe righe = new TabellonePartenze.Righe(50);
+
+        int trovate = tabellone.cerca("tp_F1", 8 * ORA, 9 * ORA, TabellonePartenze.QUALSIASI,
+                TabellonePartenze.QUALSIASI, righe);
+
+        assertEquals(7, trovate);
+        assertEquals(8 * ORA, righe.getSecondi(0));
+        assertEquals(9 * ORA, righe.getSecondi(6));
+        assertEquals(0, tabellone.cerca("tp_inesistente", 0, ORA, -1, -1, righe));
+    }
+
+    @Test
+    @DisplayName("Dopo mezzanotte le corse oltre le 24:00 del giorno prima, prima di mezzanotte quelle del giorno dopo")
+    void testGiorniDiServizio() {
+        corsa("tp_R1", "tp_T1", 0, 24 * ORA + 15 * 60);   // N1 di ieri alle 00:15
+        corsa("tp_R2", "tp_T2", 0, 30 * 60);              // 64 alle 00:30
+        corsa("tp_R2", "tp_T3", 0, 23 * ORA + 55 * 60);   // 64 alle 23:55
+        TabellonePartenze tabellone = new TabellonePartenze(rete.indice());
+        TabellonePartenze.Righe righe = new TabellonePartenze.Righe(10);
+
+        tabellone.cerca("tp_F1", 5 * 60, 70 * 60, -1, -1, righe);
+        assertEquals(List.of(15 * 60, 30 * 60), secondi(righe));
+        assertSame(n1, tabellone.partenza(righe, 0).rotta());
+
+        tabellone.cerca("tp_F1", 23 * ORA + 45 * 60, 24 * ORA + 55 * 60, -1, -1, righe);
+        assertEquals(List.of(23 * ORA + 55 * 60, 24 * ORA + 15 * 60, 24 * ORA + 30 * 60), secondi(righe));
+        assertEquals(30 * 60, righe.getPartenzaSecondi(2));
+    }
+
+    @Test
+    @DisplayName("Filtri su linea e direzione")
+    void testFiltri() {
+        corsa("tp_R1", "tp_T4", 0, 8 * ORA);
+        corsa("tp_R2", "tp_T5", 0, 8 * ORA + 5 * 60);
+        corsa("tp_R2", "tp_T6", 1, 8 * ORA + 10 * 60);
+        TabellonePartenze tabellone = new TabellonePartenze(rete.indice());
+        TabellonePartenze.Righe righe = new TabellonePartenze.Righe(10);
+
+        assertEquals(2, tabellone.cerca("tp_F1", 7 * ORA, 9 * ORA, l64.getCodiceRotta(), -1, righe));
+        assertEquals(1, tabellone.cerca("tp_F1", 7 * ORA, 9 * ORA, l64.getCodiceRotta(), 1, righe));
+        assertEquals("tp_T6", tabellone.partenza(righe, 0).trip().getTripId());
+        assertSame(capolinea, tabellone.partenza(righe, 0).capolinea());
+    }
+
+    @Test
+    @DisplayName("Stessa linea allo stesso minuto una volta sola; capienza rispettata")
+    void testDoppioniECapienza() {
+        corsa("tp_R2", "tp_T7", 0, 8 * ORA);
+        corsa("tp_R2", "tp_T8", 0, 8 * ORA);              // stessa corsa, altro calendario
+        corsa("tp_R1", "tp_T9", 0, 8 * ORA);
+        corsa("tp_R2", "tp_T10", 0, 8 * ORA + 20 * 60);
+        TabellonePartenze tabellone = new TabellonePartenze(rete.indice());
+
+        TabellonePartenze.Righe righe = new TabellonePartenze.Righe(10);
+        assertEquals(3, tabellone.cerca("tp_F1", 7 * ORA, 9 * ORA, -1, -1, righe));
+
+        TabellonePartenze.Righe poche = new TabellonePartenze.Righe(1);
+        assertEquals(1, tabellone.cerca("tp_F1", 7 * ORA, 9 * ORA, -1, -1, poche));
+        assertThrows(IndexOutOfBoundsException.class, () -> poche.getSecondi(1));
+    }
+
+    @Test
+    @DisplayName("Stesso risultato dall'archivio colonnare")
+    void testArchivio() {
+        corsa("tp_R1", "tp_T11", 0, 24 * ORA + 15 * 60);
+        corsa("tp_R2", "tp_T12", 0, 30 * 60);
+        corsa("tp_R2", "tp_T13", 1, 20 * 60);
+        GtfsIndex indice = rete.indice(StopTimeStore.da(rete.orari).tutti());
+        assertNotNull(indice.getStore());
+
+        TabellonePartenze.Righe righe = new TabellonePartenze.Righe(10);
+        new TabellonePartenze(indice).cerca("tp_F1", 5 * 60, 70 * 60, -1, -1, righe);
+        assertEquals(List.of(15 * 60, 20 * 60, 30 * 60), secondi(righe));
+    }
+
+    @Test
+    @DisplayName("Con la data ogni giorno di servizio tiene solo le proprie corse attive")
+    void testCalendario() {
+        LocalDate lunedi = LocalDate.of(2026, 10, 5);
+        CalendarDate feriale = new CalendarDate("tp_FER", true, true, true, true, true, false, false,
+                lunedi.minusDays(30), lunedi.plusDays(30));
+        CalendarDate festivo = new CalendarDate("tp_FES", false, false, false, false, false, false, true,
+                lunedi.minusDays(30), lunedi.plusDays(30));
+
+        rete.corsa(perTermini("tp_R2", "tp_FER", "tp_T14", 0), 30 * 60, 0, "tp_F1");
+        rete.corsa(perTermini("tp_R2", "tp_FES", "tp_T15", 0), 40 * 60, 0, "tp_F1");
+        rete.corsa(perTermini("tp_R1", "tp_FES", "tp_T16", 0), 24 * ORA + 20 * 60, 0, "tp_F1");   // notturna della domenica
+
+        GtfsIndex indice = rete.indice(
+                CalendarioServizi.di(Map.of("tp_FER", feriale, "tp_FES", festivo), List.of()));
+        TabellonePartenze tabellone = new TabellonePartenze(indice);
+        TabellonePartenze.Righe righe = new TabellonePartenze.Righe(10);
+
+        // lunedì alle 00:10: la feriale di oggi e la notturna di domenica, non la festiva
+        tabellone.cerca("tp_F1", lunedi, 5 * 60, 70 * 60, -1, -1, righe);
+        assertEquals(List.of(20 * 60, 30 * 60), secondi(righe));
+
+        // senza data: tutte
+        tabellone.cerca("tp_F1", 5 * 60, 70 * 60, -1, -1, righe);
+        assertEquals(3, righe.size());
+
+        // il giorno compilato si riusa
+        assertSame(indice.corseAttive(lunedi), indice.corseAttive(lunedi));
+    }
+}
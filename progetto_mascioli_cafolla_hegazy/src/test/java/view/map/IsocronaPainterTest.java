@@ -0,0 +1,94 @@
+package view.map;
+
+import model.gtfs.*;
+import org.jxmapviewer.JXMapViewer;
+import org.jxmapviewer.viewer.GeoPosition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import service.GtfsIndex;
+import service.Isocrona;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe IsocronaPainter")
+class IsocronaPainterTest {
+
+    // Due fermate a ~2 km: B si raggiunge in 10 minuti, C no
+    private static final Fermate A = new Fermate("ip_A", "Fermata A", 41.90, 12.50);
+    private static final Fermate B = new Fermate("ip_B", "Fermata B", 41.92, 12.50);
+    private static final Fermate C = new Fermate("ip_C", "Fermata C", 41.90, 12.52);
+
+    private static Isocrona isocrona() {
+        Trip corsa = new Trip("ip_R1", "ip_FER", "ip_T1", "", "", 0, "", "", 0, 0);
+        List<StopTime> orari = List.of(
+                new StopTime("ip_T1", 8 * 3600, 8 * 3600, "ip_A", 1, "", 0, 0, 0.0),
+                new StopTime("ip_T1", 8 * 3600 + 600, 8 * 3600 + 600, "ip_B", 2, "", 0, 0, 0.0));
+        GtfsIndex indice = GtfsIndex.costruisci(List.of(A, B, C),
+                List.of(new Route("ip_R1", "ATAC", "1", "", "", 3, "", "", "")),
+                List.of(corsa), orari, null, CalendarioServizi.vuoto());
+        return Isocrona.calcola(indice.getRete(), A, null, 8 * 3600, 1, 45);
+    }
+
+    private static JXMapViewer mappa() {
+        JXMapViewer map = new JXMapViewer();
+        map.setSize(400, 400);
+        map.setZoom(4);
+        map.setAddressLocation(new GeoPosition(41.91, 12.51));
+        return map;
+    }
+
+    // Pixel della fermata nell'immagine (coordinate del viewport)
+    private static int[] pixel(JXMapViewer map, Fermate f) {
+        Point2D p = map.getTileFactory().geoToPixel(new GeoPosition(f.getStopLat(), f.getStopLon()), map.getZoom());
+        return new int[]{(int) (p.getX() - map.getViewportBounds().x), (int) (p.getY() - map.getViewportBounds().y)};
+    }
+
+    @Test
+    @DisplayName("paint - colora le fermate raggiunte con la fascia giusta e non le altre")
+    void testPaint() {
+        JXMapViewer map = mappa();
+        BufferedImage immagine = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = immagine.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 400, 400);
+
+        new IsocronaPainter(isocrona()).paint(g, map, 400, 400);
+        g.dispose();
+
+        // A (0 minuti) nella prima fascia: bianco velato di verde
+        int[] a = pixel(map, A);
+        Color colorA = new Color(immagine.getRGB(a[0], a[1]));
+        assertTrue(colorA.getGreen() > colorA.getRed() && colorA.getGreen() > colorA.getBlue());
+        assertNotEquals(Color.WHITE, colorA);
+
+        // B (10 minuti) anche nella prima fascia
+        int[] b = pixel(map, B);
+        assertEquals(colorA.getRGB(), immagine.getRGB(b[0], b[1]));
+
+        // C non è raggiunta: resta bianca
+        int[] c = pixel(map, C);
+        assertEquals(Color.WHITE.getRGB(), immagine.getRGB(c[0], c[1]));
+    }
+
+    @Test
+    @DisplayName("WaypointDrawer - l'isocrona da sola imposta l'overlay, null lo toglie")
+    void testNelWaypointDrawer() {
+        JXMapViewer map = mappa();
+        WaypointDrawer drawer = new WaypointDrawer(map, null);
+        IsocronaPainter painter = new IsocronaPainter(isocrona(), new int[]{30, 15});
+
+        drawer.setIsocrona(painter);
+        assertNotNull(drawer.getLastOverlayPainterForTest());
+        assertNotNull(painter.getIsocrona());
+
+        drawer.setIsocrona(null);
+        assertNull(drawer.getLastOverlayPainterForTest());
+        assertEquals(IsocronaPainter.colore(2), IsocronaPainter.colore(5));
+    }
+}
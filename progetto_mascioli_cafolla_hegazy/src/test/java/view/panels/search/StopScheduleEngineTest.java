@@ -0,0 +1,94 @@
+package view.panels.search;
+
+import model.gtfs.Fermate;
+import model.gtfs.Route;
+import model.gtfs.StopTime;
+import model.gtfs.StopTimeStore;
+import model.gtfs.Trip;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("Test della classe StopScheduleEngine")
+class StopScheduleEngineTest {
+
+    private static final int ORA = 3600;
+
+    private Fermate fermata;
+    private Fermate capolinea;
+    private List<Trip> trips;
+    private List<Route> rotte;
+    private List<StopTime> stopTimes;
+
+    @BeforeEach
+    void setUp() {
+        fermata = new Fermate("sse_F1", "Piazza Venezia", 41.896, 12.482);
+        capolinea = new Fermate("sse_F2", "Termini", 41.901, 12.501);
+        rotte = List.of(
+                new Route("sse_R1", "ATAC", "N1", "Notturna", "", 3, "", "", ""),
+                new Route("sse_R2", "ATAC", "64", "Diurna", "", 3, "", "", ""));
+        trips = List.of(
+                new Trip("sse_R1", "WD", "sse_T1", "Termini"),
+                new Trip("sse_R2", "WD", "sse_T2", "Termini"),
+                new Trip("sse_R2", "WD", "sse_T3", "Termini"),
+                new Trip("sse_R2", "WD", "sse_T4", "Termini"));
+        stopTimes = List.of(
+                // N1 del giorno di servizio precedente: 24:15
+                orario("sse_T1", 24 * ORA + 15 * 60, "sse_F1", 1),
+                orario("sse_T1", 24 * ORA + 30 * 60, "sse_F2", 2),
+                // 64 alle 00:30, alle 23:55 e alle 12:00
+                orario("sse_T2", 30 * 60, "sse_F1", 1),
+                orario("sse_T2", 45 * 60, "sse_F2", 2),
+                orario("sse_T3", 23 * ORA + 55 * 60, "sse_F1", 1),
+                orario("sse_T3", 24 * ORA + 5 * 60, "sse_F2", 2),
+                orario("sse_T4", 12 * ORA, "sse_F1", 1),
+                orario("sse_T4", 12 * ORA + 10 * 60, "sse_F2", 2));
+    }
+
+    private static StopTime orario(String tripId, int secondi, String stopId, int sequenza) {
+        return new StopTime(tripId, secondi, secondi, stopId, sequenza, "", 0, 0, 0.0);
+    }
+
+    private List<String[]> righe(List<StopTime> orari, int adesso) {
+        return new StopScheduleEngine(null)
+                .calcolaRigheTabella(fermata, orari, trips, rotte, List.of(fermata, capolinea), adesso);
+    }
+
+    @Test
+    @DisplayName("Dopo mezzanotte compaiono le corse notturne oltre le 24:00, in ordine")
+    void testDopoMezzanotte() {
+        List<String[]> righe = righe(stopTimes, 10 * 60);   // 00:10
+
+        assertEquals(2, righe.size());
+        assertArrayEquals(new String[]{"N1", " → Termini", "00:15"}, righe.get(0));
+        assertArrayEquals(new String[]{"64", " → Termini", "00:30"}, righe.get(1));
+    }
+
+    @Test
+    @DisplayName("Prima di mezzanotte le corse del giorno dopo vengono dopo le 23:xx")
+    void testPrimaDiMezzanotte() {
+        List<String[]> righe = righe(stopTimes, 23 * ORA + 50 * 60);   // 23:50
+
+        assertEquals(3, righe.size());
+        assertEquals("23:55", righe.get(0)[2]);
+        assertEquals("00:15", righe.get(1)[2]);
+        assertEquals("00:30", righe.get(2)[2]);
+    }
+
+    @Test
+    @DisplayName("Stesso risultato dall'archivio colonnare")
+    void testDallArchivio() {
+        List<StopTime> archivio = StopTimeStore.da(stopTimes).tutti();
+
+        List<String[]> righe = righe(archivio, 10 * 60);
+
+        assertEquals(2, righe.size());
+        assertEquals("N1", righe.get(0)[0]);
+        assertEquals("00:15", righe.get(0)[2]);
+        assertEquals("00:30", righe.get(1)[2]);
+    }
+}